@@ -19,16 +19,17 @@
 package eu.fasten.analyzer.javacgopal;
 
 import eu.fasten.analyzer.javacgopal.data.MavenCoordinate;
+import eu.fasten.core.data.CallGraphTransport;
 import eu.fasten.core.data.ExtendedRevisionCallGraph;
 import eu.fasten.analyzer.javacgopal.data.callgraph.PartialCallGraph;
 import eu.fasten.core.plugins.KafkaConsumer;
 import eu.fasten.core.plugins.KafkaProducer;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.producer.ProducerRecord;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.pf4j.Extension;
@@ -54,6 +55,9 @@ public class OPALPlugin extends Plugin {
         final String PRODUCE_TOPIC = "opal_callgraphs";
         private boolean processedRecord;
         private String pluginError;
+        /** The transport of call graphs that do not fit in a Kafka record. */
+        private CallGraphTransport transport =
+            new CallGraphTransport(CallGraphTransport.Mode.CHUNKED, null);
 
         @Override
         public List<String> consumerTopics() {
@@ -138,19 +142,29 @@ public class OPALPlugin extends Plugin {
         public void sendToKafka(final ExtendedRevisionCallGraph cg) {
 
             logger.debug("Writing call graph for {} to Kafka", cg.uri.toString());
-            final var record = new ProducerRecord<Object, String>(this.PRODUCE_TOPIC,
-                cg.uri.toString(),
-                cg.toJSON().toString()
-            );
-
-            kafkaProducer.send(record, ((recordMetadata, e) -> {
-                if (recordMetadata != null) {
-                    logger.debug("Sent: {} to {}", cg.uri.toString(), this.PRODUCE_TOPIC);
-                } else {
-                    setPluginError(e);
-                    logger.error("Failed to write message to Kafka: " + e.getMessage(), e);
-                }
-            }));
+            try {
+                transport.send(kafkaProducer, this.PRODUCE_TOPIC, cg.uri.toString(),
+                    writer -> cg.toJSON().write(writer), ((recordMetadata, e) -> {
+                        if (recordMetadata != null) {
+                            logger.debug("Sent: {} to {}", cg.uri.toString(), this.PRODUCE_TOPIC);
+                        } else {
+                            setPluginError(e);
+                            logger.error("Failed to write message to Kafka: " + e.getMessage(), e);
+                        }
+                    }));
+            } catch (IOException e) {
+                setPluginError(e);
+                logger.error("Failed to write call graph to Kafka: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Sets the transport of call graphs that do not fit in a Kafka record; by default, they
+         * are split into chunks.
+         * @param transport the transport.
+         */
+        public void setTransport(final CallGraphTransport transport) {
+            this.transport = transport;
         }
 
 
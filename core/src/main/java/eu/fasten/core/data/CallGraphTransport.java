@@ -0,0 +1,578 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+
+/** A transport for call graphs (or any other text payload) too large to fit in a single Kafka record.
+ *
+ *  <p>A producer {@linkplain #send(Producer, String, Object, Payload, Callback) sends} a payload by writing it to a {@link Writer}:
+ *  payloads that fit in a chunk are sent as a single record, exactly as they would be without this transport, whereas larger payloads are,
+ *  depending on the {@linkplain Mode mode},
+ *  <ul>
+ *  <li>split into ordered chunks, each sent in a record as soon as it is full, followed by a manifest record containing the number of chunks,
+ *  the length in bytes and the SHA-256 digest of the payload;
+ *  <li>written to a content-addressed blob store (a directory shared by producers and consumers, where each payload is stored in a file
+ *  named after its SHA-256 digest), in which case only a reference to the blob is sent.
+ *  </ul>
+ *  The kind of record is specified by the {@link #TRANSPORT_HEADER} header, which is absent from plain records; chunks and manifest of a payload
+ *  share the same key (thus, the same partition), and are identified by the {@link #CHUNK_ID_HEADER} header.
+ *
+ *  <p>On the consumer side, a {@link Receiver} returns an input stream over the payload of a plain record, of a blob reference, or of the record
+ *  completing a chunked payload. In either direction, the whole payload is never materialized as a single string or array: producers
+ *  write it chunk by chunk, and the chunks of a payload are released by consumers as they are read. The length and the digest of transported
+ *  payloads are checked when the end of the input stream is reached.
+ */
+public class CallGraphTransport {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CallGraphTransport.class);
+
+	/** The way payloads that do not fit in a chunk are transported. */
+	public enum Mode {
+		/** Payloads are always sent as a single record. */
+		INLINE,
+		/** Payloads are split into chunks, followed by a manifest. */
+		CHUNKED,
+		/** Payloads are stored in a blob store, and a reference is sent. */
+		BLOB
+	}
+
+	/** The header specifying the kind of a transported record ({@code chunk}, {@code manifest} or {@code blob}); it is absent from plain records. */
+	public static final String TRANSPORT_HEADER = "fasten.transport";
+	/** The header containing the identifier of the payload a chunk or a manifest belongs to. */
+	public static final String CHUNK_ID_HEADER = "fasten.chunk.id";
+	/** The header containing the index of a chunk. */
+	public static final String CHUNK_INDEX_HEADER = "fasten.chunk.index";
+	/** The default chunk size, in characters: chunks encoded in UTF-8 fit in the default maximum size of a Kafka request. */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 18;
+	/** The default maximum overall size in bytes of the chunks of incomplete payloads kept by a {@link Receiver} (1 GiB). */
+	public static final long DEFAULT_MAX_PENDING_BYTES = 1L << 30;
+	/** The default maximum number of chunks and manifests a {@link Receiver} receives while waiting for the next record of an incomplete payload. */
+	public static final long DEFAULT_MAX_PENDING_AGE = 1L << 20;
+
+	private static final String CHUNK = "chunk";
+	private static final String MANIFEST = "manifest";
+	private static final String BLOB = "blob";
+
+	/** A payload, written by {@link CallGraphTransport#send(Producer, String, Object, Payload, Callback)}. */
+	public interface Payload {
+		/** Writes this payload.
+		 *
+		 * @param writer a writer.
+		 */
+		void write(Writer writer) throws IOException;
+	}
+
+	/** The transport mode of payloads that do not fit in a chunk. */
+	private final Mode mode;
+	/** The maximum number of characters of a chunk. */
+	private final int chunkSize;
+	/** The directory of the blob store, or {@code null}. */
+	private final File blobStore;
+
+	/** Creates a transport.
+	 *
+	 * @param mode the transport mode of payloads that do not fit in a chunk.
+	 * @param chunkSize the maximum number of characters of a chunk (i.e., of a record).
+	 * @param blobStore the directory of the blob store, if {@code mode} is {@link Mode#BLOB}.
+	 */
+	public CallGraphTransport(final Mode mode, final int chunkSize, final File blobStore) {
+		if (chunkSize < 2) throw new IllegalArgumentException("Chunks must contain at least two characters");
+		if (mode == Mode.BLOB && blobStore == null) throw new IllegalArgumentException("No blob store specified");
+		this.mode = mode;
+		this.chunkSize = chunkSize;
+		this.blobStore = blobStore;
+	}
+
+	/** Creates a transport with a {@linkplain #DEFAULT_CHUNK_SIZE default chunk size}.
+	 *
+	 * @param mode the transport mode of payloads that do not fit in a chunk.
+	 * @param blobStore the directory of the blob store, if {@code mode} is {@link Mode#BLOB}.
+	 */
+	public CallGraphTransport(final Mode mode, final File blobStore) {
+		this(mode, DEFAULT_CHUNK_SIZE, blobStore);
+	}
+
+	/** Returns whether a record has been sent by this transport as a chunk, a manifest or a blob reference.
+	 *
+	 * @param headers the headers of the record.
+	 * @return false if the record is a plain record.
+	 */
+	public static boolean isTransported(final Headers headers) {
+		return headers.lastHeader(TRANSPORT_HEADER) != null;
+	}
+
+	/** Sends a payload.
+	 *
+	 * @param producer a producer.
+	 * @param topic the topic.
+	 * @param key the key of the records, which must not be {@code null}, as all chunks of a payload must end up in the same partition.
+	 * @param payload the payload.
+	 * @param callback a callback for the last record sent (the plain record, the manifest or the blob reference), or {@code null}.
+	 * @return the future of the last record sent.
+	 * @throws IOException if the payload could not be written, or if some chunk could not be sent, in which case the manifest is not sent.
+	 */
+	public <K> Future<RecordMetadata> send(final Producer<K, String> producer, final String topic, final K key, final Payload payload, final Callback callback) throws IOException {
+		if (key == null) throw new IllegalArgumentException("Transported records must have a key");
+		try (SplittingWriter<K> writer = new SplittingWriter<>(producer, topic, key)) {
+			payload.write(writer);
+			return writer.finish(callback);
+		}
+	}
+
+	/** A writer keeping a chunk in memory, and sending it or storing it in a blob when it is full. */
+	private final class SplittingWriter<K> extends Writer {
+		private final Producer<K, String> producer;
+		private final String topic;
+		private final K key;
+		/** The current chunk. */
+		private final StringBuilder buffer = new StringBuilder();
+		/** The digest of the part of the payload sent or stored so far. */
+		private final MessageDigest digest = sha256();
+		/** The identifier of the payload, if chunks have been sent. */
+		private String id;
+		/** The number of chunks sent so far. */
+		private int chunks;
+		/** The futures of the chunks sent so far. */
+		private final List<Future<RecordMetadata>> sent = new ArrayList<>();
+		/** The length in bytes of the chunks sent so far. */
+		private long length;
+		/** The temporary file of the blob, if the payload is being stored in a blob. */
+		private File blob;
+		/** A writer on {@link #blob}. */
+		private Writer blobWriter;
+
+		private SplittingWriter(final Producer<K, String> producer, final String topic, final K key) {
+			this.producer = producer;
+			this.topic = topic;
+			this.key = key;
+		}
+
+		@Override
+		public void write(final char[] cbuf, int off, int len) throws IOException {
+			while (len > 0) {
+				// A full chunk is spilled only when more characters arrive, so payloads fitting in a chunk are sent as plain records
+				if (mode != Mode.INLINE && buffer.length() >= chunkSize) spill();
+				final int n = mode == Mode.INLINE ? len : Math.min(len, chunkSize - buffer.length());
+				buffer.append(cbuf, off, n);
+				off += n;
+				len -= n;
+			}
+		}
+
+		/** Sends the current chunk, or writes it to the blob. */
+		private void spill() throws IOException {
+			if (mode == Mode.BLOB) {
+				if (blobWriter == null) {
+					blob = File.createTempFile(CallGraphTransport.class.getSimpleName(), ".tmp", blobStore);
+					blobWriter = new OutputStreamWriter(new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(blob)), digest), StandardCharsets.UTF_8);
+				}
+				blobWriter.append(buffer);
+				buffer.setLength(0);
+				return;
+			}
+			// A surrogate pair cannot be split, or the chunks would not be valid UTF-16 strings
+			int end = buffer.length();
+			if (end > 1 && Character.isHighSurrogate(buffer.charAt(end - 1))) end--;
+			final String chunk = buffer.substring(0, end);
+			buffer.delete(0, end);
+			if (id == null) id = UUID.randomUUID().toString();
+			final byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+			digest.update(bytes);
+			length += bytes.length;
+			final Headers headers = new RecordHeaders();
+			headers.add(TRANSPORT_HEADER, CHUNK.getBytes(StandardCharsets.UTF_8));
+			headers.add(CHUNK_ID_HEADER, id.getBytes(StandardCharsets.UTF_8));
+			headers.add(CHUNK_INDEX_HEADER, Integer.toString(chunks++).getBytes(StandardCharsets.UTF_8));
+			sent.add(producer.send(new ProducerRecord<>(topic, null, key, chunk, headers)));
+		}
+
+		/** Waits for all chunks to be sent.
+		 *
+		 * @throws IOException if some chunk could not be sent.
+		 */
+		private void awaitChunks() throws IOException {
+			try {
+				for (final Future<RecordMetadata> future : sent) future.get();
+			} catch (final ExecutionException e) {
+				throw new IOException("Cannot send chunk of payload " + id, e.getCause());
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while sending the chunks of payload " + id);
+			}
+		}
+
+		/** Sends the last record of the payload. */
+		private Future<RecordMetadata> finish(final Callback callback) throws IOException {
+			final Headers headers = new RecordHeaders();
+			final JSONObject value = new JSONObject();
+			if (chunks == 0 && blobWriter == null) return producer.send(new ProducerRecord<>(topic, null, key, buffer.toString(), headers), callback);
+			if (mode == Mode.BLOB) {
+				blobWriter.append(buffer);
+				buffer.setLength(0);
+				blobWriter.close();
+				blobWriter = null;
+				final String sha256 = hex(digest.digest());
+				value.put("sha256", sha256);
+				value.put("size", blob.length());
+				// Blobs are content addressed: an existing blob with the same name has the same content
+				Files.move(blob.toPath(), new File(blobStore, sha256).toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				blob = null;
+				headers.add(TRANSPORT_HEADER, BLOB.getBytes(StandardCharsets.UTF_8));
+			} else {
+				if (buffer.length() != 0) spill();
+				// A manifest must not complete a payload with missing chunks
+				awaitChunks();
+				value.put("chunks", chunks);
+				value.put("size", length);
+				value.put("sha256", hex(digest.digest()));
+				headers.add(TRANSPORT_HEADER, MANIFEST.getBytes(StandardCharsets.UTF_8));
+				headers.add(CHUNK_ID_HEADER, id.getBytes(StandardCharsets.UTF_8));
+			}
+			return producer.send(new ProducerRecord<>(topic, null, key, value.toString(), headers), callback);
+		}
+
+		@Override
+		public void flush() {}
+
+		@Override
+		public void close() throws IOException {
+			// Only reached before finish() if the payload could not be written
+			if (blobWriter != null) blobWriter.close();
+			if (blob != null) blob.delete();
+		}
+	}
+
+	/** A receiver reassembling the payloads sent by a {@link CallGraphTransport}. Instances are not thread safe: they are meant to be used
+	 *  by the thread polling a consumer. The chunks of a payload are kept until the payload is complete (or the receiver is {@linkplain #clear() cleared}).
+	 *
+	 *  <p>Since the manifest of a payload might never arrive (e.g., if its producer died), incomplete payloads are dropped, starting from
+	 *  the least recently updated ones, when the overall size of their chunks exceeds a maximum, or when no record of theirs has been
+	 *  received within a maximum number of chunks and manifests (their age).
+	 */
+	public static class Receiver {
+		/** The directory of the blob store, or {@code null}. */
+		private final File blobStore;
+		/** The maximum overall size in bytes of the chunks of incomplete payloads. */
+		private final long maxPendingBytes;
+		/** The maximum age of an incomplete payload, in records. */
+		private final long maxPendingAge;
+		/** The chunks, and possibly the manifest, of incomplete payloads, by identifier, from the least recently updated. */
+		private final Object2ObjectLinkedOpenHashMap<String, PendingPayload> pending = new Object2ObjectLinkedOpenHashMap<>();
+		/** The overall size in bytes of the chunks in {@link #pending}. */
+		private long pendingBytes;
+		/** The number of chunks and manifests received so far. */
+		private long received;
+
+		/** A payload whose chunks are being received. */
+		private static final class PendingPayload {
+			private final Int2ObjectOpenHashMap<byte[]> chunks = new Int2ObjectOpenHashMap<>();
+			private JSONObject manifest;
+			/** The size in bytes of {@link #chunks}. */
+			private long bytes;
+			/** The value of {@link Receiver#received} when the last record of this payload was received. */
+			private long lastReceived;
+		}
+
+		/** Creates a receiver with {@linkplain CallGraphTransport#DEFAULT_MAX_PENDING_BYTES default} {@linkplain CallGraphTransport#DEFAULT_MAX_PENDING_AGE bounds}
+		 *  on incomplete payloads.
+		 *
+		 * @param blobStore the directory of the blob store, or {@code null} if blob references are not expected.
+		 */
+		public Receiver(final File blobStore) {
+			this(blobStore, DEFAULT_MAX_PENDING_BYTES, DEFAULT_MAX_PENDING_AGE);
+		}
+
+		/** Creates a receiver.
+		 *
+		 * @param blobStore the directory of the blob store, or {@code null} if blob references are not expected.
+		 * @param maxPendingBytes the maximum overall size in bytes of the chunks of incomplete payloads; payloads larger than this
+		 * size cannot be received.
+		 * @param maxPendingAge the maximum number of chunks and manifests received after the last record of an incomplete payload
+		 * before the payload is dropped.
+		 */
+		public Receiver(final File blobStore, final long maxPendingBytes, final long maxPendingAge) {
+			this.blobStore = blobStore;
+			this.maxPendingBytes = maxPendingBytes;
+			this.maxPendingAge = maxPendingAge;
+		}
+
+		/** Receives a record.
+		 *
+		 * @param headers the headers of the record.
+		 * @param value the value of the record, either a string or an array of bytes (the UTF-8 encoding of a string).
+		 * @return an input stream over the UTF-8 encoding of the payload, if this record is a plain record, a blob reference or the record
+		 * completing a chunked payload; {@code null} otherwise.
+		 */
+		public InputStream receive(final Headers headers, final Object value) throws IOException {
+			final byte[] bytes = value instanceof String ? ((String)value).getBytes(StandardCharsets.UTF_8) : (byte[])value;
+			final String kind = header(headers, TRANSPORT_HEADER);
+			if (kind == null) return new ByteArrayInputStream(bytes);
+			try {
+				switch(kind) {
+				case CHUNK: {
+					final String id = id(headers);
+					final PendingPayload payload = update(id);
+					final byte[] previous = payload.chunks.put(Integer.parseInt(header(headers, CHUNK_INDEX_HEADER)), bytes);
+					final long delta = bytes.length - (previous == null ? 0 : previous.length);
+					payload.bytes += delta;
+					pendingBytes += delta;
+					expire();
+					return complete(id);
+				}
+				case MANIFEST: {
+					final String id = id(headers);
+					update(id).manifest = new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+					expire();
+					return complete(id);
+				}
+				case BLOB: {
+					if (blobStore == null) throw new IOException("Received a blob reference, but no blob store was specified");
+					final JSONObject reference = new JSONObject(new String(bytes, StandardCharsets.UTF_8));
+					final String sha256 = reference.getString("sha256");
+					if (!sha256.matches("[0-9a-f]{64}")) throw new IOException("Invalid blob reference: " + sha256);
+					return new VerifyingInputStream(new FileInputStream(new File(blobStore, sha256)), reference.getLong("size"), sha256);
+				}
+				default: throw new IOException("Unknown kind of transported record: " + kind);
+				}
+			} catch (final JSONException | NumberFormatException e) {
+				throw new IOException("Malformed " + kind + " record", e);
+			}
+		}
+
+		/** Returns the incomplete payload with given identifier, creating it if necessary, and makes it the most recently updated one. */
+		private PendingPayload update(final String id) {
+			PendingPayload payload = pending.getAndMoveToLast(id);
+			if (payload == null) pending.putAndMoveToLast(id, payload = new PendingPayload());
+			payload.lastReceived = received++;
+			return payload;
+		}
+
+		/** Drops the least recently updated incomplete payloads while there are too many chunks or they are too old. */
+		private void expire() {
+			while (!pending.isEmpty()) {
+				final PendingPayload payload = pending.get(pending.firstKey());
+				if (pendingBytes <= maxPendingBytes && received - payload.lastReceived <= maxPendingAge) return;
+				LOGGER.warn("Dropping incomplete payload " + pending.firstKey() + " (" + payload.chunks.size() + " chunks, " + payload.bytes + " bytes, " + (payload.manifest == null ? "no" : "with") + " manifest)");
+				pendingBytes -= payload.bytes;
+				pending.removeFirst();
+			}
+		}
+
+		/** Returns an input stream over a payload, if it is complete. */
+		private InputStream complete(final String id) {
+			final PendingPayload payload = pending.get(id);
+			// The payload has just been dropped
+			if (payload == null || payload.manifest == null) return null;
+			final int n = payload.manifest.getInt("chunks");
+			for (int i = 0; i < n; i++) if (!payload.chunks.containsKey(i)) return null;
+			pending.remove(id);
+			pendingBytes -= payload.bytes;
+			final ArrayDeque<byte[]> chunks = new ArrayDeque<>(n);
+			for (int i = 0; i < n; i++) chunks.add(payload.chunks.get(i));
+			return new VerifyingInputStream(new ChunkInputStream(chunks), payload.manifest.getLong("size"), payload.manifest.getString("sha256"));
+		}
+
+		/** Returns the number of payloads whose chunks are being received.
+		 *
+		 * @return the number of incomplete payloads.
+		 */
+		public int pending() {
+			return pending.size();
+		}
+
+		/** Discards the chunks of all incomplete payloads. */
+		public void clear() {
+			pending.clear();
+			pendingBytes = 0;
+		}
+
+		private static String id(final Headers headers) throws IOException {
+			final String id = header(headers, CHUNK_ID_HEADER);
+			if (id == null) throw new IOException("Missing payload identifier");
+			return id;
+		}
+
+		private static String header(final Headers headers, final String key) {
+			final Header header = headers.lastHeader(key);
+			return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/** An input stream over a sequence of chunks, releasing each chunk as soon as it has been read. */
+	private static final class ChunkInputStream extends InputStream {
+		private final ArrayDeque<byte[]> chunks;
+		private byte[] chunk = new byte[0];
+		private int pos;
+
+		private ChunkInputStream(final ArrayDeque<byte[]> chunks) {
+			this.chunks = chunks;
+		}
+
+		/** Makes sure that the current chunk has bytes left, if possible.
+		 *
+		 * @return false if there are no bytes left.
+		 */
+		private boolean advance() {
+			while (pos == chunk.length) {
+				if (chunks.isEmpty()) return false;
+				chunk = chunks.poll();
+				pos = 0;
+			}
+			return true;
+		}
+
+		@Override
+		public int read() {
+			return advance() ? chunk[pos++] & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (len == 0) return 0;
+			if (!advance()) return -1;
+			final int n = Math.min(len, chunk.length - pos);
+			System.arraycopy(chunk, pos, b, off, n);
+			pos += n;
+			return n;
+		}
+	}
+
+	/** An input stream checking the length and the digest of the underlying stream when its end is reached, or when
+	 * it is closed, in which case the remaining bytes are read and digested. */
+	private static final class VerifyingInputStream extends FilterInputStream {
+		private final MessageDigest digest = sha256();
+		private final long size;
+		private final String sha256;
+		private long length;
+		private boolean verified;
+		private boolean closed;
+
+		private VerifyingInputStream(final InputStream in, final long size, final String sha256) {
+			super(in);
+			this.size = size;
+			this.sha256 = sha256;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = in.read();
+			if (b == -1) verify();
+			else {
+				digest.update((byte)b);
+				length++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			final int n = in.read(b, off, len);
+			if (n == -1) verify();
+			else {
+				digest.update(b, off, n);
+				length += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			// Skipped bytes must be digested, too
+			final byte[] b = new byte[(int)Math.min(n, 8192)];
+			final int r = read(b, 0, b.length);
+			return Math.max(r, 0);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) return;
+			closed = true;
+			// Parsers usually stop at the end of the call graph, before the end of the payload is reached
+			try {
+				final byte[] b = new byte[8192];
+				while(read(b, 0, b.length) != -1);
+			} finally {
+				super.close();
+			}
+		}
+
+		private void verify() throws IOException {
+			if (verified) return;
+			if (length != size) throw new IOException("Transported payload has length " + length + ", but " + size + " bytes were sent");
+			if (!hex(digest.digest()).equals(sha256)) throw new IOException("Transported payload has been corrupted");
+			verified = true;
+		}
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String hex(final byte[] b) {
+		final StringBuilder s = new StringBuilder();
+		for (final byte x : b) s.append(Character.forDigit((x >> 4) & 0xF, 16)).append(Character.forDigit(x & 0xF, 16));
+		return s.toString();
+	}
+}
@@ -27,13 +27,19 @@ public class FastenCURI extends FastenURI {
 	protected final String filename;
 	protected final String functionOrVariableName;
 	protected final boolean isFunction;
+	/** The {@linkplain #canonicalize() canonical form} of this FASTEN C URI (possibly, this URI itself), or {@code null} if it has not been computed yet. */
+	private transient volatile FastenCURI canonical;
 
 	public FastenCURI(final String s) {
-		this(URI.create(s));
+		this(FastenURI.create(s));
 	}
 
 	public FastenCURI(final URI uri) {
-		super(uri);
+		this(FastenURI.create(uri));
+	}
+
+	private FastenCURI(final FastenURI fastenURI) {
+		super(fastenURI);
 		if (getNamespace() != null && ! "C".equals(getNamespace())) throw new IllegalArgumentException("The namespace of a FASTEN C URI must be \"C\"");
 		if (rawEntity == null) {
 			filename = functionOrVariableName = null;
@@ -67,7 +73,7 @@ public class FastenCURI extends FastenURI {
 	 */
 
 	public static FastenCURI create(final String s) {
-		return new FastenCURI(URI.create(s));
+		return new FastenCURI(s);
 	}
 
 	/**
@@ -104,7 +110,7 @@ public class FastenCURI extends FastenURI {
 		if (isFunction) entitysb.append("()");
 
 		final FastenURI fastenURI = FastenURI.create(rawForge, rawProduct, rawVersion, "C", entitysb.toString());
-		return create(fastenURI.uri);
+		return new FastenCURI(fastenURI);
 	}
 
 	/** Returns the name of the function or variable associated with this FASTEN C URI.
@@ -143,9 +149,9 @@ public class FastenCURI extends FastenURI {
 	@Override
 	public FastenCURI relativize(final FastenURI u) {
 		if (rawNamespace == null) throw new IllegalStateException("You cannot relativize without a namespace");
-		final String rawAuthority = u.uri.getRawAuthority();
+		final String rawAuthority = u.getRawAuthority();
 		// There is an authority and it doesn't match: return u
-		if (rawAuthority != null && ! rawAuthority.equals(uri.getRawAuthority())) return u instanceof FastenCURI ? (FastenCURI) u : create(u.uri);
+		if (rawAuthority != null && ! rawAuthority.equals(getRawAuthority())) return u instanceof FastenCURI ? (FastenCURI) u : new FastenCURI(u);
 		// Matching authorities, or no authority, and there's a namespace, and it doesn't match: return namespace + entity
 		if (u.rawNamespace != null && ! rawNamespace.equals(u.rawNamespace)) return FastenCURI.create("/" + u.rawNamespace + "/" +  u.rawEntity);
 		// Matching authorities, or no authority, matching namespaces, or no namespace: return entity
@@ -154,11 +160,46 @@ public class FastenCURI extends FastenURI {
 
 	public FastenCURI resolve(final FastenCURI u) {
 		// Standard resolution will work; might be more efficient
-		return create(this.uri.resolve(u.uri));
+		return create(toURI().resolve(u.toURI()));
+	}
+
+	/** Returns whether this FASTEN C URI has a scheme, the namespace <code>C</code> and an entity without escapes,
+	 * in which case it is in canonical form; this method does not create any object.
+	 *
+	 * @return true if this FASTEN C URI is in canonical form; if false, it might still be.
+	 */
+	private boolean hasCanonicalComponents() {
+		return toString().startsWith("fasten:") && "C".equals(rawNamespace) && rawEntity != null && rawEntity.indexOf('%') == -1;
 	}
 
+	/** Returns the canonical form of this FASTEN C URI.
+	 *
+	 * <p>The canonical form is computed just once; if it is equal to this URI, this URI is returned.
+	 *
+	 * @return the canonical form of this FASTEN C URI.
+	 */
 	@Override
 	public FastenCURI canonicalize() {
-		return FastenCURI.create(rawForge, rawProduct, rawVersion, filename, functionOrVariableName, isFunction);
+		FastenCURI canonical = this.canonical;
+		if (canonical == null) {
+			if (hasCanonicalComponents()) return this.canonical = this;
+			canonical = FastenCURI.create(rawForge, rawProduct, rawVersion, filename, functionOrVariableName, isFunction);
+			// No need to keep a second copy of a canonical URI
+			this.canonical = canonical = canonical.equals(this) ? this : canonical;
+		}
+		return canonical;
+	}
+
+	/** Returns whether this FASTEN C URI is in canonical form.
+	 *
+	 * <p>The canonical form is built only if scheme, namespace or entity might differ from their canonical form.
+	 *
+	 * @return true if this FASTEN C URI is in canonical form.
+	 */
+	@Override
+	public boolean isCanonical() {
+		final FastenCURI canonical = this.canonical;
+		if (canonical != null) return canonical == this;
+		return hasCanonicalComponents() || canonicalize() == this;
 	}
 }
@@ -19,6 +19,7 @@
 package eu.fasten.core.data;
 
 import java.net.URI;
+import java.util.Objects;
 
 import it.unimi.dsi.fastutil.chars.CharOpenHashSet;
 
@@ -32,13 +33,19 @@ public class FastenJavaURI extends FastenURI {
 	protected final String functionOrAttributeName;
 	protected final FastenJavaURI[] args;
 	protected final FastenJavaURI returnType;
+	/** The {@linkplain #canonicalize() canonical form} of this FASTEN Java URI (possibly, this URI itself), or {@code null} if it has not been computed yet. */
+	private transient volatile FastenJavaURI canonical;
 
 	public FastenJavaURI(final String s) {
-		this(URI.create(s));
+		this(FastenURI.create(s));
 	}
 
 	public FastenJavaURI(final URI uri) {
-		super(uri);
+		this(FastenURI.create(uri));
+	}
+
+	private FastenJavaURI(final FastenURI fastenURI) {
+		super(fastenURI);
 		if (rawEntity == null) {
 			className = null;
 			functionOrAttributeName = null;
@@ -75,7 +82,7 @@ public class FastenJavaURI extends FastenURI {
 		if (closedParenPos == -1) throw new IllegalArgumentException("Missing close parenthesis");
 		final String returnTypeSpec = funcArgsType.substring(closedParenPos + 1);
 		checkForCommasAndParentheses(returnTypeSpec);
-		returnType = FastenJavaURI.create(decode(returnTypeSpec));
+		returnType = FastenURIPool.FASTEN_JAVA_URIS.get(decode(returnTypeSpec));
 		final var argString = funcArgsType.substring(openParenPos + 1, closedParenPos);
 		if (argString.length() == 0) {
 			args = NO_ARGS_ARRAY;
@@ -86,7 +93,7 @@ public class FastenJavaURI extends FastenURI {
 		args = new FastenJavaURI[a.length];
 		for(int i = 0; i < a.length; i++) {
 			checkForCommasAndParentheses(a[i]);
-			args[i] = FastenJavaURI.create(decode(a[i]));
+			args[i] = FastenURIPool.FASTEN_JAVA_URIS.get(decode(a[i]));
 		}
 	}
 
@@ -107,7 +114,7 @@ public class FastenJavaURI extends FastenURI {
 	 */
 
 	public static FastenJavaURI create(final String s) {
-		return new FastenJavaURI(URI.create(s));
+		return new FastenJavaURI(s);
 	}
 
 	/**
@@ -151,14 +158,14 @@ public class FastenJavaURI extends FastenURI {
 			if (argTypes != null)
 				for (int i = 0; i < argTypes.length; i++) {
 					if (i>0) entitysb.append(',');
-					entitysb.append(FastenJavaURI.pctEncodeArg(argTypes[i].uri.toString()));
+					entitysb.append(FastenJavaURI.pctEncodeArg(argTypes[i].toString()));
 				}
 			entitysb.append(')');
-			entitysb.append(FastenJavaURI.pctEncodeArg(returnType.uri.toString()));
+			entitysb.append(FastenJavaURI.pctEncodeArg(returnType.toString()));
 		}
 		else if (argTypes != null && argTypes.length > 0) throw new IllegalArgumentException("You cannot specify argument types for an attribute");
 		final FastenURI fastenURI = FastenURI.create(rawForge, rawProduct, rawVersion, rawNamespace, entitysb.toString());
-		return create(fastenURI.uri);
+		return new FastenJavaURI(fastenURI);
 	}
 
 	private final static CharOpenHashSet typeChar = new CharOpenHashSet(new char[] {
@@ -220,9 +227,9 @@ public class FastenJavaURI extends FastenURI {
 	@Override
 	public FastenJavaURI relativize(final FastenURI u) {
 		if (rawNamespace == null) throw new IllegalStateException("You cannot relativize without a namespace");
-		final String rawAuthority = u.uri.getRawAuthority();
+		final String rawAuthority = u.getRawAuthority();
 		// There is an authority and it doesn't match: return u
-		if (rawAuthority != null && ! rawAuthority.equals(uri.getRawAuthority())) return u instanceof FastenJavaURI ? (FastenJavaURI) u : create(u.uri);
+		if (rawAuthority != null && ! rawAuthority.equals(getRawAuthority())) return u instanceof FastenJavaURI ? (FastenJavaURI) u : new FastenJavaURI(u);
 		// Matching authorities, or no authority, and there's a namespace, and it doesn't match: return namespace + entity
 		if (u.rawNamespace != null && ! rawNamespace.equals(u.rawNamespace)) return FastenJavaURI.create("/" + u.rawNamespace + "/" +  u.rawEntity);
 		// Matching authorities, or no authority, matching namespaces, or no namespace: return entity
@@ -231,15 +238,67 @@ public class FastenJavaURI extends FastenURI {
 
 	public FastenJavaURI resolve(final FastenJavaURI u) {
 		// Standard resolution will work; might be more efficient
-		return create(this.uri.resolve(u.uri));
+		return create(toURI().resolve(u.toURI()));
 	}
 
+	/** Returns whether {@link #relativize(FastenURI)} would return a FASTEN URI equal to the provided one, without creating any object.
+	 *
+	 * @param u a FASTEN URI.
+	 * @return true if {@code u} is already relativized with respect to this FASTEN Java URI.
+	 */
+	private boolean isRelativized(final FastenURI u) {
+		if (rawNamespace == null) throw new IllegalStateException("You cannot relativize without a namespace");
+		// An authority is kept only if it doesn't match
+		if (u.rawProduct != null) return ! (u.rawProduct.equals(rawProduct) && Objects.equals(u.rawForge, rawForge) && Objects.equals(u.rawVersion, rawVersion));
+		if (u.toString().startsWith("fasten:")) return false;
+		// A namespace is kept only if it doesn't match
+		return u.rawNamespace == null || ! rawNamespace.equals(u.rawNamespace);
+	}
+
+	/** Returns the canonical form of this FASTEN Java URI, in which arguments and return type are {@linkplain #relativize(FastenURI) relativized}
+	 * with respect to this URI.
+	 *
+	 * <p>The canonical form is computed just once; if it is equal to this URI, this URI is returned.
+	 *
+	 * @return the canonical form of this FASTEN Java URI.
+	 */
 	@Override
 	public FastenJavaURI canonicalize() {
-		final FastenJavaURI[] relativizedArgs = new FastenJavaURI[args.length];
+		FastenJavaURI canonical = this.canonical;
+		if (canonical == null) {
+			if (hasRelativizedTypes()) return this.canonical = this;
+			final FastenJavaURI[] relativizedArgs = new FastenJavaURI[args.length];
 
-		for(int i = 0; i < args.length; i++) relativizedArgs[i] = relativize(args[i]);
-		final FastenJavaURI relativizedReturnType = relativize(returnType);
-		return FastenJavaURI.create(rawForge, rawProduct, rawVersion, rawNamespace, className, functionOrAttributeName, relativizedArgs, relativizedReturnType);
+			for(int i = 0; i < args.length; i++) relativizedArgs[i] = relativize(args[i]);
+			final FastenJavaURI relativizedReturnType = relativize(returnType);
+			canonical = FastenJavaURI.create(rawForge, rawProduct, rawVersion, rawNamespace, className, functionOrAttributeName, relativizedArgs, relativizedReturnType);
+			// No need to keep a second copy of a canonical URI
+			this.canonical = canonical = canonical.equals(this) ? this : canonical;
+		}
+		return canonical;
+	}
+
+	/** Returns whether this FASTEN Java URI has a scheme, and its arguments and return type are already {@linkplain #relativize(FastenURI) relativized},
+	 * in which case it is in canonical form; this method does not create any object.
+	 *
+	 * @return true if this FASTEN Java URI is in canonical form; if false, it might still be.
+	 */
+	private boolean hasRelativizedTypes() {
+		if (! toString().startsWith("fasten:")) return false;
+		if (args != null) for (final FastenJavaURI arg : args) if (! isRelativized(arg)) return false;
+		return returnType == null || isRelativized(returnType);
+	}
+
+	/** Returns whether this FASTEN Java URI is in canonical form.
+	 *
+	 * <p>The canonical form is built only if arguments or return type are not relativized.
+	 *
+	 * @return true if this FASTEN Java URI is in canonical form.
+	 */
+	@Override
+	public boolean isCanonical() {
+		final FastenJavaURI canonical = this.canonical;
+		if (canonical != null) return canonical == this;
+		return hasRelativizedTypes() || canonicalize() == this;
 	}
 }
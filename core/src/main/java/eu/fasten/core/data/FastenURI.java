@@ -21,15 +21,64 @@ package eu.fasten.core.data;
 import java.io.Serializable;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 
-/** A class representing a Fasten URI; it has to be considered experimental until the BNF for such URIs is set in stone. */
+/** A class representing a Fasten URI; it has to be considered experimental until the BNF for such URIs is set in stone.
+ *
+ * <p>Fasten URIs are parsed by a hand-written single-pass parser that slices the raw components
+ * directly from the string representation, and resorts to {@link URI} only to validate
+ * syntax that is not part of the Fasten grammar (e.g., queries or fragments): the results
+ * are exactly the same as if the string was first parsed by {@link URI#URI(String)}. The
+ * underlying {@link URI} is {@linkplain #toURI() built lazily}, and
+ * {@link #parse(CharSequence, int[])} makes it possible to slice a Fasten URI without creating any object.
+ */
 
 public class FastenURI implements Serializable {
 	private static final long serialVersionUID = 1L;
+	/** The index of the scheme in the offsets computed by {@link #parse(CharSequence, int[])}. */
+	public static final int SCHEME = 0;
+	/** The index of the authority (i.e., forge, product and version, combined) in the offsets computed by {@link #parse(CharSequence, int[])}. */
+	public static final int AUTHORITY = 1;
+	/** The index of the forge in the offsets computed by {@link #parse(CharSequence, int[])}. */
+	public static final int FORGE = 2;
+	/** The index of the product in the offsets computed by {@link #parse(CharSequence, int[])}. */
+	public static final int PRODUCT = 3;
+	/** The index of the version in the offsets computed by {@link #parse(CharSequence, int[])}. */
+	public static final int VERSION = 4;
+	/** The index of the path (i.e., namespace and entity, combined) in the offsets computed by {@link #parse(CharSequence, int[])}. */
+	public static final int PATH = 5;
+	/** The index of the namespace in the offsets computed by {@link #parse(CharSequence, int[])}. */
+	public static final int NAMESPACE = 6;
+	/** The index of the entity in the offsets computed by {@link #parse(CharSequence, int[])}. */
+	public static final int ENTITY = 7;
+	/** The index of the whole Fasten URI in the offsets computed by {@link #parse(CharSequence, int[])}; it differs from the parsed
+	 * sequence only when the scheme of an opaque URI is bypassed (e.g., {@code fasten:Entity}). */
+	public static final int WHOLE = 8;
+	/** The number of components whose offsets are computed by {@link #parse(CharSequence, int[])}. */
+	public static final int COMPONENTS = 9;
+
+	/** Characters that can appear unescaped in the authority. */
+	private static final byte AUTHORITY_CHAR = 1;
+	/** Characters that can appear unescaped in the path. */
+	private static final byte PATH_CHAR = 2;
+	/** The class of each ASCII character, as a combination of {@link #AUTHORITY_CHAR} and {@link #PATH_CHAR}.
+	 * We follow {@link URI}: a registry-based authority, without colons or at signs, and a path without query or fragment. */
+	private static final byte[] CHAR_CLASS = new byte[128];
+
+	static {
+		for (char c = '0'; c <= '9'; c++) CHAR_CLASS[c] = AUTHORITY_CHAR | PATH_CHAR;
+		for (char c = 'a'; c <= 'z'; c++) CHAR_CLASS[c] = AUTHORITY_CHAR | PATH_CHAR;
+		for (char c = 'A'; c <= 'Z'; c++) CHAR_CLASS[c] = AUTHORITY_CHAR | PATH_CHAR;
+		for (final char c : "-_.!~*'()$,;&=+".toCharArray()) CHAR_CLASS[c] = AUTHORITY_CHAR | PATH_CHAR;
+		for (final char c : ":@/".toCharArray()) CHAR_CLASS[c] = PATH_CHAR;
+	}
+
 	/** A placeholder Fasten URI. */
 	public static final FastenURI NULL_FASTEN_URI = FastenURI.create("//-");
-	/** The underlying {@link URI}. */
-	protected final URI uri;
+	/** The string representation of this FastenURI. */
+	private final String string;
+	/** The underlying {@link URI}, or {@code null} if it has not been {@linkplain #toURI() built} yet. */
+	private transient volatile URI uri;
 	/** The forge of the {@linkplain #rawProduct product} associated with this FastenURI, or {@code null} if the forge is not specified. */
 	protected final String rawForge;
 	/** The product associated with this FastenURI, or {@code null} if the product is not specified. */
@@ -46,67 +95,257 @@ public class FastenURI implements Serializable {
 		// Bypass URI when the scheme is specified, but there is no forge-product-version
 		if (uri.isOpaque()) uri = URI.create(uri.getSchemeSpecificPart());
 
-		this.uri = uri;
-		final String forgeProductVersion = uri.getRawAuthority();
+		final int[] offsets = new int[2 * COMPONENTS];
+		final String s = uri.toString();
+		final String t;
+		try {
+			t = slice(s, offsets);
+		} catch (final URISyntaxException cannotHappen) {
+			throw new IllegalArgumentException(cannotHappen.getMessage(), cannotHappen);
+		}
 
-		if (forgeProductVersion == null) rawForge = rawProduct = rawVersion = null;
-		else {
-			final var exclPos = forgeProductVersion.indexOf('!');
-			String productVersion;
-			if (exclPos == -1) { // No forge
-				rawForge = null;
-				productVersion = forgeProductVersion;
+		string = t.substring(offsets[2 * WHOLE]);
+		// We can reuse the URI unless there was a further bypass
+		this.uri = string == s ? uri : null;
+		rawForge = component(t, offsets, FORGE);
+		rawProduct = component(t, offsets, PRODUCT);
+		rawVersion = component(t, offsets, VERSION);
+		rawNamespace = component(t, offsets, NAMESPACE);
+		rawEntity = component(t, offsets, ENTITY);
+	}
+
+	protected FastenURI(final String s) throws URISyntaxException {
+		final int[] offsets = new int[2 * COMPONENTS];
+		final String t = slice(s, offsets);
+		string = t.substring(offsets[2 * WHOLE]);
+		rawForge = component(t, offsets, FORGE);
+		rawProduct = component(t, offsets, PRODUCT);
+		rawVersion = component(t, offsets, VERSION);
+		rawNamespace = component(t, offsets, NAMESPACE);
+		rawEntity = component(t, offsets, ENTITY);
+	}
+
+	/** Creates a copy of a {@link FastenURI}; subclasses use this constructor to share the parsing logic of {@link #create(String)}.
+	 *
+	 * @param fastenURI a {@link FastenURI}.
+	 */
+	protected FastenURI(final FastenURI fastenURI) {
+		string = fastenURI.string;
+		uri = fastenURI.uri;
+		rawForge = fastenURI.rawForge;
+		rawProduct = fastenURI.rawProduct;
+		rawVersion = fastenURI.rawVersion;
+		rawNamespace = fastenURI.rawNamespace;
+		rawEntity = fastenURI.rawEntity;
+	}
+
+	/** Parses a string, bypassing (possibly repeatedly) the scheme of opaque URIs whose scheme-specific part must be decoded.
+	 *
+	 * @param s a string specifying a {@link FastenURI}.
+	 * @param offsets an array of length 2&nbsp;&middot;&nbsp;{@link #COMPONENTS} that will be filled as in {@link #parse(CharSequence, int[])}.
+	 * @return the string the offsets refer to; it is {@code s} unless a bypass was necessary.
+	 */
+	private static String slice(String s, final int[] offsets) throws URISyntaxException {
+		while (! parse(s, offsets)) s = URI.create(new URI(s).getSchemeSpecificPart()).toString();
+		return s;
+	}
+
+	private static String component(final String s, final int[] offsets, final int component) {
+		final int start = offsets[2 * component];
+		return start == -1 ? null : s.substring(start, offsets[2 * component + 1]);
+	}
+
+	/** Parses a {@link FastenURI} without creating any object, storing the offsets of its raw components.
+	 *
+	 * <p>After a successful call, for each component (e.g., {@link #PRODUCT}) {@code offsets[2 * component]}
+	 * and {@code offsets[2 * component + 1]} will contain the start (inclusive) and end (exclusive) position of the component
+	 * in {@code s}, or -1 if the component is not specified. The values of {@link #getRawForge()}, {@link #getRawProduct()}, etc.
+	 * for {@code s} are exactly the corresponding subsequences.
+	 *
+	 * <p>The components of an opaque URI with scheme {@code fasten} are those of its scheme-specific part, which however
+	 * {@link URI} decodes before parsing it again. Such a URI cannot be described by offsets into {@code s} if its scheme-specific
+	 * part contains escapes, or if it has a fragment: in that case, this method returns false, and the URI can be parsed by
+	 * {@link #create(String)}.
+	 *
+	 * @param s a character sequence.
+	 * @param offsets an array of length at least 2&nbsp;&middot;&nbsp;{@link #COMPONENTS} that will be filled with the offsets of the components of {@code s}.
+	 * @return true if {@code s} has been parsed; false if it is an opaque URI whose components are not subsequences of {@code s}.
+	 * @throws URISyntaxException if {@code s} cannot be parsed as a {@link URI}.
+	 * @throws IllegalArgumentException if {@code s} does not satisfy the further constraints of a {@link FastenURI}.
+	 */
+	public static boolean parse(final CharSequence s, final int[] offsets) throws URISyntaxException {
+		Arrays.fill(offsets, 0, 2 * COMPONENTS, -1);
+		return parse(s, 0, offsets);
+	}
+
+	private static boolean parse(final CharSequence s, final int start, final int[] offsets) throws URISyntaxException {
+		final int n = s.length();
+		int p = start;
+
+		// The scheme ends at the first colon, provided it precedes slashes, question marks and hashes
+		for (int i = start; i < n; i++) {
+			final char c = s.charAt(i);
+			if (c == '/' || c == '?' || c == '#') break;
+			if (c == ':') {
+				if (i - start != 6 || ! isFasten(s, start)) {
+					validate(s, start);
+					throw new IllegalArgumentException("Scheme, if specified, must be 'fasten'");
+				}
+				offsets[2 * SCHEME] = start;
+				offsets[2 * SCHEME + 1] = i;
+				p = i + 1;
+				break;
 			}
-			else {
-				rawForge = forgeProductVersion.substring(0,  exclPos);
-				productVersion = forgeProductVersion.substring(exclPos + 1);
-				if (productVersion.indexOf('!') >= 0) throw new IllegalArgumentException("More than one forge");
-				if (rawForge.indexOf('$') >= 0) throw new IllegalArgumentException("Version / forge inverted or mixed");
+		}
+
+		if (p != start && (p == n || s.charAt(p) != '/')) {
+			// Bypass URI when the scheme is specified, but there is no forge-product-version
+			if (p == n) validate(s, start); // Will throw
+			for (int i = p; i < n; i++) {
+				final char c = s.charAt(i);
+				if (c == '%' || c == '#') return false;
+				if (! isPath(c)) validate(s, start);
+			}
+			offsets[2 * SCHEME] = offsets[2 * SCHEME + 1] = -1;
+			try {
+				return parse(s, p, offsets);
+			} catch (final URISyntaxException e) {
+				throw new IllegalArgumentException(e.getMessage(), e);
 			}
+		}
 
-			final var dollarPos = productVersion.indexOf('$');
-			if (dollarPos == -1) {
-				rawProduct = productVersion;
-				rawVersion = null;
+		offsets[2 * WHOLE] = start;
+		offsets[2 * WHOLE + 1] = n;
+		// Syntax not in the Fasten grammar, or incorrect, which we delegate to URI
+		boolean exotic = false;
+
+		if (p + 1 < n && s.charAt(p) == '/' && s.charAt(p + 1) == '/') {
+			p += 2;
+			int q = p;
+			for (; q < n; q++) {
+				final char c = s.charAt(q);
+				if (c == '/' || c == '?' || c == '#') break;
+				if (c == '%') {
+					if (isEscape(s, q)) q += 2;
+					else exotic = true;
+				}
+				else if (c < 128 ? (CHAR_CLASS[c] & AUTHORITY_CHAR) == 0 : ! isOther(c)) exotic = true;
 			}
+			if (q == p) exotic = true; // Empty authority: URI rejects it at the end, and ignores it otherwise
 			else {
-				rawProduct = productVersion.substring(0, dollarPos);
-				rawVersion = productVersion.substring(dollarPos + 1);
-				if (rawVersion.indexOf('$') >= 0) throw new IllegalArgumentException("More than one version");
+				offsets[2 * AUTHORITY] = p;
+				offsets[2 * AUTHORITY + 1] = q;
+			}
+			p = q;
+		}
+
+		int q = p;
+		for (; q < n; q++) {
+			final char c = s.charAt(q);
+			if (c == '?' || c == '#') {
+				exotic = true;
+				break;
+			}
+			if (c == '%') {
+				if (isEscape(s, q)) q += 2;
+				else exotic = true;
 			}
+			else if (! isPath(c)) exotic = true;
+		}
+
+		if (exotic) validate(s, start);
 
-			if (rawProduct.length() == 0) throw new IllegalArgumentException("The product cannot be empty");
+		if (offsets[2 * AUTHORITY] != -1) sliceAuthority(s, offsets[2 * AUTHORITY], offsets[2 * AUTHORITY + 1], offsets);
+
+		if (q != p) {
+			offsets[2 * PATH] = p;
+			offsets[2 * PATH + 1] = q;
+			slicePath(s, p, q, offsets);
 		}
 
-		final var path = uri.getRawPath();
+		return true;
+	}
 
-		if (path.length() == 0) {
-			rawNamespace = rawEntity = null;
-			return;
+	/** Slices the authority into forge, product and version. */
+	private static void sliceAuthority(final CharSequence s, final int start, final int end, final int[] offsets) {
+		final int exclPos = indexOf(s, '!', start, end);
+		int productStart;
+		if (exclPos == -1) productStart = start; // No forge
+		else {
+			productStart = exclPos + 1;
+			if (indexOf(s, '!', productStart, end) != -1) throw new IllegalArgumentException("More than one forge");
+			if (indexOf(s, '$', start, exclPos) != -1) throw new IllegalArgumentException("Version / forge inverted or mixed");
+			offsets[2 * FORGE] = start;
+			offsets[2 * FORGE + 1] = exclPos;
 		}
 
-		int slashPos;
-		if (path.charAt(0) == '/') { // We have a namespace
-			slashPos = path.indexOf('/', 1); // Skip first slash
+		final int dollarPos = indexOf(s, '$', productStart, end);
+		offsets[2 * PRODUCT] = productStart;
+		if (dollarPos == -1) offsets[2 * PRODUCT + 1] = end;
+		else {
+			offsets[2 * PRODUCT + 1] = dollarPos;
+			if (indexOf(s, '$', dollarPos + 1, end) != -1) throw new IllegalArgumentException("More than one version");
+			offsets[2 * VERSION] = dollarPos + 1;
+			offsets[2 * VERSION + 1] = end;
+		}
 
-			if (slashPos == -1)  throw new IllegalArgumentException("Missing entity");
-			rawNamespace = path.substring(1, slashPos);
+		if (offsets[2 * PRODUCT] == offsets[2 * PRODUCT + 1]) throw new IllegalArgumentException("The product cannot be empty");
+	}
 
-			if (rawNamespace.length() == 0) throw new IllegalArgumentException("The namespace cannot be empty");
-			rawEntity = path.substring(slashPos + 1);
+	/** Slices the (nonempty) path into namespace and entity. */
+	private static void slicePath(final CharSequence s, final int start, final int end, final int[] offsets) {
+		int entityStart;
+		if (s.charAt(start) == '/') { // We have a namespace
+			final int slashPos = indexOf(s, '/', start + 1, end); // Skip first slash
+			if (slashPos == -1) throw new IllegalArgumentException("Missing entity");
+			if (slashPos == start + 1) throw new IllegalArgumentException("The namespace cannot be empty");
+			offsets[2 * NAMESPACE] = start + 1;
+			offsets[2 * NAMESPACE + 1] = slashPos;
+			entityStart = slashPos + 1;
 		}
 		else {
-			if (path.indexOf('/') != -1) throw new IllegalArgumentException("The entity part cannot contain a slash (namespaces must be always prefixed with a slash)"); // No slash
-			rawNamespace = null;
-			rawEntity = path;
+			if (indexOf(s, '/', start, end) != -1) throw new IllegalArgumentException("The entity part cannot contain a slash (namespaces must be always prefixed with a slash)"); // No slash
+			entityStart = start;
 		}
 
-		if (rawEntity.length() == 0) throw new IllegalArgumentException("The entity part cannot be empty");
-		if (rawEntity.indexOf(':') >= 0) throw new IllegalArgumentException("The entity part cannot contain colons");
+		if (entityStart == end) throw new IllegalArgumentException("The entity part cannot be empty");
+		if (indexOf(s, ':', entityStart, end) != -1) throw new IllegalArgumentException("The entity part cannot contain colons");
+		offsets[2 * ENTITY] = entityStart;
+		offsets[2 * ENTITY + 1] = end;
 	}
 
-	protected FastenURI(final String s) throws URISyntaxException {
-		this(new URI(s));
+	private static int indexOf(final CharSequence s, final char c, final int start, final int end) {
+		for (int i = start; i < end; i++) if (s.charAt(i) == c) return i;
+		return -1;
+	}
+
+	/** Returns whether the scheme starting at the given position is {@code fasten}, ignoring case. */
+	private static boolean isFasten(final CharSequence s, final int start) {
+		for (int i = 0; i < 6; i++) if ((s.charAt(start + i) | 0x20) != "fasten".charAt(i)) return false;
+		return true;
+	}
+
+	private static boolean isPath(final char c) {
+		return c < 128 ? (CHAR_CLASS[c] & PATH_CHAR) != 0 : isOther(c);
+	}
+
+	/** Returns whether a non-ASCII character can appear unescaped in a URI, with the same logic of {@link URI}. */
+	private static boolean isOther(final char c) {
+		return c > 128 && ! Character.isSpaceChar(c) && ! Character.isISOControl(c);
+	}
+
+	private static boolean isHex(final char c) {
+		return c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+	}
+
+	/** Returns whether there is a valid escape at the given position, which contains a percent sign. */
+	private static boolean isEscape(final CharSequence s, final int pos) {
+		return pos + 2 < s.length() && isHex(s.charAt(pos + 1)) && isHex(s.charAt(pos + 2));
+	}
+
+	/** Validates a subsequence with {@link URI}, which will throw an exception with the appropriate message if it is incorrect. */
+	private static void validate(final CharSequence s, final int start) throws URISyntaxException {
+		new URI(s.subSequence(start, s.length()).toString());
 	}
 
 	/**
@@ -116,7 +355,11 @@ public class FastenURI implements Serializable {
 	 */
 
 	public static FastenURI create(final String s) {
-		return new FastenURI(URI.create(s));
+		try {
+			return new FastenURI(s);
+		} catch (final URISyntaxException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
 	}
 
 	/**
@@ -134,14 +377,13 @@ public class FastenURI implements Serializable {
 	private static FastenURI create(final StringBuilder urisb, final String rawForge, final String rawProduct, final String rawVersion, final String rawNamespace, final String rawEntity) {
 		if (rawProduct != null) {
 			urisb.append("//");
-			if (rawForge != null) urisb.append(rawForge + "!");
+			if (rawForge != null) urisb.append(rawForge).append('!');
 			urisb.append(rawProduct);
-			if (rawVersion != null) urisb.append("$" + rawVersion);
-			urisb.append("/" + rawNamespace + "/" + rawEntity);
-		} else urisb.append("/" + rawNamespace + "/" + rawEntity);
-		return new FastenURI(URI.create(urisb.toString()));
+			if (rawVersion != null) urisb.append('$').append(rawVersion);
+		}
+		urisb.append('/').append(rawNamespace).append('/').append(rawEntity);
+		return create(urisb.toString());
 	}
-
 	/**
 	 * Creates a {@link FastenURI} from given raw (i.e., properly escaped) fine-grained components.
 	 *
@@ -187,7 +429,31 @@ public class FastenURI implements Serializable {
 	 * @see #create(String, String, String, String, String)
 	 */
 	public static FastenURI create(final String rawForgeProductVersion, final String rawNamespace, final String rawEntity) {
-		return new FastenURI(URI.create("fasten://" + rawForgeProductVersion + "/" + rawNamespace + "/" + rawEntity));
+		return create("fasten://" + rawForgeProductVersion + "/" + rawNamespace + "/" + rawEntity);
+	}
+
+	/** Returns the {@link URI} corresponding to this FASTEN URI, building it if necessary.
+	 *
+	 * @return the {@link URI} corresponding to this FASTEN URI.
+	 */
+	public URI toURI() {
+		URI uri = this.uri;
+		if (uri == null) this.uri = uri = URI.create(string);
+		return uri;
+	}
+
+	/** Returns the raw authority of this FASTEN URI, that is, forge, product and version, combined.
+	 *
+	 * @return the raw authority, or {@code null} if the product is not specified.
+	 */
+	public String getRawAuthority() {
+		if (rawProduct == null) return null;
+		if (rawForge == null && rawVersion == null) return rawProduct;
+		final StringBuilder sb = new StringBuilder();
+		if (rawForge != null) sb.append(rawForge).append('!');
+		sb.append(rawProduct);
+		if (rawVersion != null) sb.append('$').append(rawVersion);
+		return sb.toString();
 	}
 
 	public String getRawForge() {
@@ -259,7 +525,7 @@ public class FastenURI implements Serializable {
 	}
 
 	public FastenURI resolve(final FastenURI fastenURI) {
-		return create(uri.resolve(fastenURI.uri));
+		return create(toURI().resolve(fastenURI.toURI()));
 	}
 
 	/** Relativizes the provided FASTEN URI with respected to this FASTEN URI.
@@ -278,9 +544,9 @@ public class FastenURI implements Serializable {
 	 */
 	public FastenURI relativize(final FastenURI u) {
 		if (rawNamespace == null) throw new IllegalStateException("You cannot relativize without a namespace");
-		final String rawAuthority = u.uri.getRawAuthority();
+		final String rawAuthority = u.getRawAuthority();
 		// There is an authority and it doesn't match: return u
-		if (rawAuthority != null && ! rawAuthority.equals(uri.getRawAuthority())) return u;
+		if (rawAuthority != null && ! rawAuthority.equals(getRawAuthority())) return u;
 		// Matching authorities, or no authority, and there's a namespace, and it doesn't match: return namespace + entity
 		if (u.rawNamespace != null && ! rawNamespace.equals(u.rawNamespace)) return FastenURI.create("/" + u.rawNamespace + "/" +  u.rawEntity);
 		// Matching authorities, or no authority, matching namespaces, or no namespace: return entity
@@ -288,7 +554,7 @@ public class FastenURI implements Serializable {
 	}
 
 	public String getScheme() {
-		return uri.getScheme();
+		return string.regionMatches(true, 0, "fasten:", 0, 7) ? string.substring(0, 6) : null;
 	}
 
 	/** Returns the {@linkplain URI#getPath() path} of this FASTEN URI.
@@ -298,7 +564,7 @@ public class FastenURI implements Serializable {
 	 * @return the path, or {@code null} if there is no path.
 	 */
 	public String getPath() {
-		final String path = uri.getPath();
+		final String path = toURI().getPath();
 		assert path != null;
 		return path.length() == 0 ? null : path;
 	}
@@ -310,25 +576,34 @@ public class FastenURI implements Serializable {
 	 * @return the raw path, or {@code null} if there is no path.
 	 */
 	public String getRawPath() {
-		final String path = uri.getRawPath();
-		assert path != null;
-		return path.length() == 0 ? null : path;
+		if (rawNamespace != null) return "/" + rawNamespace + "/" + rawEntity;
+		return rawEntity;
 	}
 
 	@Override
 	public String toString() {
-		return uri.toString();
+		return string;
 	}
 
 	@Override
 	public boolean equals(final Object o) {
+		if (o == this) return true;
+		if (o instanceof FastenURI) {
+			// Hash codes of strings are cached, so this is a fast check for the common case of different URIs
+			final String t = ((FastenURI)o).string;
+			return string.hashCode() == t.hashCode() && string.equals(t);
+		}
 		if (o == null) return false;
-		return uri.toString().equals(o.toString());
+		return string.equals(o.toString());
 	}
 
+	/** Returns a hash code for this FASTEN URI, which is the hash code of its string representation (and thus it is computed only once).
+	 *
+	 * @return a hash code for this FASTEN URI.
+	 */
 	@Override
 	public int hashCode() {
-		return uri.toString().hashCode();
+		return string.hashCode();
 	}
 
 	/** A no-op canonicalization method.
@@ -338,4 +613,13 @@ public class FastenURI implements Serializable {
 	public FastenURI canonicalize() {
 		return this;
 	}
+
+	/** Returns whether this FASTEN URI is in canonical form, that is, whether it has the same string representation of
+	 * its {@linkplain #canonicalize() canonical form}. This method always returns true, as canonicalization is a no-op.
+	 *
+	 * @return true.
+	 */
+	public boolean isCanonical() {
+		return true;
+	}
 }
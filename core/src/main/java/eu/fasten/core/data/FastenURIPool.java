@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data;
+
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/** A pool of canonical instances of {@link FastenURI} (or of one of its subclasses), keyed by their string representation.
+ *
+ * <p>The same generic URIs (e.g., methods of the JDK or of popular libraries) appear in a large number of revisions:
+ * obtaining them from a pool avoids parsing them again, and makes repeated URIs share the same instance (and the
+ * same string representation, whose hash code is thus computed just once).
+ *
+ * <p>Pools are bounded, and evict the least recently used URIs: most URIs are short lived, so a pool
+ * with weak values would lose them at the first collection, whereas frequent URIs stay in a bounded pool as long as they are used.
+ * Pools are thread safe.
+ *
+ * @param <T> the type of the URIs in this pool.
+ */
+public class FastenURIPool<T extends FastenURI> {
+	/** The default maximum number of URIs in a pool. */
+	public static final int DEFAULT_MAXIMUM_SIZE = 1 << 16;
+	/** A pool of {@link FastenURI} instances created by {@link FastenURI#create(String)}. */
+	public static final FastenURIPool<FastenURI> FASTEN_URIS = new FastenURIPool<>(FastenURI::create, DEFAULT_MAXIMUM_SIZE);
+	/** A pool of {@link FastenJavaURI} instances created by {@link FastenJavaURI#create(String)}. */
+	public static final FastenURIPool<FastenJavaURI> FASTEN_JAVA_URIS = new FastenURIPool<>(FastenJavaURI::create, DEFAULT_MAXIMUM_SIZE);
+
+	/** The canonical instances, keyed by their string representation. */
+	private final Cache<String, T> cache;
+	/** The function creating URIs missing from the pool. */
+	private final Function<String, T> factory;
+
+	/** Creates a pool.
+	 *
+	 * @param factory the function creating URIs that are not in the pool from their string representation.
+	 * @param maximumSize the maximum number of URIs in the pool.
+	 */
+	public FastenURIPool(final Function<String, T> factory, final long maximumSize) {
+		this.factory = factory;
+		this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+	}
+
+	/** Returns the canonical instance of a URI, creating it if necessary.
+	 *
+	 * @param s the string representation of a URI.
+	 * @return the canonical instance of {@code s}.
+	 * @throws IllegalArgumentException if the factory of this pool throws it.
+	 */
+	public T get(final String s) {
+		final T uri = cache.getIfPresent(s);
+		return uri != null ? uri : intern(factory.apply(s));
+	}
+
+	/** Returns the canonical instance of a URI, if it is in the pool.
+	 *
+	 * @param s the string representation of a URI.
+	 * @return the canonical instance of {@code s}, or {@code null}.
+	 */
+	public T getIfPresent(final String s) {
+		return cache.getIfPresent(s);
+	}
+
+	/** Returns the canonical instance of a URI, making the given URI canonical if the pool contains no URI equal to it.
+	 *
+	 * @param uri a URI.
+	 * @return the canonical instance of {@code uri}.
+	 */
+	public T intern(final T uri) {
+		final T canonical = cache.asMap().putIfAbsent(uri.toString(), uri);
+		return canonical != null ? canonical : uri;
+	}
+
+	/** Returns the number of URIs in this pool.
+	 *
+	 * @return the (approximate) number of URIs in this pool.
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/** Removes all URIs from this pool. */
+	public void clear() {
+		cache.invalidateAll();
+	}
+}
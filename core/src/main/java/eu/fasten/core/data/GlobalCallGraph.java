@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.rocksdb.RocksDBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.martiansoftware.jsap.FlaggedOption;
+import com.martiansoftware.jsap.JSAP;
+import com.martiansoftware.jsap.JSAPException;
+import com.martiansoftware.jsap.JSAPResult;
+import com.martiansoftware.jsap.Parameter;
+import com.martiansoftware.jsap.SimpleJSAP;
+import com.martiansoftware.jsap.UnflaggedOption;
+
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.logging.ProgressLogger;
+import it.unimi.dsi.webgraph.BVGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.ImmutableSequentialGraph;
+import it.unimi.dsi.webgraph.LazyIntIterator;
+import it.unimi.dsi.webgraph.NodeIterator;
+import it.unimi.dsi.webgraph.Transform;
+
+/** A snapshot of the union of all call graphs of a {@link KnowledgeBase}, with all arcs across revisions resolved.
+ *
+ * <p>The nodes of the snapshot are the internal nodes of all revisions in the knowledge base at the time the snapshot was
+ * {@linkplain KnowledgeBase#storeSnapshot(CharSequence, File) stored}: revisions are sorted by revision index, and the internal nodes
+ * of each revision are numbered consecutively in LID order. Its arcs are exactly the arcs returned by the
+ * {@linkplain KnowledgeBase#successors(KnowledgeBase.Node) successors} of each node, so the snapshot and its transpose, both stored in
+ * {@link BVGraph} format, can replace the per-revision graphs and the {@code GIDAppearsIn}/{@code GIDCalledBy} posting lists
+ * during visits.
+ *
+ * <p>A snapshot comprises the graph (<code><var>basename</var></code>), its transpose
+ * (<code><var>basename</var>{@value #TRANSPOSE_SUFFIX}</code>) and the list of revisions (<code><var>basename</var>{@value #REVISIONS_EXTENSION}</code>);
+ * graphs are {@linkplain BVGraph#loadMapped(CharSequence) memory-mapped} when the snapshot is {@linkplain #load(CharSequence) loaded}.
+ * A loaded snapshot is {@linkplain KnowledgeBase#setSnapshot(GlobalCallGraph) attached} to a knowledge base, which keeps using
+ * the per-revision path for revisions added after the snapshot was stored.
+ */
+public class GlobalCallGraph {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GlobalCallGraph.class);
+
+	/** The suffix of the basename of the transpose graph. */
+	public static final String TRANSPOSE_SUFFIX = "-t";
+	/** The extension of the file containing the revisions of the snapshot. */
+	public static final String REVISIONS_EXTENSION = ".revisions";
+
+	/** The revision indices, in increasing order. */
+	private final long[] indices;
+	/** The number of the first node of each revision, followed by the number of nodes. */
+	private final long[] offsets;
+	/** The graph. */
+	private final ImmutableGraph graph;
+	/** The transpose graph. */
+	private final ImmutableGraph transpose;
+	/** Per-thread flyweight copies of {@link #graph} and {@link #transpose}. */
+	private final ThreadLocal<ImmutableGraph[]> copies;
+
+	private GlobalCallGraph(final long[] indices, final long[] offsets, final ImmutableGraph graph, final ImmutableGraph transpose) {
+		this.indices = indices;
+		this.offsets = offsets;
+		this.graph = graph;
+		this.transpose = transpose;
+		copies = ThreadLocal.withInitial(() -> new ImmutableGraph[] { graph.copy(), transpose.copy() });
+	}
+
+	/** Loads a snapshot, memory-mapping its graphs.
+	 *
+	 * @param basename the basename of the snapshot.
+	 * @return the snapshot.
+	 */
+	public static GlobalCallGraph load(final CharSequence basename) throws IOException {
+		final long[] indices, offsets;
+		try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(basename + REVISIONS_EXTENSION)))) {
+			indices = new long[dis.readInt()];
+			for(int i = 0; i < indices.length; i++) indices[i] = dis.readLong();
+			offsets = new long[indices.length + 1];
+			for(int i = 0; i < offsets.length; i++) offsets[i] = dis.readLong();
+		}
+		final GlobalCallGraph snapshot = new GlobalCallGraph(indices, offsets, BVGraph.loadMapped(basename), BVGraph.loadMapped(basename + TRANSPOSE_SUFFIX));
+		if (snapshot.graph.numNodes() != offsets[indices.length] || snapshot.transpose.numNodes() != offsets[indices.length])
+			throw new IOException("The graphs of snapshot " + basename + " do not match its revisions");
+		LOGGER.info("Loaded snapshot with " + indices.length + " revisions, " + snapshot.graph.numNodes() + " nodes and " + snapshot.graph.numArcs() + " arcs");
+		return snapshot;
+	}
+
+	/** Stores a snapshot of a knowledge base.
+	 *
+	 * <p>The caller must hold the read lock of the knowledge base for the whole duration of the method.
+	 *
+	 * @param kb a knowledge base.
+	 * @param basename the basename of the snapshot.
+	 * @param tempDir a directory for temporary files, or {@code null} for the default temporary directory.
+	 * @see KnowledgeBase#storeSnapshot(CharSequence, File)
+	 */
+	static void store(final KnowledgeBase kb, final CharSequence basename, final File tempDir) throws IOException {
+		final long[] indices = kb.callGraphs.keySet().toLongArray();
+		LongArrays.quickSort(indices);
+		final long[] offsets = new long[indices.length + 1];
+		for(int i = 0; i < indices.length; i++) offsets[i + 1] = offsets[i] + kb.callGraphs.get(indices[i]).nInternal;
+		if (offsets[indices.length] > Integer.MAX_VALUE) throw new IllegalStateException("Too many nodes for a snapshot: " + offsets[indices.length]);
+		final int n = (int)offsets[indices.length];
+
+		// A sequential view of the graph, whose successors are computed by the knowledge base
+		final GlobalCallGraph view = new GlobalCallGraph(indices, offsets, null, null);
+		final ImmutableGraph union = new ImmutableSequentialGraph() {
+			@Override
+			public int numNodes() {
+				return n;
+			}
+
+			@Override
+			public NodeIterator nodeIterator() {
+				return new NodeIterator() {
+					private final IntArrayList successors = new IntArrayList();
+					private int next;
+					private int revision;
+					private int outdegree = -1;
+
+					@Override
+					public boolean hasNext() {
+						return next < n;
+					}
+
+					@Override
+					public int nextInt() {
+						if (!hasNext()) throw new NoSuchElementException();
+						while(next >= offsets[revision + 1]) revision++;
+						successors.clear();
+						kb.successors(KnowledgeBase.node(indices[revision], (int)(next - offsets[revision])), x -> {
+							final int id = view.id(x);
+							if (id == -1) throw new IllegalStateException("Node " + x + " is not in the snapshot");
+							successors.add(id);
+						});
+						// Successors are returned with repetitions
+						IntArrays.quickSort(successors.elements(), 0, successors.size());
+						int d = 0;
+						for(int i = 0; i < successors.size(); i++) if (d == 0 || successors.getInt(i) != successors.getInt(d - 1)) successors.set(d++, successors.getInt(i));
+						successors.size(outdegree = d);
+						return next++;
+					}
+
+					@Override
+					public int outdegree() {
+						if (outdegree == -1) throw new IllegalStateException();
+						return outdegree;
+					}
+
+					@Override
+					public int[] successorArray() {
+						if (outdegree == -1) throw new IllegalStateException();
+						return successors.elements();
+					}
+				};
+			}
+		};
+
+		final ProgressLogger pl = new ProgressLogger(LOGGER);
+		pl.itemsName = "nodes";
+		pl.expectedUpdates = n;
+		BVGraph.store(union, basename, pl);
+		BVGraph.store(Transform.transposeOffline(BVGraph.loadOffline(basename), 10_000_000, tempDir, pl), basename + TRANSPOSE_SUFFIX, pl);
+
+		try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(basename + REVISIONS_EXTENSION)))) {
+			dos.writeInt(indices.length);
+			for(final long index : indices) dos.writeLong(index);
+			for(final long offset : offsets) dos.writeLong(offset);
+		}
+		LOGGER.info("Stored snapshot with " + indices.length + " revisions and " + n + " nodes");
+	}
+
+	/** Returns the number of revisions in this snapshot.
+	 *
+	 * @return the number of revisions in this snapshot.
+	 */
+	public int numRevisions() {
+		return indices.length;
+	}
+
+	/** Returns the number of nodes of this snapshot.
+	 *
+	 * @return the number of nodes of this snapshot.
+	 */
+	public int numNodes() {
+		return (int)offsets[indices.length];
+	}
+
+	/** Returns whether a revision is in this snapshot.
+	 *
+	 * @param index a revision index.
+	 * @return true if the revision is in this snapshot.
+	 */
+	public boolean contains(final long index) {
+		return Arrays.binarySearch(indices, index) >= 0;
+	}
+
+	/** Returns the node of the snapshot corresponding to an {@linkplain KnowledgeBase#node(long, int) encoded node}.
+	 *
+	 * @param node an encoded node, which must be internal to its revision.
+	 * @return the corresponding node of the snapshot, or -1 if the revision of <code>node</code> is not in the snapshot.
+	 */
+	public int id(final long node) {
+		final int pos = Arrays.binarySearch(indices, KnowledgeBase.index(node));
+		if (pos < 0) return -1;
+		assert KnowledgeBase.lid(node) < offsets[pos + 1] - offsets[pos];
+		return (int)(offsets[pos] + KnowledgeBase.lid(node));
+	}
+
+	/** Returns the {@linkplain KnowledgeBase#node(long, int) encoded node} corresponding to a node of the snapshot.
+	 *
+	 * @param id a node of the snapshot.
+	 * @return the corresponding encoded node.
+	 */
+	public long node(final int id) {
+		// The last revision whose first node is not greater than id, skipping revisions without nodes
+		int pos = Arrays.binarySearch(offsets, id);
+		if (pos < 0) pos = -pos - 2;
+		else while(offsets[pos + 1] == id) pos++;
+		return KnowledgeBase.node(indices[pos], (int)(id - offsets[pos]));
+	}
+
+	/** Returns the successors of a node of the snapshot in the graph or in its transpose.
+	 *
+	 * @param id a node of the snapshot.
+	 * @param forward whether to return successors (true) or predecessors (false).
+	 * @return the successors or predecessors of <code>id</code>, in increasing order.
+	 */
+	public LazyIntIterator successors(final int id, final boolean forward) {
+		return copies.get()[forward ? 0 : 1].successors(id);
+	}
+
+	/** Performs a breadth-first visit of the snapshot.
+	 *
+	 * @param start the starting node of the snapshot.
+	 * @param forward if true, the visit follows the graph; otherwise, it follows the transpose.
+	 * @return the list of visited nodes, {@linkplain KnowledgeBase#node(long, int) encoded}, in visit order.
+	 */
+	public LongArrayList visit(final int start, final boolean forward) {
+		final ImmutableGraph g = copies.get()[forward ? 0 : 1];
+		final IntOpenHashSet visited = new IntOpenHashSet();
+		final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+		final LongArrayList result = new LongArrayList();
+		visited.add(start);
+		queue.enqueue(start);
+		while(!queue.isEmpty()) {
+			final int x = queue.dequeueInt();
+			result.add(node(x));
+			final LazyIntIterator successors = g.successors(x);
+			for(int s; (s = successors.nextInt()) != -1;) if (visited.add(s)) queue.enqueue(s);
+		}
+		return result;
+	}
+
+	public static void main(final String[] args) throws JSAPException, IOException, RocksDBException, ClassNotFoundException {
+		final SimpleJSAP jsap = new SimpleJSAP(GlobalCallGraph.class.getName(),
+				"Stores a snapshot of the union of all call graphs of a knowledge base, with all arcs across revisions resolved.",
+				new Parameter[] {
+						new FlaggedOption("tempDir", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, 't', "temp-dir", "A directory for temporary files." ),
+						new UnflaggedOption("kb", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.NOT_GREEDY, "The directory of the RocksDB instance containing the knowledge base." ),
+						new UnflaggedOption("kbmeta", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.NOT_GREEDY, "The file containing the knowledge base metadata." ),
+						new UnflaggedOption("basename", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.NOT_GREEDY, "The basename of the snapshot." ),
+		});
+
+		final JSAPResult jsapResult = jsap.parse(args);
+		if ( jsap.messagePrinted() ) return;
+
+		final KnowledgeBase kb = KnowledgeBase.getInstance(jsapResult.getString("kb"), jsapResult.getString("kbmeta"));
+		kb.storeSnapshot(jsapResult.getString("basename"), jsapResult.userSpecified("tempDir") ? new File(jsapResult.getString("tempDir")) : null);
+		kb.close();
+	}
+}
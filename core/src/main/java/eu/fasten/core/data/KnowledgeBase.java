@@ -19,21 +19,48 @@ package eu.fasten.core.data;
  */
 
 import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.Serializable;
-import java.lang.ref.SoftReference;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
 
 import org.apache.commons.lang3.SerializationUtils;
+import org.json.JSONException;
+import org.json.JSONTokener;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompressionOptions;
+import org.rocksdb.CompressionType;
+import org.rocksdb.DBOptions;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.IngestExternalFileOptions;
+import org.rocksdb.MutableColumnFamilyOptions;
 import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.SstFileWriter;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,33 +69,52 @@ import com.esotericsoftware.kryo.io.ByteBufferOutput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.serializers.FieldSerializer;
 import com.esotericsoftware.kryo.serializers.JavaSerializer;
+import com.esotericsoftware.kryo.util.Pool;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import com.google.common.primitives.Longs;
+import com.google.common.primitives.UnsignedBytes;
 
+import eu.fasten.core.data.RevisionCallGraph.Constraint;
+import eu.fasten.core.data.RevisionCallGraph.Dependency;
 import eu.fasten.core.index.BVGraphSerializer;
-import it.unimi.dsi.Util;
+import eu.fasten.core.index.GID2LIDMap;
+import eu.fasten.core.index.InMemoryBVGraphCompressor;
+import eu.fasten.core.index.NodeOrdering;
+import eu.fasten.core.index.RevisionPostings;
+import eu.fasten.core.index.URIDictionary;
 import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntArrays;
-import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.fastutil.ints.IntIterators;
+import it.unimi.dsi.fastutil.ints.IntLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.io.FastByteArrayInputStream;
 import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
+import it.unimi.dsi.fastutil.longs.AbstractLong2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongIterator;
-import it.unimi.dsi.fastutil.longs.LongIterators;
-import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongSet;
 import it.unimi.dsi.fastutil.longs.LongSets;
 import it.unimi.dsi.fastutil.objects.AbstractObjectCollection;
-import it.unimi.dsi.fastutil.objects.Object2LongMap;
-import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
-import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
+import it.unimi.dsi.fastutil.objects.AbstractObjectSet;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
 import it.unimi.dsi.fastutil.objects.ObjectList;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
 import it.unimi.dsi.io.InputBitStream;
 import it.unimi.dsi.io.NullInputStream;
 import it.unimi.dsi.lang.MutableString;
@@ -82,13 +128,26 @@ import it.unimi.dsi.webgraph.NodeIterator;
 import it.unimi.dsi.webgraph.Transform;
 
 /**  Instances of this class represent a knowledge base (i.e., a set of revision call graphs).
- *   The knowledge base keeps the actual graphs in an associated {@linkplain #callGraphDB database},
- *   whereas all other informations about call graphs (both local information, such as {@link CallGraph#LID2GID}, and
- *   global information, such as {@link #genericURI2GID}) is kept in memory and serialized when the knowledge
- *   base is stored.
+ *   The knowledge base keeps the actual graphs in an associated {@linkplain #callGraphDB database}, together with all
+ *   other information about call graphs, which is stored in separate column families: the local information, such as {@link CallGraph#LID2GID},
+ *   in the {@value #CALL_GRAPHS} column family; the posting lists {@link #GIDAppearsIn} and {@link #GIDCalledBy} in the {@value #APPEARS_IN}
+ *   and {@value #CALLED_BY} column families; and the generic URIs added since the last checkpoint of the {@link URIDictionary}
+ *   in the {@value #URIS} column family. All information about a revision is committed by {@link #add(RevisionCallGraph, long)}
+ *   in a single write batch, so a crash cannot lose or partially store a revision that has been added. For bulk ingestion, revisions can be
+ *   {@linkplain #prepare(RevisionCallGraph) prepared} in parallel and then {@linkplain #add(List, long) added} in batches; backfills
+ *   can instead be {@linkplain #bulkAdd(Iterator, long, File) loaded in bulk} through SST files.
+ *
+ *   <p>Opening a knowledge base does not read the call graphs: their metadata is loaded lazily (and cached) by {@link #callGraphs}.
+ *   The frozen part of the URI dictionary lives in a memory-mapped file next to the metadata pathname, and is checkpointed
+ *   by {@link #close()} in the {@value #METADATA} column family.
+ *
+ *   <p>Queries (e.g., {@link #reaches(Node)} or {@link #coreaches(Node)}) can be run concurrently
+ *   by any number of threads: they only read the in-memory maps and keep their visit state locally.
+ *   Additions via {@link #add(RevisionCallGraph, long)} are isolated by a {@linkplain #lock read/write lock}:
+ *   a revision is published atomically with respect to queries, which hold the read lock. Since the URI dictionary is concurrent,
+ *   GIDs are assigned outside of the lock, when a revision is {@linkplain #prepare(RevisionCallGraph) prepared}.
  */
-public class KnowledgeBase implements Serializable, Closeable {
-	private static final long serialVersionUID = 1L;
+public class KnowledgeBase implements Closeable {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(KnowledgeBase.class);
 
@@ -117,19 +176,27 @@ public class KnowledgeBase implements Serializable, Closeable {
 		 * @return the {@link FastenURI} corresponding to this node.
 		 */
 		public FastenURI toFastenURI() {
-			final FastenURI genericURI = GID2GenericURI.get(gid);
-			if (genericURI == null) return null;
-			final CallGraph callGraph = callGraphs.get(index);
-			assert genericURI.getProduct().equals(callGraph.product) : genericURI.getProduct() + " != " + callGraph.product;
-			return FastenURI.create(callGraph.forge, callGraph.product, callGraph.version, genericURI.getRawNamespace(), genericURI.getRawEntity());
+			final Lock readLock = lock.readLock();
+			readLock.lock();
+			try {
+				return KnowledgeBase.this.toFastenURI(callGraphs.get(index), gid);
+			} finally {
+				readLock.unlock();
+			}
 		}
 
 		@Override
 		public String toString() {
-			return 	"[GID=" + gid +
-					", LID=" + callGraphs.get(index).GID2LID.get(gid) +
-					", revision=" + index +
-					"]: " + toFastenURI().toString();
+			final Lock readLock = lock.readLock();
+			readLock.lock();
+			try {
+				return 	"[GID=" + gid +
+						", LID=" + callGraphs.get(index).GID2LID.get(gid) +
+						", revision=" + index +
+						"]: " + toFastenURI().toString();
+			} finally {
+				readLock.unlock();
+			}
 		}
 
 		@Override
@@ -165,31 +232,121 @@ public class KnowledgeBase implements Serializable, Closeable {
 		}
 	}
 
-	private static byte[] KB_KEY = Longs.toByteArray(-1);
-
-	/** Maps schemeless, <em>generic</em> (i.e., without forge and without version, but with a product) FASTEN URIs to a unique identifier. */
-	protected final Object2LongMap<FastenURI> genericURI2GID;
-
-	/** The inverse of {@link #genericURI2GID}. */
-	protected final Long2ObjectMap<FastenURI> GID2GenericURI;
+	/** The name of the column family mapping revision indices to the serialized metadata of their call graph. */
+	public static final String CALL_GRAPHS = "callgraphs";
+	/** The name of the column family containing {@link #GIDAppearsIn}. */
+	public static final String APPEARS_IN = "appearsin";
+	/** The name of the column family containing {@link #GIDCalledBy}. */
+	public static final String CALLED_BY = "calledby";
+	/** The name of the column family mapping GIDs to generic URIs not yet checkpointed in the frozen tier of {@link #genericURIs}. */
+	public static final String URIS = "uris";
+	/** The name of the column family containing global metadata, such as the checkpoint of {@link #genericURIs}. */
+	public static final String METADATA = "metadata";
+	/** The name of the column family mapping pairs (product, version) to the index of the corresponding revision (see {@link #revisionKey(String, String)}). */
+	public static final String REVISIONS = "revisions";
+	/** The name of the column family containing, for each product, the timeline of its revisions: keys are sorted by product and timestamp
+	 *  (see {@link #timelineKey(String, long, long)}), and values are versions. Only revisions with a version and a timestamp are in the timeline. */
+	public static final String TIMELINE = "timeline";
+	/** The column families of a knowledge base, in the order of {@link #columnFamilies} (the first one is the default column family, which contains the graphs). */
+	private static final String[] COLUMN_FAMILIES = { new String(RocksDB.DEFAULT_COLUMN_FAMILY, StandardCharsets.UTF_8), CALL_GRAPHS, APPEARS_IN, CALLED_BY, URIS, METADATA, REVISIONS, TIMELINE };
+	/** The key of the checkpoint of {@link #genericURIs} in the {@value #METADATA} column family. */
+	private static final byte[] URIS_CHECKPOINT_KEY = "uris".getBytes(StandardCharsets.UTF_8);
+	/** The version of the format of the serialized metadata of a call graph: version 1 adds the depset to version 0, and
+	 *  version 2 adds the timestamp. */
+	private static final byte CALL_GRAPH_FORMAT_VERSION = 2;
+
+	/** The extension of the file containing the strings of {@link #genericURIs}, which is stored next to the metadata file. */
+	public static final String URIS_EXTENSION = ".uris";
+	/** The prefix of the placeholders filling, when the URI dictionary is restored, the GIDs that were assigned to call graphs never added;
+	 *  it cannot start a generic URI. */
+	private static final String UNUSED_URI_PREFIX = "unused:";
+
+	/** Maps the string representation of schemeless, <em>generic</em> (i.e., without forge and without version, but with a product) FASTEN URIs
+	 *  to a unique identifier (the GID), and vice versa. */
+	protected final URIDictionary genericURIs;
+
+	/** The GIDs not in the frozen tier of {@link #genericURIs} whose URI has been recorded in the {@value #URIS} column family. Guarded by the write {@link #lock}. */
+	private final LongOpenHashSet persistedURIs;
+
+	/** The GIDs added to {@link #persistedURIs} by the write batch being built, so that they can be removed if the batch fails. Guarded by the write {@link #lock}. */
+	private final LongArrayList batchURIs;
 
 	/** Maps each GID to a list of revisions (identified by their revision index) in which the GID appears as an internal node. */
-	protected final Long2ObjectMap<LongSet> GIDAppearsIn;
+	protected final RevisionPostings GIDAppearsIn;
 
 	/** Maps each GID to a list of revisions (identified by their revision index) in which the GID appears as an external node. */
-	protected final Long2ObjectMap<LongSet> GIDCalledBy;
+	protected final RevisionPostings GIDCalledBy;
+
+	/** Maps revision indices to the corresponding call graph. The metadata of call graphs is loaded lazily from the database. */
+	public final Long2ObjectMap<CallGraph> callGraphs;
 
-	/** Maps revision indices to the corresponding call graph. */
-	public final Long2ObjectOpenHashMap<CallGraph> callGraphs;
+	/** A cache mapping revision indices to the revisions their depset {@linkplain #resolve(CallGraph) resolves} to.
+	 *  Since resolution depends on the indexed versions, the cache is invalidated by additions. */
+	private final LoadingCache<Long, LongSet> resolvedDependencies;
+
+	/** A cache mapping products to their {@linkplain #timeline(String) timeline}, used to resolve dependencies at a given time.
+	 *  Since timelines depend on the indexed revisions, the cache is invalidated by additions. */
+	private final LoadingCache<String, Timeline> timelines;
 
 	/** The RocksDB instance used by this indexer. */
-	private transient RocksDB callGraphDB;
+	protected final RocksDB callGraphDB;
+
+	/** The handles of the column families of {@link #callGraphDB}, in the order of {@link #COLUMN_FAMILIES}. */
+	private final List<ColumnFamilyHandle> columnFamilies;
 
-	/** The {@link Kryo} object used to serialize data to the database. */
-	private transient Kryo kryo;
+	/** A pool of {@link Kryo} objects used to serialize data to the database ({@link Kryo} instances are not thread safe). */
+	private Pool<Kryo> kryoPool;
+
+	/** The lock protecting the in-memory maps: queries hold the read lock, additions and closing hold the write lock. */
+	private ReentrantReadWriteLock lock;
 
 	/** The pathname of the file containing the metadate of this knowledgebase. */
-	private String metadataPathname;
+	private final String metadataPathname;
+	/** The strategy used by {@link #prepare(RevisionCallGraph, ArcCollector)} to renumber the nodes of call graphs. */
+	private volatile NodeOrdering nodeOrdering = DEFAULT_NODE_ORDERING;
+	/** The options of the column families, which are also used to write the files of {@linkplain #bulkAdd(Iterator, long, File) bulk loads}. */
+	private final ColumnFamilyOptions columnFamilyOptions;
+
+	/** The {@linkplain #setSnapshot(GlobalCallGraph) attached} snapshot, or {@code null}. */
+	private volatile GlobalCallGraph snapshot;
+	/** The GIDs of internal nodes of revisions that are not in {@link #snapshot}. */
+	private final LongOpenHashSet deltaAppearsIn = new LongOpenHashSet();
+	/** The GIDs of external nodes of revisions that are not in {@link #snapshot}. */
+	private final LongOpenHashSet deltaCalledBy = new LongOpenHashSet();
+
+	/** The default strategy used to renumber the nodes of call graphs before compressing them. */
+	public static final NodeOrdering DEFAULT_NODE_ORDERING = NodeOrdering.BFS;
+
+	/** The maximum size in bytes of the Zstandard dictionaries trained by RocksDB for each file of the bottommost level. */
+	private static final int ROCKSDB_DICTIONARY_SIZE = 16 * 1024;
+
+	/** The maximum number of revisions whose resolved depset is kept in the {@linkplain #resolvedDependencies resolution cache}. */
+	public static final long DEFAULT_RESOLUTION_CACHE_SIZE = 1L << 16;
+
+	/** The maximum number of products whose timeline is kept in the {@linkplain #timelines timeline cache}. */
+	public static final long DEFAULT_TIMELINE_CACHE_SIZE = 1L << 14;
+
+	/** The default maximum size in bytes of the {@linkplain #graphCache graph cache} (1 GiB). */
+	public static final long DEFAULT_GRAPH_CACHE_SIZE = 1L << 30;
+
+	/** A cache mapping revision indices to their call graph and its transpose. Entries are weighted by
+	 *  the size in bytes of their serialized form, which is essentially the size of the in-memory compressed
+	 *  representation, and evicted in LRU order when the total weight exceeds the cache size. */
+	private LoadingCache<Long, CachedGraphs> graphCache;
+
+	/** An entry of the {@linkplain #graphCache graph cache}: a call graph and its transpose,
+	 *  and the number of bytes they occupy. */
+	private static final class CachedGraphs {
+		/** The call graph (index 0) and its transpose (index 1). */
+		private final ImmutableGraph[] graphs;
+		/** The size in bytes of the serialized form of {@link #graphs}. */
+		private final int size;
+
+		private CachedGraphs(final ImmutableGraph[] graphs, final int size) {
+			this.graphs = graphs;
+			this.size = size;
+		}
+	}
 
 	/** Instances represent call graphs and the associated metadata. Each call
 	 *  graph corresponds to a specific release (product, version, forge), and has a unique
@@ -199,173 +356,124 @@ public class KnowledgeBase implements Serializable, Closeable {
 	 *  The GID of node x has a different product than the product of the call graph iff x is external.
 	 *  External nodes have no outgoing arcs.
 	 */
-	public class CallGraph implements Serializable {
-		private static final long serialVersionUID = 1L;
+	public class CallGraph {
 		/** Number of internal nodes (first {@link #nInternal} GIDs in {@link #LID2GID}). */
 		public final int nInternal;
 		/** Maps LIDs to GIDs. */
 		public final long[] LID2GID;
-		/** Inverse to {@link #LID2GID}: maps GIDs to LIDs. */
-		public final Long2IntOpenHashMap GID2LID = new Long2IntOpenHashMap();
+		/** Inverse to {@link #LID2GID}: maps GIDs to LIDs, returning -1 for GIDs that are not in the call graph. */
+		public final GID2LIDMap GID2LID;
 		/** The product described in this call graph. */
 		private final String product;
 		/** The version described in this call graph. */
 		private final String version;
 		/** The forge described in this call graph. */
 		private final String forge;
+		/** The depset of this call graph. */
+		private final List<List<Dependency>> depset;
+		/** The timestamp of this call graph in seconds from UNIX Epoch, or -1 if unknown. */
+		private final long timestamp;
 		/** The revision index of this call graph. */
 		private final long index;
-		/** An array of two graphs: the call graph (index 0) and its transpose (index 1). */
-		@SuppressWarnings("null")
-		private transient SoftReference<ImmutableGraph[]> graphs;
 
-		// ALERT unsynchronized update of Knowledge Base maps.
-		/** Creates a call graph from a {@link RevisionCallGraph}. All maps of the knowledge base (e.g. {@link KnowledgeBase#GIDAppearsIn}) are updated
-		 *  appropriately. The graphs are stored in the database.
+		/** Creates a call graph from a {@link PreparedCallGraph}. All writes to the database (the graphs, the metadata of the call graph,
+		 *  the generic URIs not yet persisted and the new entries of the posting lists) are recorded in a write batch.
 		 *
-		 * @param g the revision call graph.
+		 *  <p>The caller must hold the write {@linkplain KnowledgeBase#lock lock} of the knowledge base.
+		 *
+		 * @param g the prepared call graph.
 		 * @param index the revision index.
+		 * @param batch a write batch for {@link KnowledgeBase#callGraphDB}.
 		 * @throws IOException
 		 * @throws RocksDBException
 		 */
-		protected CallGraph(final RevisionCallGraph g, final long index) throws IOException, RocksDBException {
+		protected CallGraph(final PreparedCallGraph g, final long index, final WriteBatch batch) throws IOException, RocksDBException {
+			this(g, index);
+			for(int lid = 0; lid < LID2GID.length; lid++) {
+				final long gid = LID2GID[lid];
+				persistURI(gid, batch);
+				if (lid < nInternal) GIDAppearsIn.add(batch, gid, index);
+				else GIDCalledBy.add(batch, gid, index);
+			}
+
+			// Write to DB
+			batch.put(Longs.toByteArray(index), g.graphs);
+			batch.put(columnFamilies.get(1), Longs.toByteArray(index), metadata());
+			if (version != null) batch.put(columnFamilies.get(6), revisionKey(product, version), Longs.toByteArray(index));
+			if (version != null && timestamp >= 0) batch.put(columnFamilies.get(7), timelineKey(product, timestamp, index), version.getBytes(StandardCharsets.UTF_8));
+		}
+
+		/** Creates a call graph from a {@link PreparedCallGraph}, without writing anything to the database.
+		 *
+		 * @param g the prepared call graph.
+		 * @param index the revision index.
+		 */
+		private CallGraph(final PreparedCallGraph g, final long index) {
 			product = g.product;
 			version = g.version;
 			forge = g.forge;
+			depset = g.depset;
+			timestamp = g.timestamp;
+			nInternal = g.nInternal;
 			this.index = index;
+			LID2GID = g.LID2GID;
+			GID2LID = new GID2LIDMap(LID2GID);
+		}
 
-			LOGGER.debug("Analyzing fasten://" + forge + "!" + product + "$" + version);
-			final ArrayList<FastenURI[]> arcs = g.graph;
-
-			/*
-			 * Pass over arc list, building schemeless generic pairs URIs.
-			 * adding products where missing and skipping NULL_FASTEN_URIs.
-			 * Source and target URIs are passed to addURI(), updating GenericURI2GID
-			 * and its inverse GID2GenericURI.
-			 */
-			final ObjectArrayList<FastenURI> genericSources = new ObjectArrayList<>();
-			final ObjectArrayList<FastenURI> genericTargets = new ObjectArrayList<>();
-			final LongLinkedOpenHashSet internalGIDs = new LongLinkedOpenHashSet(); // List of internal GIDs
-			final LongLinkedOpenHashSet externalGIDs = new LongLinkedOpenHashSet(); // List of external GIDs
-
-			for(final FastenURI[] arc: arcs) {
-				// TODO: this should be a raw product
-				final FastenURI sourceSchemelessGenericURI = FastenURI.createSchemeless(null, product, null, arc[0].getRawNamespace(), arc[0].getRawEntity());
-				final long sourceGID = addURI(sourceSchemelessGenericURI);
-				addGidRev(GIDAppearsIn, sourceGID, index);
-				internalGIDs.add(sourceGID);
-
-				if (!FastenURI.NULL_FASTEN_URI.equals(arc[1])) {
-					genericSources.add(sourceSchemelessGenericURI);
-					// TODO: one should check that forge/version are null
-					String targetRawProduct = arc[1].getRawProduct();
-					final boolean internal = targetRawProduct == null;
-					if (internal) targetRawProduct = product;
-					final FastenURI target = FastenURI.createSchemeless(null, targetRawProduct, null, arc[1].getRawNamespace(), arc[1].getRawEntity());
-					final long targetGID = addURI(target);
-
-					if (internal) {
-						addGidRev(GIDAppearsIn, targetGID, index);
-						internalGIDs.add(targetGID);
-					}
-					else {
-						addGidRev(GIDCalledBy, targetGID, index);
-						externalGIDs.add(targetGID);
-					}
-
-					genericTargets.add(target);
-				}
-			}
-			// Set up local bijection
-			nInternal = internalGIDs.size();
-
-			final long[] l2g = new long[internalGIDs.size() + externalGIDs.size()];
-			LongIterators.unwrap(internalGIDs.iterator(), l2g);
-			LongIterators.unwrap(externalGIDs.iterator(), l2g, nInternal, l2g.length - nInternal);
-			GID2LID.defaultReturnValue(-1);
-			for(int i = 0; i < l2g.length; i++) GID2LID.put(l2g[i], i);
-
-			// Create, store and load compressed versions of the graph and of the transpose.
-			final ArrayListMutableGraph mutableGraph = new ArrayListMutableGraph(l2g.length);
-			for(int i = 0; i < genericSources.size(); i++) {
-				assert genericURI2GID.getLong(genericSources.get(i)) != -1;
-				assert genericURI2GID.getLong(genericTargets.get(i)) != -1;
-				try {
-					mutableGraph.addArc(GID2LID.get(
-							genericURI2GID.getLong(genericSources.get(i))),
-							GID2LID.get(
-									genericURI2GID.getLong(genericTargets.get(i))));
-				} catch(final IllegalArgumentException e ) {
-					LOGGER.error("Duplicate arc " + genericSources.get(i) + " -> " + genericTargets.get(i));
-				}
-			}
-
-			final File f = File.createTempFile(KnowledgeBase.class.getSimpleName(), ".tmpgraph");
-
-			final Properties graphProperties = new Properties(), transposeProperties = new Properties();
-			FileInputStream propertyFile;
-
-			// Compress, load and serialize graph
-			final int[] bfsperm = Util.identity(l2g.length); //bfsperm(mutableGraph.immutableView(), -1, internalGIDs.size());
-			final ImmutableGraph graph = Transform.map(mutableGraph.immutableView(), bfsperm);
-			BVGraph.store(graph, f.toString());
-			propertyFile = new FileInputStream(f + BVGraph.PROPERTIES_EXTENSION);
-			graphProperties.load(propertyFile);
-			propertyFile.close();
+		/** Creates a call graph from its serialized metadata.
+		 *
+		 * @param index the revision index.
+		 * @param metadata the serialized metadata, as returned by {@link #metadata()}.
+		 */
+		private CallGraph(final long index, final byte[] metadata) throws IOException {
+			this.index = index;
+			final DataInputStream dis = new DataInputStream(new FastByteArrayInputStream(metadata));
+			final byte formatVersion = dis.readByte();
+			if (formatVersion < 0 || formatVersion > CALL_GRAPH_FORMAT_VERSION) throw new IOException("Unknown format version " + formatVersion + " for the metadata of revision " + index);
+			forge = readNullableUTF(dis);
+			product = readNullableUTF(dis);
+			version = readNullableUTF(dis);
+			nInternal = dis.readInt();
+			LID2GID = new long[dis.readInt()];
+			for(int i = 0; i < LID2GID.length; i++) LID2GID[i] = dis.readLong();
+			GID2LID = new GID2LIDMap(LID2GID);
+			depset = formatVersion >= 1 ? readDepset(dis) : Collections.emptyList();
+			timestamp = formatVersion >= 2 ? dis.readLong() : -1;
+		}
 
+		/** Serializes the metadata of this call graph (everything but the graphs).
+		 *
+		 * @return the serialized metadata.
+		 */
+		private byte[] metadata() throws IOException {
 			final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
-			final ByteBufferOutput bbo = new ByteBufferOutput(fbaos);
-			kryo.writeObject(bbo, BVGraph.load(f.toString()));
-
-			// Permute LID2GID accordingly
-			LID2GID = new long[l2g.length];
-			for (int x = 0; x < l2g.length; x++) LID2GID[bfsperm[x]] = l2g[x];
-			for(int i = 0; i < l2g.length; i++) GID2LID.put(LID2GID[i], i);
-
-			// Compress, load and serialize transpose graph
-			BVGraph.store(Transform.transpose(graph), f.toString());
-			propertyFile = new FileInputStream(f + BVGraph.PROPERTIES_EXTENSION);
-			transposeProperties.load(propertyFile);
-			propertyFile.close();
-
-			kryo.writeObject(bbo, BVGraph.load(f.toString()));
-
-			// Write out properties
-			kryo.writeObject(bbo, graphProperties);
-			kryo.writeObject(bbo, transposeProperties);
-			bbo.flush();
-
-			// Write to DB
-			callGraphDB.put(Longs.toByteArray(index), 0, 8, fbaos.array, 0, fbaos.length);
-
-			new File(f.toString() + BVGraph.PROPERTIES_EXTENSION).delete();
-			new File(f.toString() + BVGraph.OFFSETS_EXTENSION).delete();
-			new File(f.toString() + BVGraph.GRAPH_EXTENSION).delete();
-			f.delete();
+			final DataOutputStream dos = new DataOutputStream(fbaos);
+			dos.writeByte(CALL_GRAPH_FORMAT_VERSION);
+			writeNullableUTF(dos, forge);
+			writeNullableUTF(dos, product);
+			writeNullableUTF(dos, version);
+			dos.writeInt(nInternal);
+			dos.writeInt(LID2GID.length);
+			for(final long gid : LID2GID) dos.writeLong(gid);
+			writeDepset(dos, depset);
+			dos.writeLong(timestamp);
+			dos.flush();
+			return Arrays.copyOf(fbaos.array, fbaos.length);
 		}
 
-		/** Returns the call graph and its transpose in a 2-element array. The graphs are cached,
+		/** Returns the call graph and its transpose in a 2-element array. The graphs are kept
+		 *  in the {@linkplain KnowledgeBase#graphCache graph cache} of the knowledge base,
 		 *  and read from the database if needed.
 		 *
+		 *  <p>Random access to an {@link ImmutableGraph} is not thread safe, so the returned graphs are
+		 *  {@linkplain ImmutableGraph#copy() lightweight copies} of the cached ones, which share their
+		 *  underlying data.
+		 *
 		 * @return an array containing the call graph and its transpose.
 		 */
 		public ImmutableGraph[] graphs() {
-			if (graphs != null) {
-				final var graphs = this.graphs.get();
-				if (graphs != null) return graphs;
-			}
-			try {
-				// TODO: dynamic
-				final byte[] buffer = new byte[1000000];
-				callGraphDB.get(Longs.toByteArray(index), buffer);
-				final Input input = new Input(buffer);
-				assert kryo != null;
-				final var graphs = new ImmutableGraph[] {kryo.readObject(input, BVGraph.class),  kryo.readObject(input, BVGraph.class)};
-				this.graphs = new SoftReference<>(graphs);
-				return graphs;
-			} catch (final RocksDBException e) {
-				throw new RuntimeException(e);
-			}
+			final ImmutableGraph[] graphs = graphCache.getUnchecked(Long.valueOf(index)).graphs;
+			return new ImmutableGraph[] { graphs[0].copy(), graphs[1].copy() };
 		}
 
 		/** Returns the properties of the call graph and its transpose in a 2-element array.
@@ -373,19 +481,14 @@ public class KnowledgeBase implements Serializable, Closeable {
 		 * @return an array containing the properties of the call graph and its transpose.
 		 */
 		public Properties[] graphProperties() {
+			final Input input = new Input(graphValue(index));
+			final Kryo kryo = kryoPool.obtain();
 			try {
-				// TODO: dynamic
-				final byte[] buffer = new byte[1000000];
-				callGraphDB.get(Longs.toByteArray(index), buffer);
-				final Input input = new Input(buffer);
-				assert kryo != null;
 				kryo.readObject(input, BVGraph.class); // throw away graph
 				kryo.readObject(input, BVGraph.class); // throw away transpose
-				final Properties[] properties = new Properties[] { kryo.readObject(input, Properties.class), kryo.readObject(input, Properties.class) };
-				return properties;
-
-			} catch (final RocksDBException e) {
-				throw new RuntimeException(e);
+				return new Properties[] { kryo.readObject(input, Properties.class), kryo.readObject(input, Properties.class) };
+			} finally {
+				kryoPool.free(kryo);
 			}
 		}
 
@@ -393,347 +496,1983 @@ public class KnowledgeBase implements Serializable, Closeable {
 		public String toString() {
 			final StringBuilder b = new StringBuilder();
 			for(final NodeIterator nodeIterator = graphs()[0].nodeIterator(); nodeIterator.hasNext(); ) {
-				final FastenURI u = GID2GenericURI.get(LID2GID[nodeIterator.nextInt()]);
+				final String u = genericURIs.get(LID2GID[nodeIterator.nextInt()]);
 				final LazyIntIterator successors = nodeIterator.successors();
 				for(int s; (s = successors.nextInt()) != -1; )
-					b.append(u).append('\t').append(GID2GenericURI.get(LID2GID[s])).append('\n');
+					b.append(u).append('\t').append(genericURIs.get(LID2GID[s])).append('\n');
 			}
 			return b.toString();
 		}
 	}
 
-	/** Wraps a set of nodes, and allows one to iterate over it with an iterator that returns the {@link FastenURI} of the
-	 *  node each time.
+	private static void writeNullableUTF(final DataOutputStream dos, final String s) throws IOException {
+		dos.writeBoolean(s != null);
+		if (s != null) dos.writeUTF(s);
+	}
+
+	private static String readNullableUTF(final DataInputStream dis) throws IOException {
+		return dis.readBoolean() ? dis.readUTF() : null;
+	}
+
+	private static void writeDepset(final DataOutputStream dos, final List<List<Dependency>> depset) throws IOException {
+		dos.writeInt(depset.size());
+		for(final List<Dependency> clause : depset) {
+			dos.writeInt(clause.size());
+			for(final Dependency dependency : clause) {
+				writeNullableUTF(dos, dependency.forge);
+				writeNullableUTF(dos, dependency.product);
+				dos.writeInt(dependency.constraints.size());
+				for(final Constraint constraint : dependency.constraints) {
+					writeNullableUTF(dos, constraint.lowerBound);
+					writeNullableUTF(dos, constraint.upperBound);
+				}
+			}
+		}
+	}
+
+	private static List<List<Dependency>> readDepset(final DataInputStream dis) throws IOException {
+		final List<List<Dependency>> depset = new ObjectArrayList<>();
+		for(int i = dis.readInt(); i-- != 0;) {
+			final List<Dependency> clause = new ObjectArrayList<>();
+			for(int j = dis.readInt(); j-- != 0;) {
+				final String forge = readNullableUTF(dis), product = readNullableUTF(dis);
+				final List<Constraint> constraints = new ObjectArrayList<>();
+				for(int k = dis.readInt(); k-- != 0;) constraints.add(new Constraint(readNullableUTF(dis), readNullableUTF(dis)));
+				clause.add(new Dependency(forge, product, constraints));
+			}
+			depset.add(clause);
+		}
+		return depset;
+	}
+
+	/** A revision call graph prepared for addition to the knowledge base. Preparing a call graph performs all the work of an addition that
+	 *  does not need the write lock: assigning GIDs (through the concurrent URI dictionary) and LIDs, building the graph and its transpose,
+	 *  and compressing and serializing them. Instances are created by {@link KnowledgeBase#prepare(RevisionCallGraph)}, possibly by several
+	 *  threads in parallel, and added by {@link KnowledgeBase#add(List, long)}, which only has to update the posting lists and write to the database.
 	 */
-	private final class NamedResult extends AbstractObjectCollection<FastenURI> {
-		private final ObjectLinkedOpenHashSet<Node> reaches;
+	public static final class PreparedCallGraph {
+		/** The forge of the call graph. */
+		private final String forge;
+		/** The product of the call graph. */
+		private final String product;
+		/** The version of the call graph. */
+		private final String version;
+		/** The depset of the call graph. */
+		private final List<List<Dependency>> depset;
+		/** The timestamp of the call graph, or -1. */
+		private final long timestamp;
+		/** Maps LIDs to GIDs. */
+		private final long[] LID2GID;
+		/** Number of internal nodes. */
+		private final int nInternal;
+		/** The number of arcs of the call graph. */
+		private final long numArcs;
+		/** The serialized graphs and properties, as stored in the database. */
+		private final byte[] graphs;
+
+		private PreparedCallGraph(final RevisionCallGraph g, final long[] LID2GID, final int nInternal, final long numArcs, final byte[] graphs) {
+			this.forge = g.forge;
+			this.product = g.product;
+			this.version = g.version;
+			this.depset = g.depset == null ? Collections.emptyList() : g.depset;
+			this.timestamp = g.timestamp;
+			this.LID2GID = LID2GID;
+			this.nInternal = nInternal;
+			this.numArcs = numArcs;
+			this.graphs = graphs;
+		}
 
-		/** Wraps a given set of nodes.
+		/** Returns the number of arcs of the call graph.
 		 *
-		 * @param objectLinkedOpenHashSet the set of nodes.
+		 * @return the number of arcs of the call graph.
 		 */
-		private NamedResult(final ObjectLinkedOpenHashSet<Node> objectLinkedOpenHashSet) {
-			this.reaches = objectLinkedOpenHashSet;
+		public long numArcs() {
+			return numArcs;
 		}
+	}
 
-		@Override
-		public int size() {
-			return reaches.size();
+	/** Collects the arcs of a revision call graph, building schemeless generic URIs, adding products where missing and skipping NULL_FASTEN_URIs.
+	 *  URIs are numbered in order of appearance; targets of external arcs are stored as negative numbers. */
+	private static final class ArcCollector implements RevisionCallGraph.ArcSink {
+		/** The product of the call graph. */
+		private String product;
+		/** Maps generic URIs to their number. */
+		private final Object2IntLinkedOpenHashMap<String> uri2Index = new Object2IntLinkedOpenHashMap<>();
+		/** The numbers of the internal URIs, in order of appearance. */
+		private final IntLinkedOpenHashSet internalURIs = new IntLinkedOpenHashSet();
+		/** The numbers of the external URIs, in order of appearance. */
+		private final IntLinkedOpenHashSet externalURIs = new IntLinkedOpenHashSet();
+		/** The sources and targets of the arcs. */
+		private final IntArrayList sources = new IntArrayList(), targets = new IntArrayList();
+
+		private ArcCollector() {
+			uri2Index.defaultReturnValue(-1);
 		}
 
 		@Override
-		public boolean isEmpty() {
-			return reaches.isEmpty();
+		public void revision(final String forge, final String product, final String version) {
+			this.product = product;
 		}
 
 		@Override
-		public ObjectIterator<FastenURI> iterator() {
-			final ObjectIterator<Node> iterator = reaches.iterator();
-			return new ObjectIterator<>() {
-
-				@Override
-				public boolean hasNext() {
-					return iterator.hasNext();
-				}
-
-				@Override
-				public FastenURI next() {
-					return iterator.next().toFastenURI();
-				}
-			};
+		public void arc(final FastenURI sourceURI, final FastenURI targetURI) {
+			// TODO: this should be a raw product
+			final int source = index(uri2Index, genericURI(product, sourceURI));
+			internalURIs.add(source);
+
+			if (!FastenURI.NULL_FASTEN_URI.equals(targetURI)) {
+				// TODO: one should check that forge/version are null
+				String targetRawProduct = targetURI.getRawProduct();
+				final boolean internal = targetRawProduct == null;
+				if (internal) targetRawProduct = product;
+				final int target = index(uri2Index, genericURI(targetRawProduct, targetURI));
+
+				if (internal) internalURIs.add(target);
+				else externalURIs.add(target);
+
+				sources.add(source);
+				targets.add(internal ? target : -target - 1);
+			}
 		}
-	}
-
-	/** Initializes the kryo instance used for serialization. */
-	private void initKryo() {
-		kryo = new Kryo();
-		kryo.register(BVGraph.class, new BVGraphSerializer(kryo));
-		kryo.register(byte[].class);
-		kryo.register(InputBitStream.class);
-		kryo.register(NullInputStream.class);
-		kryo.register(EliasFanoMonotoneLongBigList.class, new JavaSerializer());
-		kryo.register(MutableString.class, new FieldSerializer<>(kryo, MutableString.class));
-		kryo.register(Properties.class);
-	}
-
-	/** Creates a new knowledge base with no associated database; initializes kryo. One has to explicitly call {@link #callGraphDB(RocksDB)}
-	 *  or {@link #callGraphDB(String)} (typically only once) before using the resulting instance. */
-	private KnowledgeBase() {
-		genericURI2GID = new Object2LongOpenHashMap<>();
-		GID2GenericURI = new Long2ObjectOpenHashMap<>();
-		GIDAppearsIn = new Long2ObjectOpenHashMap<>();
-		GIDCalledBy = new Long2ObjectOpenHashMap<>();
-		callGraphs = new Long2ObjectOpenHashMap<>();
-
-		genericURI2GID.defaultReturnValue(-1);
-		GIDAppearsIn.defaultReturnValue(LongSets.EMPTY_SET);
-		GIDCalledBy.defaultReturnValue(LongSets.EMPTY_SET);
 
-		initKryo();
+		/** Returns the generic URI of a node, that is, the string representation of the schemeless {@link FastenURI} with given product,
+		 *  and with the namespace and entity of the node, taking it from the {@linkplain FastenURIPool#FASTEN_URIS pool of URIs}.
+		 *
+		 * @param rawProduct a raw product.
+		 * @param node a node.
+		 * @return the generic URI of {@code node} in {@code rawProduct}.
+		 */
+		private static String genericURI(final String rawProduct, final FastenURI node) {
+			return FastenURIPool.FASTEN_URIS.get("//" + rawProduct + "/" + node.getRawNamespace() + "/" + node.getRawEntity()).toString();
+		}
 	}
 
-	/** Associates the given database to this knowledge base.
+	/** Sets the strategy used to renumber the nodes of the call graphs prepared from now on (the default is {@link #DEFAULT_NODE_ORDERING}).
+	 *  Call graphs already in the knowledge base are not affected, as their node numbering is stored with them.
 	 *
-	 * @param db the database to be associated.
+	 * @param nodeOrdering a node-renumbering strategy.
 	 */
-	public void callGraphDB(final RocksDB db) {
-		this.callGraphDB = db;
-	}
-
-	public static KnowledgeBase getInstance(final String kbDir, final String kbMetadataPathname) throws RocksDBException, ClassNotFoundException, IOException {
-		RocksDB.loadLibrary();
-		final Options options = new Options();
-		options.setCreateIfMissing(true);
-
-		final RocksDB db = RocksDB.open(options, kbDir);		
-		final KnowledgeBase kb = new File(kbMetadataPathname).exists() ? (KnowledgeBase)BinIO.loadObject(kbMetadataPathname) :  new KnowledgeBase();
-		kb.metadataPathname = kbMetadataPathname;
-		kb.callGraphDB(db);
-		return kb;
+	public void setNodeOrdering(final NodeOrdering nodeOrdering) {
+		this.nodeOrdering = nodeOrdering;
 	}
 
-	/** Adds a given revision index to the set associated to the given gid.
+	/** Stores a {@linkplain GlobalCallGraph snapshot} of this knowledge base. Additions are blocked while the snapshot is being stored.
 	 *
-	 * @param map the map associating gids to sets revision indices.
-	 * @param gid the gid whose associated set should be modified.
-	 * @param revIndex the revision index to be added.
-	 *
-	 * @return true iff the revision index was not present.
+	 * @param basename the basename of the snapshot.
+	 * @param tempDir a directory for temporary files, or {@code null} for the default temporary directory.
 	 */
-	protected static boolean addGidRev(final Long2ObjectMap<LongSet> map, final long gid, final long revIndex) {
-		LongSet set = map.get(gid);
-		if (set == LongSets.EMPTY_SET) map.put(gid, set = new LongOpenHashSet());
-		return set.add(revIndex);
+	public void storeSnapshot(final CharSequence basename, final File tempDir) throws IOException {
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			GlobalCallGraph.store(this, basename, tempDir);
+		} finally {
+			readLock.unlock();
+		}
 	}
 
-	/** Adds a URI to the global maps. If the URI is already present, returns its GID.
+	/** Attaches a {@linkplain GlobalCallGraph snapshot} to this knowledge base, or detaches the current one.
 	 *
-	 * @param uri a Fasten URI.
-	 * @return the associated GID.
+	 * <p>Visits through the nodes of revisions in the snapshot use the snapshot, and the per-revision call graphs and
+	 * posting lists are accessed only to follow arcs to and from revisions added after the snapshot was stored. If a revision
+	 * in the snapshot is added again, the snapshot is detached.
+	 *
+	 * @param snapshot a snapshot of this knowledge base, or {@code null}.
 	 */
-	protected long addURI(final FastenURI uri) {
-		long gid = genericURI2GID.getLong(uri);
-		if (gid != -1) return gid;
-		gid = genericURI2GID.size();
-		genericURI2GID.put(uri, gid);
-		GID2GenericURI.put(gid, uri);
-		return gid;
+	public void setSnapshot(final GlobalCallGraph snapshot) {
+		final Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			deltaAppearsIn.clear();
+			deltaCalledBy.clear();
+			if (snapshot != null) for(final LongIterator indices = callGraphs.keySet().iterator(); indices.hasNext();) {
+				final long index = indices.nextLong();
+				if (snapshot.contains(index)) continue;
+				final CallGraph callGraph = callGraphs.get(index);
+				addToDelta(callGraph.LID2GID, callGraph.nInternal);
+			}
+			this.snapshot = snapshot;
+		} finally {
+			writeLock.unlock();
+		}
 	}
 
-	/** Returns the successors of a given node.
+	/** Updates the snapshot deltas after the addition of a revision, detaching the snapshot if it contains the revision.
 	 *
-	 * @param node a node (say, corresponding to the pair [<code>index</code>, <code>LID</code>])
-	 * @return the list of all successors; these are obtained as follows: for every successor <code>x</code>
-	 * of <code>node</code> in the call graph
-	 * <ul>
-	 * 	<li>if <code>x</code> is internal, [<code>index</code>, <code>LID</code>] is a successor
-	 *  <li>if <code>x</code> is external and it corresponds to the GID <code>g</code> (which in turn corresponds to a
-	 *  generic {@link FastenURI}), we look at every index <code>otherIndex</code> where <code>g</code>
-	 *  appears, and let <code>otherLID</code> be the corresponding LID: then [<code>otherIndex</code>, <code>otherLID</code>]
-	 *  is a successor.
-	 * </ul>
+	 * <p>The caller must hold the write {@linkplain #lock lock}.
+	 *
+	 * @param index the revision index.
+	 * @param LID2GID the LID-to-GID map of the revision.
+	 * @param nInternal the number of internal nodes of the revision.
 	 */
-	public ObjectList<Node> successors(final Node node) {
-		final long gid = node.gid;
-		final long index = node.index;
-		final CallGraph callGraph = callGraphs.get(index);
-		assert callGraph != null;
-
-		final ImmutableGraph graph = callGraph.graphs()[0];
-		final LazyIntIterator s = graph.successors(callGraph.GID2LID.get(gid));
-
-		final ObjectList<Node> result = new ObjectArrayList<>();
-		int x;
-
-		/* In the successor case, internal nodes can be added directly... */
-
-		while((x = s.nextInt()) != -1 && x < callGraph.nInternal) result.add(new Node(callGraph.LID2GID[x], index));
-
-		if (x == -1) return result;
-
-		/* ...but external nodes must be search for in the revision call graphs in which they appear. */
-		do {
-			final long xGid = callGraph.LID2GID[x];
-			for(final LongIterator revisions = GIDAppearsIn.get(xGid).iterator(); revisions.hasNext();)
-				result.add(new Node(xGid, revisions.nextLong()));
-		} while((x = s.nextInt()) != -1);
-
-		return result;
+	private void added(final long index, final long[] LID2GID, final int nInternal) {
+		if (snapshot == null) return;
+		if (snapshot.contains(index)) detach(index);
+		else addToDelta(LID2GID, nInternal);
 	}
 
-	/** Returns the predecessors of a given node.
+	/** Updates the snapshot deltas after the addition of consecutive revisions, detaching the snapshot if it contains one of the revisions.
 	 *
-	 * @param node a node (for the form [<code>index</code>, <code>LID</code>])
-	 * @return the list of all predecessors; these are obtained as follows:
-	 * <ul>
-	 * 	<li>for every predecessor <code>x</code>
-	 *  of <code>node</code> in the call graph, [<code>index</code>, <code>LID</code>] is a predecessor
-	 *  <li>let <code>g</code> be the GID of <code>node</code>: for every index <code>otherIndex</code>
-	 *  that calls <code>g</code> (i.e., where <code>g</code> is the GID of an external node),
-	 *  and for all the predecessors <code>x</code> of the node with GID <code>g</code> in <code>otherIndex</code>,
-	 *  [<code>otherIndex</code>, <code>x</code>] is a predecessor.
-	 * </ul>
+	 * <p>The caller must hold the write {@linkplain #lock lock}.
+	 *
+	 * @param index the index of the first revision.
+	 * @param n the number of revisions.
+	 * @param internalGIDs the GIDs of the internal nodes of the revisions.
+	 * @param externalGIDs the GIDs of the external nodes of the revisions.
 	 */
-	public ObjectList<Node> predecessors(final Node node) {
-		final long gid = node.gid;
-		final long index = node.index;
-		final CallGraph callGraph = callGraphs.get(index);
-		assert callGraph != null;
-
-		final ImmutableGraph graph = callGraph.graphs()[1];
-		final LazyIntIterator s = graph.successors(callGraph.GID2LID.get(gid));
-
-		final ObjectList<Node> result = new ObjectArrayList<>();
-		int x;
-
-		/* In the predecessor case, all nodes returned by the graph are necessarily internal. */
-		while((x = s.nextInt()) != -1) {
-			assert x < callGraph.nInternal;
-			result.add(new Node(callGraph.LID2GID[x], index));
+	private void added(final long index, final long n, final LongSet internalGIDs, final LongSet externalGIDs) {
+		if (snapshot == null) return;
+		for(long i = 0; i < n; i++) if (snapshot.contains(index + i)) {
+			detach(index + i);
+			return;
 		}
-
-		/* To move backward in the call graph, we use GIDCalledBy to find revisions that might
-		 * contain external nodes of the form <gid, index>. */
-		do
-			for(final LongIterator revisions = GIDCalledBy.get(gid).iterator(); revisions.hasNext();) {
-				final long revIndex = revisions.nextLong();
-				final CallGraph precCallGraph = callGraphs.get(revIndex);
-				final ImmutableGraph transpose = precCallGraph.graphs()[1];
-				final LazyIntIterator p = transpose.successors(precCallGraph.GID2LID.get(gid));
-				for(int y; (y = p.nextInt()) != -1;) result.add(new Node(precCallGraph.LID2GID[y], revIndex));
-			}
-		while((x = s.nextInt()) != -1);
-
-		return result;
+		deltaAppearsIn.addAll(internalGIDs);
+		deltaCalledBy.addAll(externalGIDs);
 	}
 
-	/** Returns the node corresponding to a given (non-generic) {@link FastenURI}.
+	/** Detaches the snapshot, as it contains a replaced revision.
 	 *
-	 * @param fastenURI a {@link FastenURI} with version.
-	 * @return the corresponding node, or <code>null</code>.
+	 * @param index the index of the replaced revision.
 	 */
-	public Node fastenURI2Node(final FastenURI fastenURI) {
-		if (fastenURI.getVersion() == null) throw new IllegalArgumentException("The FASTEN URI must be versioned");
-		final FastenURI genericURI = FastenURI.createSchemeless(null, fastenURI.getRawProduct(), null, fastenURI.getRawNamespace(), fastenURI.getRawEntity());
-		final long gid = genericURI2GID.getLong(genericURI);
-		if (gid == -1) return null;
-		final String version = fastenURI.getVersion();
-		for(final long index: GIDAppearsIn.get(gid))
-			if (version.equals(callGraphs.get(index).version)) return new Node(gid, index);
-
-		return null;
+	private void detach(final long index) {
+		LOGGER.warn("Revision " + index + " has been replaced: detaching snapshot");
+		snapshot = null;
+		deltaAppearsIn.clear();
+		deltaCalledBy.clear();
 	}
 
-	/** Given a generic URI (one without a version), returns all the matching non-generic URIs.
+	/** Adds the GIDs of a revision to {@link #deltaAppearsIn} and {@link #deltaCalledBy}.
 	 *
-	 * @param genericURI a generic URI.
-	 * @return the list of all non-generic URIs matching <code>genericURI</code>.
+	 * @param LID2GID the LID-to-GID map of the revision.
+	 * @param nInternal the number of internal nodes of the revision.
 	 */
-	public ObjectList<FastenURI> genericURI2URIs(final FastenURI genericURI) {
-		if (genericURI.getVersion() != null || genericURI.getScheme() != null) throw new IllegalArgumentException("The FASTEN URI must be generic and schemeless");
-		final long gid = genericURI2GID.getLong(genericURI);
-		if (gid == -1) return null;
-		final ObjectArrayList<FastenURI> result = new ObjectArrayList<>();
-		for(final long index: GIDAppearsIn.get(gid)) result.add(FastenURI.createSchemeless(genericURI.getRawForge(), genericURI.getRawProduct(), callGraphs.get(index).version, genericURI.getRawNamespace(), genericURI.getRawEntity()));
-		return result;
+	private void addToDelta(final long[] LID2GID, final int nInternal) {
+		for(int lid = 0; lid < LID2GID.length; lid++) (lid < nInternal ? deltaAppearsIn : deltaCalledBy).add(LID2GID[lid]);
 	}
 
-	/** The set of all nodes that are reachable from <code>start</code>.
+	/** Prepares a revision call graph for addition. This method can be called concurrently by any number of threads, and
+	 *  it modifies the knowledge base only by adding the generic URIs of the call graph to the URI dictionary: GIDs are assigned in
+	 *  order of first appearance in the arc list, and GIDs assigned to call graphs that are never added just remain unused.
 	 *
-	 * @param start the starting node.
-	 * @return the set of all nodes for which there is a directed path from <code>start</code> to that node.
+	 * @param g a revision call graph.
+	 * @return the prepared call graph.
 	 */
-	public synchronized ObjectLinkedOpenHashSet<Node> reaches(final Node start) {
-		final ObjectLinkedOpenHashSet<Node> result = new ObjectLinkedOpenHashSet<>();
-		// Visit queue
-		final ObjectArrayFIFOQueue<Node> queue = new ObjectArrayFIFOQueue<>();
-		queue.enqueue(start);
-
-		while(!queue.isEmpty()) {
-			final Node node = queue.dequeue();
-			if (result.add(node)) for(final Node s: successors(node))
-				if (!result.contains(s)) queue.enqueue(s);
-		}
-
-		return result;
+	public PreparedCallGraph prepare(final RevisionCallGraph g) throws IOException {
+		final ArcCollector arcs = new ArcCollector();
+		arcs.revision(g.forge, g.product, g.version);
+		for(final FastenURI[] arc: g.graph) arcs.arc(arc[0], arc[1]);
+		return prepare(g, arcs);
 	}
 
-	/** The set of all {@link FastenURI} that are reachable from a given {@link FastenURI}; just a convenience
-	 *  method to be used instead of {@link #reaches(Node)}.
+	/** Parses a JSON revision call graph and prepares it for addition, as {@link #prepare(RevisionCallGraph)}, using the
+	 *  {@linkplain RevisionCallGraph#RevisionCallGraph(JSONTokener, boolean, RevisionCallGraph.ArcSink) streaming constructor}:
+	 *  neither the document tree nor the list of arcs is ever built.
 	 *
-	 * @param fastenURI the starting node.
-	 * @return all the nodes that can be reached from <code>fastenURI</code>.
+	 * @param tokener a tokener positioned at the start of a JSON revision call graph.
+	 * @return the prepared call graph.
 	 */
-	public Collection<FastenURI> reaches(final FastenURI fastenURI) {
-		final Node start = fastenURI2Node(fastenURI);
-		if (start == null) return null;
-		return new NamedResult(reaches(start));
+	public PreparedCallGraph prepare(final JSONTokener tokener) throws IOException, JSONException, URISyntaxException {
+		final ArcCollector arcs = new ArcCollector();
+		return prepare(new RevisionCallGraph(tokener, false, arcs), arcs);
 	}
 
-	/** The set of all nodes that are coreachable from <code>start</code>.
+	/** Prepares a revision call graph whose arcs have been collected.
 	 *
-	 * @param start the starting node.
-	 * @return the set of all nodes for which there is a directed path from that node to <code>start</code>.
+	 * @param g the revision call graph, which provides forge, product and version.
+	 * @param arcs the arcs of <code>g</code>.
+	 * @return the prepared call graph.
 	 */
-	public synchronized ObjectLinkedOpenHashSet<Node> coreaches(final Node start) {
-		final ObjectLinkedOpenHashSet<Node> result = new ObjectLinkedOpenHashSet<>();
-		// Visit queue
-		final ObjectArrayFIFOQueue<Node> queue = new ObjectArrayFIFOQueue<>();
-		queue.enqueue(start);
+	private PreparedCallGraph prepare(final RevisionCallGraph g, final ArcCollector arcs) throws IOException {
+		LOGGER.debug("Analyzing fasten://" + g.forge + "!" + g.product + "$" + g.version);
+		final IntLinkedOpenHashSet internalURIs = arcs.internalURIs, externalURIs = arcs.externalURIs;
+		final IntArrayList sources = arcs.sources, targets = arcs.targets;
+		final String[] uris = arcs.uri2Index.keySet().toArray(new String[arcs.uri2Index.size()]);
+
+		// Set up local bijection
+		final int nInternal = internalURIs.size();
+		final int[] l2u = new int[internalURIs.size() + externalURIs.size()];
+		IntIterators.unwrap(internalURIs.iterator(), l2u);
+		IntIterators.unwrap(externalURIs.iterator(), l2u, nInternal, l2u.length - nInternal);
+		final Int2IntOpenHashMap internalLID = new Int2IntOpenHashMap(), externalLID = new Int2IntOpenHashMap();
+		for(int i = 0; i < nInternal; i++) internalLID.put(l2u[i], i);
+		for(int i = nInternal; i < l2u.length; i++) externalLID.put(l2u[i], i);
+
+		// Build the graph, whose compressed versions (together with the transpose) are created in memory.
+		final ArrayListMutableGraph mutableGraph = new ArrayListMutableGraph(l2u.length);
+		for(int i = 0; i < sources.size(); i++) {
+			final int target = targets.getInt(i);
+			try {
+				mutableGraph.addArc(internalLID.get(sources.getInt(i)), target >= 0 ? internalLID.get(target) : externalLID.get(-target - 1));
+			} catch(final IllegalArgumentException e ) {
+				LOGGER.error("Duplicate arc " + uris[sources.getInt(i)] + " -> " + uris[target >= 0 ? target : -target - 1]);
+			}
+		}
 
-		while(!queue.isEmpty()) {
-			final Node node = queue.dequeue();
-			if (result.add(node))
-				for(final Node s: predecessors(node))
-					if (!result.contains(s)) queue.enqueue(s);
+		final Properties graphProperties = new Properties(), transposeProperties = new Properties();
+
+		// Renumber the nodes (internal nodes stay first) and compress the graph in memory
+		final int[] perm = nodeOrdering.permutation(mutableGraph.immutableView(), nInternal);
+		final ImmutableGraph graph = Transform.map(mutableGraph.immutableView(), perm);
+		final BVGraph compressedGraph = InMemoryBVGraphCompressor.compress(graph, graphProperties);
+
+		// Assign GIDs in order of appearance, and permute LIDs accordingly
+		final long[] gids = new long[uris.length];
+		for(int i = 0; i < gids.length; i++) gids[i] = genericURIs.add(uris[i]);
+		final long[] LID2GID = new long[l2u.length];
+		for (int x = 0; x < l2u.length; x++) LID2GID[perm[x]] = gids[l2u[x]];
+
+		// Compress the transpose graph in memory
+		final BVGraph compressedTranspose = InMemoryBVGraphCompressor.compress(Transform.transpose(graph), transposeProperties);
+
+		// Serialize graphs and properties
+		final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
+		final ByteBufferOutput bbo = new ByteBufferOutput(fbaos);
+		final Kryo kryo = kryoPool.obtain();
+		try {
+			kryo.writeObject(bbo, compressedGraph);
+			kryo.writeObject(bbo, compressedTranspose);
+			kryo.writeObject(bbo, graphProperties);
+			kryo.writeObject(bbo, transposeProperties);
+		} finally {
+			kryoPool.free(kryo);
 		}
+		bbo.flush();
 
-		return result;
+		return new PreparedCallGraph(g, LID2GID, nInternal, mutableGraph.numArcs(), Arrays.copyOf(fbaos.array, fbaos.length));
 	}
 
-	/** The set of all {@link FastenURI} that are coreachable from a given {@link FastenURI}; just a convenience
-	 *  method to be used instead of {@link #coreaches(Node)}.
+	/** Returns the number associated with a string by a map assigning consecutive numbers, adding the string if necessary.
 	 *
-	 * @param fastenURI the starting node.
-	 * @return all the nodes that can be coreached from <code>fastenURI</code>.
+	 * @param map a map assigning consecutive numbers to strings, with default return value -1.
+	 * @param s a string.
+	 * @return the number associated with <code>s</code>.
 	 */
-	public synchronized Collection<FastenURI> coreaches(final FastenURI fastenURI) {
-		final Node start = fastenURI2Node(fastenURI);
-		if (start == null) return null;
-		return new NamedResult(coreaches(start));
+	private static int index(final Object2IntLinkedOpenHashMap<String> map, final String s) {
+		int index = map.getInt(s);
+		if (index == -1) map.put(s, index = map.size());
+		return index;
 	}
 
-	/** Adds a new {@link CallGraph} to the list of all call graphs.
+	/** The default maximum number of nodes (i.e., of entries of {@link CallGraph#LID2GID}) of the call graphs whose metadata
+	 *  is kept in memory by {@link #callGraphs}. */
+	public static final long DEFAULT_CALL_GRAPH_CACHE_SIZE = 1L << 24;
+
+	/** The map from revision indices to call graphs. The set of revision indices is kept in memory, whereas the metadata of
+	 *  call graphs is loaded on demand from the {@value #CALL_GRAPHS} column family and kept in a cache bounded by
+	 *  the overall number of nodes.
 	 *
-	 * @param g the revision call graph from which the call graph will be created.
-	 * @param index the revision index to which the new call graph will be associated.
-	 * @throws IOException
-	 * @throws RocksDBException
+	 *  <p>Updates ({@link #put(long, CallGraph)}) must happen under the write {@linkplain #lock lock}.
 	 */
-	public synchronized void add(final RevisionCallGraph g, final long index) throws IOException, RocksDBException {
-		callGraphs.put(index, new CallGraph(g, index));
-	}
+	private final class CallGraphMap extends AbstractLong2ObjectMap<CallGraph> {
+		private static final long serialVersionUID = 1L;
+		/** The revision indices. */
+		private final LongOpenHashSet indices = new LongOpenHashSet();
+		/** The cache of call graphs. */
+		private final LoadingCache<Long, CallGraph> cache;
 
-	@Override
-	public void close() throws IOException {
-		try {
-			BinIO.storeObject(this, metadataPathname);
-		} finally {
-			callGraphDB.close();
+		/** Creates a map, reading the revision indices from the database.
+		 *
+		 * @param cacheSize the maximum overall number of nodes of cached call graphs.
+		 */
+		private CallGraphMap(final long cacheSize) {
+			try (RocksIterator iterator = callGraphDB.newIterator(columnFamilies.get(1))) {
+				for(iterator.seekToFirst(); iterator.isValid(); iterator.next()) indices.add(Longs.fromByteArray(iterator.key()));
+			}
+			cache = CacheBuilder.newBuilder()
+					.maximumWeight(cacheSize)
+					.weigher((final Long index, final CallGraph callGraph) -> callGraph.LID2GID.length + 1)
+					.build(CacheLoader.from(index -> {
+						try {
+							final byte[] metadata = callGraphDB.get(columnFamilies.get(1), Longs.toByteArray(index.longValue()));
+							if (metadata == null) throw new IllegalStateException("No metadata stored for revision index " + index);
+							return new CallGraph(index.longValue(), metadata);
+						} catch (final RocksDBException | IOException e) {
+							throw new RuntimeException(e);
+						}
+					}));
 		}
-	}
 
-	/** The number of call graphs.
-	 *
-	 * @return the number of call graphs.
-	 */
-	public long size() {
-		return callGraphs.size();
-	}
+		@Override
+		public CallGraph get(final long index) {
+			return indices.contains(index) ? cache.getUnchecked(Long.valueOf(index)) : defRetValue;
+		}
 
-	private void readObject(final ObjectInputStream s) throws IOException, ClassNotFoundException {
-		s.defaultReadObject();
-		initKryo();
+		@Override
+		public boolean containsKey(final long index) {
+			return indices.contains(index);
+		}
+
+		/** Adds a revision index whose call graph has been stored in the database, without loading it.
+		 *
+		 * @param index a revision index.
+		 */
+		private void register(final long index) {
+			indices.add(index);
+			cache.invalidate(Long.valueOf(index));
+		}
+
+		@Override
+		public CallGraph put(final long index, final CallGraph callGraph) {
+			final CallGraph previous = indices.add(index) ? defRetValue : cache.getIfPresent(Long.valueOf(index));
+			cache.put(Long.valueOf(index), callGraph);
+			return previous;
+		}
+
+		@Override
+		public int size() {
+			return indices.size();
+		}
+
+		@Override
+		public ObjectSet<Long2ObjectMap.Entry<CallGraph>> long2ObjectEntrySet() {
+			return new AbstractObjectSet<>() {
+				@Override
+				public int size() {
+					return indices.size();
+				}
+
+				@Override
+				public ObjectIterator<Long2ObjectMap.Entry<CallGraph>> iterator() {
+					final LongIterator iterator = indices.iterator();
+					return new ObjectIterator<>() {
+						@Override
+						public boolean hasNext() {
+							return iterator.hasNext();
+						}
+
+						@Override
+						public Long2ObjectMap.Entry<CallGraph> next() {
+							final long index = iterator.nextLong();
+							return new AbstractLong2ObjectMap.BasicEntry<>(index, get(index));
+						}
+					};
+				}
+			};
+		}
+	}
+
+	/** Wraps a list of {@linkplain #node(long, int) encoded nodes}, and allows one to iterate over it with an iterator that returns the {@link FastenURI} of the
+	 *  node each time. {@link FastenURI} instances are materialized only when returned by the iterator.
+	 */
+	private final class NamedResult extends AbstractObjectCollection<FastenURI> {
+		private final LongArrayList nodes;
+
+		/** Wraps a given list of encoded nodes.
+		 *
+		 * @param nodes the list of encoded nodes (with no duplicates).
+		 */
+		private NamedResult(final LongArrayList nodes) {
+			this.nodes = nodes;
+		}
+
+		@Override
+		public int size() {
+			return nodes.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return nodes.isEmpty();
+		}
+
+		@Override
+		public ObjectIterator<FastenURI> iterator() {
+			final LongIterator iterator = nodes.iterator();
+			return new ObjectIterator<>() {
+
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public FastenURI next() {
+					return toFastenURI(iterator.nextLong());
+				}
+			};
+		}
+	}
+
+	/** Initializes the pool of kryo instances used for serialization. */
+	private void initKryo() {
+		kryoPool = new Pool<>(true, false) {
+			@Override
+			protected Kryo create() {
+				final Kryo kryo = new Kryo();
+				kryo.register(BVGraph.class, new BVGraphSerializer(kryo));
+				kryo.register(byte[].class);
+				kryo.register(InputBitStream.class);
+				kryo.register(NullInputStream.class);
+				kryo.register(EliasFanoMonotoneLongBigList.class, new JavaSerializer());
+				kryo.register(MutableString.class, new FieldSerializer<>(kryo, MutableString.class));
+				kryo.register(Properties.class);
+				return kryo;
+			}
+		};
+	}
+
+	/** Initializes the {@linkplain #graphCache graph cache}.
+	 *
+	 * @param graphCacheSize the maximum size in bytes of the cache.
+	 */
+	private void initGraphCache(final long graphCacheSize) {
+		graphCache = CacheBuilder.newBuilder()
+				.maximumWeight(graphCacheSize)
+				.weigher((final Long index, final CachedGraphs cachedGraphs) -> cachedGraphs.size)
+				.recordStats()
+				.build(CacheLoader.from(index -> {
+					final byte[] value = graphValue(index.longValue());
+					final Input input = new Input(value);
+					final Kryo kryo = kryoPool.obtain();
+					try {
+						return new CachedGraphs(new ImmutableGraph[] { kryo.readObject(input, BVGraph.class), kryo.readObject(input, BVGraph.class) }, value.length);
+					} finally {
+						kryoPool.free(kryo);
+					}
+				}));
+	}
+
+	/** Returns the value associated with a revision index in the database.
+	 *
+	 * <p>The value is retrieved in a byte array allocated by RocksDB with exactly the size of
+	 * the stored value, so it can be wrapped (not copied) by a Kryo {@link Input}.
+	 *
+	 * @param index a revision index.
+	 * @return the serialized graphs and properties of the call graph with given revision index.
+	 */
+	private byte[] graphValue(final long index) {
+		final byte[] value;
+		try {
+			value = callGraphDB.get(Longs.toByteArray(index));
+		} catch (final RocksDBException e) {
+			throw new RuntimeException(e);
+		}
+		if (value == null) throw new IllegalStateException("No graphs stored for revision index " + index);
+		return value;
+	}
+
+	/** Returns statistics about the {@linkplain #graphCache graph cache} (hits, misses, evictions, loading time).
+	 *
+	 * @return a snapshot of the statistics of the graph cache.
+	 */
+	public CacheStats graphCacheStats() {
+		return graphCache.stats();
+	}
+
+	/** Creates a knowledge base backed by a database; the call graphs are loaded lazily, and the URI dictionary is
+	 *  restored from its last checkpoint and the URIs added since then.
+	 *
+	 * @param db the database.
+	 * @param columnFamilies the handles of the column families of the database, in the order of {@link #COLUMN_FAMILIES}.
+	 * @param metadataPathname the basename of the files containing metadata not stored in the database.
+	 * @param graphCacheSize the maximum size in bytes of the cache of decompressed graphs.
+	 * @param columnFamilyOptions the options of the column families.
+	 */
+	private KnowledgeBase(final RocksDB db, final List<ColumnFamilyHandle> columnFamilies, final String metadataPathname, final long graphCacheSize, final ColumnFamilyOptions columnFamilyOptions) throws RocksDBException, IOException {
+		this.callGraphDB = db;
+		this.columnFamilies = columnFamilies;
+		this.metadataPathname = metadataPathname;
+		this.columnFamilyOptions = columnFamilyOptions;
+		lock = new ReentrantReadWriteLock();
+
+		final byte[] checkpoint = db.get(columnFamilies.get(5), URIS_CHECKPOINT_KEY);
+		genericURIs = checkpoint == null ? new URIDictionary() : SerializationUtils.deserialize(checkpoint);
+		genericURIs.map(new File(metadataPathname + URIS_EXTENSION));
+		persistedURIs = new LongOpenHashSet();
+		batchURIs = new LongArrayList();
+		// Replay the URIs added after the checkpoint
+		try (RocksIterator iterator = db.newIterator(columnFamilies.get(4))) {
+			for(iterator.seek(Longs.toByteArray(genericURIs.frozenSize())); iterator.isValid(); iterator.next()) {
+				final long gid = Longs.fromByteArray(iterator.key());
+				// GIDs assigned to call graphs that were never added leave gaps
+				while(genericURIs.size() < gid) genericURIs.add(UNUSED_URI_PREFIX + genericURIs.size());
+				if (genericURIs.add(new String(iterator.value(), StandardCharsets.UTF_8)) != gid) throw new IllegalStateException("Inconsistent URI dictionary at GID " + gid);
+				persistedURIs.add(gid);
+			}
+		}
+
+		GIDAppearsIn = new RevisionPostings(db, columnFamilies.get(2));
+		GIDCalledBy = new RevisionPostings(db, columnFamilies.get(3));
+		callGraphs = new CallGraphMap(DEFAULT_CALL_GRAPH_CACHE_SIZE);
+		resolvedDependencies = CacheBuilder.newBuilder().maximumSize(DEFAULT_RESOLUTION_CACHE_SIZE).build(CacheLoader.from(index -> resolve(callGraphs.get(index.longValue()))));
+		timelines = CacheBuilder.newBuilder().maximumSize(DEFAULT_TIMELINE_CACHE_SIZE).build(CacheLoader.from(this::timeline));
+		indexRevisions();
+
+		initKryo();
+		initGraphCache(graphCacheSize);
+	}
+
+	/** Fills the {@value #REVISIONS} column family from the metadata of the call graphs, if the column family is empty
+	 *  but the knowledge base is not (i.e., the database was created before the column family was introduced). */
+	private void indexRevisions() throws RocksDBException {
+		if (callGraphs.isEmpty()) return;
+		try (RocksIterator iterator = callGraphDB.newIterator(columnFamilies.get(6))) {
+			iterator.seekToFirst();
+			if (iterator.isValid()) return;
+		}
+		LOGGER.info("Indexing the versions of " + callGraphs.size() + " revisions");
+		try (WriteBatch batch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions()) {
+			for(final CallGraph callGraph : callGraphs.values())
+				if (callGraph.version != null) batch.put(columnFamilies.get(6), revisionKey(callGraph.product, callGraph.version), Longs.toByteArray(callGraph.index));
+			writeOptions.setSync(true);
+			callGraphDB.write(writeOptions, batch);
+		}
+	}
+
+	/** Returns the key of a revision in the {@value #REVISIONS} column family: the UTF-8 encoding of the product,
+	 *  a zero byte, and the UTF-8 encoding of the version.
+	 *
+	 * @param product a product.
+	 * @param version a version of <code>product</code>.
+	 * @return the key of the revision.
+	 */
+	private static byte[] revisionKey(final String product, final String version) {
+		final byte[] p = product.getBytes(StandardCharsets.UTF_8), v = version.getBytes(StandardCharsets.UTF_8);
+		final byte[] key = new byte[p.length + 1 + v.length];
+		System.arraycopy(p, 0, key, 0, p.length);
+		System.arraycopy(v, 0, key, p.length + 1, v.length);
+		return key;
+	}
+
+	/** Returns the key of a revision in the {@value #TIMELINE} column family: the UTF-8 encoding of the product,
+	 *  a zero byte, and the timestamp and the revision index in big-endian order. Since timestamps are nonnegative,
+	 *  the revisions of a product are sorted by timestamp.
+	 *
+	 * @param product a product.
+	 * @param timestamp the nonnegative timestamp of a revision of <code>product</code>.
+	 * @param index the revision index.
+	 * @return the key of the revision.
+	 */
+	private static byte[] timelineKey(final String product, final long timestamp, final long index) {
+		final byte[] p = product.getBytes(StandardCharsets.UTF_8);
+		final byte[] key = Arrays.copyOf(p, p.length + 1 + 2 * Long.BYTES);
+		System.arraycopy(Longs.toByteArray(timestamp), 0, key, p.length + 1, Long.BYTES);
+		System.arraycopy(Longs.toByteArray(index), 0, key, p.length + 1 + Long.BYTES, Long.BYTES);
+		return key;
+	}
+
+	/** Returns the index of the revision of a product with a given version.
+	 *
+	 * <p>If several revisions with the same product and version were added (e.g., from different forges), the one added last is returned.
+	 *
+	 * @param product a product.
+	 * @param version a version of <code>product</code>.
+	 * @return the index of the revision, or -1 if there is no such revision.
+	 */
+	public long revisionIndex(final String product, final String version) {
+		final byte[] index;
+		try {
+			index = callGraphDB.get(columnFamilies.get(6), revisionKey(product, version));
+		} catch (final RocksDBException e) {
+			throw new RuntimeException(e);
+		}
+		return index == null ? -1 : Longs.fromByteArray(index);
+	}
+
+	/** Returns a knowledge base associated with a given database, using a {@linkplain #DEFAULT_GRAPH_CACHE_SIZE default-sized}
+	 *  graph cache.
+	 *
+	 * @param kbDir the directory of the RocksDB instance containing the graphs.
+	 * @param kbMetadataPathname the basename of the files containing the knowledge base metadata that is not stored in the database.
+	 * @return the knowledge base.
+	 * @see #getInstance(String, String, long)
+	 */
+	public static KnowledgeBase getInstance(final String kbDir, final String kbMetadataPathname) throws RocksDBException, ClassNotFoundException, IOException {
+		return getInstance(kbDir, kbMetadataPathname, DEFAULT_GRAPH_CACHE_SIZE);
+	}
+
+	/** Returns a knowledge base associated with a given database, which is created if it does not exist.
+	 *
+	 * @param kbDir the directory of the RocksDB instance containing the graphs.
+	 * @param kbMetadataPathname the basename of the files containing the knowledge base metadata that is not stored in the database
+	 * (presently, the file of the frozen tier of the URI dictionary, with extension {@value #URIS_EXTENSION}).
+	 * @param graphCacheSize the maximum size in bytes of the cache of decompressed graphs.
+	 * @return the knowledge base.
+	 * @see #getInstance(String, String, long, PayloadCompression.Codec)
+	 */
+	public static KnowledgeBase getInstance(final String kbDir, final String kbMetadataPathname, final long graphCacheSize) throws RocksDBException, ClassNotFoundException, IOException {
+		return getInstance(kbDir, kbMetadataPathname, graphCacheSize, null);
+	}
+
+	/** Returns the options of the column families compressing values with a given codec.
+	 *
+	 * <p>With {@link PayloadCompression.Codec#ZSTD}, the upper levels of the LSM tree, which contain recently written data and are
+	 * compacted often, are compressed with LZ4, whereas the bottommost level, which contains most of the data, is compressed with
+	 * Zstandard using a dictionary trained on a sample of each file during compaction. RocksDB records the codec of each block and the
+	 * dictionary of each file, so the codec can be changed when reopening the database: existing files are recompressed as they are compacted.
+	 *
+	 * @param codec a codec, or {@code null} for the RocksDB defaults.
+	 * @return the options of the column families.
+	 */
+	private static ColumnFamilyOptions columnFamilyOptions(final PayloadCompression.Codec codec) {
+		final ColumnFamilyOptions options = new ColumnFamilyOptions();
+		if (codec == null) return options;
+		switch (codec) {
+		case NONE:
+			options.setCompressionType(CompressionType.NO_COMPRESSION);
+			break;
+		case LZ4:
+			options.setCompressionType(CompressionType.LZ4_COMPRESSION);
+			break;
+		case ZSTD:
+			options.setCompressionType(CompressionType.LZ4_COMPRESSION);
+			options.setBottommostCompressionType(CompressionType.ZSTD_COMPRESSION);
+			options.setBottommostCompressionOptions(new CompressionOptions().setEnabled(true).setLevel(PayloadCompression.DEFAULT_LEVEL)
+					.setMaxDictBytes(ROCKSDB_DICTIONARY_SIZE).setZStdMaxTrainBytes(100 * ROCKSDB_DICTIONARY_SIZE));
+			break;
+		default:
+			throw new AssertionError();
+		}
+		return options;
+	}
+
+	/** Returns a knowledge base associated with a given database, which is created if it does not exist, compressing values with a given codec.
+	 *
+	 * @param kbDir the directory of the RocksDB instance containing the graphs.
+	 * @param kbMetadataPathname the basename of the files containing the knowledge base metadata that is not stored in the database
+	 * (presently, the file of the frozen tier of the URI dictionary, with extension {@value #URIS_EXTENSION}).
+	 * @param graphCacheSize the maximum size in bytes of the cache of decompressed graphs.
+	 * @param compression the codec used by RocksDB to compress values, or {@code null} for the RocksDB defaults.
+	 * @return the knowledge base.
+	 * @see #columnFamilyOptions(PayloadCompression.Codec)
+	 */
+	public static KnowledgeBase getInstance(final String kbDir, final String kbMetadataPathname, final long graphCacheSize, final PayloadCompression.Codec compression) throws RocksDBException, ClassNotFoundException, IOException {
+		RocksDB.loadLibrary();
+		final DBOptions options = new DBOptions();
+		options.setCreateIfMissing(true);
+		options.setCreateMissingColumnFamilies(true);
+
+		final List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+		final ColumnFamilyOptions columnFamilyOptions = columnFamilyOptions(compression);
+		for(final String name : COLUMN_FAMILIES) descriptors.add(new ColumnFamilyDescriptor(name.getBytes(StandardCharsets.UTF_8), columnFamilyOptions));
+		final List<ColumnFamilyHandle> columnFamilies = new ArrayList<>();
+		final RocksDB db = RocksDB.open(options, kbDir, descriptors, columnFamilies);
+		if (new File(kbMetadataPathname).length() > 0) LOGGER.warn("Ignoring " + kbMetadataPathname + ": metadata is now stored in the database");
+		final KnowledgeBase kb = new KnowledgeBase(db, columnFamilies, kbMetadataPathname, graphCacheSize, columnFamilyOptions);
+		LOGGER.info("Opened knowledge base with " + kb.callGraphs.size() + " call graphs and " + kb.genericURIs.size() + " generic URIs");
+		return kb;
+	}
+
+	/** Adds a URI to the URI dictionary, if it is not already present. This method can be called concurrently;
+	 *  the URI is persisted only when a call graph containing it is {@linkplain #add(List, long) added}.
+	 *
+	 * @param uri a Fasten URI.
+	 * @return the associated GID.
+	 */
+	protected long addURI(final FastenURI uri) {
+		return genericURIs.add(uri.toString());
+	}
+
+	/** Records in a write batch the addition of a URI to the {@value #URIS} column family, unless it is in the frozen tier
+	 *  of the URI dictionary or it has already been recorded.
+	 *
+	 *  <p>The caller must hold the write {@linkplain #lock lock}.
+	 *
+	 * @param gid the GID of the URI.
+	 * @param batch a write batch for {@link #callGraphDB}.
+	 */
+	private void persistURI(final long gid, final WriteBatch batch) throws RocksDBException {
+		if (gid < genericURIs.frozenSize() || ! persistedURIs.add(gid)) return;
+		batchURIs.add(gid);
+		batch.put(columnFamilies.get(4), Longs.toByteArray(gid), genericURIs.get(gid).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Returns the GID of a generic URI.
+	 *
+	 * @param genericURI a schemeless generic FASTEN URI.
+	 * @return the GID of <code>genericURI</code>, or -1 if it is not in the knowledge base.
+	 */
+	protected long gid(final FastenURI genericURI) {
+		return genericURIs.getLong(genericURI.toString());
+	}
+
+	/** Returns the {@link FastenURI} of a GID in the revision of a given call graph, building it directly from the string
+	 *  representation of the generic URI (a product followed by a path).
+	 *
+	 * @param callGraph a call graph.
+	 * @param gid a GID.
+	 * @return the {@link FastenURI} of <code>gid</code> in the revision of <code>callGraph</code>, or <code>null</code> if
+	 * <code>gid</code> is unknown.
+	 */
+	private FastenURI toFastenURI(final CallGraph callGraph, final long gid) {
+		final String genericURI = genericURIs.get(gid);
+		if (genericURI == null) return null;
+		// Generic URIs have the form //product/namespace/entity
+		final int path = genericURI.indexOf('/', 2);
+		assert genericURI.substring(2, path).equals(callGraph.product) : genericURI.substring(2, path) + " != " + callGraph.product;
+		final StringBuilder b = new StringBuilder("fasten://");
+		if (callGraph.forge != null) b.append(callGraph.forge).append('!');
+		b.append(callGraph.product);
+		if (callGraph.version != null) b.append('$').append(callGraph.version);
+		return FastenURIPool.FASTEN_URIS.get(b.append(genericURI, path, genericURI.length()).toString());
+	}
+
+	/** The ways in which visits resolve calls to external nodes to revisions. */
+	public enum Resolution {
+		/** A call to an external node is resolved to every revision in which its GID appears as an internal node. */
+		ALL_VERSIONS,
+		/** A call to an external node is resolved only to the revisions selected by the depset of the caller: each dependency is
+		 *  resolved to the newest indexed version satisfying its constraints (see {@link KnowledgeBase#resolve(CallGraph)}). */
+		DEPSET
+	}
+
+	/** Returns the revisions to which the depset of a revision resolves, using the {@linkplain #resolvedDependencies resolution cache}.
+	 *
+	 * <p>The caller must hold the read {@linkplain #lock lock}.
+	 *
+	 * @param index a revision index.
+	 * @return the revisions to which the depset of the revision resolves.
+	 */
+	protected LongSet resolvedDependencies(final long index) {
+		return resolvedDependencies.getUnchecked(Long.valueOf(index));
+	}
+
+	/** Resolves the depset of a call graph against the indexed versions.
+	 *
+	 * <p>Each clause of the depset lists alternative dependencies: the clause resolves to the {@linkplain #resolve(Dependency) resolution}
+	 * of the first dependency that can be resolved, if any. Products that are not in the depset are not resolved to any revision.
+	 *
+	 * @param callGraph a call graph.
+	 * @return the revisions to which the depset of <code>callGraph</code> resolves.
+	 */
+	private LongSet resolve(final CallGraph callGraph) {
+		return resolve(callGraph.depset, this::resolve);
+	}
+
+	/** Resolves the depset of a call graph against the versions published at a given time, as {@link #resolve(CallGraph)}.
+	 *
+	 * @param callGraph a call graph.
+	 * @param timestamp a timestamp in seconds from UNIX Epoch.
+	 * @return the revisions to which the depset of <code>callGraph</code> resolves at time <code>timestamp</code>,
+	 * or the empty set if <code>callGraph</code> had not been {@linkplain #published(CallGraph, long) published} at that time.
+	 */
+	private LongSet resolve(final CallGraph callGraph, final long timestamp) {
+		if (!published(callGraph, timestamp)) return LongSets.EMPTY_SET;
+		return resolve(callGraph.depset, dependency -> resolve(dependency, timestamp));
+	}
+
+	/** Resolves a depset, clause by clause.
+	 *
+	 * @param depset a depset.
+	 * @param resolver a function resolving a dependency to a revision index, or to -1 if the dependency cannot be resolved.
+	 * @return the revisions to which <code>depset</code> resolves.
+	 */
+	private static LongSet resolve(final List<List<Dependency>> depset, final ToLongFunction<Dependency> resolver) {
+		final LongOpenHashSet resolved = new LongOpenHashSet();
+		for(final List<Dependency> clause : depset) {
+			for(final Dependency dependency : clause) {
+				final long index = resolver.applyAsLong(dependency);
+				if (index != -1) {
+					resolved.add(index);
+					break;
+				}
+			}
+		}
+		return resolved;
+	}
+
+	/** Resolves a dependency to the revision of the newest indexed version of its product satisfying its constraints, scanning the
+	 *  versions of the product in the {@value #REVISIONS} column family. Versions are compared by {@link Constraint#compareVersions(String, String)}.
+	 *
+	 * @param dependency a dependency.
+	 * @return the index of the revision to which <code>dependency</code> resolves, or -1 if no indexed version satisfies it.
+	 */
+	private long resolve(final Dependency dependency) {
+		if (dependency.product == null) return -1;
+		// The keys of all versions of the product start with the product followed by a zero byte
+		final byte[] prefix = revisionKey(dependency.product, "");
+		String newest = null;
+		long index = -1;
+		try (RocksIterator iterator = callGraphDB.newIterator(columnFamilies.get(6))) {
+			for(iterator.seek(prefix); iterator.isValid(); iterator.next()) {
+				final byte[] key = iterator.key();
+				if (key.length < prefix.length || !Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length)) break;
+				final String version = new String(key, prefix.length, key.length - prefix.length, StandardCharsets.UTF_8);
+				if (dependency.matches(version) && (newest == null || Constraint.compareVersions(version, newest) > 0)) {
+					newest = version;
+					index = Longs.fromByteArray(iterator.value());
+				}
+			}
+		}
+		return index;
+	}
+
+	/** The revisions of a product with a version and a timestamp, sorted by timestamp (and by revision index for equal timestamps). */
+	private static final class Timeline {
+		/** The timestamps of the revisions. */
+		private final long[] timestamps;
+		/** The indices of the revisions. */
+		private final long[] indices;
+		/** The versions of the revisions. */
+		private final String[] versions;
+
+		private Timeline(final long[] timestamps, final long[] indices, final String[] versions) {
+			this.timestamps = timestamps;
+			this.indices = indices;
+			this.versions = versions;
+		}
+	}
+
+	/** Reads the timeline of a product from the {@value #TIMELINE} column family.
+	 *
+	 * @param product a product.
+	 * @return the timeline of <code>product</code>.
+	 */
+	private Timeline timeline(final String product) {
+		final byte[] prefix = revisionKey(product, "");
+		final LongArrayList timestamps = new LongArrayList(), indices = new LongArrayList();
+		final ObjectArrayList<String> versions = new ObjectArrayList<>();
+		try (RocksIterator iterator = callGraphDB.newIterator(columnFamilies.get(7))) {
+			for(iterator.seek(prefix); iterator.isValid(); iterator.next()) {
+				final byte[] key = iterator.key();
+				if (key.length != prefix.length + 2 * Long.BYTES || !Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length)) break;
+				final ByteBuffer buffer = ByteBuffer.wrap(key, prefix.length, 2 * Long.BYTES);
+				timestamps.add(buffer.getLong());
+				indices.add(buffer.getLong());
+				versions.add(new String(iterator.value(), StandardCharsets.UTF_8));
+			}
+		}
+		return new Timeline(timestamps.toLongArray(), indices.toLongArray(), versions.toArray(new String[0]));
+	}
+
+	/** Resolves a dependency to the revision of the newest version of its product satisfying its constraints among those published
+	 *  at a given time, scanning the {@linkplain #timelines cached timeline} of the product. If the same version has been
+	 *  published several times, the last publication is chosen.
+	 *
+	 * @param dependency a dependency.
+	 * @param timestamp a timestamp in seconds from UNIX Epoch.
+	 * @return the index of the revision to which <code>dependency</code> resolves at time <code>timestamp</code>, or -1 if no version
+	 * published at that time satisfies it.
+	 */
+	private long resolve(final Dependency dependency, final long timestamp) {
+		if (dependency.product == null) return -1;
+		final Timeline timeline = timelines.getUnchecked(dependency.product);
+		// Find the first revision published after timestamp
+		int from = 0, to = timeline.timestamps.length;
+		while(from < to) {
+			final int mid = (from + to) >>> 1;
+			if (timeline.timestamps[mid] <= timestamp) from = mid + 1;
+			else to = mid;
+		}
+		String newest = null;
+		long index = -1;
+		// Backwards, so that the first of several publications of the same version we meet is the last one
+		for(int i = from; i-- != 0;) {
+			final String version = timeline.versions[i];
+			if (dependency.matches(version) && (newest == null || Constraint.compareVersions(version, newest) > 0)) {
+				newest = version;
+				index = timeline.indices[i];
+			}
+		}
+		return index;
+	}
+
+	/** Returns whether a call graph had been published at a given time.
+	 *
+	 * @param callGraph a call graph.
+	 * @param timestamp a timestamp in seconds from UNIX Epoch.
+	 * @return true if <code>callGraph</code> has a timestamp, and it is not after <code>timestamp</code>.
+	 */
+	private static boolean published(final CallGraph callGraph, final long timestamp) {
+		return callGraph.timestamp >= 0 && callGraph.timestamp <= timestamp;
+	}
+
+	/** Returns the function mapping revisions to the revisions their external calls are resolved to at a given time.
+	 *
+	 * <p>Since resolutions depend on the time, they are cached only by the returned function, which is meant to be used by a single visit;
+	 * the timelines of the products they are computed from, instead, are {@linkplain #timelines cached} across visits.
+	 *
+	 * @param timestamp a timestamp in seconds from UNIX Epoch.
+	 * @return the function.
+	 */
+	private LongFunction<LongSet> resolver(final long timestamp) {
+		final Long2ObjectOpenHashMap<LongSet> cache = new Long2ObjectOpenHashMap<>();
+		return index -> {
+			LongSet resolved = cache.get(index);
+			if (resolved == null) cache.put(index, resolved = resolve(callGraphs.get(index), timestamp));
+			return resolved;
+		};
+	}
+
+	/** Returns the function mapping revisions to the revisions their external calls are resolved to under a resolution mode.
+	 *
+	 * @param resolution a resolution mode.
+	 * @return the function, or {@code null} if external calls are resolved to all revisions.
+	 */
+	private LongFunction<LongSet> resolver(final Resolution resolution) {
+		return resolution == Resolution.DEPSET ? this::resolvedDependencies : null;
+	}
+
+	/** Encodes a node, given by a revision index and the LID of the node in the call graph of the revision, into a <code>long</code>
+	 *  (the revision index in the upper 32 bits, the LID in the lower 32 bits).
+	 *
+	 * <p>Encoded nodes are used by visits to avoid allocating a {@link Node} for each visited node; they are decoded
+	 * by {@link #index(long)} and {@link #lid(long)}.
+	 *
+	 * @param index a revision index (smaller than 2<sup>31</sup>).
+	 * @param lid a LID in the call graph of the revision.
+	 * @return the encoded node.
+	 */
+	protected static long node(final long index, final int lid) {
+		assert index >= 0 && index <= Integer.MAX_VALUE : index;
+		assert lid >= 0 : lid;
+		return index << 32 | lid;
+	}
+
+	/** Returns the revision index of an {@linkplain #node(long, int) encoded node}.
+	 *
+	 * @param node an encoded node.
+	 * @return the revision index of <code>node</code>.
+	 */
+	protected static long index(final long node) {
+		return node >>> 32;
+	}
+
+	/** Returns the LID of an {@linkplain #node(long, int) encoded node}.
+	 *
+	 * @param node an encoded node.
+	 * @return the LID of <code>node</code> in the call graph of its revision.
+	 */
+	protected static int lid(final long node) {
+		return (int)node;
+	}
+
+	/** Encodes a {@link Node}.
+	 *
+	 * @param node a node.
+	 * @return the {@linkplain #node(long, int) encoded} node.
+	 */
+	private long encode(final Node node) {
+		final int lid = callGraphs.get(node.index).GID2LID.get(node.gid);
+		if (lid == -1) throw new IllegalArgumentException("GID " + node.gid + " does not appear in revision " + node.index);
+		return node(node.index, lid);
+	}
+
+	/** Decodes a node.
+	 *
+	 * @param node an {@linkplain #node(long, int) encoded} node.
+	 * @return the corresponding {@link Node}.
+	 */
+	private Node decode(final long node) {
+		final long index = index(node);
+		return new Node(callGraphs.get(index).LID2GID[lid(node)], index);
+	}
+
+	/** Returns the {@link FastenURI} corresponding to an {@linkplain #node(long, int) encoded node}.
+	 *
+	 * @param node an encoded node.
+	 * @return the {@link FastenURI} corresponding to <code>node</code>.
+	 */
+	private FastenURI toFastenURI(final long node) {
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			final CallGraph callGraph = callGraphs.get(index(node));
+			return toFastenURI(callGraph, callGraph.LID2GID[lid(node)]);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** Enumerates the successors of an {@linkplain #node(long, int) encoded node}, passing them to a consumer.
+	 *
+	 * <p>The caller must hold the read {@linkplain #lock lock}.
+	 *
+	 * @param node an encoded node.
+	 * @param consumer a consumer that will receive the encoded successors of <code>node</code> (possibly with repetitions).
+	 * @see #successors(Node)
+	 */
+	protected void successors(final long node, final LongConsumer consumer) {
+		successors(node, consumer, null);
+	}
+
+	/** Enumerates the successors of an {@linkplain #node(long, int) encoded node}, passing them to a consumer, resolving calls to
+	 *  external nodes only to some revisions.
+	 *
+	 * <p>The caller must hold the read {@linkplain #lock lock}.
+	 *
+	 * @param node an encoded node.
+	 * @param consumer a consumer that will receive the encoded successors of <code>node</code> (possibly with repetitions).
+	 * @param resolver a function mapping a revision index to the set of revisions to which its calls to external nodes can be resolved,
+	 * or {@code null} to resolve them to all revisions in which they appear.
+	 */
+	protected void successors(final long node, final LongConsumer consumer, final LongFunction<LongSet> resolver) {
+		final long index = index(node);
+		final CallGraph callGraph = callGraphs.get(index);
+		assert callGraph != null;
+		final LongSet resolved = resolver == null ? null : resolver.apply(index);
+
+		final GlobalCallGraph snapshot = this.snapshot;
+		final int id = snapshot != null && lid(node) < callGraph.nInternal ? snapshot.id(node) : -1;
+		if (id != -1) {
+			/* Arcs among revisions in the snapshot are resolved by the snapshot... */
+			final LazyIntIterator s = snapshot.successors(id, true);
+			for(int x; (x = s.nextInt()) != -1;) {
+				final long successor = snapshot.node(x);
+				if (resolved == null || index(successor) == index || resolved.contains(index(successor))) consumer.accept(successor);
+			}
+			if (deltaAppearsIn.isEmpty()) return;
+			/* ...and the others by looking for the GIDs of external nodes in later revisions. */
+			final LazyIntIterator e = callGraph.graphs()[0].successors(lid(node));
+			for(int x; (x = e.nextInt()) != -1;) {
+				if (x < callGraph.nInternal || !deltaAppearsIn.contains(callGraph.LID2GID[x])) continue;
+				final long xGid = callGraph.LID2GID[x];
+				for(final LongIterator revisions = GIDAppearsIn.get(xGid).iterator(); revisions.hasNext();) {
+					final long revIndex = revisions.nextLong();
+					if (!snapshot.contains(revIndex) && (resolved == null || resolved.contains(revIndex))) consumer.accept(node(revIndex, callGraphs.get(revIndex).GID2LID.get(xGid)));
+				}
+			}
+			return;
+		}
+
+		final LazyIntIterator s = callGraph.graphs()[0].successors(lid(node));
+		int x;
+
+		/* In the successor case, internal nodes can be passed directly... */
+		while((x = s.nextInt()) != -1 && x < callGraph.nInternal) consumer.accept(node(index, x));
+
+		if (x == -1) return;
+
+		/* ...but external nodes must be search for in the revision call graphs in which they appear. */
+		do {
+			final long xGid = callGraph.LID2GID[x];
+			for(final LongIterator revisions = GIDAppearsIn.get(xGid).iterator(); revisions.hasNext();) {
+				final long revIndex = revisions.nextLong();
+				if (resolved == null || resolved.contains(revIndex)) consumer.accept(node(revIndex, callGraphs.get(revIndex).GID2LID.get(xGid)));
+			}
+		} while((x = s.nextInt()) != -1);
+	}
+
+	/** Enumerates the predecessors of an {@linkplain #node(long, int) encoded node}, passing them to a consumer.
+	 *
+	 * <p>The caller must hold the read {@linkplain #lock lock}.
+	 *
+	 * @param node an encoded node.
+	 * @param consumer a consumer that will receive the encoded predecessors of <code>node</code> (possibly with repetitions).
+	 * @see #predecessors(Node)
+	 */
+	protected void predecessors(final long node, final LongConsumer consumer) {
+		predecessors(node, consumer, null);
+	}
+
+	/** Enumerates the predecessors of an {@linkplain #node(long, int) encoded node}, passing them to a consumer, considering
+	 *  only the calls from other revisions that are resolved to the revision of the node.
+	 *
+	 * <p>The caller must hold the read {@linkplain #lock lock}.
+	 *
+	 * @param node an encoded node.
+	 * @param consumer a consumer that will receive the encoded predecessors of <code>node</code> (possibly with repetitions).
+	 * @param resolver a function mapping a revision index to the set of revisions to which its calls to external nodes can be resolved,
+	 * or {@code null} to resolve them to all revisions in which they appear.
+	 */
+	protected void predecessors(final long node, final LongConsumer consumer, final LongFunction<LongSet> resolver) {
+		final long index = index(node);
+		final CallGraph callGraph = callGraphs.get(index);
+		assert callGraph != null;
+
+		final GlobalCallGraph snapshot = this.snapshot;
+		final int id = snapshot != null && lid(node) < callGraph.nInternal ? snapshot.id(node) : -1;
+		if (id != -1) {
+			/* Arcs among revisions in the snapshot are resolved by the snapshot... */
+			final LazyIntIterator s = snapshot.successors(id, false);
+			for(int x; (x = s.nextInt()) != -1;) {
+				final long predecessor = snapshot.node(x);
+				if (resolver == null || index(predecessor) == index || resolver.apply(index(predecessor)).contains(index)) consumer.accept(predecessor);
+			}
+			/* ...and the others by looking for callers of the GID in later revisions. */
+			final long gid = callGraph.LID2GID[lid(node)];
+			if (!deltaCalledBy.contains(gid)) return;
+			for(final LongIterator revisions = GIDCalledBy.get(gid).iterator(); revisions.hasNext();) {
+				final long revIndex = revisions.nextLong();
+				if (snapshot.contains(revIndex) || resolver != null && !resolver.apply(revIndex).contains(index)) continue;
+				final CallGraph precCallGraph = callGraphs.get(revIndex);
+				final LazyIntIterator p = precCallGraph.graphs()[1].successors(precCallGraph.GID2LID.get(gid));
+				for(int y; (y = p.nextInt()) != -1;) consumer.accept(node(revIndex, y));
+			}
+			return;
+		}
+
+		final LazyIntIterator s = callGraph.graphs()[1].successors(lid(node));
+
+		/* In the predecessor case, all nodes returned by the graph are necessarily internal. */
+		for(int x; (x = s.nextInt()) != -1;) {
+			assert x < callGraph.nInternal;
+			consumer.accept(node(index, x));
+		}
+
+		/* To move backward in the call graph, we use GIDCalledBy to find revisions that might
+		 * contain external nodes of the form <gid, index>. */
+		final long gid = callGraph.LID2GID[lid(node)];
+		for(final LongIterator revisions = GIDCalledBy.get(gid).iterator(); revisions.hasNext();) {
+			final long revIndex = revisions.nextLong();
+			if (resolver != null && !resolver.apply(revIndex).contains(index)) continue;
+			final CallGraph precCallGraph = callGraphs.get(revIndex);
+			final LazyIntIterator p = precCallGraph.graphs()[1].successors(precCallGraph.GID2LID.get(gid));
+			for(int y; (y = p.nextInt()) != -1;) consumer.accept(node(revIndex, y));
+		}
+	}
+
+	/** Returns the successors of a given node.
+	 *
+	 * @param node a node (say, corresponding to the pair [<code>index</code>, <code>LID</code>])
+	 * @return the list of all successors; these are obtained as follows: for every successor <code>x</code>
+	 * of <code>node</code> in the call graph
+	 * <ul>
+	 * 	<li>if <code>x</code> is internal, [<code>index</code>, <code>LID</code>] is a successor
+	 *  <li>if <code>x</code> is external and it corresponds to the GID <code>g</code> (which in turn corresponds to a
+	 *  generic {@link FastenURI}), we look at every index <code>otherIndex</code> where <code>g</code>
+	 *  appears, and let <code>otherLID</code> be the corresponding LID: then [<code>otherIndex</code>, <code>otherLID</code>]
+	 *  is a successor.
+	 * </ul>
+	 */
+	public ObjectList<Node> successors(final Node node) {
+		final ObjectList<Node> result = new ObjectArrayList<>();
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			successors(encode(node), x -> result.add(decode(x)));
+		} finally {
+			readLock.unlock();
+		}
+		return result;
+	}
+
+	/** Returns the predecessors of a given node.
+	 *
+	 * @param node a node (for the form [<code>index</code>, <code>LID</code>])
+	 * @return the list of all predecessors; these are obtained as follows:
+	 * <ul>
+	 * 	<li>for every predecessor <code>x</code>
+	 *  of <code>node</code> in the call graph, [<code>index</code>, <code>LID</code>] is a predecessor
+	 *  <li>let <code>g</code> be the GID of <code>node</code>: for every index <code>otherIndex</code>
+	 *  that calls <code>g</code> (i.e., where <code>g</code> is the GID of an external node),
+	 *  and for all the predecessors <code>x</code> of the node with GID <code>g</code> in <code>otherIndex</code>,
+	 *  [<code>otherIndex</code>, <code>x</code>] is a predecessor.
+	 * </ul>
+	 */
+	public ObjectList<Node> predecessors(final Node node) {
+		final ObjectList<Node> result = new ObjectArrayList<>();
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			predecessors(encode(node), x -> result.add(decode(x)));
+		} finally {
+			readLock.unlock();
+		}
+		return result;
+	}
+
+	/** Returns the node corresponding to a given (non-generic) {@link FastenURI}.
+	 *
+	 * <p>The revision is located using the {@value #REVISIONS} column family, and the node is then looked up
+	 * in the GID-to-LID map of its call graph, so the cost does not depend on the number of revisions in which the GID appears.
+	 *
+	 * @param fastenURI a {@link FastenURI} with version.
+	 * @return the corresponding node, or <code>null</code>.
+	 */
+	public Node fastenURI2Node(final FastenURI fastenURI) {
+		if (fastenURI.getVersion() == null) throw new IllegalArgumentException("The FASTEN URI must be versioned");
+		final FastenURI genericURI = FastenURI.createSchemeless(null, fastenURI.getRawProduct(), null, fastenURI.getRawNamespace(), fastenURI.getRawEntity());
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			final long gid = gid(genericURI);
+			if (gid == -1) return null;
+			final long index = revisionIndex(fastenURI.getRawProduct(), fastenURI.getVersion());
+			if (index == -1) return null;
+			final CallGraph callGraph = callGraphs.get(index);
+			final int lid = callGraph.GID2LID.get(gid);
+			return lid != -1 && lid < callGraph.nInternal ? new Node(gid, index) : null;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** Given a generic URI (one without a version), returns all the matching non-generic URIs.
+	 *
+	 * @param genericURI a generic URI.
+	 * @return the list of all non-generic URIs matching <code>genericURI</code>.
+	 */
+	public ObjectList<FastenURI> genericURI2URIs(final FastenURI genericURI) {
+		if (genericURI.getVersion() != null || genericURI.getScheme() != null) throw new IllegalArgumentException("The FASTEN URI must be generic and schemeless");
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			final long gid = gid(genericURI);
+			if (gid == -1) return null;
+			final ObjectArrayList<FastenURI> result = new ObjectArrayList<>();
+			for(final LongIterator revisions = GIDAppearsIn.get(gid).iterator(); revisions.hasNext();) result.add(FastenURI.createSchemeless(genericURI.getRawForge(), genericURI.getRawProduct(), callGraphs.get(revisions.nextLong()).version, genericURI.getRawNamespace(), genericURI.getRawEntity()));
+			return result;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** Performs a breadth-first visit of the knowledge base, forward or backward, using {@linkplain #node(long, int) encoded nodes}.
+	 *
+	 * <p>The caller must hold the read {@linkplain #lock lock}.
+	 *
+	 * @param start the encoded starting node.
+	 * @param forward if true, the visit follows {@linkplain #successors(long, LongConsumer) successors}; otherwise,
+	 * it follows {@linkplain #predecessors(long, LongConsumer) predecessors}.
+	 * @return the list of encoded visited nodes, in visit order.
+	 */
+	protected LongArrayList visit(final long start, final boolean forward) {
+		return visit(start, forward, null);
+	}
+
+	/** Performs a breadth-first visit of the knowledge base, forward or backward, using {@linkplain #node(long, int) encoded nodes}
+	 *  and resolving calls to external nodes only to some revisions.
+	 *
+	 * <p>The caller must hold the read {@linkplain #lock lock}.
+	 *
+	 * @param start the encoded starting node.
+	 * @param forward if true, the visit follows {@linkplain #successors(long, LongConsumer, LongFunction) successors}; otherwise,
+	 * it follows {@linkplain #predecessors(long, LongConsumer, LongFunction) predecessors}.
+	 * @param resolver a function mapping a revision index to the set of revisions to which its calls to external nodes can be resolved,
+	 * or {@code null} to resolve them to all revisions in which they appear.
+	 * @return the list of encoded visited nodes, in visit order.
+	 */
+	protected LongArrayList visit(final long start, final boolean forward, final LongFunction<LongSet> resolver) {
+		final GlobalCallGraph snapshot = this.snapshot;
+		if (resolver == null && snapshot != null && (forward ? deltaAppearsIn : deltaCalledBy).isEmpty() && lid(start) < callGraphs.get(index(start)).nInternal) {
+			// All revisions reachable from the starting node are in the snapshot
+			final int id = snapshot.id(start);
+			if (id != -1) return snapshot.visit(id, forward);
+		}
+
+		final LongOpenHashSet visited = new LongOpenHashSet();
+		final LongArrayList result = new LongArrayList();
+		// Visit queue
+		final LongArrayFIFOQueue queue = new LongArrayFIFOQueue();
+		final LongConsumer enqueue = x -> {
+			if (visited.add(x)) queue.enqueue(x);
+		};
+
+		enqueue.accept(start);
+		while(!queue.isEmpty()) {
+			final long node = queue.dequeueLong();
+			result.add(node);
+			if (forward) successors(node, enqueue, resolver);
+			else predecessors(node, enqueue, resolver);
+		}
+
+		return result;
+	}
+
+	/** Decodes a list of {@linkplain #node(long, int) encoded nodes} into a set of {@link Node} instances.
+	 *
+	 * @param nodes a list of encoded nodes.
+	 * @return the corresponding set of nodes, in the same order.
+	 */
+	private ObjectLinkedOpenHashSet<Node> decode(final LongArrayList nodes) {
+		final ObjectLinkedOpenHashSet<Node> result = new ObjectLinkedOpenHashSet<>(nodes.size());
+		for(final LongIterator iterator = nodes.iterator(); iterator.hasNext();) result.add(decode(iterator.nextLong()));
+		return result;
+	}
+
+	/** The set of all nodes that are reachable from <code>start</code>.
+	 *
+	 * @param start the starting node.
+	 * @return the set of all nodes for which there is a directed path from <code>start</code> to that node.
+	 */
+	public ObjectLinkedOpenHashSet<Node> reaches(final Node start) {
+		return reaches(start, Resolution.ALL_VERSIONS);
+	}
+
+	/** The set of all nodes that are reachable from <code>start</code>, resolving calls to external nodes as specified.
+	 *
+	 * @param start the starting node.
+	 * @param resolution the way calls to external nodes are resolved to revisions.
+	 * @return the set of all nodes for which there is a directed path from <code>start</code> to that node.
+	 */
+	public ObjectLinkedOpenHashSet<Node> reaches(final Node start, final Resolution resolution) {
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return decode(visit(encode(start), true, resolver(resolution)));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** The set of all {@link FastenURI} that are reachable from a given {@link FastenURI}; just a convenience
+	 *  method to be used instead of {@link #reaches(Node)}.
+	 *
+	 * @param fastenURI the starting node.
+	 * @return all the nodes that can be reached from <code>fastenURI</code>.
+	 */
+	public Collection<FastenURI> reaches(final FastenURI fastenURI) {
+		return reaches(fastenURI, Resolution.ALL_VERSIONS);
+	}
+
+	/** The set of all {@link FastenURI} that are reachable from a given {@link FastenURI}, resolving calls to external nodes
+	 *  as specified; just a convenience method to be used instead of {@link #reaches(Node, Resolution)}.
+	 *
+	 * @param fastenURI the starting node.
+	 * @param resolution the way calls to external nodes are resolved to revisions.
+	 * @return all the nodes that can be reached from <code>fastenURI</code>.
+	 */
+	public Collection<FastenURI> reaches(final FastenURI fastenURI, final Resolution resolution) {
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			final Node start = fastenURI2Node(fastenURI);
+			if (start == null) return null;
+			return new NamedResult(visit(encode(start), true, resolver(resolution)));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** The set of all nodes that are coreachable from <code>start</code>.
+	 *
+	 * @param start the starting node.
+	 * @return the set of all nodes for which there is a directed path from that node to <code>start</code>.
+	 */
+	public ObjectLinkedOpenHashSet<Node> coreaches(final Node start) {
+		return coreaches(start, Resolution.ALL_VERSIONS);
+	}
+
+	/** The set of all nodes that are coreachable from <code>start</code>, resolving calls to external nodes as specified.
+	 *
+	 * @param start the starting node.
+	 * @param resolution the way calls to external nodes are resolved to revisions.
+	 * @return the set of all nodes for which there is a directed path from that node to <code>start</code>.
+	 */
+	public ObjectLinkedOpenHashSet<Node> coreaches(final Node start, final Resolution resolution) {
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return decode(visit(encode(start), false, resolver(resolution)));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** The set of all {@link FastenURI} that are coreachable from a given {@link FastenURI}; just a convenience
+	 *  method to be used instead of {@link #coreaches(Node)}.
+	 *
+	 * @param fastenURI the starting node.
+	 * @return all the nodes that can be coreached from <code>fastenURI</code>.
+	 */
+	public Collection<FastenURI> coreaches(final FastenURI fastenURI) {
+		return coreaches(fastenURI, Resolution.ALL_VERSIONS);
+	}
+
+	/** The set of all {@link FastenURI} that are coreachable from a given {@link FastenURI}, resolving calls to external nodes
+	 *  as specified; just a convenience method to be used instead of {@link #coreaches(Node, Resolution)}.
+	 *
+	 * @param fastenURI the starting node.
+	 * @param resolution the way calls to external nodes are resolved to revisions.
+	 * @return all the nodes that can be coreached from <code>fastenURI</code>.
+	 */
+	public Collection<FastenURI> coreaches(final FastenURI fastenURI, final Resolution resolution) {
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			final Node start = fastenURI2Node(fastenURI);
+			if (start == null) return null;
+			return new NamedResult(visit(encode(start), false, resolver(resolution)));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** Performs a visit considering only the revisions published at a given time; calls to external nodes are resolved to the newest
+	 *  versions satisfying the depset of the caller at that time.
+	 *
+	 * <p>The caller must hold the read {@linkplain #lock lock}.
+	 *
+	 * @param start the encoded starting node.
+	 * @param forward whether the visit is forward or backward.
+	 * @param timestamp a timestamp in seconds from UNIX Epoch.
+	 * @return the list of encoded visited nodes, in visit order, which is empty if the revision of <code>start</code> had not been
+	 * published at time <code>timestamp</code>.
+	 */
+	private LongArrayList visit(final long start, final boolean forward, final long timestamp) {
+		if (!published(callGraphs.get(index(start)), timestamp)) return new LongArrayList();
+		return visit(start, forward, resolver(timestamp));
+	}
+
+	/** The set of all nodes that were reachable from <code>start</code> at a given time.
+	 *
+	 * <p>Only revisions published at the given time (i.e., whose timestamp is not after it) are considered, and
+	 * each call to an external node is resolved to the newest version satisfying the depset of the caller among those
+	 * published at that time. Revisions without a timestamp are never considered.
+	 *
+	 * @param start the starting node.
+	 * @param timestamp a timestamp in seconds from UNIX Epoch.
+	 * @return the set of all nodes for which there was a directed path from <code>start</code> to that node at time <code>timestamp</code>
+	 * (empty if the revision of <code>start</code> had not been published at that time).
+	 */
+	public ObjectLinkedOpenHashSet<Node> reaches(final Node start, final long timestamp) {
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return decode(visit(encode(start), true, timestamp));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** The set of all {@link FastenURI} that were reachable from a given {@link FastenURI} at a given time; just a convenience
+	 *  method to be used instead of {@link #reaches(Node, long)}.
+	 *
+	 * @param fastenURI the starting node.
+	 * @param timestamp a timestamp in seconds from UNIX Epoch.
+	 * @return all the nodes that could be reached from <code>fastenURI</code> at time <code>timestamp</code>.
+	 */
+	public Collection<FastenURI> reaches(final FastenURI fastenURI, final long timestamp) {
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			final Node start = fastenURI2Node(fastenURI);
+			if (start == null) return null;
+			return new NamedResult(visit(encode(start), true, timestamp));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** The set of all nodes that were coreachable from <code>start</code> at a given time, with the same semantics as
+	 *  {@link #reaches(Node, long)}.
+	 *
+	 * @param start the starting node.
+	 * @param timestamp a timestamp in seconds from UNIX Epoch.
+	 * @return the set of all nodes for which there was a directed path from that node to <code>start</code> at time <code>timestamp</code>
+	 * (empty if the revision of <code>start</code> had not been published at that time).
+	 */
+	public ObjectLinkedOpenHashSet<Node> coreaches(final Node start, final long timestamp) {
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return decode(visit(encode(start), false, timestamp));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** The set of all {@link FastenURI} that were coreachable from a given {@link FastenURI} at a given time; just a convenience
+	 *  method to be used instead of {@link #coreaches(Node, long)}.
+	 *
+	 * @param fastenURI the starting node.
+	 * @param timestamp a timestamp in seconds from UNIX Epoch.
+	 * @return all the nodes that could be coreached from <code>fastenURI</code> at time <code>timestamp</code>.
+	 */
+	public Collection<FastenURI> coreaches(final FastenURI fastenURI, final long timestamp) {
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			final Node start = fastenURI2Node(fastenURI);
+			if (start == null) return null;
+			return new NamedResult(visit(encode(start), false, timestamp));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** A concurrent map from {@linkplain #node(long, int) encoded nodes} to the index of the source from which they were
+	 *  first reached, used as shared visit state by {@link KnowledgeBase#parallelVisit(long[], boolean)}. Keys are
+	 *  distributed over a fixed number of stripes, each protected by its own monitor.
+	 */
+	private static final class ConcurrentVisitMap {
+		/** The base-2 logarithm of the number of stripes. */
+		private static final int LOG2_STRIPES = 8;
+		/** The stripes. */
+		private final Long2IntOpenHashMap[] stripes = new Long2IntOpenHashMap[1 << LOG2_STRIPES];
+
+		private ConcurrentVisitMap() {
+			for(int i = 0; i < stripes.length; i++) {
+				stripes[i] = new Long2IntOpenHashMap();
+				stripes[i].defaultReturnValue(-1);
+			}
+		}
+
+		private Long2IntOpenHashMap stripe(final long node) {
+			return stripes[(int)(HashCommon.mix(node) >>> (64 - LOG2_STRIPES))];
+		}
+
+		/** Associates a source with a node, if the node has not been visited yet.
+		 *
+		 * @param node an encoded node.
+		 * @param source the index of a source.
+		 * @return true iff <code>node</code> had not been visited before.
+		 */
+		private boolean visit(final long node, final int source) {
+			final Long2IntOpenHashMap stripe = stripe(node);
+			synchronized(stripe) {
+				return stripe.putIfAbsent(node, source) == -1;
+			}
+		}
+
+		/** Returns the index of the source from which a visited node was reached.
+		 *
+		 * @param node an encoded node.
+		 * @return the index of the source from which <code>node</code> was reached, or -1 if <code>node</code> has not been visited.
+		 */
+		private int source(final long node) {
+			final Long2IntOpenHashMap stripe = stripe(node);
+			synchronized(stripe) {
+				return stripe.get(node);
+			}
+		}
+	}
+
+	/** The minimum number of frontier nodes that justifies splitting the expansion of a frontier in {@link #parallelVisit(long[], boolean)}. */
+	private static final int PARALLEL_VISIT_THRESHOLD = 64;
+
+	/** A task expanding a slice of the frontier of a {@linkplain #parallelVisit(long[], boolean) parallel visit},
+	 *  returning the newly visited nodes. */
+	private final class FrontierExpansion extends RecursiveTask<LongArrayList> {
+		private static final long serialVersionUID = 1L;
+		private final LongArrayList frontier;
+		private final int from, to;
+		private final ConcurrentVisitMap visited;
+		private final boolean forward;
+
+		private FrontierExpansion(final LongArrayList frontier, final int from, final int to, final ConcurrentVisitMap visited, final boolean forward) {
+			this.frontier = frontier;
+			this.from = from;
+			this.to = to;
+			this.visited = visited;
+			this.forward = forward;
+		}
+
+		@Override
+		protected LongArrayList compute() {
+			if (to - from <= PARALLEL_VISIT_THRESHOLD) {
+				final LongArrayList next = new LongArrayList();
+				for(int i = from; i < to; i++) {
+					final long node = frontier.getLong(i);
+					final int source = visited.source(node);
+					final LongConsumer enqueue = x -> {
+						if (visited.visit(x, source)) next.add(x);
+					};
+					if (forward) successors(node, enqueue);
+					else predecessors(node, enqueue);
+				}
+				return next;
+			}
+			final int mid = (from + to) >>> 1;
+			final FrontierExpansion right = new FrontierExpansion(frontier, mid, to, visited, forward);
+			right.fork();
+			final LongArrayList next = new FrontierExpansion(frontier, from, mid, visited, forward).compute();
+			next.addAll(right.join());
+			return next;
+		}
+	}
+
+	/** Performs a level-synchronous, parallel breadth-first visit of the knowledge base, forward or backward, from
+	 *  a set of sources, using {@linkplain #node(long, int) encoded nodes}.
+	 *
+	 *  <p>All sources share the same visit state, so every node is visited once, no matter how many sources reach it. At each level,
+	 *  the expansion of the frontier is split among the workers of the {@linkplain ForkJoinPool#commonPool() common pool}.
+	 *
+	 * <p>The caller must hold the read {@linkplain #lock lock}.
+	 *
+	 * @param sources the encoded sources.
+	 * @param forward if true, the visit follows {@linkplain #successors(long, LongConsumer) successors}; otherwise,
+	 * it follows {@linkplain #predecessors(long, LongConsumer) predecessors}.
+	 * @return a map from the encoded visited nodes, in visit order, to the index in <code>sources</code> of a source from which they are
+	 * reachable (or coreachable).
+	 */
+	protected Long2IntLinkedOpenHashMap parallelVisit(final long[] sources, final boolean forward) {
+		final ConcurrentVisitMap visited = new ConcurrentVisitMap();
+		LongArrayList frontier = new LongArrayList();
+		for(int i = 0; i < sources.length; i++) if (visited.visit(sources[i], i)) frontier.add(sources[i]);
+
+		final Long2IntLinkedOpenHashMap result = new Long2IntLinkedOpenHashMap();
+		while(!frontier.isEmpty()) {
+			for(final LongIterator iterator = frontier.iterator(); iterator.hasNext();) {
+				final long node = iterator.nextLong();
+				result.put(node, visited.source(node));
+			}
+			frontier = ForkJoinPool.commonPool().invoke(new FrontierExpansion(frontier, 0, frontier.size(), visited, forward));
+		}
+
+		return result;
+	}
+
+	/** Runs a {@linkplain #parallelVisit(long[], boolean) parallel visit} from a list of nodes.
+	 *
+	 * @param starts the starting nodes.
+	 * @param forward whether the visit is forward or backward.
+	 * @return a map from all visited nodes, in visit order, to the index in <code>starts</code> of a node from which they are
+	 * reachable (or coreachable).
+	 */
+	private Object2IntLinkedOpenHashMap<Node> parallelVisit(final Collection<Node> starts, final boolean forward) {
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			final long[] sources = new long[starts.size()];
+			int i = 0;
+			for(final Node start : starts) sources[i++] = encode(start);
+			final Long2IntLinkedOpenHashMap visited = parallelVisit(sources, forward);
+			final Object2IntLinkedOpenHashMap<Node> result = new Object2IntLinkedOpenHashMap<>(visited.size());
+			for(final Long2IntMap.Entry e : visited.long2IntEntrySet()) result.put(decode(e.getLongKey()), e.getIntValue());
+			return result;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/** The set of all nodes that are reachable from at least one node in <code>starts</code>. The visit
+	 *  is performed in parallel, and it is equivalent to (but much faster than) the union of the results
+	 *  of {@link #reaches(Node)} on each starting node.
+	 *
+	 * @param starts the starting nodes.
+	 * @return the set of all nodes for which there is a directed path from a node in <code>starts</code> to that node.
+	 */
+	public ObjectLinkedOpenHashSet<Node> reaches(final Collection<Node> starts) {
+		return new ObjectLinkedOpenHashSet<>(parallelVisit(starts, true).keySet());
+	}
+
+	/** The set of all nodes that are coreachable from at least one node in <code>starts</code>. The visit
+	 *  is performed in parallel, and it is equivalent to (but much faster than) the union of the results
+	 *  of {@link #coreaches(Node)} on each starting node.
+	 *
+	 * @param starts the starting nodes.
+	 * @return the set of all nodes for which there is a directed path from that node to a node in <code>starts</code>.
+	 */
+	public ObjectLinkedOpenHashSet<Node> coreaches(final Collection<Node> starts) {
+		return new ObjectLinkedOpenHashSet<>(parallelVisit(starts, false).keySet());
+	}
+
+	/** Like {@link #reaches(Collection)}, but tags each reachable node with a starting node that reaches it.
+	 *
+	 * @param starts the starting nodes.
+	 * @return a map from all nodes reachable from a node in <code>starts</code> to the index in <code>starts</code>
+	 * of a starting node from which they are reachable.
+	 */
+	public Object2IntLinkedOpenHashMap<Node> reachesBySource(final List<Node> starts) {
+		return parallelVisit(starts, true);
+	}
+
+	/** Like {@link #coreaches(Collection)}, but tags each coreachable node with a starting node it reaches.
+	 *
+	 * @param starts the starting nodes.
+	 * @return a map from all nodes coreachable from a node in <code>starts</code> to the index in <code>starts</code>
+	 * of a starting node to which they have a directed path.
+	 */
+	public Object2IntLinkedOpenHashMap<Node> coreachesBySource(final List<Node> starts) {
+		return parallelVisit(starts, false);
+	}
+
+	/** Adds a new {@link CallGraph} to the list of all call graphs.
+	 *
+	 * @param g the revision call graph from which the call graph will be created.
+	 * @param index the revision index to which the new call graph will be associated.
+	 * @throws IOException
+	 * @throws RocksDBException
+	 */
+	public void add(final RevisionCallGraph g, final long index) throws IOException, RocksDBException {
+		add(Collections.singletonList(prepare(g)), index);
+	}
+
+	/** Adds a list of {@linkplain #prepare(RevisionCallGraph) prepared} call graphs, with consecutive revision indices, in a single write batch:
+	 *  either all or none of them are committed.
+	 *
+	 * @param graphs the prepared call graphs.
+	 * @param index the revision index to which the first call graph will be associated.
+	 * @throws IOException
+	 * @throws RocksDBException
+	 */
+	public void add(final List<PreparedCallGraph> graphs, final long index) throws IOException, RocksDBException {
+		final Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			batchURIs.clear();
+			final CallGraph[] callGraphs = new CallGraph[graphs.size()];
+			try (WriteBatch batch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions()) {
+				for(int i = 0; i < callGraphs.length; i++) callGraphs[i] = new CallGraph(graphs.get(i), index + i, batch);
+				callGraphDB.write(writeOptions, batch);
+			} catch (final IOException | RocksDBException | RuntimeException e) {
+				// Nothing was committed: forget the URIs we persisted, and the posting lists we updated
+				persistedURIs.removeAll(batchURIs);
+				GIDAppearsIn.invalidate();
+				GIDCalledBy.invalidate();
+				throw e;
+			}
+
+			// The batch has been written: publish it
+			GIDAppearsIn.commit();
+			GIDCalledBy.commit();
+			for(int i = 0; i < callGraphs.length; i++) {
+				this.callGraphs.put(index + i, callGraphs[i]);
+				graphCache.invalidate(Long.valueOf(index + i));
+				added(index + i, callGraphs[i].LID2GID, callGraphs[i].nInternal);
+			}
+			resolvedDependencies.invalidateAll();
+			timelines.invalidateAll();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** Adds in bulk a sequence of {@linkplain #prepare(RevisionCallGraph) prepared} call graphs, with consecutive revision indices.
+	 *
+	 *  <p>Rather than through write batches, data is written to SST files in a temporary directory, which are then ingested in the database,
+	 *  bypassing the write-ahead log and the memtables; automatic compactions are disabled during the load. Graphs and metadata are streamed
+	 *  to their files, whereas the additions to the posting lists are accumulated in memory and merged with the stored lists in one sorted pass
+	 *  at the end (see {@link RevisionPostings#ingest(Long2ObjectMap, File, Options)}).
+	 *
+	 *  <p>A bulk load holds the write lock for its whole duration, and it is not atomic: if it fails, the database might contain part of it,
+	 *  and it is consistent again only after the same call graphs have been added again with the same revision indices.
+	 *
+	 * @param graphs an iterator returning the prepared call graphs.
+	 * @param index the revision index to which the first call graph will be associated.
+	 * @param tempDir a directory for temporary files, or {@code null} for the default temporary directory.
+	 * @return the number of call graphs added.
+	 */
+	public long bulkAdd(final Iterator<PreparedCallGraph> graphs, final long index, final File tempDir) throws IOException, RocksDBException {
+		final Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		// One file per column family
+		final File[] files = new File[COLUMN_FAMILIES.length];
+		try (EnvOptions envOptions = new EnvOptions(); DBOptions dbOptions = new DBOptions(); Options options = new Options(dbOptions, columnFamilyOptions)) {
+			setAutoCompactions(false);
+			for(int i = 0; i < files.length; i++) files[i] = File.createTempFile(KnowledgeBase.class.getSimpleName(), ".sst", tempDir);
+
+			final Long2ObjectOpenHashMap<LongArrayList> appearsIn = new Long2ObjectOpenHashMap<>(), calledBy = new Long2ObjectOpenHashMap<>();
+			final LongOpenHashSet newURIs = new LongOpenHashSet();
+			// Later revisions with the same product and version replace earlier ones, as in add()
+			final TreeMap<byte[], byte[]> revisions = new TreeMap<>(UnsignedBytes.lexicographicalComparator());
+			final TreeMap<byte[], byte[]> timeline = new TreeMap<>(UnsignedBytes.lexicographicalComparator());
+			long n = 0;
+			try (SstFileWriter graphWriter = new SstFileWriter(envOptions, options); SstFileWriter metadataWriter = new SstFileWriter(envOptions, options)) {
+				graphWriter.open(files[0].toString());
+				metadataWriter.open(files[1].toString());
+				for(; graphs.hasNext(); n++) {
+					final PreparedCallGraph g = graphs.next();
+					final CallGraph callGraph = new CallGraph(g, index + n);
+					for(int lid = 0; lid < g.LID2GID.length; lid++) {
+						final long gid = g.LID2GID[lid];
+						if (gid >= genericURIs.frozenSize() && !persistedURIs.contains(gid)) newURIs.add(gid);
+						(lid < g.nInternal ? appearsIn : calledBy).computeIfAbsent(gid, x -> new LongArrayList()).add(index + n);
+					}
+					graphWriter.put(Longs.toByteArray(index + n), g.graphs);
+					metadataWriter.put(Longs.toByteArray(index + n), callGraph.metadata());
+					if (g.version != null) revisions.put(revisionKey(g.product, g.version), Longs.toByteArray(index + n));
+					if (g.version != null && g.timestamp >= 0) timeline.put(timelineKey(g.product, g.timestamp, index + n), g.version.getBytes(StandardCharsets.UTF_8));
+				}
+				if (n == 0) return 0;
+				graphWriter.finish();
+				metadataWriter.finish();
+			}
+
+			final long[] uris = newURIs.toLongArray();
+			Arrays.sort(uris);
+			if (uris.length != 0) {
+				try (SstFileWriter writer = new SstFileWriter(envOptions, options)) {
+					writer.open(files[4].toString());
+					for(final long gid : uris) writer.put(Longs.toByteArray(gid), genericURIs.get(gid).getBytes(StandardCharsets.UTF_8));
+					writer.finish();
+				}
+			}
+			if (!revisions.isEmpty()) {
+				try (SstFileWriter writer = new SstFileWriter(envOptions, options)) {
+					writer.open(files[6].toString());
+					for(final var e : revisions.entrySet()) writer.put(e.getKey(), e.getValue());
+					writer.finish();
+				}
+			}
+			if (!timeline.isEmpty()) {
+				try (SstFileWriter writer = new SstFileWriter(envOptions, options)) {
+					writer.open(files[7].toString());
+					for(final var e : timeline.entrySet()) writer.put(e.getKey(), e.getValue());
+					writer.finish();
+				}
+			}
+
+			// The metadata, which make revisions visible, are ingested last
+			if (uris.length != 0) ingest(4, files[4]);
+			GIDAppearsIn.ingest(appearsIn, files[2], options);
+			GIDCalledBy.ingest(calledBy, files[3], options);
+			if (!revisions.isEmpty()) ingest(6, files[6]);
+			if (!timeline.isEmpty()) ingest(7, files[7]);
+			ingest(0, files[0]);
+			ingest(1, files[1]);
+
+			persistedURIs.addAll(LongArrayList.wrap(uris));
+			for(long i = 0; i < n; i++) {
+				((CallGraphMap)callGraphs).register(index + i);
+				graphCache.invalidate(Long.valueOf(index + i));
+			}
+			// As in add(), the snapshot is updated only after the revisions have been written
+			added(index, n, appearsIn.keySet(), calledBy.keySet());
+			return n;
+		} finally {
+			// Even a failed bulk load might have changed the indexed versions
+			resolvedDependencies.invalidateAll();
+			timelines.invalidateAll();
+			for(final File file : files) if (file != null) file.delete();
+			try {
+				setAutoCompactions(true);
+			} finally {
+				writeLock.unlock();
+			}
+		}
+	}
+
+	/** Ingests an SST file in a column family, moving it into the database if possible.
+	 *
+	 * @param columnFamily the index of the column family in {@link #COLUMN_FAMILIES}.
+	 * @param file the SST file.
+	 */
+	private void ingest(final int columnFamily, final File file) throws RocksDBException {
+		try (IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions()) {
+			ingestOptions.setMoveFiles(true);
+			callGraphDB.ingestExternalFile(columnFamilies.get(columnFamily), Collections.singletonList(file.toString()), ingestOptions);
+		}
+	}
+
+	/** Enables or disables automatic compactions in all column families.
+	 *
+	 * @param enabled whether automatic compactions should be enabled.
+	 */
+	private void setAutoCompactions(final boolean enabled) throws RocksDBException {
+		final MutableColumnFamilyOptions options = MutableColumnFamilyOptions.builder().setDisableAutoCompactions(!enabled).build();
+		for(final ColumnFamilyHandle columnFamily : columnFamilies) callGraphDB.setOptions(columnFamily, options);
+	}
+
+	/** Checkpoints the URI dictionary and closes the database.
+	 *
+	 * <p>The URIs added since the last checkpoint are frozen in the memory-mapped file, and the dictionary is stored in the {@value #METADATA}
+	 * column family; the URIs are then removed from the {@value #URIS} column family. All other metadata has already been stored by
+	 * {@link #add(List, long)}. No call graph can be being {@linkplain #prepare(RevisionCallGraph) prepared} during this call.
+	 */
+	@Override
+	public void close() throws IOException {
+		final Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try (WriteOptions writeOptions = new WriteOptions()) {
+			genericURIs.freeze(new File(metadataPathname + URIS_EXTENSION));
+			writeOptions.setSync(true);
+			callGraphDB.put(columnFamilies.get(5), writeOptions, URIS_CHECKPOINT_KEY, SerializationUtils.serialize(genericURIs));
+			callGraphDB.deleteRange(columnFamilies.get(4), Longs.toByteArray(0), Longs.toByteArray(genericURIs.frozenSize()));
+		} catch (final RocksDBException e) {
+			throw new IOException(e);
+		} finally {
+			for(final ColumnFamilyHandle columnFamily : columnFamilies) columnFamily.close();
+			callGraphDB.close();
+			columnFamilyOptions.close();
+			writeLock.unlock();
+		}
+	}
+
+	/** The number of call graphs.
+	 *
+	 * @return the number of call graphs.
+	 */
+	public long size() {
+		final Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return callGraphs.size();
+		} finally {
+			readLock.unlock();
+		}
 	}
 
 	/** Return the permutation induced by the visit order of a depth-first visit.
@@ -742,7 +2481,10 @@ public class KnowledgeBase implements Serializable, Closeable {
 	 * @param startingNode the only starting node of the visit, or -1 for a complete visit.
 	 * @param internalNodes number of internal nodes in the graph
 	 * @return  the permutation induced by the visit order of a depth-first visit.
+	 * @deprecated The returned array lists the nodes in visit order, and it is thus the inverse of the permutation expected by
+	 * {@link Transform#map(ImmutableGraph, int[])}; use {@link NodeOrdering#BFS} instead.
 	 */
+	@Deprecated
 	public static int[] bfsperm(final ImmutableGraph graph, final int startingNode, final int internalNodes) {
 		final int n = graph.numNodes();
 
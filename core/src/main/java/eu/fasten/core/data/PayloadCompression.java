@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kafka.common.errors.SerializationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.martiansoftware.jsap.FlaggedOption;
+import com.martiansoftware.jsap.JSAP;
+import com.martiansoftware.jsap.JSAPException;
+import com.martiansoftware.jsap.JSAPResult;
+import com.martiansoftware.jsap.Parameter;
+import com.martiansoftware.jsap.SimpleJSAP;
+import com.martiansoftware.jsap.UnflaggedOption;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/** A payload-compression layer for call-graph records (or any other binary or text payload).
+ *
+ *  <p>Payloads are compressed into self-describing frames: a frame starts with {@link #MAGIC}, followed by the {@linkplain Codec codec},
+ *  by the identifier of the dictionary used for compression (zero if no dictionary was used), and by the length of the uncompressed
+ *  payload, all of which are needed to decompress it. Thus, consumers can always tell compressed from uncompressed payloads
+ *  (neither JSON nor {@linkplain RevisionCallGraphCodec encoded} call graphs start with {@link #MAGIC}), and records compressed with
+ *  different codecs or dictionaries can coexist in the same topic or file, provided that consumers know all dictionaries.
+ *
+ *  <p>{@linkplain Codec#ZSTD Zstandard} with a dictionary {@linkplain #trainDictionary(Iterator, int, int) trained} on a sample of the
+ *  corpus is the codec of choice for call graphs, as the same namespaces, types and method signatures recur across revisions, but
+ *  a single revision is too small for the compressor to learn them; {@linkplain Codec#LZ4 LZ4} trades ratio for speed on latency-sensitive paths.
+ *
+ *  <p>The nested {@link Serializer} and {@link Deserializer} make the layer available to Kafka clients exchanging strings; they are configured by
+ *  the properties {@link #CODEC_CONFIG}, {@link #LEVEL_CONFIG} and {@link #DICTIONARIES_CONFIG}. Since payloads are compressed individually,
+ *  the Kafka compression type of producers using the serializer should be {@code none}.
+ */
+public class PayloadCompression {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PayloadCompression.class);
+
+	/** The magic bytes at the start of every frame. */
+	public static final byte[] MAGIC = { 'F', 'C', 'Z' };
+	/** The length of the frame header: magic, codec, dictionary identifier, uncompressed length. */
+	private static final int HEADER_LENGTH = MAGIC.length + 1 + Integer.BYTES + Integer.BYTES;
+	/** The default Zstandard compression level. */
+	public static final int DEFAULT_LEVEL = 3;
+	/** The default size in bytes of a trained dictionary. */
+	public static final int DEFAULT_DICTIONARY_SIZE = 112 * 1024;
+	/** The default maximum length in bytes of an uncompressed payload (256 MiB). */
+	public static final int DEFAULT_MAX_LENGTH = 1 << 28;
+	/** The maximum compression ratio of an LZ4 block. */
+	private static final int LZ4_MAX_RATIO = 255;
+
+	/** The Kafka client property specifying the {@linkplain Codec codec} used by the {@link Serializer}. */
+	public static final String CODEC_CONFIG = "fasten.compression.codec";
+	/** The Kafka client property specifying the Zstandard compression level used by the {@link Serializer}. */
+	public static final String LEVEL_CONFIG = "fasten.compression.level";
+	/** The Kafka client property specifying a comma-separated list of dictionary files; the first one is used for compression. */
+	public static final String DICTIONARIES_CONFIG = "fasten.compression.dictionaries";
+	/** The Kafka client property specifying the maximum length in bytes of an uncompressed payload accepted by the {@link Deserializer}. */
+	public static final String MAX_LENGTH_CONFIG = "fasten.compression.max.length";
+
+	/** The available codecs. Their ordinal is recorded in frames, so new codecs must be added at the end. */
+	public enum Codec {
+		/** Payloads are framed but not compressed. */
+		NONE,
+		/** LZ4 block compression, for latency-sensitive paths. */
+		LZ4,
+		/** Zstandard compression, optionally with a dictionary. */
+		ZSTD
+	}
+
+	/** The codec used for compression. */
+	private final Codec codec;
+	/** The Zstandard compression level. */
+	private final int level;
+	/** The identifier of the dictionary used for compression, or zero. */
+	private final int dictionaryId;
+	/** The dictionary used for compression, or {@code null}. */
+	private final ZstdDictCompress compressionDictionary;
+	/** The known dictionaries, indexed by their identifier. */
+	private final Int2ObjectOpenHashMap<ZstdDictDecompress> decompressionDictionaries = new Int2ObjectOpenHashMap<>();
+	/** The LZ4 instance used for compression and decompression. */
+	private final LZ4Factory lz4 = LZ4Factory.fastestInstance();
+	/** The maximum length in bytes of an uncompressed payload: frames declaring a larger length are rejected before allocating it. */
+	private volatile int maxLength = DEFAULT_MAX_LENGTH;
+
+	/** Creates a payload-compression layer using the {@linkplain #DEFAULT_LEVEL default level}.
+	 *
+	 * @param codec the codec used for compression.
+	 * @param dictionaries the known dictionaries; if the codec is {@link Codec#ZSTD}, the first one, if any, is used for compression.
+	 */
+	public PayloadCompression(final Codec codec, final byte[]... dictionaries) {
+		this(codec, DEFAULT_LEVEL, dictionaries);
+	}
+
+	/** Creates a payload-compression layer.
+	 *
+	 * @param codec the codec used for compression.
+	 * @param level the Zstandard compression level (ignored by other codecs).
+	 * @param dictionaries the known dictionaries; if the codec is {@link Codec#ZSTD}, the first one, if any, is used for compression.
+	 */
+	public PayloadCompression(final Codec codec, final int level, final byte[]... dictionaries) {
+		this.codec = codec;
+		this.level = level;
+		for (final byte[] dictionary : dictionaries) {
+			final int id = dictionaryId(dictionary);
+			if (decompressionDictionaries.containsKey(id)) throw new IllegalArgumentException("Duplicate dictionary identifier " + Integer.toUnsignedString(id));
+			decompressionDictionaries.put(id, new ZstdDictDecompress(dictionary));
+		}
+		if (codec == Codec.ZSTD && dictionaries.length > 0) {
+			dictionaryId = dictionaryId(dictionaries[0]);
+			compressionDictionary = new ZstdDictCompress(dictionaries[0], level);
+		} else {
+			dictionaryId = 0;
+			compressionDictionary = null;
+		}
+	}
+
+	/** Returns the identifier of a dictionary: the one stored in trained dictionaries or, for raw-content dictionaries, a nonzero checksum.
+	 *
+	 * @param dictionary a dictionary.
+	 * @return its identifier.
+	 */
+	public static int dictionaryId(final byte[] dictionary) {
+		final long id = Zstd.getDictIdFromDict(dictionary);
+		if (id != 0) return (int)id;
+		final CRC32 crc = new CRC32();
+		crc.update(dictionary);
+		return (int)crc.getValue() | 1;
+	}
+
+	/** Sets the maximum length in bytes of an uncompressed payload; since frames are untrusted input, frames declaring a larger length
+	 *  are rejected before allocating it.
+	 *
+	 * @param maxLength the maximum length in bytes of an uncompressed payload.
+	 */
+	public void setMaxLength(final int maxLength) {
+		if (maxLength < 0) throw new IllegalArgumentException("Negative maximum length " + maxLength);
+		this.maxLength = maxLength;
+	}
+
+	/** Returns the codec used for compression.
+	 *
+	 * @return the codec used for compression.
+	 */
+	public Codec codec() {
+		return codec;
+	}
+
+	/** Returns whether a payload is a compressed frame.
+	 *
+	 * @param payload a payload.
+	 * @return true if <code>payload</code> starts with {@link #MAGIC}.
+	 */
+	public static boolean isCompressed(final byte[] payload) {
+		return payload.length >= HEADER_LENGTH && Arrays.equals(MAGIC, 0, MAGIC.length, payload, 0, MAGIC.length);
+	}
+
+	/** Returns whether a stream contains a compressed frame, without consuming it.
+	 *
+	 * @param is an input stream supporting {@linkplain InputStream#mark(int) marks}.
+	 * @return true if the next bytes of <code>is</code> are {@link #MAGIC}.
+	 */
+	public static boolean isCompressed(final InputStream is) throws IOException {
+		is.mark(MAGIC.length);
+		try {
+			return Arrays.equals(MAGIC, is.readNBytes(MAGIC.length));
+		} finally {
+			is.reset();
+		}
+	}
+
+	/** Returns the codec recorded in a frame.
+	 *
+	 * @param frame a compressed frame.
+	 * @return the codec used to compress it.
+	 */
+	public static Codec codec(final byte[] frame) throws IOException {
+		if (!isCompressed(frame)) throw new IOException("Not a compressed frame");
+		final int codec = frame[MAGIC.length];
+		if (codec < 0 || codec >= Codec.values().length) throw new IOException("Unknown codec " + codec);
+		return Codec.values()[codec];
+	}
+
+	/** Returns the identifier of the dictionary recorded in a frame.
+	 *
+	 * @param frame a compressed frame.
+	 * @return the identifier of the dictionary used to compress it, or zero if no dictionary was used.
+	 */
+	public static int frameDictionaryId(final byte[] frame) throws IOException {
+		if (!isCompressed(frame)) throw new IOException("Not a compressed frame");
+		return ByteBuffer.wrap(frame).getInt(MAGIC.length + 1);
+	}
+
+	/** Compresses a payload into a frame.
+	 *
+	 * @param payload a payload.
+	 * @return a frame containing the compressed payload.
+	 */
+	public byte[] compress(final byte[] payload) {
+		final byte[] body;
+		switch (codec) {
+		case NONE:
+			body = payload;
+			break;
+		case LZ4:
+			body = lz4.fastCompressor().compress(payload);
+			break;
+		case ZSTD:
+			body = compressionDictionary == null ? Zstd.compress(payload, level) : Zstd.compress(payload, compressionDictionary);
+			break;
+		default:
+			throw new AssertionError();
+		}
+		final ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + body.length);
+		frame.put(MAGIC).put((byte)codec.ordinal()).putInt(dictionaryId).putInt(payload.length).put(body);
+		return frame.array();
+	}
+
+	/** Decompresses a frame.
+	 *
+	 * @param frame a frame returned by {@link #compress(byte[])}, possibly by a layer using a different codec.
+	 * @return the uncompressed payload.
+	 * @throws IOException if <code>frame</code> is not a valid frame, if it was compressed with an unknown dictionary, or if its payload
+	 * is longer than the {@linkplain #setMaxLength(int) maximum length}.
+	 */
+	public byte[] decompress(final byte[] frame) throws IOException {
+		final Codec codec = codec(frame);
+		final ByteBuffer buffer = ByteBuffer.wrap(frame);
+		final int dictionaryId = buffer.getInt(MAGIC.length + 1);
+		final int length = buffer.getInt(MAGIC.length + 1 + Integer.BYTES);
+		if (length < 0) throw new IOException("Negative payload length " + length);
+		// The length comes from the frame: check it before allocating
+		if (length > maxLength) throw new IOException("Payload length " + length + " exceeds the maximum length " + maxLength);
+		try {
+			switch (codec) {
+			case NONE:
+				if (frame.length - HEADER_LENGTH != length) throw new IOException("Wrong payload length " + (frame.length - HEADER_LENGTH) + " (expected " + length + ")");
+				return Arrays.copyOfRange(frame, HEADER_LENGTH, frame.length);
+			case LZ4:
+				if (length > (long)LZ4_MAX_RATIO * (frame.length - HEADER_LENGTH)) throw new IOException("Payload length " + length + " exceeds the maximum LZ4 ratio for " + (frame.length - HEADER_LENGTH) + " compressed bytes");
+				// The fast decompressor is not safe on malicious input
+				final LZ4SafeDecompressor decompressor = lz4.safeDecompressor();
+				final byte[] payload = new byte[length];
+				final int decompressed = decompressor.decompress(frame, HEADER_LENGTH, frame.length - HEADER_LENGTH, payload, 0, length);
+				if (decompressed != length) throw new IOException("Wrong payload length " + decompressed + " (expected " + length + ")");
+				return payload;
+			case ZSTD:
+				final byte[] result = new byte[length];
+				final long size;
+				if (dictionaryId == 0) size = Zstd.decompressByteArray(result, 0, length, frame, HEADER_LENGTH, frame.length - HEADER_LENGTH);
+				else {
+					final ZstdDictDecompress dictionary = decompressionDictionaries.get(dictionaryId);
+					if (dictionary == null) throw new IOException("Unknown dictionary " + Integer.toUnsignedString(dictionaryId));
+					size = Zstd.decompressFastDict(result, 0, frame, HEADER_LENGTH, frame.length - HEADER_LENGTH, dictionary);
+				}
+				if (Zstd.isError(size)) throw new IOException(Zstd.getErrorName(size));
+				if (size != length) throw new IOException("Wrong payload length " + size + " (expected " + length + ")");
+				return result;
+			default:
+				throw new AssertionError();
+			}
+		} catch (final RuntimeException e) {
+			// LZ4 and Zstandard signal corrupted input with unchecked exceptions
+			throw new IOException(e);
+		}
+	}
+
+	/** Decompresses a payload, if it is a frame.
+	 *
+	 * @param payload a payload.
+	 * @return <code>payload</code>, if it is not a frame, or the uncompressed payload.
+	 */
+	public byte[] decompressIfNeeded(final byte[] payload) throws IOException {
+		return isCompressed(payload) ? decompress(payload) : payload;
+	}
+
+	/** Trains a Zstandard dictionary on a sample of payloads.
+	 *
+	 * @param samples an iterator returning the sample payloads; it is not consumed beyond <code>sampleSize</code> bytes.
+	 * @param sampleSize the maximum overall size in bytes of the sample.
+	 * @param dictionarySize the maximum size in bytes of the dictionary.
+	 * @return the trained dictionary.
+	 */
+	public static byte[] trainDictionary(final Iterator<byte[]> samples, final int sampleSize, final int dictionarySize) {
+		final ZstdDictTrainer trainer = new ZstdDictTrainer(sampleSize, dictionarySize);
+		int n = 0;
+		while (samples.hasNext() && trainer.addSample(samples.next())) n++;
+		LOGGER.info("Training a dictionary of at most " + dictionarySize + " bytes on " + n + " samples");
+		return trainer.trainSamples();
+	}
+
+	/** Creates a payload-compression layer from the configuration of a Kafka client.
+	 *
+	 * @param configs the configuration of a Kafka client.
+	 * @return a layer configured by {@link #CODEC_CONFIG} (default: {@link Codec#ZSTD}), {@link #LEVEL_CONFIG}, {@link #DICTIONARIES_CONFIG}
+	 * and {@link #MAX_LENGTH_CONFIG}.
+	 */
+	public static PayloadCompression fromConfig(final Map<String, ?> configs) {
+		final Object codec = configs.get(CODEC_CONFIG), level = configs.get(LEVEL_CONFIG), dictionaries = configs.get(DICTIONARIES_CONFIG), maxLength = configs.get(MAX_LENGTH_CONFIG);
+		final String[] files = dictionaries == null || dictionaries.toString().isEmpty() ? new String[0] : dictionaries.toString().split(",");
+		final byte[][] dictionary = new byte[files.length][];
+		try {
+			for (int i = 0; i < files.length; i++) dictionary[i] = FileUtils.readFileToByteArray(new File(files[i].trim()));
+		} catch (final IOException e) {
+			throw new SerializationException("Cannot read dictionary", e);
+		}
+		final PayloadCompression compression = new PayloadCompression(codec == null ? Codec.ZSTD : Codec.valueOf(codec.toString().toUpperCase()),
+				level == null ? DEFAULT_LEVEL : Integer.parseInt(level.toString()), dictionary);
+		if (maxLength != null) compression.setMaxLength(Integer.parseInt(maxLength.toString()));
+		return compression;
+	}
+
+	/** A Kafka serializer compressing the UTF-8 encoding of strings. */
+	public static class Serializer implements org.apache.kafka.common.serialization.Serializer<String> {
+		private PayloadCompression compression;
+
+		@Override
+		public void configure(final Map<String, ?> configs, final boolean isKey) {
+			compression = fromConfig(configs);
+		}
+
+		@Override
+		public byte[] serialize(final String topic, final String data) {
+			return data == null ? null : compression.compress(data.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/** A Kafka deserializer returning strings from compressed frames; values that are not frames are decoded as UTF-8, so that
+	 *  consumers can read topics containing both compressed and uncompressed records. */
+	public static class Deserializer implements org.apache.kafka.common.serialization.Deserializer<String> {
+		private PayloadCompression compression;
+
+		@Override
+		public void configure(final Map<String, ?> configs, final boolean isKey) {
+			compression = fromConfig(configs);
+		}
+
+		@Override
+		public String deserialize(final String topic, final byte[] data) {
+			if (data == null) return null;
+			try {
+				return new String(compression.decompressIfNeeded(data), StandardCharsets.UTF_8);
+			} catch (final IOException e) {
+				throw new SerializationException("Cannot decompress record from topic " + topic, e);
+			}
+		}
+	}
+
+	public static void main(final String[] args) throws JSAPException, IOException {
+		final SimpleJSAP jsap = new SimpleJSAP(PayloadCompression.class.getName(),
+				"Trains a Zstandard dictionary for call-graph payloads on a sample of files (JSON or encoded call graphs, possibly compressed).",
+				new Parameter[] {
+						new FlaggedOption("sampleSize", JSAP.INTSIZE_PARSER, "100Mi", JSAP.NOT_REQUIRED, 's', "sample-size", "The maximum overall size of the sample." ),
+						new FlaggedOption("dictionarySize", JSAP.INTSIZE_PARSER, String.valueOf(DEFAULT_DICTIONARY_SIZE), JSAP.NOT_REQUIRED, 'd', "dictionary-size", "The maximum size of the dictionary." ),
+						new UnflaggedOption("dictionary", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.NOT_GREEDY, "The file where the dictionary will be stored." ),
+						new UnflaggedOption("filename", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.GREEDY, "The files of the sample." ),
+		});
+
+		final JSAPResult jsapResult = jsap.parse(args);
+		if ( jsap.messagePrinted() ) return;
+
+		final PayloadCompression compression = new PayloadCompression(Codec.NONE);
+		final Iterator<byte[]> samples = Arrays.stream(jsapResult.getStringArray("filename")).map(f -> {
+			try (InputStream is = new BufferedInputStream(new FileInputStream(f))) {
+				return compression.decompressIfNeeded(is.readAllBytes());
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+		}).iterator();
+		final byte[] dictionary = trainDictionary(samples, jsapResult.getInt("sampleSize"), jsapResult.getInt("dictionarySize"));
+		Files.write(new File(jsapResult.getString("dictionary")).toPath(), dictionary);
+		LOGGER.info("Stored dictionary " + Integer.toUnsignedString(dictionaryId(dictionary)) + " of " + dictionary.length + " bytes");
+	}
+}
@@ -85,6 +85,68 @@ public class RevisionCallGraph {
 			this.upperBound = upperBound.length() == 0? null : upperBound;
 		}
 
+		/** Returns whether a version satisfies this constraint, comparing versions by {@link #compareVersions(String, String)}.
+		 *
+		 * @param version a version.
+		 * @return true if <code>version</code> is between the lower and the upper bound of this constraint (both included).
+		 */
+		public boolean matches(final String version) {
+			return (lowerBound == null || compareVersions(lowerBound, version) <= 0) && (upperBound == null || compareVersions(version, upperBound) <= 0);
+		}
+
+		/** Compares two versions.
+		 *
+		 * <p>Versions are split into maximal runs of digits and of other characters, ignoring the separators '.', '-', '_' and '+'.
+		 * Corresponding runs are compared numerically if they are both numeric, and lexicographically (ignoring case) if they are both
+		 * non-numeric; a numeric run is larger than a non-numeric one. If a version is a prefix of the other, the longer one is larger,
+		 * unless its next run is non-numeric (e.g., a pre-release qualifier): thus, 1.0 &lt; 1.0.1 and 1.0-beta &lt; 1.0 &lt; 1.1-alpha.
+		 *
+		 * @param v a version.
+		 * @param w another version.
+		 * @return a negative number, zero or a positive number if <code>v</code> is smaller than, equal to or larger than <code>w</code>.
+		 */
+		public static int compareVersions(final String v, final String w) {
+			final List<String> s = runs(v), t = runs(w);
+			final int n = Math.min(s.size(), t.size());
+			for(int i = 0; i < n; i++) {
+				final String a = s.get(i), b = t.get(i);
+				final boolean aNumeric = Character.isDigit(a.charAt(0)), bNumeric = Character.isDigit(b.charAt(0));
+				final int c;
+				if (aNumeric && bNumeric) {
+					// Compare by number of significant digits first, to avoid overflows
+					final String x = stripLeadingZeroes(a), y = stripLeadingZeroes(b);
+					c = x.length() != y.length() ? Integer.compare(x.length(), y.length()) : x.compareTo(y);
+				}
+				else if (aNumeric != bNumeric) c = aNumeric ? 1 : -1;
+				else c = a.compareToIgnoreCase(b);
+				if (c != 0) return c;
+			}
+			if (s.size() == t.size()) return 0;
+			if (s.size() > n) return Character.isDigit(s.get(n).charAt(0)) ? 1 : -1;
+			return Character.isDigit(t.get(n).charAt(0)) ? -1 : 1;
+		}
+
+		private static List<String> runs(final String version) {
+			final List<String> runs = new ObjectArrayList<>();
+			int start = -1;
+			for(int i = 0; i <= version.length(); i++) {
+				final char c = i < version.length() ? version.charAt(i) : '.';
+				final boolean separator = c == '.' || c == '-' || c == '_' || c == '+';
+				if (start != -1 && (separator || Character.isDigit(c) != Character.isDigit(version.charAt(start)))) {
+					runs.add(version.substring(start, i));
+					start = -1;
+				}
+				if (start == -1 && !separator) start = i;
+			}
+			return runs;
+		}
+
+		private static String stripLeadingZeroes(final String s) {
+			int i = 0;
+			while(i < s.length() - 1 && s.charAt(i) == '0') i++;
+			return s.substring(i);
+		}
+
 		/** Given a {@link JSONArray} of specifications of constraints, it returns the corresponding list
 		 *  of contraints.
 		 *
@@ -149,6 +211,18 @@ public class RevisionCallGraph {
 			this.constraints = Constraint.constraints(json.getJSONArray("constraints"));
 		}
 
+		/** Returns whether a version of the product of this dependency satisfies this dependency.
+		 *
+		 * @param version a version.
+		 * @return true if <code>version</code> {@linkplain Constraint#matches(String) matches} one of the constraints
+		 * of this dependency, or if this dependency has no constraints.
+		 */
+		public boolean matches(final String version) {
+			if (constraints.isEmpty()) return true;
+			for (final Constraint constraint: constraints) if (constraint.matches(version)) return true;
+			return false;
+		}
+
 		/** Given an JSON array of dependencies (a depset as specified in Fasten Deliverable 2.1), it returns
 		 *  the corresponding depset.
 		 *
@@ -289,35 +363,227 @@ public class RevisionCallGraph {
 		final JSONArray jsonArray = json.getJSONArray("graph");
 		final int numberOfArcs = jsonArray.length();
 		for (int i = 0; i < numberOfArcs; i++) {
-			final JSONArray pair = jsonArray.getJSONArray(i);
-			final FastenURI[] arc = new FastenURI[] {
-					new FastenURI(pair.getString(0)),
-					new FastenURI(pair.getString(1)) };
-			int correctNodesInArc = 0;
-			// Check the graph content
-			for (int j = 0; j < arc.length; j++) {
-				final FastenURI node = arc[j];
-				if (FastenURI.NULL_FASTEN_URI.equals(node)) {
-					correctNodesInArc++;
-					continue;
+			final FastenURI[] arc = arc(jsonArray.getJSONArray(i), uri, i + "/" + numberOfArcs);
+			if (arc != null) this.graph.add(arc);
+		}
+		LOGGER.info("Stored " + this.graph.size() + " arcs of the " + numberOfArcs + " specified");
+	}
+
+	/** A receiver of the arcs parsed by the {@linkplain RevisionCallGraph#RevisionCallGraph(JSONTokener, boolean, ArcSink) streaming constructor}. */
+	public interface ArcSink {
+		/** Receives the forge, product and version of the call graph. This method is called exactly once, before any arc is passed to the sink.
+		 *
+		 * @param forge the forge.
+		 * @param product the product.
+		 * @param version the version.
+		 */
+		default void revision(final String forge, final String product, final String version) {}
+
+		/** Receives an arc of the call graph satisfying the properties listed in {@link RevisionCallGraph#graph}.
+		 *
+		 * @param source the source of the arc.
+		 * @param target the target of the arc.
+		 */
+		void arc(FastenURI source, FastenURI target);
+	}
+
+	/** Creates a JSON call graph reading a JSON Object, as specified in Deliverable D2.1, from a tokener, without building its
+	 *  document tree. Arcs are checked as in {@link #RevisionCallGraph(JSONObject, boolean)} and stored in {@link #graph}; only a single arc is
+	 *  parsed at a time.
+	 *
+	 * @param tokener a tokener positioned at the start of the JSON Object.
+	 * @param ignoreConstraints if <code>true</code>, constraints are specified by a simple string.
+	 */
+	public RevisionCallGraph(final JSONTokener tokener, final boolean ignoreConstraints) throws JSONException, URISyntaxException {
+		this(tokener, ignoreConstraints, new ArrayList<>());
+	}
+
+	private RevisionCallGraph(final JSONTokener tokener, final boolean ignoreConstraints, final ArrayList<FastenURI[]> graph) throws JSONException, URISyntaxException {
+		this(tokener, ignoreConstraints, (source, target) -> graph.add(new FastenURI[] { source, target }), graph);
+	}
+
+	/** Creates a JSON call graph reading a JSON Object, as specified in Deliverable D2.1, from a tokener, passing its arcs to a sink rather
+	 *  than storing them: only the header (forge, product, version, timestamp and depset) is kept, and {@link #graph} is {@code null}.
+	 *  Arcs are checked as in {@link #RevisionCallGraph(JSONObject, boolean)}, and those satisfying the required properties are passed
+	 *  to the sink one at a time, while the arc list is being parsed. The keys of the JSON Object can appear in any order, but if the arc list
+	 *  precedes the forge, the product or the version, it has to be parsed in full before its arcs can be checked.
+	 *
+	 * @param tokener a tokener positioned at the start of the JSON Object.
+	 * @param ignoreConstraints if <code>true</code>, constraints are specified by a simple string.
+	 * @param sink a sink receiving the arcs.
+	 */
+	public RevisionCallGraph(final JSONTokener tokener, final boolean ignoreConstraints, final ArcSink sink) throws JSONException, URISyntaxException {
+		this(tokener, ignoreConstraints, sink, null);
+	}
+
+	private RevisionCallGraph(final JSONTokener tokener, final boolean ignoreConstraints, final ArcSink sink, final ArrayList<FastenURI[]> graph) throws JSONException, URISyntaxException {
+		String forge = null, product = null, version = null;
+		Object timestamp = null;
+		JSONArray depset = null, bufferedGraph = null;
+		FastenURI uri = null;
+		boolean hasGraph = false;
+		if (tokener.nextClean() != '{') throw tokener.syntaxError("A JSONObject text must begin with '{'");
+		for(;;) {
+			char c = tokener.nextClean();
+			if (c == 0) throw tokener.syntaxError("A JSONObject text must end with '}'");
+			if (c == '}') break;
+			tokener.back();
+			final String key = tokener.nextValue().toString();
+			if (tokener.nextClean() != ':') throw tokener.syntaxError("Expected a ':' after a key");
+			switch(key) {
+			case "forge": forge = string(tokener.nextValue(), key); break;
+			case "product": product = string(tokener.nextValue(), key); break;
+			case "version": version = string(tokener.nextValue(), key); break;
+			case "timestamp": timestamp = tokener.nextValue(); break;
+			case "depset": depset = array(tokener.nextValue(), key); break;
+			case "graph":
+				hasGraph = true;
+				if (forge == null || product == null || version == null) bufferedGraph = array(tokener.nextValue(), key);
+				else {
+					uri = FastenURI.create("fasten://" + forge + "!" + product + "$" + version);
+					sink.revision(forge, product, version);
+					streamArcs(tokener, uri, sink);
 				}
-				// URI in schemeless canonical form
-				if (node.getScheme() != null) LOGGER.warn("Ignoring arc " + i + "/" + numberOfArcs + ": node " + node + " should be schemeless");
-				else if (!node.toString().equals(node.canonicalize().toString())) LOGGER.warn("Ignoring arc " + i + "/" + numberOfArcs + ": node " + node + " not in canonical form [" + node.canonicalize() + "]");
-				// No forge, no version
-				else if (node.getForge() != null || node.getVersion() != null) LOGGER.warn("Ignoring arc " + i + "/" + numberOfArcs + ": forges and versions cannot be specified: " + node);
-				// Product cannot coincide with this product
-				else if (node.getProduct() != null && uri.getProduct().equals(node.getProduct())) LOGGER.warn("Ignoring arc " + i + "/" + numberOfArcs + ": product of node " + node + " equals the product specified by this JSON object, and should hence be omitted");
-				// If product is specified, the node must be the source
-				else if (node.getProduct() != null  && j == 0) LOGGER.warn("Ignoring arc " + i + "/" + numberOfArcs + ": node " + node + " is external, and cannot appear as source of an arc");
-				// Check that namespace is present
-				else if (node.getNamespace() == null) LOGGER.warn("Ignoring arc " + i + "/" + numberOfArcs + ": namespace is not present in node " + pair.getString(j));
-				// TODO we should also check that it is a function or an attribute, not a type!
-				else correctNodesInArc++;
+				break;
+			default: tokener.nextValue();
 			}
-			if (correctNodesInArc == 2) this.graph.add(arc);
+			c = tokener.nextClean();
+			if (c == '}') break;
+			if (c != ',') throw tokener.syntaxError("Expected a ',' or '}'");
 		}
-		LOGGER.info("Stored " + this.graph.size() + " arcs of the " + numberOfArcs + " specified");
+
+		if (forge == null) throw new JSONException("JSONObject[\"forge\"] not found.");
+		if (product == null) throw new JSONException("JSONObject[\"product\"] not found.");
+		if (version == null) throw new JSONException("JSONObject[\"version\"] not found.");
+		if (depset == null) throw new JSONException("JSONObject[\"depset\"] not found.");
+		if (!hasGraph) throw new JSONException("JSONObject[\"graph\"] not found.");
+		this.forge = forge;
+		this.product = product;
+		this.version = version;
+		long ts;
+		try {
+			if (timestamp instanceof Number) ts = ((Number)timestamp).longValue();
+			else if (timestamp != null) ts = Long.parseLong(timestamp.toString());
+			else throw new NumberFormatException();
+		} catch(final NumberFormatException e) {
+			ts = -1;
+			LOGGER.warn("No timestamp provided: assuming -1");
+		}
+		this.timestamp = ts;
+		this.depset = Dependency.depset(depset);
+		this.uri = FastenURI.create("fasten://" + forge + "!" + product + "$" + version);
+		forgelessUri = FastenURI.create("fasten://" + product + "$" + version);
+		this.graph = graph;
+
+		if (bufferedGraph != null) {
+			sink.revision(forge, product, version);
+			final int numberOfArcs = bufferedGraph.length();
+			int stored = 0;
+			for (int i = 0; i < numberOfArcs; i++) {
+				final FastenURI[] arc = arc(bufferedGraph.getJSONArray(i), this.uri, i + "/" + numberOfArcs);
+				if (arc != null) {
+					sink.arc(arc[0], arc[1]);
+					stored++;
+				}
+			}
+			LOGGER.info("Stored " + stored + " arcs of the " + numberOfArcs + " specified");
+		}
+	}
+
+	/** Parses a JSON array of arcs, passing the arcs satisfying the required properties to a sink.
+	 *
+	 * @param tokener a tokener positioned at the start of the array.
+	 * @param uri the URI of the revision.
+	 * @param sink a sink receiving the arcs.
+	 */
+	private static void streamArcs(final JSONTokener tokener, final FastenURI uri, final ArcSink sink) throws JSONException, URISyntaxException {
+		if (tokener.nextClean() != '[') throw tokener.syntaxError("A JSONArray text must start with '['");
+		int numberOfArcs = 0, stored = 0;
+		if (tokener.nextClean() != ']') {
+			tokener.back();
+			for(;;) {
+				// As in JSONArray, a trailing comma is accepted
+				final FastenURI[] arc = arc(array(tokener.nextValue(), "graph[" + numberOfArcs + "]"), uri, String.valueOf(numberOfArcs));
+				numberOfArcs++;
+				if (arc != null) {
+					sink.arc(arc[0], arc[1]);
+					stored++;
+				}
+				final char c = tokener.nextClean();
+				if (c == ']') break;
+				if (c != ',') throw tokener.syntaxError("Expected a ',' or ']'");
+				if (tokener.nextClean() == ']') break;
+				tokener.back();
+			}
+		}
+		LOGGER.info("Stored " + stored + " arcs of the " + numberOfArcs + " specified");
+	}
+
+	/** Returns the {@link FastenURI} of a node, taking it from the {@linkplain FastenURIPool#FASTEN_URIS pool of URIs} if possible.
+	 *
+	 * @param s the string representation of a node.
+	 * @return the {@link FastenURI} of the node.
+	 */
+	private static FastenURI node(final String s) throws URISyntaxException {
+		final FastenURI node = FastenURIPool.FASTEN_URIS.getIfPresent(s);
+		return node != null ? node : FastenURIPool.FASTEN_URIS.intern(new FastenURI(s));
+	}
+
+	/** Builds an arc from a JSON pair and checks that it satisfies the properties listed in {@link #graph}, logging a warning if it does not.
+	 *
+	 * @param pair a JSON array containing the source and the target.
+	 * @param uri the URI of the revision.
+	 * @param position a description of the position of the arc, for warnings.
+	 * @return the arc, or {@code null} if it does not satisfy the required properties.
+	 */
+	private static FastenURI[] arc(final JSONArray pair, final FastenURI uri, final String position) throws JSONException, URISyntaxException {
+		final FastenURI[] arc = new FastenURI[] {
+				node(pair.getString(0)),
+				node(pair.getString(1)) };
+		return isValid(arc, uri, position) ? arc : null;
+	}
+
+	/** Checks that an arc satisfies the properties listed in {@link #graph}, logging a warning if it does not.
+	 *
+	 * @param arc the source and the target of the arc.
+	 * @param uri the URI of the revision.
+	 * @param position a description of the position of the arc, for warnings.
+	 * @return true if the arc satisfies the required properties.
+	 */
+	static boolean isValid(final FastenURI[] arc, final FastenURI uri, final String position) {
+		int correctNodesInArc = 0;
+		// Check the graph content
+		for (int j = 0; j < arc.length; j++) {
+			final FastenURI node = arc[j];
+			if (FastenURI.NULL_FASTEN_URI.equals(node)) {
+				correctNodesInArc++;
+				continue;
+			}
+			// URI in schemeless canonical form
+			if (node.getScheme() != null) LOGGER.warn("Ignoring arc " + position + ": node " + node + " should be schemeless");
+			else if (!node.isCanonical()) LOGGER.warn("Ignoring arc " + position + ": node " + node + " not in canonical form [" + node.canonicalize() + "]");
+			// No forge, no version
+			else if (node.getForge() != null || node.getVersion() != null) LOGGER.warn("Ignoring arc " + position + ": forges and versions cannot be specified: " + node);
+			// Product cannot coincide with this product
+			else if (node.getProduct() != null && uri.getProduct().equals(node.getProduct())) LOGGER.warn("Ignoring arc " + position + ": product of node " + node + " equals the product specified by this JSON object, and should hence be omitted");
+			// If product is specified, the node must be the source
+			else if (node.getProduct() != null  && j == 0) LOGGER.warn("Ignoring arc " + position + ": node " + node + " is external, and cannot appear as source of an arc");
+			// Check that namespace is present
+			else if (node.getNamespace() == null) LOGGER.warn("Ignoring arc " + position + ": namespace is not present in node " + node);
+			// TODO we should also check that it is a function or an attribute, not a type!
+			else correctNodesInArc++;
+		}
+		return correctNodesInArc == 2;
+	}
+
+	private static String string(final Object value, final String key) throws JSONException {
+		if (value instanceof String) return (String)value;
+		throw new JSONException("JSONObject[" + JSONObject.quote(key) + "] not a string.");
+	}
+
+	private static JSONArray array(final Object value, final String key) throws JSONException {
+		if (value instanceof JSONArray) return (JSONArray)value;
+		throw new JSONException("JSONObject[" + JSONObject.quote(key) + "] is not a JSONArray.");
 	}
 
 	/** Produces the JSON representation of this {@link RevisionCallGraph}.
@@ -0,0 +1,479 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package eu.fasten.core.data;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.tuple.MutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.martiansoftware.jsap.JSAP;
+import com.martiansoftware.jsap.JSAPException;
+import com.martiansoftware.jsap.JSAPResult;
+import com.martiansoftware.jsap.Parameter;
+import com.martiansoftware.jsap.SimpleJSAP;
+import com.martiansoftware.jsap.Switch;
+import com.martiansoftware.jsap.UnflaggedOption;
+
+import eu.fasten.core.data.ExtendedRevisionCallGraph.Graph;
+import eu.fasten.core.data.ExtendedRevisionCallGraph.Type;
+import eu.fasten.core.data.RevisionCallGraph.Constraint;
+import eu.fasten.core.data.RevisionCallGraph.Dependency;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+
+/** A compact binary encoding of {@link RevisionCallGraph} and {@link ExtendedRevisionCallGraph} instances, used to exchange
+ *  call graphs between analyzers and indexers; the JSON representation remains the format of choice for debugging.
+ *
+ *  <p>An encoded call graph starts with a header made of the {@linkplain #MAGIC magic bytes}, the {@linkplain #VERSION version} of the format and a kind
+ *  byte ({@link #REVISION_CALL_GRAPH} or {@link #EXTENDED_REVISION_CALL_GRAPH}), followed by forge, product, version, timestamp and depset.
+ *  All integers are written as variable-length integers. Then, all the distinct URIs of the call graph
+ *  are written once, in lexicographical order, in a front-coded string table, and the graph refers to them by their index in the table:
+ *  <ul>
+ *  <li>the arcs of a {@link RevisionCallGraph} are written in columns (first the sources, then the targets), each element being
+ *  delta-coded with respect to the previous one in the same column;
+ *  <li>the class hierarchy of an {@link ExtendedRevisionCallGraph} is written type by type, listing the methods by increasing identifier;
+ *  its internal calls are written in columns, as the arcs of a {@link RevisionCallGraph}, and its external calls, sorted by source,
+ *  are written as delta-coded sources followed by their targets (in the string table) and by their metadata, whose keys and values
+ *  are taken from a second dictionary.
+ *  </ul>
+ *
+ *  <p>Arcs of a {@link RevisionCallGraph} are checked when decoding as they are when parsing JSON, so records
+ *  of any origin can be fed to a knowledge base.
+ */
+public class RevisionCallGraphCodec {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RevisionCallGraphCodec.class);
+
+	/** The bytes at the start of every encoded call graph (they cannot start a JSON text). */
+	public static final byte[] MAGIC = { 'F', 'C', 'G', 'B' };
+	/** The version of the format written by this codec. */
+	public static final int VERSION = 1;
+	/** The kind of a {@link RevisionCallGraph}. */
+	public static final int REVISION_CALL_GRAPH = 0;
+	/** The kind of an {@link ExtendedRevisionCallGraph}. */
+	public static final int EXTENDED_REVISION_CALL_GRAPH = 1;
+
+	private RevisionCallGraphCodec() {}
+
+	/** Returns whether an array of bytes contains an encoded call graph (i.e., whether it starts with the {@linkplain #MAGIC magic bytes}).
+	 *
+	 * @param b an array of bytes.
+	 * @return true if {@code b} starts with the magic bytes.
+	 */
+	public static boolean isEncoded(final byte[] b) {
+		return b.length >= MAGIC.length && Arrays.equals(b, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+	}
+
+	/** Returns whether an input stream contains an encoded call graph, without consuming any byte of the stream.
+	 *
+	 * @param is an input stream {@linkplain InputStream#markSupported() supporting marks}.
+	 * @return true if the stream starts with the magic bytes.
+	 */
+	public static boolean isEncoded(final InputStream is) throws IOException {
+		is.mark(MAGIC.length);
+		final byte[] b = is.readNBytes(MAGIC.length);
+		is.reset();
+		return isEncoded(b);
+	}
+
+	/** Encodes a call graph.
+	 *
+	 * @param g a call graph (possibly an {@link ExtendedRevisionCallGraph}).
+	 * @return the encoded call graph.
+	 */
+	public static byte[] encode(final RevisionCallGraph g) {
+		final Output output = new Output(4096, -1);
+		write(g, output);
+		return output.toBytes();
+	}
+
+	/** Writes an encoded call graph to an output stream.
+	 *
+	 * @param g a call graph (possibly an {@link ExtendedRevisionCallGraph}).
+	 * @param os an output stream, which will be flushed, but not closed.
+	 */
+	public static void write(final RevisionCallGraph g, final OutputStream os) throws IOException {
+		final Output output = new Output(os);
+		try {
+			write(g, output);
+			output.flush();
+		} catch (final KryoException e) {
+			if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+			throw e;
+		}
+	}
+
+	/** Decodes a call graph.
+	 *
+	 * @param b an encoded call graph.
+	 * @return the call graph (an instance of {@link ExtendedRevisionCallGraph} if it was encoded as such).
+	 */
+	public static RevisionCallGraph decode(final byte[] b) throws IOException {
+		return read(new Input(b));
+	}
+
+	/** Reads an encoded call graph from an input stream.
+	 *
+	 * @param is an input stream, which might be read beyond the end of the call graph.
+	 * @return the call graph (an instance of {@link ExtendedRevisionCallGraph} if it was encoded as such).
+	 */
+	public static RevisionCallGraph read(final InputStream is) throws IOException {
+		return read(new Input(is));
+	}
+
+	private static void write(final RevisionCallGraph g, final Output output) {
+		output.writeBytes(MAGIC);
+		output.writeByte(VERSION);
+		output.writeByte(g instanceof ExtendedRevisionCallGraph ? EXTENDED_REVISION_CALL_GRAPH : REVISION_CALL_GRAPH);
+		output.writeString(g.forge);
+		output.writeString(g.product);
+		output.writeString(g.version);
+		output.writeVarLong(g.timestamp, false);
+		writeDepset(g.depset, output);
+		if (g instanceof ExtendedRevisionCallGraph) writeExtended((ExtendedRevisionCallGraph)g, output);
+		else writeArcs(g.graph, output);
+	}
+
+	private static RevisionCallGraph read(final Input input) throws IOException {
+		try {
+			final byte[] magic = input.readBytes(MAGIC.length);
+			if (!Arrays.equals(magic, MAGIC)) throw new IOException("Not an encoded call graph");
+			final int formatVersion = input.readByte();
+			if (formatVersion != VERSION) throw new IOException("Unsupported version: " + formatVersion);
+			final int kind = input.readByte();
+			if (kind != REVISION_CALL_GRAPH && kind != EXTENDED_REVISION_CALL_GRAPH) throw new IOException("Unknown kind of call graph: " + kind);
+			final String forge = input.readString();
+			final String product = input.readString();
+			final String version = input.readString();
+			final long timestamp = input.readVarLong(false);
+			final List<List<Dependency>> depset = readDepset(input);
+			if (kind == EXTENDED_REVISION_CALL_GRAPH) return readExtended(forge, product, version, timestamp, depset, input);
+			final RevisionCallGraph g = new RevisionCallGraph(forge, product, version, timestamp, depset, new ArrayList<>());
+			readArcs(g, input);
+			return g;
+		} catch (final KryoException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static void writeDepset(final List<List<Dependency>> depset, final Output output) {
+		output.writeVarInt(depset.size(), true);
+		for (final List<Dependency> clause : depset) {
+			output.writeVarInt(clause.size(), true);
+			for (final Dependency dependency : clause) {
+				output.writeString(dependency.forge);
+				output.writeString(dependency.product);
+				output.writeVarInt(dependency.constraints.size(), true);
+				for (final Constraint constraint : dependency.constraints) {
+					output.writeString(constraint.lowerBound);
+					output.writeString(constraint.upperBound);
+				}
+			}
+		}
+	}
+
+	private static List<List<Dependency>> readDepset(final Input input) {
+		final List<List<Dependency>> depset = new ObjectArrayList<>();
+		for (int i = input.readVarInt(true); i-- != 0;) {
+			final List<Dependency> clause = new ObjectArrayList<>();
+			for (int j = input.readVarInt(true); j-- != 0;) {
+				final String forge = input.readString();
+				final String product = input.readString();
+				final List<Constraint> constraints = new ObjectArrayList<>();
+				for (int k = input.readVarInt(true); k-- != 0;) constraints.add(new Constraint(input.readString(), input.readString()));
+				clause.add(new Dependency(forge, product, constraints));
+			}
+			depset.add(clause);
+		}
+		return depset;
+	}
+
+	/** Writes a front-coded table of strings, in lexicographical order.
+	 *
+	 * @param strings a set of strings.
+	 * @param output the output.
+	 * @return a map from each string to its index in the table.
+	 */
+	private static Object2IntOpenHashMap<String> writeStrings(final Collection<String> strings, final Output output) {
+		final String[] sorted = strings.toArray(new String[0]);
+		Arrays.sort(sorted);
+		final Object2IntOpenHashMap<String> index = new Object2IntOpenHashMap<>(sorted.length);
+		index.defaultReturnValue(-1);
+		output.writeVarInt(sorted.length, true);
+		String previous = "";
+		for (final String s : sorted) {
+			final int limit = Math.min(previous.length(), s.length());
+			int common = 0;
+			while (common < limit && previous.charAt(common) == s.charAt(common)) common++;
+			output.writeVarInt(common, true);
+			output.writeString(s.substring(common));
+			index.put(s, index.size());
+			previous = s;
+		}
+		return index;
+	}
+
+	/** Reads a {@linkplain #writeStrings(Collection, Output) front-coded table of strings}.
+	 *
+	 * @param input the input.
+	 * @return the strings in the table.
+	 */
+	private static String[] readStrings(final Input input) {
+		final String[] strings = new String[input.readVarInt(true)];
+		String previous = "";
+		for (int i = 0; i < strings.length; i++) strings[i] = previous = previous.substring(0, input.readVarInt(true)) + input.readString();
+		return strings;
+	}
+
+	/** Reads a front-coded table of URIs, taking them from the {@linkplain FastenURIPool#FASTEN_URIS pool of URIs}. */
+	private static FastenURI[] readURIs(final Input input) {
+		final String[] strings = readStrings(input);
+		final FastenURI[] uris = new FastenURI[strings.length];
+		for (int i = 0; i < strings.length; i++) uris[i] = FastenURIPool.FASTEN_URIS.get(strings[i]);
+		return uris;
+	}
+
+	/** Writes a column of integers, each delta-coded with respect to the previous one. */
+	private static void writeColumn(final int[] column, final Output output) {
+		int previous = 0;
+		for (final int x : column) {
+			output.writeVarInt(x - previous, false);
+			previous = x;
+		}
+	}
+
+	/** Reads a {@linkplain #writeColumn(int[], Output) column} of integers of given length. */
+	private static int[] readColumn(final int length, final Input input) {
+		final int[] column = new int[length];
+		int previous = 0;
+		for (int i = 0; i < length; i++) column[i] = previous += input.readVarInt(false);
+		return column;
+	}
+
+	private static void writeArcs(final List<FastenURI[]> graph, final Output output) {
+		final ObjectOpenHashSet<String> strings = new ObjectOpenHashSet<>();
+		for (final FastenURI[] arc : graph) {
+			strings.add(arc[0].toString());
+			strings.add(arc[1].toString());
+		}
+		final Object2IntOpenHashMap<String> index = writeStrings(strings, output);
+		final int[] sources = new int[graph.size()], targets = new int[graph.size()];
+		for (int i = 0; i < sources.length; i++) {
+			final FastenURI[] arc = graph.get(i);
+			sources[i] = index.getInt(arc[0].toString());
+			targets[i] = index.getInt(arc[1].toString());
+		}
+		output.writeVarInt(sources.length, true);
+		writeColumn(sources, output);
+		writeColumn(targets, output);
+	}
+
+	private static void readArcs(final RevisionCallGraph g, final Input input) {
+		final FastenURI[] uris = readURIs(input);
+		final int numberOfArcs = input.readVarInt(true);
+		final int[] sources = readColumn(numberOfArcs, input);
+		final int[] targets = readColumn(numberOfArcs, input);
+		for (int i = 0; i < numberOfArcs; i++) {
+			final FastenURI[] arc = new FastenURI[] { uris[sources[i]], uris[targets[i]] };
+			if (RevisionCallGraph.isValid(arc, g.uri, i + "/" + numberOfArcs)) g.graph.add(arc);
+		}
+		LOGGER.info("Stored " + g.graph.size() + " arcs of the " + numberOfArcs + " specified");
+	}
+
+	private static void writeExtended(final ExtendedRevisionCallGraph g, final Output output) {
+		output.writeString(g.getCgGenerator());
+		final Map<FastenURI, Type> cha = g.getClassHierarchy();
+		final List<List<Integer>> internalCalls = g.getGraph().getInternalCalls();
+		final Map<Pair<Integer, FastenURI>, Map<String, String>> externalCalls = g.getGraph().getExternalCalls();
+
+		final ObjectOpenHashSet<String> strings = new ObjectOpenHashSet<>();
+		for (final Entry<FastenURI, Type> entry : cha.entrySet()) {
+			strings.add(entry.getKey().toString());
+			final Type type = entry.getValue();
+			for (final FastenURI method : type.getMethods().values()) strings.add(method.toString());
+			for (final FastenURI superClass : type.getSuperClasses()) strings.add(superClass.toString());
+			for (final FastenURI superInterface : type.getSuperInterfaces()) strings.add(superInterface.toString());
+		}
+		for (final Pair<Integer, FastenURI> call : externalCalls.keySet()) strings.add(call.getValue().toString());
+		final Object2IntOpenHashMap<String> index = writeStrings(strings, output);
+
+		// Class hierarchy, by type index
+		@SuppressWarnings("unchecked")
+		final Entry<FastenURI, Type>[] types = cha.entrySet().toArray(new Entry[0]);
+		Arrays.sort(types, (x, y) -> Integer.compare(index.getInt(x.getKey().toString()), index.getInt(y.getKey().toString())));
+		output.writeVarInt(types.length, true);
+		int previous = 0;
+		for (final Entry<FastenURI, Type> entry : types) {
+			final int t = index.getInt(entry.getKey().toString());
+			output.writeVarInt(t - previous, true);
+			previous = t;
+			final Type type = entry.getValue();
+			output.writeString(type.getSourceFileName());
+			final Integer[] ids = type.getMethods().keySet().toArray(new Integer[0]);
+			Arrays.sort(ids);
+			output.writeVarInt(ids.length, true);
+			int previousId = 0;
+			for (final Integer id : ids) {
+				output.writeVarInt(id.intValue() - previousId, false);
+				previousId = id.intValue();
+				output.writeVarInt(index.getInt(type.getMethods().get(id).toString()), true);
+			}
+			output.writeVarInt(type.getSuperClasses().size(), true);
+			for (final FastenURI superClass : type.getSuperClasses()) output.writeVarInt(index.getInt(superClass.toString()), true);
+			output.writeVarInt(type.getSuperInterfaces().size(), true);
+			for (final FastenURI superInterface : type.getSuperInterfaces()) output.writeVarInt(index.getInt(superInterface.toString()), true);
+		}
+
+		// Internal calls, in columns
+		final int[] sources = new int[internalCalls.size()], targets = new int[internalCalls.size()];
+		for (int i = 0; i < sources.length; i++) {
+			sources[i] = internalCalls.get(i).get(0).intValue();
+			targets[i] = internalCalls.get(i).get(1).intValue();
+		}
+		output.writeVarInt(sources.length, true);
+		writeColumn(sources, output);
+		writeColumn(targets, output);
+
+		// External calls, by source and target, with a dictionary of metadata keys and values
+		@SuppressWarnings("unchecked")
+		final Entry<Pair<Integer, FastenURI>, Map<String, String>>[] calls = externalCalls.entrySet().toArray(new Entry[0]);
+		final int[] targetIndex = new int[calls.length];
+		for (int i = 0; i < calls.length; i++) targetIndex[i] = index.getInt(calls[i].getKey().getValue().toString());
+		final Integer[] perm = new Integer[calls.length];
+		for (int i = 0; i < perm.length; i++) perm[i] = Integer.valueOf(i);
+		Arrays.sort(perm, (x, y) -> {
+			final int t = Integer.compare(calls[x.intValue()].getKey().getKey().intValue(), calls[y.intValue()].getKey().getKey().intValue());
+			return t != 0 ? t : Integer.compare(targetIndex[x.intValue()], targetIndex[y.intValue()]);
+		});
+		final Object2IntOpenHashMap<String> symbols = new Object2IntOpenHashMap<>();
+		final ObjectArrayList<String> symbolList = new ObjectArrayList<>();
+		for (final Entry<Pair<Integer, FastenURI>, Map<String, String>> call : calls)
+			for (final Entry<String, String> metadata : call.getValue().entrySet())
+				for (final String symbol : new String[] { metadata.getKey(), metadata.getValue() })
+					if (!symbols.containsKey(symbol)) {
+						symbols.put(symbol, symbolList.size());
+						symbolList.add(symbol);
+					}
+		output.writeVarInt(symbolList.size(), true);
+		for (final String symbol : symbolList) output.writeString(symbol);
+		output.writeVarInt(calls.length, true);
+		previous = 0;
+		for (final Integer i : perm) {
+			final Entry<Pair<Integer, FastenURI>, Map<String, String>> call = calls[i.intValue()];
+			final int source = call.getKey().getKey().intValue();
+			output.writeVarInt(source - previous, false);
+			previous = source;
+			output.writeVarInt(targetIndex[i.intValue()], true);
+			output.writeVarInt(call.getValue().size(), true);
+			for (final Entry<String, String> metadata : call.getValue().entrySet()) {
+				output.writeVarInt(symbols.getInt(metadata.getKey()), true);
+				output.writeVarInt(symbols.getInt(metadata.getValue()), true);
+			}
+		}
+	}
+
+	private static ExtendedRevisionCallGraph readExtended(final String forge, final String product, final String version, final long timestamp, final List<List<Dependency>> depset, final Input input) {
+		final String cgGenerator = input.readString();
+		final FastenURI[] uris = readURIs(input);
+
+		final Map<FastenURI, Type> cha = new HashMap<>();
+		int previous = 0;
+		for (int i = input.readVarInt(true); i-- != 0;) {
+			final FastenURI uri = uris[previous += input.readVarInt(true)];
+			final String sourceFile = input.readString();
+			final Map<Integer, FastenURI> methods = new HashMap<>();
+			int id = 0;
+			for (int j = input.readVarInt(true); j-- != 0;) {
+				id += input.readVarInt(false);
+				methods.put(Integer.valueOf(id), uris[input.readVarInt(true)]);
+			}
+			final LinkedList<FastenURI> superClasses = new LinkedList<>();
+			for (int j = input.readVarInt(true); j-- != 0;) superClasses.add(uris[input.readVarInt(true)]);
+			final List<FastenURI> superInterfaces = new ArrayList<>();
+			for (int j = input.readVarInt(true); j-- != 0;) superInterfaces.add(uris[input.readVarInt(true)]);
+			cha.put(uri, new Type(sourceFile, methods, superClasses, superInterfaces));
+		}
+
+		final int numberOfInternalCalls = input.readVarInt(true);
+		final int[] sources = readColumn(numberOfInternalCalls, input);
+		final int[] targets = readColumn(numberOfInternalCalls, input);
+		final List<List<Integer>> internalCalls = new ArrayList<>(numberOfInternalCalls);
+		for (int i = 0; i < numberOfInternalCalls; i++) internalCalls.add(Arrays.asList(Integer.valueOf(sources[i]), Integer.valueOf(targets[i])));
+
+		final String[] symbols = new String[input.readVarInt(true)];
+		for (int i = 0; i < symbols.length; i++) symbols[i] = input.readString();
+		final Map<Pair<Integer, FastenURI>, Map<String, String>> externalCalls = new HashMap<>();
+		previous = 0;
+		for (int i = input.readVarInt(true); i-- != 0;) {
+			final int source = previous += input.readVarInt(false);
+			final FastenURI target = uris[input.readVarInt(true)];
+			final Map<String, String> metadata = new HashMap<>();
+			for (int j = input.readVarInt(true); j-- != 0;) metadata.put(symbols[input.readVarInt(true)], symbols[input.readVarInt(true)]);
+			externalCalls.put(new MutablePair<>(Integer.valueOf(source), target), metadata);
+		}
+
+		return new ExtendedRevisionCallGraph(forge, product, version, timestamp, cgGenerator, depset, cha, new Graph(internalCalls, externalCalls));
+	}
+
+	public static void main(final String[] args) throws JSAPException, IOException, JSONException, URISyntaxException {
+		final SimpleJSAP jsap = new SimpleJSAP(RevisionCallGraphCodec.class.getName(),
+				"Encodes a JSON call graph (either a revision call graph, as specified by the Deliverable D2.1, or an extended revision call graph), or decodes an encoded call graph to JSON",
+				new Parameter[] {
+						new Switch("decode", 'd', "decode", "Decode an encoded call graph to JSON, rather than encoding a JSON call graph."),
+						new UnflaggedOption("input", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.NOT_GREEDY, "The input file."),
+						new UnflaggedOption("output", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, JSAP.NOT_GREEDY, "The output file (if not specified, standard output)."),
+		});
+
+		final JSAPResult jsapResult = jsap.parse(args);
+		if ( jsap.messagePrinted() ) return;
+
+		try (InputStream is = new FileInputStream(jsapResult.getString("input"));
+				OutputStream os = jsapResult.userSpecified("output") ? new FileOutputStream(jsapResult.getString("output")) : System.out) {
+			if (jsapResult.getBoolean("decode")) os.write(read(is).toJSON().toString().getBytes(StandardCharsets.UTF_8));
+			else {
+				final JSONObject json = new JSONObject(new JSONTokener(is));
+				// The graph of an extended revision call graph is an object, rather than a list of arcs
+				write(json.get("graph") instanceof JSONObject ? new ExtendedRevisionCallGraph(json) : new RevisionCallGraph(json, false), os);
+			}
+		}
+	}
+}
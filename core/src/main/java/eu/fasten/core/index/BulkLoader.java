@@ -0,0 +1,193 @@
+package eu.fasten.core.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.json.JSONTokener;
+import org.rocksdb.RocksDBException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.martiansoftware.jsap.FlaggedOption;
+import com.martiansoftware.jsap.JSAP;
+import com.martiansoftware.jsap.JSAPException;
+import com.martiansoftware.jsap.JSAPResult;
+import com.martiansoftware.jsap.Parameter;
+import com.martiansoftware.jsap.SimpleJSAP;
+import com.martiansoftware.jsap.UnflaggedOption;
+
+import eu.fasten.core.data.KnowledgeBase;
+import eu.fasten.core.data.KnowledgeBase.PreparedCallGraph;
+import eu.fasten.core.data.PayloadCompression;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.logging.ProgressLogger;
+
+/** A loader adding to a knowledge base, in bulk, a large number of call graphs stored in JSON format.
+ *
+ *  <p>Files are parsed and {@linkplain KnowledgeBase#prepare(JSONTokener) prepared}, without building their document tree, by a pool of threads, and the results are
+ *  passed, in input order, to {@link KnowledgeBase#bulkAdd(Iterator, long, File)}, which writes them to SST files that are
+ *  ingested in the database at the end of the load. Contrarily to {@link Indexer}, the knowledge base cannot be queried during the load,
+ *  and a load that fails must be repeated.
+ */
+public class BulkLoader {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BulkLoader.class);
+	private final KnowledgeBase kb;
+	/** The number of threads parsing and preparing call graphs. */
+	private final int threads;
+	/** The number of arcs of the call graphs loaded so far. */
+	private long arcs;
+
+	/** Creates a bulk loader for the given knowledge base.
+	 *
+	 * @param kb the knowledge base.
+	 * @param threads the number of threads parsing and preparing call graphs.
+	 */
+	public BulkLoader(final KnowledgeBase kb, final int threads) {
+		this.kb = kb;
+		this.threads = threads;
+	}
+
+	/** Returns an iterator over the prepared call graphs of a list of files, in the same order. Files are parsed and prepared in parallel,
+	 *  keeping a bounded number of them in flight.
+	 *
+	 * @param executor the executor parsing and preparing call graphs.
+	 * @param files the files containing the JSON call graphs.
+	 * @param pl a progress logger that will be updated for each call graph returned.
+	 * @return an iterator over the prepared call graphs; failures are rethrown wrapped in an unchecked exception.
+	 */
+	private Iterator<PreparedCallGraph> prepare(final ExecutorService executor, final String[] files, final ProgressLogger pl) {
+		return new Iterator<PreparedCallGraph>() {
+			private final ArrayDeque<Future<PreparedCallGraph>> inFlight = new ArrayDeque<>();
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < files.length || !inFlight.isEmpty();
+			}
+
+			@Override
+			public PreparedCallGraph next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				while(next < files.length && inFlight.size() < 4 * threads) {
+					final String file = files[next++];
+					inFlight.add(executor.submit(() -> {
+						LOGGER.debug("Parsing " + file);
+						try (FileReader reader = new FileReader(file)) {
+							return kb.prepare(new JSONTokener(reader));
+						}
+					}));
+				}
+				try {
+					final PreparedCallGraph g = inFlight.remove().get();
+					arcs += g.numArcs();
+					pl.lightUpdate();
+					return g;
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				} catch (final ExecutionException e) {
+					if (e.getCause() instanceof IOException) throw new UncheckedIOException((IOException)e.getCause());
+					if (e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		};
+	}
+
+	/** Loads in bulk a list of files, assigning them consecutive revision indices starting from the current size of the knowledge base.
+	 *
+	 * @param files the files containing the JSON call graphs.
+	 * @param tempDir a directory for temporary files, or {@code null} for the default temporary directory.
+	 * @return the number of call graphs loaded.
+	 */
+	public long load(final String[] files, final File tempDir) throws IOException, RocksDBException {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final ProgressLogger pl = new ProgressLogger(LOGGER, "revisions");
+		pl.expectedUpdates = files.length;
+		arcs = 0;
+		pl.start("Loading " + files.length + " call graphs...");
+		try {
+			final long n = kb.bulkAdd(prepare(executor, files, pl), kb.size(), tempDir);
+			pl.done();
+			final double seconds = pl.millis() / 1000.;
+			LOGGER.info(String.format("Loaded %d revisions (%.1f revisions/s) and %d arcs (%.1f arcs/s)", Long.valueOf(n), Double.valueOf(n / seconds), Long.valueOf(arcs), Double.valueOf(arcs / seconds)));
+			return n;
+		} catch (final UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** Expands directories in a list of files into the JSON files they contain, in lexicographical order.
+	 *
+	 * @param names a list of file or directory names.
+	 * @return the list of files.
+	 */
+	private static String[] expand(final String[] names) {
+		final ObjectArrayList<String> files = new ObjectArrayList<>();
+		for(final String name : names) {
+			final File file = new File(name);
+			if (file.isDirectory()) {
+				final String[] children = file.list((dir, child) -> child.endsWith(".json"));
+				Arrays.sort(children);
+				for(final String child : children) files.add(new File(file, child).toString());
+			}
+			else files.add(name);
+		}
+		return files.toArray(new String[files.size()]);
+	}
+
+	public static void main(final String[] args) throws JSAPException, IOException, RocksDBException, ClassNotFoundException {
+		final SimpleJSAP jsap = new SimpleJSAP(BulkLoader.class.getName(),
+				"Loads in bulk into a knowledge base (associated to a given database) a list of JSON files, or the JSON files contained in a list of directories",
+				new Parameter[] {
+						new FlaggedOption("threads", JSAP.INTEGER_PARSER, String.valueOf(Runtime.getRuntime().availableProcessors()), JSAP.NOT_REQUIRED, 'T', "threads", "The number of threads used for parsing, and building and compressing graphs." ),
+						new FlaggedOption("tempDir", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, 't', "temp-dir", "A directory for temporary files (preferably on the same file system of the database)." ),
+						new FlaggedOption("kbCompression", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, 'z', "kb-compression", "The codec used to compress the values of the knowledge base (NONE, LZ4 or ZSTD); if not specified, the RocksDB default is used." ),
+						new FlaggedOption("ordering", JSAP.STRING_PARSER, KnowledgeBase.DEFAULT_NODE_ORDERING.name(), JSAP.NOT_REQUIRED, 'o', "ordering", "The strategy used to renumber the nodes of call graphs (IDENTITY, BFS or DEGREE)." ),
+						new UnflaggedOption("kb", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.NOT_GREEDY, "The directory of the RocksDB instance containing the knowledge base." ),
+						new UnflaggedOption("kbmeta", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.NOT_GREEDY, "The file containing the knowledge base metadata." ),
+						new UnflaggedOption("filename", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.GREEDY, "The JSON files, or directories containing JSON files." ),
+		});
+
+		final JSAPResult jsapResult = jsap.parse(args);
+		if ( jsap.messagePrinted() ) return;
+
+		final PayloadCompression.Codec compression = jsapResult.userSpecified("kbCompression") ? PayloadCompression.Codec.valueOf(jsapResult.getString("kbCompression").toUpperCase()) : null;
+		final KnowledgeBase kb = KnowledgeBase.getInstance(jsapResult.getString("kb"), jsapResult.getString("kbmeta"), KnowledgeBase.DEFAULT_GRAPH_CACHE_SIZE, compression);
+		kb.setNodeOrdering(NodeOrdering.valueOf(jsapResult.getString("ordering").toUpperCase()));
+		final File tempDir = jsapResult.userSpecified("tempDir") ? new File(jsapResult.getString("tempDir")) : null;
+		new BulkLoader(kb, jsapResult.getInt("threads")).load(expand(jsapResult.getStringArray("filename")), tempDir);
+		kb.close();
+	}
+}
@@ -0,0 +1,170 @@
+package eu.fasten.core.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONException;
+import org.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.martiansoftware.jsap.FlaggedOption;
+import com.martiansoftware.jsap.JSAP;
+import com.martiansoftware.jsap.JSAPException;
+import com.martiansoftware.jsap.JSAPResult;
+import com.martiansoftware.jsap.Parameter;
+import com.martiansoftware.jsap.SimpleJSAP;
+import com.martiansoftware.jsap.Switch;
+import com.martiansoftware.jsap.UnflaggedOption;
+
+import eu.fasten.core.data.PayloadCompression;
+import eu.fasten.core.data.PayloadCompression.Codec;
+import eu.fasten.core.data.RevisionCallGraph;
+import eu.fasten.core.data.RevisionCallGraphCodec;
+
+/** Compares the compression ratio and throughput of the {@linkplain PayloadCompression payload codecs} on a set of call graphs.
+ *
+ *  <p>The call graphs are shuffled; a dictionary is trained on a fraction of them, and all codecs are measured on the remaining ones
+ *  (on all call graphs, if the fraction is one). Each payload is compressed individually, as a Kafka record or a knowledge-base value would be;
+ *  gzip, the former compression type of our Kafka producers, is included as a baseline. Throughput is measured on the uncompressed size,
+ *  and the best of several rounds is reported.
+ */
+public class CompressionBenchmark {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CompressionBenchmark.class);
+
+	/** A codec under benchmark. */
+	private interface Compressor {
+		byte[] compress(byte[] payload) throws IOException;
+		byte[] decompress(byte[] compressed) throws IOException;
+	}
+
+	private static final Compressor GZIP = new Compressor() {
+		@Override
+		public byte[] compress(final byte[] payload) throws IOException {
+			final ByteArrayOutputStream os = new ByteArrayOutputStream();
+			try (GZIPOutputStream gzip = new GZIPOutputStream(os)) {
+				gzip.write(payload);
+			}
+			return os.toByteArray();
+		}
+
+		@Override
+		public byte[] decompress(final byte[] compressed) throws IOException {
+			try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+				return is.readAllBytes();
+			}
+		}
+	};
+
+	private static Compressor of(final PayloadCompression compression) {
+		return new Compressor() {
+			@Override
+			public byte[] compress(final byte[] payload) {
+				return compression.compress(payload);
+			}
+
+			@Override
+			public byte[] decompress(final byte[] compressed) throws IOException {
+				return compression.decompress(compressed);
+			}
+		};
+	}
+
+	/** Measures a codec and prints a line of results.
+	 *
+	 * @param name the name of the codec.
+	 * @param compressor the codec.
+	 * @param payloads the payloads.
+	 * @param rounds the number of rounds.
+	 */
+	private static void measure(final String name, final Compressor compressor, final List<byte[]> payloads, final int rounds) throws IOException {
+		long size = 0, compressedSize = 0, compressionTime = Long.MAX_VALUE, decompressionTime = Long.MAX_VALUE;
+		for (int r = 0; r < rounds; r++) {
+			size = compressedSize = 0;
+			final List<byte[]> compressed = new ArrayList<>(payloads.size());
+			long start = System.nanoTime();
+			for (final byte[] payload : payloads) compressed.add(compressor.compress(payload));
+			compressionTime = Math.min(compressionTime, System.nanoTime() - start);
+			start = System.nanoTime();
+			for (final byte[] c : compressed) size += compressor.decompress(c).length;
+			decompressionTime = Math.min(decompressionTime, System.nanoTime() - start);
+			for (final byte[] c : compressed) compressedSize += c.length;
+		}
+		System.out.println(String.format(Locale.ROOT, "%-12s %14d %14d %8.3f %12.1f %12.1f", name, size, compressedSize, (double)size / compressedSize,
+				size * 1E3 / compressionTime, size * 1E3 / decompressionTime));
+	}
+
+	public static void main(final String[] args) throws JSAPException, IOException, JSONException, URISyntaxException {
+		final SimpleJSAP jsap = new SimpleJSAP(CompressionBenchmark.class.getName(),
+				"Compares the compression ratio and throughput (MB/s on uncompressed data) of gzip, LZ4, Zstandard and Zstandard with a trained dictionary on a set of call graphs (JSON or encoded, possibly compressed).",
+				new Parameter[] {
+						new FlaggedOption("train", JSAP.DOUBLE_PARSER, "0.1", JSAP.NOT_REQUIRED, 't', "train", "The fraction of call graphs used to train the dictionary." ),
+						new FlaggedOption("dictionarySize", JSAP.INTSIZE_PARSER, String.valueOf(PayloadCompression.DEFAULT_DICTIONARY_SIZE), JSAP.NOT_REQUIRED, 'd', "dictionary-size", "The maximum size of the dictionary." ),
+						new FlaggedOption("level", JSAP.INTEGER_PARSER, String.valueOf(PayloadCompression.DEFAULT_LEVEL), JSAP.NOT_REQUIRED, 'l', "level", "The Zstandard compression level." ),
+						new FlaggedOption("rounds", JSAP.INTEGER_PARSER, "3", JSAP.NOT_REQUIRED, 'r', "rounds", "The number of rounds (the best one is reported)." ),
+						new FlaggedOption("seed", JSAP.LONG_PARSER, "0", JSAP.NOT_REQUIRED, 's', "seed", "The seed used to shuffle the call graphs." ),
+						new Switch("encode", 'e', "encode", "Encode JSON call graphs in binary form before compressing them."),
+						new UnflaggedOption("filename", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.GREEDY, "The files containing the call graphs." ),
+		});
+
+		final JSAPResult jsapResult = jsap.parse(args);
+		if ( jsap.messagePrinted() ) return;
+
+		final PayloadCompression reader = new PayloadCompression(Codec.NONE);
+		final List<byte[]> payloads = new ArrayList<>();
+		for (final String file : jsapResult.getStringArray("filename")) {
+			byte[] payload = reader.decompressIfNeeded(Files.readAllBytes(new File(file).toPath()));
+			if (jsapResult.getBoolean("encode") && !RevisionCallGraphCodec.isEncoded(payload))
+				payload = RevisionCallGraphCodec.encode(new RevisionCallGraph(new JSONTokener(new InputStreamReader(new ByteArrayInputStream(payload), StandardCharsets.UTF_8)), false));
+			payloads.add(payload);
+		}
+		Collections.shuffle(payloads, new Random(jsapResult.getLong("seed")));
+
+		final int nTrain = (int)Math.ceil(payloads.size() * jsapResult.getDouble("train"));
+		final List<byte[]> training = payloads.subList(0, nTrain);
+		final List<byte[]> test = nTrain < payloads.size() ? payloads.subList(nTrain, payloads.size()) : payloads;
+		final int sampleSize = (int)Math.min(Integer.MAX_VALUE - 8, training.stream().mapToLong(p -> p.length).sum());
+		final byte[] dictionary = PayloadCompression.trainDictionary(training.iterator(), sampleSize, jsapResult.getInt("dictionarySize"));
+		LOGGER.info("Trained a dictionary of " + dictionary.length + " bytes on " + training.size() + " call graphs; measuring on " + test.size() + " call graphs");
+
+		final int level = jsapResult.getInt("level"), rounds = jsapResult.getInt("rounds");
+		System.out.println(String.format(Locale.ROOT, "%-12s %14s %14s %8s %12s %12s", "codec", "bytes", "compressed", "ratio", "comp. MB/s", "decomp. MB/s"));
+		measure("gzip", GZIP, test, rounds);
+		measure("lz4", of(new PayloadCompression(Codec.LZ4)), test, rounds);
+		measure("zstd", of(new PayloadCompression(Codec.ZSTD, level)), test, rounds);
+		measure("zstd+dict", of(new PayloadCompression(Codec.ZSTD, level, dictionary)), test, rounds);
+	}
+}
@@ -0,0 +1,95 @@
+package eu.fasten.core.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import it.unimi.dsi.Util;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.AbstractLong2IntFunction;
+
+/** An immutable map from GIDs to LIDs: the inverse of the LID-to-GID array of a call graph.
+ *
+ * <p>Instead of a hash table, instances keep a reference to the LID-to-GID array and the LIDs sorted by GID, and
+ * answer queries by binary search; if the array is already sorted (as it happens, for instance, for call graphs whose
+ * nodes have not been renumbered and appear in GID order), not even the sorted LIDs are stored. Thus, instances
+ * use at most four bytes per node, whereas an open-addressing hash table from longs to integers uses, depending on its fill,
+ * between 16 and 32 bytes per node (plus the time needed to rehash it when the call graph is loaded).
+ *
+ * <p>The default return value is -1.
+ */
+public class GID2LIDMap extends AbstractLong2IntFunction {
+	private static final long serialVersionUID = 1L;
+
+	/** The LID-to-GID array, which must not contain duplicates. */
+	private final long[] LID2GID;
+	/** The LIDs in increasing GID order, or {@code null} if {@link #LID2GID} is sorted. */
+	private final int[] sortedLIDs;
+
+	/** Creates a map inverting a LID-to-GID array.
+	 *
+	 * @param LID2GID an array without duplicates, which must not be modified afterwards.
+	 */
+	public GID2LIDMap(final long[] LID2GID) {
+		this.LID2GID = LID2GID;
+		defRetValue = -1;
+		boolean sorted = true;
+		for(int i = 1; i < LID2GID.length; i++) if (LID2GID[i - 1] >= LID2GID[i]) {
+			sorted = false;
+			break;
+		}
+		if (sorted) sortedLIDs = null;
+		else {
+			sortedLIDs = Util.identity(LID2GID.length);
+			IntArrays.quickSort(sortedLIDs, (x, y) -> Long.compare(LID2GID[x], LID2GID[y]));
+		}
+	}
+
+	/** Returns the position in GID order of a GID.
+	 *
+	 * @param gid a GID.
+	 * @return the position of <code>gid</code> in GID order, or -1 if <code>gid</code> is not in the map.
+	 */
+	private int find(final long gid) {
+		int from = 0, to = LID2GID.length - 1;
+		while(from <= to) {
+			final int mid = (from + to) >>> 1;
+			final long midGid = LID2GID[sortedLIDs == null ? mid : sortedLIDs[mid]];
+			if (midGid < gid) from = mid + 1;
+			else if (midGid > gid) to = mid - 1;
+			else return mid;
+		}
+		return -1;
+	}
+
+	@Override
+	public int get(final long gid) {
+		final int pos = find(gid);
+		if (pos == -1) return defRetValue;
+		return sortedLIDs == null ? pos : sortedLIDs[pos];
+	}
+
+	@Override
+	public boolean containsKey(final long gid) {
+		return find(gid) != -1;
+	}
+
+	@Override
+	public int size() {
+		return LID2GID.length;
+	}
+}
@@ -0,0 +1,296 @@
+package eu.fasten.core.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+
+import it.unimi.dsi.bits.Fast;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.io.NullOutputStream;
+import it.unimi.dsi.io.OutputBitStream;
+import it.unimi.dsi.sux4j.util.EliasFanoMonotoneLongBigList;
+import it.unimi.dsi.webgraph.BVGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.NodeIterator;
+
+/** Compresses graphs in the {@link BVGraph} format without touching the filesystem.
+ *
+ * <p>{@link BVGraph#store(ImmutableGraph, CharSequence)} writes the bit stream, the offsets and the properties of
+ * the compressed graph to files, which must then be read back by {@link BVGraph#load(CharSequence)}. This class
+ * replicates the compression algorithm of {@link BVGraph} with default parameters, but writes the bit stream
+ * to a byte array and computes offsets and properties directly: the returned graph has the same bits
+ * and offsets as the one obtained by storing and loading.
+ *
+ * <p>This class extends {@link BVGraph} only to access its coding methods; its instances are never returned.
+ */
+public class InMemoryBVGraphCompressor extends BVGraph {
+	/** The successors of the current node that are not copied from the reference list. */
+	private final IntArrayList extras = new IntArrayList();
+	/** The lengths of the alternating copy and skip blocks of the current node. */
+	private final IntArrayList blocks = new IntArrayList();
+	/** The left extremes of the intervals of the current node. */
+	private final IntArrayList left = new IntArrayList();
+	/** The lengths of the intervals of the current node. */
+	private final IntArrayList len = new IntArrayList();
+	/** The residuals of the current node. */
+	private final IntArrayList residuals = new IntArrayList();
+
+	private long copiedArcs, intervalisedArcs, residualArcs;
+	private long bitsForOutdegrees, bitsForReferences, bitsForBlocks, bitsForIntervals, bitsForResiduals;
+
+	private InMemoryBVGraphCompressor() {}
+
+	/** Compresses a graph in memory.
+	 *
+	 * @param graph a graph.
+	 * @param properties a property object that will be filled with the properties that {@link BVGraph#store(ImmutableGraph, CharSequence)}
+	 * would write (except for gap statistics and the compression ratio), or {@code null}.
+	 * @return a {@link BVGraph} representing <code>graph</code>, whose bit stream is kept in memory.
+	 */
+	public static BVGraph compress(final ImmutableGraph graph, final Properties properties) throws IOException {
+		final InMemoryBVGraphCompressor compressor = new InMemoryBVGraphCompressor();
+		compressor.compressInternal(graph, properties);
+		// A plain BVGraph sharing our fields
+		return compressor.copy();
+	}
+
+	private void compressInternal(final ImmutableGraph graph, final Properties properties) throws IOException {
+		final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
+		final OutputBitStream graphObs = new OutputBitStream(fbaos, 0);
+		final OutputBitStream bitCount = new OutputBitStream(NullOutputStream.getInstance(), 0);
+
+		final int n = graph.numNodes();
+		final int cyclicBufferSize = windowSize + 1;
+		final int[][] list = new int[cyclicBufferSize][INITIAL_SUCCESSOR_LIST_LENGTH];
+		final int[] listLen = new int[cyclicBufferSize];
+		final int[] refCount = new int[cyclicBufferSize];
+		final LongArrayList offsets = new LongArrayList(n + 1);
+		long totLinks = 0, totRef = 0, totDist = 0;
+
+		final NodeIterator nodeIterator = graph.nodeIterator();
+		for(int i = 0; i < n; i++) {
+			final int currNode = nodeIterator.nextInt();
+			final int outd = nodeIterator.outdegree();
+			final int currIdx = currNode % cyclicBufferSize;
+
+			offsets.add(graphObs.writtenBits());
+			bitsForOutdegrees += writeOutdegree(graphObs, outd);
+
+			list[currIdx] = IntArrays.ensureCapacity(list[currIdx], outd, 0);
+			System.arraycopy(nodeIterator.successorArray(), 0, list[currIdx], 0, outd);
+			listLen[currIdx] = outd;
+			if (outd == 0) continue;
+
+			// Choose the reference in the window that minimizes the number of bits (0 means no reference)
+			int bestComp = Integer.MAX_VALUE, bestCand = -1;
+			refCount[currIdx] = -1;
+			for(int r = 0; r < cyclicBufferSize; r++) {
+				final int cand = (currNode - r + cyclicBufferSize) % cyclicBufferSize;
+				if (refCount[cand] < maxRefCount && listLen[cand] != 0) {
+					final int t = diffComp(bitCount, currNode, r, list[cand], listLen[cand], list[currIdx], outd, false);
+					if (t < bestComp) {
+						bestComp = t;
+						bestCand = cand;
+					}
+				}
+			}
+
+			refCount[currIdx] = refCount[bestCand] + 1;
+			final int bestRef = (currNode - bestCand + cyclicBufferSize) % cyclicBufferSize;
+			diffComp(graphObs, currNode, bestRef, list[bestCand], listLen[bestCand], list[currIdx], outd, true);
+
+			totLinks += outd;
+			totRef += refCount[currIdx];
+			totDist += bestRef;
+		}
+
+		final long graphWrittenBits = graphObs.writtenBits();
+		offsets.add(graphWrittenBits);
+		graphObs.flush();
+
+		this.n = n;
+		this.m = totLinks;
+		this.isMemory = true;
+		this.offsetType = 1;
+		this.graphMemory = Arrays.copyOf(fbaos.array, fbaos.length);
+		// Same upper bound as BVGraph.load()
+		this.offsets = new EliasFanoMonotoneLongBigList(n + 1, graphMemory.length * 8L + 1, offsets.iterator());
+
+		if (properties == null) return;
+		final DecimalFormat format = (DecimalFormat)NumberFormat.getInstance(Locale.US);
+		format.applyPattern("0.###");
+		properties.setProperty("nodes", String.valueOf(n));
+		properties.setProperty("arcs", String.valueOf(totLinks));
+		properties.setProperty("windowsize", String.valueOf(windowSize));
+		properties.setProperty("maxrefcount", String.valueOf(maxRefCount));
+		properties.setProperty("minintervallength", String.valueOf(minIntervalLength));
+		properties.setProperty("zetak", String.valueOf(zetaK));
+		properties.setProperty("compressionflags", "");
+		properties.setProperty("avgref", format.format((double)totRef / n));
+		properties.setProperty("avgdist", format.format((double)totDist / n));
+		properties.setProperty("copiedarcs", String.valueOf(copiedArcs));
+		properties.setProperty("intervalisedarcs", String.valueOf(intervalisedArcs));
+		properties.setProperty("residualarcs", String.valueOf(residualArcs));
+		properties.setProperty("bitsperlink", format.format((double)graphWrittenBits / totLinks));
+		properties.setProperty("bitspernode", format.format((double)graphWrittenBits / n));
+		properties.setProperty("avgbitsforoutdegrees", format.format((double)bitsForOutdegrees / n));
+		properties.setProperty("avgbitsforreferences", format.format((double)bitsForReferences / n));
+		properties.setProperty("avgbitsforblocks", format.format((double)bitsForBlocks / n));
+		properties.setProperty("avgbitsforresiduals", format.format((double)bitsForResiduals / n));
+		properties.setProperty("avgbitsforintervals", format.format((double)bitsForIntervals / n));
+		properties.setProperty("bitsforoutdegrees", Long.toString(bitsForOutdegrees));
+		properties.setProperty("bitsforreferences", Long.toString(bitsForReferences));
+		properties.setProperty("bitsforblocks", Long.toString(bitsForBlocks));
+		properties.setProperty("bitsforresiduals", Long.toString(bitsForResiduals));
+		properties.setProperty("bitsforintervals", Long.toString(bitsForIntervals));
+		properties.setProperty("graphclass", BVGraph.class.getName());
+		properties.setProperty("version", String.valueOf(0));
+	}
+
+	/** Compresses the successor list of a node with respect to a reference list, exactly as {@link BVGraph} does.
+	 *
+	 * @param obs the output bit stream.
+	 * @param currNode the current node.
+	 * @param ref the reference (the distance from the referenced node), or 0 for no reference.
+	 * @param refList the successor list of the referenced node.
+	 * @param refLen the length of <code>refList</code>.
+	 * @param currList the successor list of the current node.
+	 * @param currLen the length of <code>currList</code>.
+	 * @param forReal whether the compression is actually happening, or we are just counting bits (in which case statistics are not updated).
+	 * @return the number of bits written.
+	 */
+	private int diffComp(final OutputBitStream obs, final int currNode, final int ref, final int[] refList, int refLen, final int[] currList, final int currLen, final boolean forReal) throws IOException {
+		final long writtenBitsAtStart = obs.writtenBits();
+		int j = 0, k = 0, prev = 0, currBlockLen = 0, t;
+		boolean copying = true;
+
+		if (ref == 0) refLen = 0;
+		extras.clear();
+		blocks.clear();
+
+		// Alternating copy and skip blocks over the reference list
+		while(j < currLen && k < refLen) {
+			if (copying) {
+				if (currList[j] > refList[k]) {
+					blocks.add(currBlockLen);
+					copying = false;
+					currBlockLen = 0;
+				}
+				else if (currList[j] < refList[k]) extras.add(currList[j++]);
+				else {
+					j++;
+					k++;
+					currBlockLen++;
+				}
+			}
+			else {
+				if (currList[j] < refList[k]) extras.add(currList[j++]);
+				else if (currList[j] > refList[k]) {
+					k++;
+					currBlockLen++;
+				}
+				else {
+					blocks.add(currBlockLen);
+					copying = true;
+					currBlockLen = 0;
+				}
+			}
+		}
+		if (copying && k < refLen) blocks.add(currBlockLen);
+		while(j < currLen) extras.add(currList[j++]);
+
+		final int[] block = blocks.elements();
+		final int blockCount = blocks.size();
+		final int extraCount = extras.size();
+
+		if (windowSize > 0) {
+			t = writeReference(obs, ref);
+			if (forReal) bitsForReferences += t;
+		}
+
+		if (ref != 0) {
+			t = writeBlockCount(obs, blockCount);
+			if (forReal) bitsForBlocks += t;
+			if (blockCount > 0) {
+				t = writeBlock(obs, block[0]);
+				if (forReal) bitsForBlocks += t;
+				for(int i = 1; i < blockCount; i++) {
+					t = writeBlock(obs, block[i] - 1);
+					if (forReal) bitsForBlocks += t;
+				}
+			}
+		}
+
+		if (extraCount > 0) {
+			final int[] residual;
+			final int residualCount;
+
+			if (minIntervalLength != NO_INTERVALS) {
+				final int intervalCount = intervalize(extras, minIntervalLength, left, len, residuals);
+				t = obs.writeGamma(intervalCount);
+				if (forReal) bitsForIntervals += t;
+
+				for(int i = 0; i < intervalCount; i++) {
+					if (i == 0) t = obs.writeLongGamma(Fast.int2nat((long)(prev = left.getInt(i)) - currNode));
+					else t = obs.writeGamma(left.getInt(i) - prev - 1);
+					if (forReal) bitsForIntervals += t;
+					final int currIntLen = len.getInt(i);
+					prev = left.getInt(i) + currIntLen;
+					t = obs.writeGamma(currIntLen - minIntervalLength);
+					if (forReal) bitsForIntervals += t;
+				}
+
+				residual = residuals.elements();
+				residualCount = residuals.size();
+			}
+			else {
+				residual = extras.elements();
+				residualCount = extras.size();
+			}
+
+			if (forReal) {
+				copiedArcs += currLen - extraCount;
+				intervalisedArcs += extraCount - residualCount;
+				residualArcs += residualCount;
+			}
+
+			if (residualCount != 0) {
+				t = writeResidual(obs, Fast.int2nat((long)(prev = residual[0]) - currNode));
+				if (forReal) bitsForResiduals += t;
+				for(int i = 1; i < residualCount; i++) {
+					if (residual[i] == prev) throw new IllegalArgumentException("Repeated successor " + prev + " in successor list of node " + currNode);
+					t = writeResidual(obs, residual[i] - prev - 1);
+					if (forReal) bitsForResiduals += t;
+					prev = residual[i];
+				}
+			}
+		}
+		else if (forReal) copiedArcs += currLen;
+
+		return (int)(obs.writtenBits() - writtenBitsAtStart);
+	}
+}
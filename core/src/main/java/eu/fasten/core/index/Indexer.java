@@ -18,25 +18,41 @@ package eu.fasten.core.index;
  * limitations under the License.
  */
 
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.json.JSONTokener;
 import org.rocksdb.RocksDBException;
 import org.slf4j.Logger;
@@ -50,89 +66,299 @@ import com.martiansoftware.jsap.Parameter;
 import com.martiansoftware.jsap.SimpleJSAP;
 import com.martiansoftware.jsap.UnflaggedOption;
 
+import eu.fasten.core.data.CallGraphTransport;
+import eu.fasten.core.data.ExtendedRevisionCallGraph;
 import eu.fasten.core.data.KnowledgeBase;
+import eu.fasten.core.data.KnowledgeBase.PreparedCallGraph;
+import eu.fasten.core.data.PayloadCompression;
 import eu.fasten.core.data.RevisionCallGraph;
+import eu.fasten.core.data.RevisionCallGraphCodec;
 /** A sample in-memory indexer that reads, compresses and stores in memory
- *  graphs stored in JSON format and answers to impact queries.
+ *  graphs stored in JSON format (or {@linkplain RevisionCallGraphCodec encoded}) and answers to impact queries.
  *
+ *  <p>Ingestion is pipelined: JSON records are parsed by a pool of threads, the resulting call graphs are
+ *  {@linkplain KnowledgeBase#prepare(RevisionCallGraph) prepared} (i.e., built and compressed) by a second pool of threads,
+ *  and a single thread commits them to the knowledge base in input order, in batches.
  */
 public class Indexer {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Indexer.class);
+	/** The default number of revisions committed to the knowledge base in a single write batch. */
+	public static final int DEFAULT_BATCH_SIZE = 64;
 	private final KnowledgeBase kb;
+	/** The number of threads of each parallel stage of the pipeline. */
+	private final int threads;
+	/** The maximum number of revisions committed to the knowledge base in a single write batch. */
+	private final int batchSize;
+	/** The payload-compression layer used to decompress {@linkplain PayloadCompression compressed} call graphs. */
+	private final PayloadCompression compression;
 
-
-	/** Creates an indexer using the given database instance.
+	/** Creates an indexer using the given knowledge base, with as many threads per stage as available processors
+	 *  and a {@linkplain #DEFAULT_BATCH_SIZE default} batch size.
 	 *
-	 * @param db the database instance used by this indexer.
+	 * @param kb the knowledge base used by this indexer.
 	 */
 	public Indexer(final KnowledgeBase kb) {
+		this(kb, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+	}
+
+	/** Creates an indexer using the given knowledge base.
+	 *
+	 * @param kb the knowledge base used by this indexer.
+	 * @param threads the number of threads used for parsing, and the number of threads used for building and compressing graphs.
+	 * @param batchSize the maximum number of revisions committed to the knowledge base in a single write batch.
+	 */
+	public Indexer(final KnowledgeBase kb, final int threads, final int batchSize) {
+		this(kb, threads, batchSize, new PayloadCompression(PayloadCompression.Codec.NONE));
+	}
+
+	/** Creates an indexer using the given knowledge base and able to index compressed call graphs.
+	 *
+	 * @param kb the knowledge base used by this indexer.
+	 * @param threads the number of threads used for parsing, and the number of threads used for building and compressing graphs.
+	 * @param batchSize the maximum number of revisions committed to the knowledge base in a single write batch.
+	 * @param compression a payload-compression layer knowing the dictionaries used to compress the call graphs.
+	 */
+	public Indexer(final KnowledgeBase kb, final int threads, final int batchSize, final PayloadCompression compression) {
 		this.kb = kb;
+		this.threads = threads;
+		this.batchSize = batchSize;
+		this.compression = compression;
 	}
 
 	private final boolean[] stopIndexing = new boolean[1];
 
-	public Future<Void> index(final long max, final Consumer<String, String> consumer, final String topic) {
+	/** An ingestion pipeline. Revision call graphs are parsed by a pool of threads and {@linkplain KnowledgeBase#prepare(RevisionCallGraph) prepared}
+	 *  by a second pool of threads; a single thread commits the prepared call graphs to the knowledge base, in the order in which they were
+	 *  submitted, in batches of at most {@link Indexer#batchSize} revisions (smaller batches are committed when no revision is waiting).
+	 *  The number of revisions in flight is bounded, so {@link #submit(Callable)} blocks when the later stages cannot keep up.
+	 */
+	private final class Pipeline {
+		private final ExecutorService parsers = Executors.newFixedThreadPool(threads);
+		private final ExecutorService preparers = Executors.newFixedThreadPool(threads);
+		private final ExecutorService committer = Executors.newSingleThreadExecutor();
+		/** The revisions in flight, in submission order. */
+		private final BlockingQueue<CompletableFuture<PreparedCallGraph>> inFlight = new ArrayBlockingQueue<>(4 * threads + batchSize);
+		/** A marker for the end of the input. */
+		private final CompletableFuture<PreparedCallGraph> end = new CompletableFuture<>();
+		/** The result of the committing thread (the number of revisions committed). */
+		private final Future<Long> committed;
+
+		private Pipeline() {
+			committed = committer.submit(this::commit);
+		}
+
+		/** Commits the prepared call graphs in submission order, until the end marker is found.
+		 *
+		 * @return the number of revisions committed.
+		 */
+		private long commit() throws IOException, RocksDBException, InterruptedException {
+			long index = kb.size(), n = 0;
+			final List<PreparedCallGraph> batch = new ArrayList<>();
+			for(;;) {
+				final CompletableFuture<PreparedCallGraph> future = inFlight.take();
+				if (future != end) batch.add(future.join());
+				if (!batch.isEmpty() && (future == end || batch.size() >= batchSize || inFlight.isEmpty())) {
+					kb.add(batch, index);
+					LOGGER.debug("Committed revisions " + index + "-" + (index + batch.size() - 1));
+					index += batch.size();
+					n += batch.size();
+					batch.clear();
+				}
+				if (future == end) return n;
+			}
+		}
+
+		/** Submits a revision call graph to the pipeline.
+		 *
+		 * @param parser a task returning the revision call graph, which will be run in the parsing stage.
+		 */
+		private void submit(final Callable<RevisionCallGraph> parser) throws InterruptedException, ExecutionException {
+			put(CompletableFuture.supplyAsync(() -> {
+				try {
+					return parser.call();
+				} catch (final Exception e) {
+					throw new CompletionException(e);
+				}
+			}, parsers).thenApplyAsync(g -> {
+				try {
+					return kb.prepare(g);
+				} catch (final IOException e) {
+					throw new CompletionException(e);
+				}
+			}, preparers));
+		}
+
+		/** Enqueues a future, waiting for space and checking that the committing thread is still running. */
+		private void put(final CompletableFuture<PreparedCallGraph> future) throws InterruptedException, ExecutionException {
+			while(!inFlight.offer(future, 1, TimeUnit.SECONDS)) {
+				if (committed.isDone()) {
+					committed.get();
+					throw new IllegalStateException("The committing thread has terminated");
+				}
+			}
+		}
+
+		/** Waits for all submitted revisions to be committed and shuts down the pipeline.
+		 *
+		 * @return the number of revisions committed.
+		 */
+		private long finish() throws IOException, RocksDBException, InterruptedException {
+			try {
+				put(end);
+				return committed.get();
+			} catch (final ExecutionException e) {
+				// Failures of the parallel stages are wrapped in a CompletionException
+				Throwable cause = e.getCause();
+				if (cause instanceof CompletionException) cause = cause.getCause();
+				if (cause instanceof IOException) throw (IOException)cause;
+				if (cause instanceof RocksDBException) throw (RocksDBException)cause;
+				if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+				throw new RuntimeException(cause);
+			} finally {
+				parsers.shutdownNow();
+				preparers.shutdownNow();
+				committer.shutdownNow();
+			}
+		}
+	}
+
+	/** Parses a call graph, either in JSON format (encoded in UTF-8) or {@linkplain RevisionCallGraphCodec encoded}, and possibly
+	 *  {@linkplain PayloadCompression compressed}.
+	 *
+	 * @param is an input stream {@linkplain InputStream#markSupported() supporting marks}.
+	 * @return the call graph.
+	 */
+	private RevisionCallGraph parse(final InputStream is) throws IOException, JSONException, URISyntaxException {
+		if (PayloadCompression.isCompressed(is)) return parse(new ByteArrayInputStream(compression.decompress(is.readAllBytes())));
+		if (!RevisionCallGraphCodec.isEncoded(is)) return new RevisionCallGraph(new JSONTokener(new InputStreamReader(is, StandardCharsets.UTF_8)), false);
+		final RevisionCallGraph g = RevisionCallGraphCodec.read(is);
+		// As in JSON format, the graph of an extended revision call graph is not a list of arcs
+		if (g instanceof ExtendedRevisionCallGraph) throw new IllegalArgumentException("Extended revision call graphs cannot be indexed");
+		return g;
+	}
+
+	/** Parses the value of a Kafka record.
+	 *
+	 * @param value a string containing a JSON call graph, or an array of bytes containing a JSON or {@linkplain RevisionCallGraphCodec encoded}
+	 * call graph, possibly {@linkplain PayloadCompression compressed}.
+	 * @return the call graph.
+	 */
+	private RevisionCallGraph parse(final Object value) throws IOException, JSONException, URISyntaxException {
+		if (value instanceof String) return new RevisionCallGraph(new JSONTokener((String)value), false);
+		return parse(new ByteArrayInputStream((byte[])value));
+	}
+
+	/** Indexes the call graphs published on a Kafka topic, which cannot contain blob references.
+	 *
+	 * @param max the maximum number of call graphs that will be indexed.
+	 * @param consumer a Kafka consumer whose values are either strings, containing JSON call graphs, or arrays of bytes,
+	 * containing JSON or {@linkplain RevisionCallGraphCodec encoded} call graphs.
+	 * @param topic the topic.
+	 * @return a future that will complete when indexing ends.
+	 * @see #index(long, Consumer, String, File)
+	 */
+	public Future<Void> index(final long max, final Consumer<String, ?> consumer, final String topic) {
+		return index(max, consumer, topic, null);
+	}
+
+	/** Indexes the call graphs published on a Kafka topic, possibly {@linkplain CallGraphTransport transported} as chunks or blobs.
+	 *
+	 * @param max the maximum number of call graphs that will be indexed.
+	 * @param consumer a Kafka consumer whose values are either strings, containing JSON call graphs, or arrays of bytes,
+	 * containing JSON or {@linkplain RevisionCallGraphCodec encoded} call graphs, possibly {@linkplain PayloadCompression compressed}.
+	 * @param topic the topic.
+	 * @param blobStore the directory of the blob store of the transport, or {@code null}.
+	 * @return a future that will complete when indexing ends.
+	 */
+	public Future<Void> index(final long max, final Consumer<String, ?> consumer, final String topic, final File blobStore) {
+		final CallGraphTransport.Receiver receiver = new CallGraphTransport.Receiver(blobStore);
 		consumer.subscribe(Collections.singletonList(topic));
-		return Executors.newSingleThreadExecutor().submit(() -> {
-			long index = kb.size();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final Future<Void> future = executor.submit(() -> {
+			final Pipeline pipeline = new Pipeline();
 			long nIndexed = 0;
 			try {
 				while(!stopIndexing[0]) {
-					final ConsumerRecords<String, String> records = consumer.poll(Duration.ofDays(356));
+					final ConsumerRecords<String, ?> records = consumer.poll(Duration.ofDays(356));
 
-					for (final ConsumerRecord<String, String> record : records) {
+					for (final ConsumerRecord<String, ?> record : records) {
 						if (stopIndexing[0]) break;
-						final JSONObject json = new JSONObject(record.value());
-						try {
-							LOGGER.debug("Getting new record with key " + record.key());
-							kb.add(new RevisionCallGraph(json, false), index++);
-							nIndexed++;
-							if (nIndexed >= max) {
-								stopIndexing[0] = true;
-								break;
-							}
-						} catch(final IllegalArgumentException e) {
-							e.printStackTrace(System.err);
-							throw new RuntimeException(e);
+						LOGGER.debug("Getting new record with key " + record.key());
+						if (!CallGraphTransport.isTransported(record.headers())) pipeline.submit(() -> parse(record.value()));
+						else {
+							// Chunks and manifests are compressed individually
+							final Object value = record.value() instanceof byte[] ? compression.decompressIfNeeded((byte[])record.value()) : record.value();
+							final InputStream payload = receiver.receive(record.headers(), value);
+							// A chunk of a call graph that is not complete yet
+							if (payload == null) continue;
+							pipeline.submit(() -> {
+								try (InputStream is = new BufferedInputStream(payload)) {
+									return parse(is);
+								}
+							});
+						}
+						nIndexed++;
+						if (nIndexed >= max) {
+							stopIndexing[0] = true;
+							break;
 						}
 					}
 				}
-
-				return null;
 			}
 			finally {
-				consumer.close();
+				try {
+					pipeline.finish();
+				} finally {
+					consumer.close();
+				}
 			}
+
+			return null;
 		});
+		executor.shutdown();
+		return future;
 	}
 
-	public void index(final long max, final String... files) throws JSONException, IOException, RocksDBException, URISyntaxException {
-		long index = kb.size();
+	public void index(final long max, final String... files) throws JSONException, IOException, RocksDBException, URISyntaxException, InterruptedException {
+		final Pipeline pipeline = new Pipeline();
 		long nIndexed = 0;
-		for(final String file: files) {
-			LOGGER.debug("Parsing " + file);
-			final FileReader reader = new FileReader(file);
-			final JSONObject json = new JSONObject(new JSONTokener(reader));
-			kb.add(new RevisionCallGraph(json, false), index++);
-			nIndexed++;
-			if (nIndexed >= max)  break;
-			reader.close();
+		try {
+			for(final String file: files) {
+				if (nIndexed >= max) break;
+				pipeline.submit(() -> {
+					LOGGER.debug("Parsing " + file);
+					try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+						return parse(is);
+					}
+				});
+				nIndexed++;
+			}
+		} catch (final ExecutionException e) {
+			// The committing thread has failed: the cause is rethrown by finish()
+		} finally {
+			pipeline.finish();
 		}
 	}
 
 
 	public static void main(final String[] args) throws JSONException, URISyntaxException, JSAPException, IOException, RocksDBException, InterruptedException, ExecutionException, ClassNotFoundException {
 		final SimpleJSAP jsap = new SimpleJSAP( Indexer.class.getName(),
-				"Creates or updates a knowledge base (associated to a given database), indexing either a list of JSON files or a Kafka topic where JSON object are published",
+				"Creates or updates a knowledge base (associated to a given database), indexing either a list of files or a Kafka topic where call graphs are published, in JSON format or encoded",
 				new Parameter[] {
 						new FlaggedOption("topic", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, 't', "topic", "A kafka topic containing the input." ),
 						new FlaggedOption("host", JSAP.STRING_PARSER, "localhost", JSAP.NOT_REQUIRED, 'h', "host", "The host of the Kafka server." ),
 						new FlaggedOption("port", JSAP.INTEGER_PARSER, "30001", JSAP.NOT_REQUIRED, 'p', "port", "The port of the Kafka server." ),
 						new FlaggedOption("max", JSAP.LONG_PARSER, String.valueOf(Long.MAX_VALUE), JSAP.NOT_REQUIRED, 'm', "max", "The maximum number of call graphs that will be indexed." ),
+						new FlaggedOption("threads", JSAP.INTEGER_PARSER, String.valueOf(Runtime.getRuntime().availableProcessors()), JSAP.NOT_REQUIRED, 'T', "threads", "The number of threads used for parsing, and for building and compressing graphs." ),
+						new FlaggedOption("batch", JSAP.INTEGER_PARSER, String.valueOf(DEFAULT_BATCH_SIZE), JSAP.NOT_REQUIRED, 'b', "batch", "The maximum number of call graphs committed to the knowledge base at once." ),
+						new FlaggedOption("blobStore", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, 'B', "blob-store", "The directory of the blob store containing the call graphs referenced in the Kafka topic." ),
+						new FlaggedOption("dictionary", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, 'D', "dictionary", "A Zstandard dictionary used to compress call graphs (can be specified multiple times).").setAllowMultipleDeclarations(true),
+						new FlaggedOption("kbCompression", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, 'z', "kb-compression", "The codec used to compress the values of the knowledge base (NONE, LZ4 or ZSTD); if not specified, the RocksDB default is used." ),
+						new FlaggedOption("ordering", JSAP.STRING_PARSER, KnowledgeBase.DEFAULT_NODE_ORDERING.name(), JSAP.NOT_REQUIRED, 'o', "ordering", "The strategy used to renumber the nodes of call graphs (IDENTITY, BFS or DEGREE)." ),
 						new UnflaggedOption("kb", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.NOT_GREEDY, "The directory of the RocksDB instance containing the knowledge base." ),
 						new UnflaggedOption("kbmeta", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.NOT_GREEDY, "The file containing the knowledge base metadata." ),
-						new UnflaggedOption("filename", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, JSAP.GREEDY, "The name of the file containing the JSON object." ),
+						new UnflaggedOption("filename", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, JSAP.GREEDY, "The names of the files containing the call graphs." ),
 		});
 
 		final JSAPResult jsapResult = jsap.parse(args);
@@ -141,13 +367,18 @@ public class Indexer {
 		final String kbDir = jsapResult.getString("kb");
 		final String kbMetadataFilename = jsapResult.getString("kbmeta");
 
-		final KnowledgeBase kb = KnowledgeBase.getInstance(kbDir, kbMetadataFilename);
+		final PayloadCompression.Codec compression = jsapResult.userSpecified("kbCompression") ? PayloadCompression.Codec.valueOf(jsapResult.getString("kbCompression").toUpperCase()) : null;
+		final KnowledgeBase kb = KnowledgeBase.getInstance(kbDir, kbMetadataFilename, KnowledgeBase.DEFAULT_GRAPH_CACHE_SIZE, compression);
+		kb.setNodeOrdering(NodeOrdering.valueOf(jsapResult.getString("ordering").toUpperCase()));
 
-		final Indexer indexer = new Indexer(kb);
+		final String[] dictionaryFile = jsapResult.getStringArray("dictionary");
+		final byte[][] dictionary = new byte[dictionaryFile.length][];
+		for (int i = 0; i < dictionary.length; i++) dictionary[i] = Files.readAllBytes(new File(dictionaryFile[i]).toPath());
+		final Indexer indexer = new Indexer(kb, jsapResult.getInt("threads"), jsapResult.getInt("batch"), new PayloadCompression(PayloadCompression.Codec.NONE, dictionary));
 
 		final long max = jsapResult.getLong("max");
 
-		final Consumer<String, String> consumer;
+		final Consumer<String, byte[]> consumer;
 		if (jsapResult.userSpecified("topic")) {
 			// Kafka indexing
 			final String topic = jsapResult.getString("topic");
@@ -155,11 +386,12 @@ public class Indexer {
 			props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, jsapResult.getString("host") + ":" + Integer.toString(jsapResult.getInt("port")));
 			props.put(ConsumerConfig.GROUP_ID_CONFIG, UUID.randomUUID().toString()); // We want to have a random consumer group.
 			props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
-			props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+			props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
 			props.put("auto.offset.reset", "earliest");
 			props.put("max.poll.records", Integer.toString(Integer.MAX_VALUE));
 			consumer = new KafkaConsumer<>(props);
-			final Future<Void> future = indexer.index(max, consumer, topic);
+			final File blobStore = jsapResult.userSpecified("blobStore") ? new File(jsapResult.getString("blobStore")) : null;
+			final Future<Void> future = indexer.index(max, consumer, topic, blobStore);
 			future.get(); // Wait for indexing to complete
 		} else
 			// File indexing
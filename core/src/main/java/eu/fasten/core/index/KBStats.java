@@ -38,6 +38,7 @@ import com.martiansoftware.jsap.JSAPException;
 import com.martiansoftware.jsap.JSAPResult;
 import com.martiansoftware.jsap.Parameter;
 import com.martiansoftware.jsap.SimpleJSAP;
+import com.martiansoftware.jsap.Switch;
 import com.martiansoftware.jsap.UnflaggedOption;
 
 import eu.fasten.core.data.KnowledgeBase;
@@ -46,6 +47,7 @@ import it.unimi.dsi.logging.ProgressLogger;
 import it.unimi.dsi.webgraph.ImmutableGraph;
 import it.unimi.dsi.webgraph.LazyIntIterator;
 import it.unimi.dsi.webgraph.NodeIterator;
+import it.unimi.dsi.webgraph.Transform;
 
 
 public class KBStats {
@@ -61,6 +63,7 @@ public class KBStats {
 				new Parameter[] {
 						new FlaggedOption("gsd", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, 'g', "gsd", "Graph-size distribution (number of nodes  [int], one per graph, written in binary)." ),
 						new FlaggedOption("od", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, 'o', "od", "Outdegree distribution (graph id  [int], internal / external / total outdegree [int, int, int]; one 4-tuple for every (graph,function) pair, written in binary)." ),
+						new Switch("orderings", 'r', "orderings", "Recompress each graph after renumbering its nodes with every node ordering, and report the resulting bits/link." ),
 						new FlaggedOption("min", JSAP.INTEGER_PARSER, "0", JSAP.NOT_REQUIRED, 'm', "min", "Consider only graphs with at least this number of nodes." ),
 						new UnflaggedOption("kb", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.NOT_GREEDY, "The directory of the RocksDB instance containing the knowledge base." ),
 						new UnflaggedOption("kbmeta", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, JSAP.NOT_GREEDY, "The file containing the knowledge base metadata." ),
@@ -94,6 +97,11 @@ public class KBStats {
 		final StatsAccumulator arcs = new StatsAccumulator();
 		final StatsAccumulator bitsPerLink = new StatsAccumulator();
 		final StatsAccumulator bitsPerLinkt = new StatsAccumulator();
+		final boolean orderingsFlag = jsapResult.getBoolean("orderings");
+		final NodeOrdering[] orderings = NodeOrdering.values();
+		// Overall bits and arcs of the graphs recompressed with each ordering
+		final double[] orderingBits = new double[orderings.length];
+		long orderingArcs = 0;
 		int totGraphs = 0, statGraphs = 0;
 		for(final CallGraph callGraph: kb.callGraphs.values()) {
 			pl.update();
@@ -109,6 +117,14 @@ public class KBStats {
 			if (! Double.isNaN(bpl)) bitsPerLink.add(bpl);
 			final double bplt = Double.parseDouble((property[1].getProperty("bitsperlink")));
 			if (! Double.isNaN(bplt)) bitsPerLinkt.add(bplt);
+			if (orderingsFlag && graph[0].numArcs() > 0) {
+				for (final NodeOrdering ordering : orderings) {
+					final Properties p = new Properties();
+					InMemoryBVGraphCompressor.compress(Transform.map(graph[0], ordering.permutation(graph[0], callGraph.nInternal)), p);
+					orderingBits[ordering.ordinal()] += Double.parseDouble(p.getProperty("bitsperlink")) * graph[0].numArcs();
+				}
+				orderingArcs += graph[0].numArcs();
+			}
 			if (odFlag) {
 				NodeIterator nodeIterator = graph[0].nodeIterator();
 				int internalCalls = 0, externalCalls = 0, totalCalls = 0;
@@ -140,6 +156,14 @@ public class KBStats {
 		System.out.println("Arcs: " + arcs.snapshot());
 		System.out.println("Bits/link: " + bitsPerLink.snapshot());
 		System.out.println("Transpose bits/link: " + bitsPerLinkt.snapshot());
+		if (orderingsFlag) {
+			// The identity ordering is the numbering stored in the knowledge base
+			final double stored = orderingBits[NodeOrdering.IDENTITY.ordinal()] / orderingArcs;
+			for (final NodeOrdering ordering : orderings) {
+				final double bpl = orderingBits[ordering.ordinal()] / orderingArcs;
+				System.out.println("Bits/link with " + ordering + " ordering: " + bpl + " (gain w.r.t. stored ordering: " + 100 * (stored - bpl) / stored + "%)");
+			}
+		}
 	}
 
 }
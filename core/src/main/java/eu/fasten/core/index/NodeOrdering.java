@@ -0,0 +1,114 @@
+package eu.fasten.core.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import it.unimi.dsi.Util;
+import it.unimi.dsi.bits.LongArrayBitVector;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.LazyIntIterator;
+import it.unimi.dsi.webgraph.NodeIterator;
+
+/** Strategies to renumber the nodes of a call graph before compressing it.
+ *
+ * <p>The nodes of a call graph are numbered in order of appearance in its arc list, which is essentially arbitrary; renumbering
+ * them so that nodes that are close in the graph have close numbers makes successor lists more similar and their gaps smaller,
+ * which improves both the compression of {@link it.unimi.dsi.webgraph.BVGraph} and the locality of visits.
+ *
+ * <p>All strategies keep the first <code>nInternal</code> nodes (the internal ones) in the first <code>nInternal</code>
+ * positions: thus, a node is internal if and only if its number is smaller than <code>nInternal</code> both before
+ * and after renumbering.
+ */
+public enum NodeOrdering {
+	/** Nodes are not renumbered. */
+	IDENTITY,
+	/** Nodes are numbered in the order of a breadth-first visit that starts from every unvisited internal node, in order;
+	 *  successors are enqueued in increasing order. */
+	BFS,
+	/** Nodes are numbered in order of decreasing degree (indegree plus outdegree); nodes with the same degree keep their order. */
+	DEGREE;
+
+	/** Returns a permutation of the nodes of a call graph according to this strategy.
+	 *
+	 * @param graph a call graph.
+	 * @param nInternal the number of internal nodes, which must be the first ones.
+	 * @return a permutation mapping each node to its new number, suitable for
+	 * {@link it.unimi.dsi.webgraph.Transform#map(ImmutableGraph, int[])}; nodes smaller than <code>nInternal</code> are mapped to
+	 * nodes smaller than <code>nInternal</code>.
+	 */
+	public int[] permutation(final ImmutableGraph graph, final int nInternal) {
+		final int n = graph.numNodes();
+		switch(this) {
+		case IDENTITY:
+			return Util.identity(n);
+		case BFS:
+			return bfs(graph, nInternal);
+		case DEGREE:
+			final int[] degree = new int[n];
+			final NodeIterator nodeIterator = graph.nodeIterator();
+			for(int i = 0; i < n; i++) {
+				final int x = nodeIterator.nextInt();
+				degree[x] += nodeIterator.outdegree();
+				final LazyIntIterator successors = nodeIterator.successors();
+				for(int s; (s = successors.nextInt()) != -1;) degree[s]++;
+			}
+			final int[] order = Util.identity(n);
+			// Stable sorts of the internal and of the external nodes
+			IntArrays.mergeSort(order, 0, nInternal, (x, y) -> Integer.compare(degree[y], degree[x]));
+			IntArrays.mergeSort(order, nInternal, n, (x, y) -> Integer.compare(degree[y], degree[x]));
+			return Util.invertPermutation(order);
+		default:
+			throw new AssertionError();
+		}
+	}
+
+	/** Returns the permutation induced by a breadth-first visit keeping internal nodes first.
+	 *
+	 * @param graph a graph.
+	 * @param nInternal the number of internal nodes.
+	 * @return the permutation.
+	 */
+	private static int[] bfs(final ImmutableGraph graph, final int nInternal) {
+		final int n = graph.numNodes();
+		final int[] perm = new int[n];
+		final IntArrayFIFOQueue queue = new IntArrayFIFOQueue();
+		final LongArrayBitVector visited = LongArrayBitVector.ofLength(n);
+		int internalPos = 0, externalPos = nInternal;
+
+		// External nodes have no successors, but they might be isolated
+		for(int start = 0; start < n; start++) {
+			if (visited.getBoolean(start)) continue;
+			queue.enqueue(start);
+			visited.set(start);
+			while(!queue.isEmpty()) {
+				final int x = queue.dequeueInt();
+				perm[x] = x < nInternal ? internalPos++ : externalPos++;
+				final LazyIntIterator successors = graph.successors(x);
+				for(int s; (s = successors.nextInt()) != -1;) {
+					if (visited.getBoolean(s)) continue;
+					visited.set(s);
+					queue.enqueue(s);
+				}
+			}
+		}
+
+		return perm;
+	}
+}
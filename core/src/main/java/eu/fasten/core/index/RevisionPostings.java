@@ -0,0 +1,435 @@
+package eu.fasten.core.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.IngestExternalFileOptions;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.SstFileWriter;
+import org.rocksdb.WriteBatch;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.primitives.Longs;
+
+import it.unimi.dsi.fastutil.io.FastByteArrayOutputStream;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongIterable;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+
+/** Posting lists mapping GIDs to sorted lists of revision indices, stored in a RocksDB column family.
+ *
+ * <p>The posting list of a GID is made of a <em>base</em> list, stored under a key made of the big-endian GID as a
+ * {@linkplain PostingList compressed sequence} of gaps, and of a small <em>tail</em> of recent additions, each stored as a key made of the
+ * big-endian GID and revision index, with an empty value (keys of the tail sort right after the key of the base list).
+ * Adding a revision index is thus a blind write in a {@link WriteBatch}, until the tail contains {@link #MAX_TAIL_SIZE}
+ * elements: at that point, the tail is merged into the base list, and its keys are deleted, in the same batch.
+ *
+ * <p>Recently used lists are kept in compressed form in a cache bounded by their size in bytes, and are decoded while iterating.
+ * {@link #add(WriteBatch, long, long)} updates the cache eagerly, so it must not run concurrently with {@link #get(long)}.
+ * Lists modified in a batch are also pinned in memory until the batch is written (as the database does not
+ * contain them yet), which must be signalled by {@link #commit()}; if the batch is not written, the cache must be
+ * {@linkplain #invalidate() invalidated}.
+ *
+ * <p>For bulk loads, {@link #ingest(Long2ObjectMap, File, Options)} merges many additions with the stored lists in a single sorted pass,
+ * writing the resulting base lists to an SST file that is then ingested in the database.
+ */
+public class RevisionPostings {
+	/** The default maximum size in bytes of the cache of posting lists. */
+	public static final long DEFAULT_CACHE_SIZE = 1 << 28;
+	/** The maximum number of elements in the tail of a posting list. */
+	public static final int MAX_TAIL_SIZE = 64;
+
+	/** An immutable posting list: a sorted list of distinct revision indices. It is represented as a base list, coded
+	 *  as a sequence of variable-length gaps (the first element, followed by the difference minus one between consecutive elements, each written
+	 *  with seven bits per byte and a continuation bit), and a sorted array containing the tail. */
+	public static final class PostingList implements LongIterable {
+		/** The empty posting list. */
+		private static final PostingList EMPTY = new PostingList(new byte[0], 0, -1, LongArrays.EMPTY_ARRAY);
+
+		/** The coded base list. */
+		private final byte[] base;
+		/** The number of elements of the base list. */
+		private final int baseSize;
+		/** The last element of the base list, or -1 if the base list is empty. */
+		private final long baseLast;
+		/** The elements of the tail, in increasing order. */
+		private final long[] tail;
+
+		private PostingList(final byte[] base, final int baseSize, final long baseLast, final long[] tail) {
+			this.base = base;
+			this.baseSize = baseSize;
+			this.baseLast = baseLast;
+			this.tail = tail;
+		}
+
+		/** Returns the number of elements of this list.
+		 *
+		 * @return the number of elements of this list.
+		 */
+		public int size() {
+			return baseSize + tail.length;
+		}
+
+		/** Returns whether this list contains a given revision index.
+		 *
+		 * @param index a revision index.
+		 * @return true if this list contains <code>index</code>.
+		 */
+		public boolean contains(final long index) {
+			if (Arrays.binarySearch(tail, index) >= 0) return true;
+			if (index > baseLast) return false;
+			for(final LongIterator i = baseIterator(); i.hasNext();) {
+				final long x = i.nextLong();
+				if (x >= index) return x == index;
+			}
+			return false;
+		}
+
+		/** Returns the number of bytes used by this list.
+		 *
+		 * @return the number of bytes used by this list.
+		 */
+		private int bytes() {
+			return base.length + tail.length * Long.BYTES + 64;
+		}
+
+		/** Returns an iterator over the base list, decoding it on the fly.
+		 *
+		 * @return an iterator over the base list.
+		 */
+		private LongIterator baseIterator() {
+			return new LongIterator() {
+				private int pos = 0;
+				private int i = 0;
+				private long last = -1;
+
+				@Override
+				public boolean hasNext() {
+					return i < baseSize;
+				}
+
+				@Override
+				public long nextLong() {
+					if (!hasNext()) throw new NoSuchElementException();
+					long gap = 0;
+					int shift = 0;
+					byte b;
+					do {
+						b = base[pos++];
+						gap |= (b & 0x7FL) << shift;
+						shift += 7;
+					} while(b < 0);
+					i++;
+					return last += gap + 1;
+				}
+			};
+		}
+
+		/** Returns an iterator over the elements of this list, in increasing order. */
+		@Override
+		public LongIterator iterator() {
+			if (tail.length == 0) return baseIterator();
+			final LongIterator baseIterator = baseIterator();
+			return new LongIterator() {
+				private int t = 0;
+				private long nextBase = baseIterator.hasNext() ? baseIterator.nextLong() : Long.MAX_VALUE;
+
+				@Override
+				public boolean hasNext() {
+					return nextBase != Long.MAX_VALUE || t < tail.length;
+				}
+
+				@Override
+				public long nextLong() {
+					if (!hasNext()) throw new NoSuchElementException();
+					if (t == tail.length || nextBase < tail[t]) {
+						final long result = nextBase;
+						nextBase = baseIterator.hasNext() ? baseIterator.nextLong() : Long.MAX_VALUE;
+						return result;
+					}
+					return tail[t++];
+				}
+			};
+		}
+
+		/** Codes a sorted sequence of distinct revision indices as a base list.
+		 *
+		 * @param iterator an iterator returning distinct revision indices in increasing order.
+		 * @return a posting list with an empty tail containing the elements returned by <code>iterator</code>.
+		 */
+		private static PostingList code(final LongIterator iterator) {
+			final FastByteArrayOutputStream fbaos = new FastByteArrayOutputStream();
+			int size = 0;
+			long last = -1;
+			while(iterator.hasNext()) {
+				final long x = iterator.nextLong();
+				assert x > last : x + " <= " + last;
+				long gap = x - last - 1;
+				while((gap & ~0x7FL) != 0) {
+					fbaos.write((int)(gap & 0x7F) | 0x80);
+					gap >>>= 7;
+				}
+				fbaos.write((int)gap);
+				last = x;
+				size++;
+			}
+			return new PostingList(Arrays.copyOf(fbaos.array, fbaos.length), size, last, LongArrays.EMPTY_ARRAY);
+		}
+
+		/** Returns a posting list containing this list and a new revision index in its tail.
+		 *
+		 * @param index a revision index not in this list.
+		 * @return a posting list with the elements of this list and <code>index</code>.
+		 */
+		private PostingList append(final long index) {
+			final long[] newTail = Arrays.copyOf(tail, tail.length + 1);
+			newTail[tail.length] = index;
+			Arrays.sort(newTail);
+			return new PostingList(base, baseSize, baseLast, newTail);
+		}
+
+		@Override
+		public String toString() {
+			final LongArrayList list = new LongArrayList();
+			for(final LongIterator i = iterator(); i.hasNext();) list.add(i.nextLong());
+			return list.toString();
+		}
+	}
+
+	/** The database. */
+	private final RocksDB db;
+	/** The column family containing the posting lists. */
+	private final ColumnFamilyHandle columnFamily;
+	/** A cache of recently used posting lists. */
+	private final LoadingCache<Long, PostingList> cache;
+	/** The posting lists modified by {@link #add(WriteBatch, long, long)} since the last call to {@link #commit()} or {@link #invalidate()}. */
+	private final Long2ObjectOpenHashMap<PostingList> pending = new Long2ObjectOpenHashMap<>();
+
+	/** Creates posting lists backed by a column family, using a {@linkplain #DEFAULT_CACHE_SIZE default-sized} cache.
+	 *
+	 * @param db the database.
+	 * @param columnFamily the column family containing the posting lists.
+	 */
+	public RevisionPostings(final RocksDB db, final ColumnFamilyHandle columnFamily) {
+		this(db, columnFamily, DEFAULT_CACHE_SIZE);
+	}
+
+	/** Creates posting lists backed by a column family.
+	 *
+	 * @param db the database.
+	 * @param columnFamily the column family containing the posting lists.
+	 * @param cacheSize the maximum size in bytes of the cache of posting lists.
+	 */
+	public RevisionPostings(final RocksDB db, final ColumnFamilyHandle columnFamily, final long cacheSize) {
+		this.db = db;
+		this.columnFamily = columnFamily;
+		cache = CacheBuilder.newBuilder()
+				.maximumWeight(cacheSize)
+				.weigher((final Long gid, final PostingList list) -> list.bytes())
+				.build(CacheLoader.from(gid -> load(gid.longValue())));
+	}
+
+	/** Reads a posting list from the database.
+	 *
+	 * @param gid a GID.
+	 * @return the posting list of <code>gid</code>.
+	 */
+	private PostingList load(final long gid) {
+		try (RocksIterator iterator = db.newIterator(columnFamily)) {
+			return load(iterator, gid);
+		}
+	}
+
+	/** Reads a posting list from the database using a given iterator.
+	 *
+	 * @param iterator an iterator over the column family.
+	 * @param gid a GID.
+	 * @return the posting list of <code>gid</code>.
+	 */
+	private static PostingList load(final RocksIterator iterator, final long gid) {
+		final byte[] prefix = Longs.toByteArray(gid);
+		byte[] base = null;
+		final LongArrayList tail = new LongArrayList();
+		for(iterator.seek(prefix); iterator.isValid(); iterator.next()) {
+			final byte[] key = iterator.key();
+			if (!Arrays.equals(key, 0, Long.BYTES, prefix, 0, Long.BYTES)) break;
+			if (key.length == Long.BYTES) base = iterator.value();
+			else tail.add(Longs.fromBytes(key[8], key[9], key[10], key[11], key[12], key[13], key[14], key[15]));
+		}
+		if (base == null && tail.isEmpty()) return PostingList.EMPTY;
+		final PostingList list = base == null ? PostingList.EMPTY : decodeBase(base);
+		return new PostingList(list.base, list.baseSize, list.baseLast, tail.toLongArray());
+	}
+
+	/** Returns the posting list of a GID.
+	 *
+	 * @param gid a GID.
+	 * @return the posting list of <code>gid</code> (possibly empty).
+	 */
+	public PostingList get(final long gid) {
+		final PostingList list = pending.get(gid);
+		return list != null ? list : cache.getUnchecked(Long.valueOf(gid));
+	}
+
+	/** Records in a write batch the addition of a revision index to the posting list of a GID; if the tail of the list
+	 *  is full, it is merged into the base list.
+	 *
+	 * @param batch a write batch for the database.
+	 * @param gid a GID.
+	 * @param index a revision index.
+	 */
+	public void add(final WriteBatch batch, final long gid, final long index) throws RocksDBException {
+		final PostingList list = get(gid);
+		if (list.contains(index)) return;
+		final PostingList newList;
+		if (list.tail.length < MAX_TAIL_SIZE) {
+			batch.put(columnFamily, key(gid, index), new byte[0]);
+			newList = list.append(index);
+		} else {
+			newList = PostingList.code(list.append(index).iterator());
+			batch.put(columnFamily, Longs.toByteArray(gid), encodeBase(newList));
+			batch.deleteRange(columnFamily, key(gid, 0), Longs.toByteArray(gid + 1));
+		}
+		pending.put(gid, newList);
+		cache.put(Long.valueOf(gid), newList);
+	}
+
+	/** Releases the posting lists pinned by {@link #add(WriteBatch, long, long)}; this method must be called after the batches passed to
+	 *  {@link #add(WriteBatch, long, long)} have been written. */
+	public void commit() {
+		pending.clear();
+	}
+
+	/** Invalidates the cache; this method must be called if a batch passed to {@link #add(WriteBatch, long, long)} is not written. */
+	public void invalidate() {
+		pending.clear();
+		cache.invalidateAll();
+	}
+
+	/** Adds in bulk revision indices to the posting lists of a set of GIDs. GIDs are processed in increasing order: the stored list of each GID
+	 *  is merged with the new revision indices into a base list with an empty tail, which is written, together with deletions of the keys of the old tail,
+	 *  to an SST file; the file is then ingested in the database (bypassing the write-ahead log), and the cache is invalidated.
+	 *  Revision indices already in a list are ignored, so repeating a bulk addition is harmless.
+	 *
+	 *  <p>This method requires exclusive access.
+	 *
+	 * @param additions a map from GIDs to lists of revision indices to be added, in increasing order.
+	 * @param file the temporary SST file.
+	 * @param options the options used to write the SST file, which should match those of the column family (e.g., its compression).
+	 */
+	public void ingest(final Long2ObjectMap<LongArrayList> additions, final File file, final Options options) throws RocksDBException {
+		if (additions.isEmpty()) return;
+		final long[] gids = additions.keySet().toLongArray();
+		Arrays.sort(gids);
+		try (EnvOptions envOptions = new EnvOptions(); SstFileWriter writer = new SstFileWriter(envOptions, options);
+				RocksIterator iterator = db.newIterator(columnFamily); IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions()) {
+			writer.open(file.toString());
+			for(final long gid : gids) {
+				final PostingList list = load(iterator, gid);
+				writer.put(Longs.toByteArray(gid), encodeBase(PostingList.code(union(list.iterator(), additions.get(gid).iterator()))));
+				for(final long index : list.tail) writer.delete(key(gid, index));
+			}
+			writer.finish();
+			ingestOptions.setMoveFiles(true);
+			db.ingestExternalFile(columnFamily, Collections.singletonList(file.toString()), ingestOptions);
+		} finally {
+			file.delete();
+			pending.clear();
+			cache.invalidateAll();
+		}
+	}
+
+	/** Returns the union of two sorted sequences of revision indices.
+	 *
+	 * @param a an iterator returning revision indices in increasing order.
+	 * @param b an iterator returning revision indices in increasing order.
+	 * @return an iterator returning the distinct revision indices returned by <code>a</code> or <code>b</code>, in increasing order.
+	 */
+	private static LongIterator union(final LongIterator a, final LongIterator b) {
+		return new LongIterator() {
+			private long nextA = a.hasNext() ? a.nextLong() : Long.MAX_VALUE;
+			private long nextB = b.hasNext() ? b.nextLong() : Long.MAX_VALUE;
+
+			@Override
+			public boolean hasNext() {
+				return nextA != Long.MAX_VALUE || nextB != Long.MAX_VALUE;
+			}
+
+			@Override
+			public long nextLong() {
+				if (!hasNext()) throw new NoSuchElementException();
+				final long result = Math.min(nextA, nextB);
+				if (nextA == result) nextA = a.hasNext() ? a.nextLong() : Long.MAX_VALUE;
+				if (nextB == result) nextB = b.hasNext() ? b.nextLong() : Long.MAX_VALUE;
+				return result;
+			}
+		};
+	}
+
+	/** Returns the stored form of a base list: the number of elements and the last element (a big-endian integer and long) followed by the coded gaps.
+	 *
+	 * @param list a posting list with an empty tail.
+	 * @return the stored form of the base list of <code>list</code>.
+	 */
+	private static byte[] encodeBase(final PostingList list) {
+		final ByteBuffer stored = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + list.base.length);
+		stored.putInt(list.baseSize).putLong(list.baseLast).put(list.base);
+		return stored.array();
+	}
+
+	/** Decodes the stored form of a base list.
+	 *
+	 * @param stored the stored form of a base list, as returned by {@link #encodeBase(PostingList)}.
+	 * @return a posting list with an empty tail and the given base list.
+	 */
+	private static PostingList decodeBase(final byte[] stored) {
+		final ByteBuffer buffer = ByteBuffer.wrap(stored);
+		final int size = buffer.getInt();
+		final long last = buffer.getLong();
+		return new PostingList(Arrays.copyOfRange(stored, buffer.position(), stored.length), size, last, LongArrays.EMPTY_ARRAY);
+	}
+
+	/** Returns the key of an element of the tail of a posting list.
+	 *
+	 * @param gid a GID.
+	 * @param index a revision index.
+	 * @return the key representing the pair (<code>gid</code>, <code>index</code>).
+	 */
+	private static byte[] key(final long gid, final long index) {
+		final byte[] key = new byte[2 * Long.BYTES];
+		System.arraycopy(Longs.toByteArray(gid), 0, key, 0, Long.BYTES);
+		System.arraycopy(Longs.toByteArray(index), 0, key, Long.BYTES, Long.BYTES);
+		return key;
+	}
+}
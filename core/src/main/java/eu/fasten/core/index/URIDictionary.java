@@ -0,0 +1,324 @@
+package eu.fasten.core.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.unimi.dsi.bits.TransformationStrategies;
+import it.unimi.dsi.fastutil.io.FastBufferedOutputStream;
+import it.unimi.dsi.fastutil.longs.AbstractLongIterator;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.AbstractObjectIterator;
+import it.unimi.dsi.sux4j.mph.GOV3Function;
+import it.unimi.dsi.sux4j.util.EliasFanoMonotoneLongBigList;
+
+/** A dictionary assigning consecutive identifiers, starting from zero, to a growing set of (URI) strings.
+ *
+ * <p>The dictionary is made of two tiers. The <em>frozen</em> tier contains the first {@link #frozenSize()} strings:
+ * their UTF-8 encodings are stored back-to-back in a file that is memory-mapped, their starting positions are
+ * stored in an {@link EliasFanoMonotoneLongBigList}, and the map from strings to identifiers is a {@link GOV3Function}
+ * whose output is verified against the stored bytes (so strings not in the dictionary are correctly rejected). The
+ * <em>tail</em> contains the strings added after the last call to {@link #freeze(File)} in a concurrent hash map, and
+ * in an array of segments indexed by identifier.
+ *
+ * <p>Freezing appends the tail to the string file and rebuilds the function and the offsets. Since identifiers are assigned
+ * sequentially, the string file only grows, and a serialized instance remains consistent with any later version of its file.
+ * After deserialization, the string file must be {@linkplain #map(File) mapped} before querying the frozen tier. Only the frozen
+ * tier is serialized, so a dictionary can be serialized only right after a freeze.
+ *
+ * <p>Read-only methods and {@link #add(String)} can be called concurrently by any number of threads: a string is assigned an identifier
+ * exactly once, identifiers are never reassigned, and once {@link #add(String)} has returned, {@link #get(long)} returns the string
+ * for its identifier in every thread that obtained the identifier through a happens-before relation. Identifiers are drawn from an
+ * atomic counter, so {@link #size()} might count strings that are being added and for which {@link #get(long)} still returns {@code null}.
+ * {@link #freeze(File)}, {@link #map(File)} and {@link #iterator()} require exclusive access.
+ */
+public class URIDictionary implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/** The base-2 logarithm of the size of a mapped chunk of the string file. */
+	private static final int LOG2_CHUNK_SIZE = 30;
+	/** The mask to obtain a position inside a mapped chunk. */
+	private static final long CHUNK_MASK = (1L << LOG2_CHUNK_SIZE) - 1;
+	/** The base-2 logarithm of the size of a segment of the tail. */
+	private static final int LOG2_SEGMENT_SIZE = 12;
+	/** The mask to obtain a position inside a segment of the tail. */
+	private static final int SEGMENT_MASK = (1 << LOG2_SEGMENT_SIZE) - 1;
+
+	/** The starting positions of the strings of the frozen tier in the string file, plus a final entry containing the length of the string file, or
+	 *  {@code null} if the frozen tier is empty. */
+	private EliasFanoMonotoneLongBigList offsets;
+	/** A function mapping UTF-8 encoded strings of the frozen tier to their identifiers, or {@code null} if the frozen tier is empty. */
+	private GOV3Function<byte[]> function;
+	/** The strings of the tail, in identifier order, in segments of 2<sup>{@value #LOG2_SEGMENT_SIZE}</sup> strings. Segments are
+	 *  never moved: when more are needed, this array is replaced by a longer copy while holding the monitor of the dictionary. */
+	private transient volatile String[][] tail;
+	/** The number of identifiers assigned to strings of the tail. */
+	private transient AtomicLong tailSize;
+	/** Maps strings of the tail to their identifiers. */
+	private transient ConcurrentHashMap<String, Long> tailString2Id;
+	/** The memory-mapped chunks of the string file. */
+	private transient ByteBuffer[] chunks;
+
+	/** Creates an empty dictionary. */
+	public URIDictionary() {
+		clearTail();
+		chunks = new ByteBuffer[0];
+	}
+
+	/** Empties the tail. */
+	private void clearTail() {
+		tail = new String[0][];
+		tailSize = new AtomicLong();
+		tailString2Id = new ConcurrentHashMap<>();
+	}
+
+	/** Returns the number of strings in the dictionary.
+	 *
+	 * @return the number of strings in the dictionary.
+	 */
+	public long size() {
+		return frozenSize() + tailSize.get();
+	}
+
+	/** Returns the number of strings in the frozen tier.
+	 *
+	 * @return the number of strings in the frozen tier.
+	 */
+	public long frozenSize() {
+		return offsets == null ? 0 : offsets.size64() - 1;
+	}
+
+	/** Returns the identifier of a string.
+	 *
+	 * @param s a string.
+	 * @return the identifier of <code>s</code>, or -1 if <code>s</code> is not in the dictionary.
+	 */
+	public long getLong(final String s) {
+		final Long id = tailString2Id.get(s);
+		if (id != null) return id.longValue();
+		if (function == null) return -1;
+		final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		final long candidate = function.getLong(bytes);
+		if (candidate < 0 || candidate >= frozenSize()) return -1;
+		return Arrays.equals(bytes, bytes(candidate)) ? candidate : -1;
+	}
+
+	/** Returns the string with a given identifier.
+	 *
+	 * @param id an identifier.
+	 * @return the string with identifier <code>id</code>, or {@code null} if there is no such string.
+	 */
+	public String get(final long id) {
+		if (id < 0 || id >= size()) return null;
+		final long frozenSize = frozenSize();
+		if (id >= frozenSize) {
+			final long i = id - frozenSize;
+			return tail[(int)(i >>> LOG2_SEGMENT_SIZE)][(int)(i & SEGMENT_MASK)];
+		}
+		return new String(bytes(id), StandardCharsets.UTF_8);
+	}
+
+	/** Adds a string to the dictionary, if it is not already present. This method can be called concurrently.
+	 *
+	 * @param s a string.
+	 * @return the identifier of <code>s</code>.
+	 */
+	public long add(final String s) {
+		final long id = getLong(s);
+		if (id != -1) return id;
+		// The string is stored before the mapping is published, so whoever sees the identifier sees the string
+		return tailString2Id.computeIfAbsent(s, t -> {
+			final long i = tailSize.getAndIncrement();
+			store(i, t);
+			return Long.valueOf(frozenSize() + i);
+		}).longValue();
+	}
+
+	/** Stores a string of the tail, allocating new segments if necessary.
+	 *
+	 * @param i the position of the string in the tail.
+	 * @param s the string.
+	 */
+	private void store(final long i, final String s) {
+		final int segment = (int)(i >>> LOG2_SEGMENT_SIZE);
+		String[][] tail = this.tail;
+		if (segment >= tail.length) {
+			synchronized(this) {
+				tail = this.tail;
+				if (segment >= tail.length) {
+					final String[][] t = Arrays.copyOf(tail, Math.max(segment + 1, 2 * tail.length));
+					for(int j = tail.length; j < t.length; j++) t[j] = new String[SEGMENT_MASK + 1];
+					this.tail = tail = t;
+				}
+			}
+		}
+		tail[segment][(int)(i & SEGMENT_MASK)] = s;
+	}
+
+	/** Returns the UTF-8 encoding of a string of the frozen tier.
+	 *
+	 * @param id the identifier of a string of the frozen tier.
+	 * @return the UTF-8 encoding of the string.
+	 */
+	private byte[] bytes(final long id) {
+		long pos = offsets.getLong(id);
+		final byte[] bytes = new byte[(int)(offsets.getLong(id + 1) - pos)];
+		for(int i = 0; i < bytes.length; i++, pos++) bytes[i] = chunks[(int)(pos >>> LOG2_CHUNK_SIZE)].get((int)(pos & CHUNK_MASK));
+		return bytes;
+	}
+
+	/** Memory-maps the string file of the frozen tier.
+	 *
+	 * @param file the string file.
+	 */
+	public void map(final File file) throws IOException {
+		final long length = offsets == null ? 0 : offsets.getLong(offsets.size64() - 1);
+		if (length == 0) {
+			chunks = new ByteBuffer[0];
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < length) throw new IOException("The string file " + file + " is shorter (" + channel.size() + " bytes) than expected (" + length + " bytes)");
+			final ByteBuffer[] chunks = new ByteBuffer[(int)((length + CHUNK_MASK) >>> LOG2_CHUNK_SIZE)];
+			for(int i = 0; i < chunks.length; i++) {
+				final long start = (long)i << LOG2_CHUNK_SIZE;
+				chunks[i] = channel.map(MapMode.READ_ONLY, start, Math.min(CHUNK_MASK + 1, length - start));
+			}
+			this.chunks = chunks;
+		}
+	}
+
+	/** Moves the tail into the frozen tier, appending its strings to the string file, rebuilding the function and the offsets and
+	 *  mapping the resulting file.
+	 *
+	 * @param file the string file; bytes beyond those used by the frozen tier (e.g., left over by an interrupted
+	 * freeze) are discarded.
+	 */
+	public void freeze(final File file) throws IOException {
+		final long tailSize = this.tailSize.get();
+		if (tailSize == 0) {
+			if (chunks.length == 0) map(file);
+			return;
+		}
+
+		final long frozenSize = frozenSize();
+		long length = frozenSize == 0 ? 0 : offsets.getLong(frozenSize);
+		if (file.length() != length) {
+			if (file.length() < length) throw new IOException("The string file " + file + " is shorter (" + file.length() + " bytes) than expected (" + length + " bytes)");
+			// Left over by an interrupted freeze, which was never recorded
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				channel.truncate(length);
+			}
+		}
+
+		final LongArrayList tailOffsets = new LongArrayList((int)tailSize);
+		try (FileOutputStream fos = new FileOutputStream(file, true)) {
+			final FastBufferedOutputStream fbos = new FastBufferedOutputStream(fos);
+			for(long id = frozenSize; id < frozenSize + tailSize; id++) {
+				final byte[] bytes = get(id).getBytes(StandardCharsets.UTF_8);
+				tailOffsets.add(length);
+				fbos.write(bytes);
+				length += bytes.length;
+			}
+			fbos.flush();
+			// The file must be durable before any record of the new frozen tier is
+			fos.getFD().sync();
+		}
+		tailOffsets.add(length);
+
+		final EliasFanoMonotoneLongBigList frozenOffsets = offsets;
+		offsets = new EliasFanoMonotoneLongBigList(frozenSize + tailOffsets.size(), length + 1, new AbstractLongIterator() {
+			private long i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < frozenSize + tailOffsets.size();
+			}
+
+			@Override
+			public long nextLong() {
+				final long offset = i < frozenSize ? frozenOffsets.getLong(i) : tailOffsets.getLong((int)(i - frozenSize));
+				i++;
+				return offset;
+			}
+		});
+		map(file);
+
+		// Keys are enumerated in identifier order, so that the function maps the i-th string to i
+		final long size = frozenSize();
+		function = new GOV3Function.Builder<byte[]>().keys(() -> new AbstractObjectIterator<byte[]>() {
+			private long id = 0;
+
+			@Override
+			public boolean hasNext() {
+				return id < size;
+			}
+
+			@Override
+			public byte[] next() {
+				return bytes(id++);
+			}
+		}).transform(TransformationStrategies.rawByteArray()).build();
+
+		clearTail();
+	}
+
+	/** Returns an iterator over the strings of the dictionary, in identifier order.
+	 *
+	 * @return an iterator over the strings of the dictionary.
+	 */
+	public Iterator<String> iterator() {
+		return new AbstractObjectIterator<String>() {
+			private long id = 0;
+
+			@Override
+			public boolean hasNext() {
+				return id < size();
+			}
+
+			@Override
+			public String next() {
+				return get(id++);
+			}
+		};
+	}
+
+	private void writeObject(final java.io.ObjectOutputStream s) throws IOException {
+		if (tailSize.get() != 0) throw new IllegalStateException("Only the frozen tier is serialized, but the tail contains " + tailSize.get() + " strings");
+		s.defaultWriteObject();
+	}
+
+	private void readObject(final java.io.ObjectInputStream s) throws IOException, ClassNotFoundException {
+		s.defaultReadObject();
+		clearTail();
+		chunks = new ByteBuffer[0];
+	}
+}
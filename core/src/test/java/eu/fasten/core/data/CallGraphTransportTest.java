@@ -0,0 +1,176 @@
+package eu.fasten.core.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+
+import eu.fasten.core.data.CallGraphTransport.Mode;
+import eu.fasten.core.data.CallGraphTransport.Receiver;
+
+class CallGraphTransportTest {
+
+	private static String payload(final int length) {
+		final Random random = new Random(0);
+		final StringBuilder s = new StringBuilder();
+		// Supplementary characters, whose surrogate pairs cannot be split among chunks
+		while (s.length() < length) s.appendCodePoint(random.nextInt(4) == 0 ? 0x1F600 + random.nextInt(16) : 'a' + random.nextInt(26));
+		return s.toString();
+	}
+
+	private static String read(final InputStream is) throws IOException {
+		try (is) {
+			return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static List<ProducerRecord<String, String>> send(final CallGraphTransport transport, final String payload) throws IOException {
+		final MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+		transport.send(producer, "t", "k", writer -> writer.write(payload), null);
+		return producer.history();
+	}
+
+	@Test
+	void testPlain() throws IOException {
+		final String payload = payload(100);
+		for (final Mode mode : Mode.values()) {
+			final List<ProducerRecord<String, String>> records = send(new CallGraphTransport(mode, payload.length(), new File(".")), payload);
+			assertEquals(1, records.size());
+			assertFalse(CallGraphTransport.isTransported(records.get(0).headers()));
+			assertEquals(payload, records.get(0).value());
+			assertEquals(payload, read(new Receiver(null).receive(records.get(0).headers(), records.get(0).value())));
+		}
+		assertEquals(1, send(new CallGraphTransport(Mode.INLINE, 10, null), payload).size());
+	}
+
+	@Test
+	void testChunked() throws IOException {
+		final String payload = payload(1000);
+		final List<ProducerRecord<String, String>> records = new ArrayList<>(send(new CallGraphTransport(Mode.CHUNKED, 16, null), payload));
+		assertTrue(records.size() > 1000 / 16);
+		final StringBuilder s = new StringBuilder();
+		for (final ProducerRecord<String, String> record : records.subList(0, records.size() - 1)) {
+			assertTrue(CallGraphTransport.isTransported(record.headers()));
+			assertEquals("k", record.key());
+			assertTrue(record.value().length() <= 16);
+			s.append(record.value());
+		}
+		assertEquals(payload, s.toString());
+
+		// Chunks might be received out of order, and the manifest is not necessarily the last record
+		Collections.shuffle(records, new Random(0));
+		final Receiver receiver = new Receiver(null);
+		InputStream is = null;
+		for (final ProducerRecord<String, String> record : records) {
+			assertNull(is);
+			is = receiver.receive(record.headers(), record.value().getBytes(StandardCharsets.UTF_8));
+		}
+		assertNotNull(is);
+		assertEquals(0, receiver.pending());
+		assertEquals(payload, read(is));
+	}
+
+	@Test
+	void testCorruptedChunk() throws IOException {
+		final List<ProducerRecord<String, String>> records = send(new CallGraphTransport(Mode.CHUNKED, 16, null), payload(100));
+		final Receiver receiver = new Receiver(null);
+		InputStream is = null;
+		for (final ProducerRecord<String, String> record : records) is = receiver.receive(record.headers(), record == records.get(1) ? record.value().toUpperCase() : record.value());
+		final InputStream corrupted = is;
+		assertThrows(IOException.class, () -> read(corrupted));
+	}
+
+	@Test
+	void testBlob() throws IOException {
+		final File blobStore = Files.createTempDirectory(CallGraphTransportTest.class.getSimpleName()).toFile();
+		try {
+			final String payload = payload(1000);
+			final CallGraphTransport transport = new CallGraphTransport(Mode.BLOB, 16, blobStore);
+			final List<ProducerRecord<String, String>> records = send(transport, payload);
+			assertEquals(1, records.size());
+			assertTrue(CallGraphTransport.isTransported(records.get(0).headers()));
+			final File[] blobs = blobStore.listFiles();
+			assertEquals(1, blobs.length);
+			assertEquals(payload, read(new Receiver(blobStore).receive(records.get(0).headers(), records.get(0).value())));
+
+			// Blobs are content addressed
+			send(transport, payload);
+			assertEquals(1, blobStore.listFiles().length);
+
+			assertThrows(IOException.class, () -> new Receiver(null).receive(records.get(0).headers(), records.get(0).value()));
+			FileUtils.writeStringToFile(blobs[0], payload.toUpperCase(), StandardCharsets.UTF_8);
+			final InputStream corrupted = new Receiver(blobStore).receive(records.get(0).headers(), records.get(0).value());
+			assertThrows(IOException.class, () -> read(corrupted));
+		} finally {
+			FileUtils.deleteDirectory(blobStore);
+		}
+	}
+
+	@Test
+	void testFailedChunk() {
+		final MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer()) {
+			@Override
+			public synchronized Future<RecordMetadata> send(final ProducerRecord<String, String> record) {
+				if (record.headers().lastHeader(CallGraphTransport.CHUNK_INDEX_HEADER) == null || !"1".equals(new String(record.headers().lastHeader(CallGraphTransport.CHUNK_INDEX_HEADER).value(), StandardCharsets.UTF_8))) return super.send(record);
+				final CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+				future.completeExceptionally(new KafkaException("Lost chunk"));
+				return future;
+			}
+		};
+		final String payload = payload(100);
+		assertThrows(IOException.class, () -> new CallGraphTransport(Mode.CHUNKED, 16, null).send(producer, "t", "k", writer -> writer.write(payload), null));
+		// No manifest has been sent
+		assertFalse(producer.history().isEmpty());
+		for (final ProducerRecord<String, String> record : producer.history()) assertNotNull(record.headers().lastHeader(CallGraphTransport.CHUNK_INDEX_HEADER));
+	}
+
+	@Test
+	void testExpiredPayloads() throws IOException {
+		final String payload = payload(100);
+		final List<ProducerRecord<String, String>> a = send(new CallGraphTransport(Mode.CHUNKED, 16, null), payload);
+		final List<ProducerRecord<String, String>> b = send(new CallGraphTransport(Mode.CHUNKED, 16, null), payload);
+		assertTrue(b.size() > 4);
+
+		// The manifest of a arrives too late
+		Receiver receiver = new Receiver(null, Long.MAX_VALUE, 3);
+		for (final ProducerRecord<String, String> record : a.subList(0, a.size() - 1)) assertNull(receiver.receive(record.headers(), record.value()));
+		assertEquals(1, receiver.pending());
+		for (final ProducerRecord<String, String> record : b.subList(0, 4)) assertNull(receiver.receive(record.headers(), record.value()));
+		assertEquals(1, receiver.pending());
+		assertNull(receiver.receive(a.get(a.size() - 1).headers(), a.get(a.size() - 1).value()));
+		InputStream is = null;
+		for (final ProducerRecord<String, String> record : b.subList(4, b.size())) is = receiver.receive(record.headers(), record.value());
+		assertEquals(payload, read(is));
+
+		// Payloads larger than the maximum size cannot be received
+		receiver = new Receiver(null, payload.length() / 2, Long.MAX_VALUE);
+		for (final ProducerRecord<String, String> record : a) assertNull(receiver.receive(record.headers(), record.value()));
+		for (final ProducerRecord<String, String> record : b) assertNull(receiver.receive(record.headers(), record.value()));
+		receiver = new Receiver(null, 2L * payload.length() * 4, Long.MAX_VALUE);
+		for (final ProducerRecord<String, String> record : a) is = receiver.receive(record.headers(), record.value());
+		assertEquals(payload, read(is));
+		assertEquals(0, receiver.pending());
+	}
+}
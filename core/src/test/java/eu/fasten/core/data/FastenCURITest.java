@@ -3,6 +3,7 @@ package eu.fasten.core.data;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Assertions;
@@ -137,4 +138,15 @@ class FastenCURITest {
 		assertEquals(v.relativize(u), v.relativize(v.resolve(u)));
 	}
 
+	@Test
+	void testIsCanonical() {
+		final FastenCURI canonical = FastenCURI.create("fasten://recsplit/C/copy()");
+		assertTrue(canonical.isCanonical());
+		assertSame(canonical, canonical.canonicalize());
+
+		final FastenCURI schemeless = FastenCURI.create("//recsplit/C/copy()");
+		assertFalse(schemeless.isCanonical());
+		assertEquals(canonical, schemeless.canonicalize());
+		assertTrue(schemeless.canonicalize().isCanonical());
+	}
 }
@@ -3,7 +3,9 @@ package eu.fasten.core.data;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -126,6 +128,23 @@ class FastenJavaURITest {
 		assertEquals(FastenJavaURI.create("fasten://mvn$a/foo/Bar.jam(Bar)Bar"), uri.canonicalize());
 	}
 
+	@Test
+	public void testIsCanonical() {
+		final FastenJavaURI uri = new FastenJavaURI("fasten://mvn$a/foo/Bar.jam(%2Ffoo%2FBar)%2Fbar%2FBar");
+		assertFalse(uri.isCanonical());
+		final FastenJavaURI canonical = uri.canonicalize();
+		// The canonical form is computed once
+		assertSame(canonical, uri.canonicalize());
+		assertTrue(canonical.isCanonical());
+		assertSame(canonical, canonical.canonicalize());
+
+		final FastenJavaURI same = new FastenJavaURI("fasten://mvn$a/foo/Bar.jam(Bar)%2Fbar%2FBar");
+		assertTrue(same.isCanonical());
+		assertSame(same, same.canonicalize());
+		assertEquals(canonical, same);
+		assertEquals(canonical.hashCode(), same.hashCode());
+	}
+
 
 	@Test
 	public void testRelativize() {
@@ -143,7 +162,7 @@ class FastenJavaURITest {
 		assertEquals(u, FastenJavaURI.create("fasten://mvn$a/foo/Bar").relativize(u));
 
 		final FastenURI w = FastenURI.create("fasten://mvn$b/foo/Bar");
-		assertEquals(FastenJavaURI.create(w.uri), FastenJavaURI.create("fasten://mvn$a/foo/Bar").relativize(w));
+		assertEquals(FastenJavaURI.create(w.toURI()), FastenJavaURI.create("fasten://mvn$a/foo/Bar").relativize(w));
 
 		u = FastenJavaURI.create("//mvn$b/foo/Bar");
 		assertEquals(u, FastenJavaURI.create("fasten://mvn$a/foo/Bar").relativize(u));
@@ -0,0 +1,82 @@
+package eu.fasten.core.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class FastenURIPoolTest {
+
+	@Test
+	void testGetAndIntern() {
+		final FastenURIPool<FastenURI> pool = new FastenURIPool<>(FastenURI::create, 100);
+		final FastenURI u = pool.get("//a/b/C");
+		assertEquals(FastenURI.create("//a/b/C"), u);
+		assertSame(u, pool.get("//a/b/C"));
+		assertSame(u, pool.getIfPresent("//a/b/C"));
+		assertSame(u, pool.intern(FastenURI.create("//a/b/C")));
+		assertSame(u.toString(), pool.get(new String("//a/b/C")).toString());
+
+		final FastenURI v = FastenURI.create("//a/b/D");
+		assertNull(pool.getIfPresent("//a/b/D"));
+		assertSame(v, pool.intern(v));
+		assertSame(v, pool.get("//a/b/D"));
+		assertEquals(2, pool.size());
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> {
+			pool.get("//a!b!c/d/E");
+		});
+		assertEquals(2, pool.size());
+
+		pool.clear();
+		assertNull(pool.getIfPresent("//a/b/C"));
+		assertNotSame(u, pool.get("//a/b/C"));
+	}
+
+	@Test
+	void testBounded() {
+		final FastenURIPool<FastenURI> pool = new FastenURIPool<>(FastenURI::create, 10);
+		for (int i = 0; i < 1000; i++) pool.get("//a/b/C" + i);
+		assertTrue(pool.size() <= 10);
+	}
+
+	@Test
+	void testJavaURIs() {
+		final FastenJavaURI u = FastenJavaURI.create("/java.lang/Object.equals(%2Fjava.lang%2FObject)%2Fjava.lang%2FBooleanType");
+		final FastenJavaURI v = FastenJavaURI.create("/java.lang/Object.hashCode()%2Fjava.lang%2FIntegerType");
+		// Argument and return types are taken from the pool
+		assertSame(u.getArgs()[0], FastenURIPool.FASTEN_JAVA_URIS.get("/java.lang/Object"));
+		assertSame(u.getReturnType(), FastenJavaURI.create("/java.lang/Object.getBoolean()%2Fjava.lang%2FBooleanType").getReturnType());
+		assertEquals("/java.lang/IntegerType", v.getReturnType().toString());
+	}
+
+	@Test
+	void testConcurrentGet() throws Exception {
+		final FastenURIPool<FastenURI> pool = new FastenURIPool<>(FastenURI::create, 1000);
+		final ConcurrentHashMap<String, FastenURI> seen = new ConcurrentHashMap<>();
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		final Future<?>[] futures = new Future<?>[4];
+		for (int t = 0; t < futures.length; t++) futures[t] = executor.submit(() -> {
+			for (int i = 0; i < 500; i++) {
+				final String s = "//a/b/C" + i;
+				final FastenURI u = pool.get(s);
+				final FastenURI previous = seen.putIfAbsent(s, u);
+				if (previous != null) assertSame(previous, u);
+			}
+		});
+		for (final Future<?> future : futures) future.get();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+		assertEquals(500, pool.size());
+	}
+}
@@ -1,9 +1,15 @@
 package eu.fasten.core.data;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Random;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -84,12 +90,12 @@ class FastenURITest {
 		fastenURI = new FastenURI("fasten://webgraph.jar");
 		assertNull(fastenURI.getPath());
 		assertNull(fastenURI.getRawPath());
-		assertEquals("", fastenURI.uri.getPath());
+		assertEquals("", fastenURI.toURI().getPath());
 
 		fastenURI = new FastenURI("fasten://webgraph.jar/p/a");
 		assertEquals("/p/a", fastenURI.getPath());
 		assertEquals("/p/a", fastenURI.getRawPath());
-		assertEquals("/p/a", fastenURI.uri.getPath());
+		assertEquals("/p/a", fastenURI.toURI().getPath());
 
 		fastenURI = new FastenURI("fasten://b/∂∂∂/€");
 		assertEquals("fasten", fastenURI.getScheme());
@@ -155,6 +161,17 @@ class FastenURITest {
 		assertEquals(null, fastenURI.getVersion());
 	}
 
+	@Test
+	void testEqualsAndIsCanonical() throws URISyntaxException {
+		final FastenURI u = new FastenURI("//a/b/C"), v = FastenURI.create("//a/b/C");
+		assertEquals(u, v);
+		assertEquals(u.hashCode(), v.hashCode());
+		assertFalse(u.equals(FastenURI.create("//a/b/D")));
+		assertTrue(u.equals("//a/b/C"));
+		assertFalse(u.equals(null));
+		assertTrue(u.isCanonical());
+	}
+
 	@Test
 	public void testDecodeEmptyString() {
 		assertEquals(0, FastenURI.decode("").length());
@@ -232,4 +249,123 @@ class FastenURITest {
 		assertEquals(v.relativize(u), v.relativize(v.resolve(u)));
 	}
 
+	@Test
+	void testParseOffsets() throws URISyntaxException {
+		final int[] offsets = new int[2 * FastenURI.COMPONENTS];
+		final StringBuilder s = new StringBuilder("fasten://mvn!a$1.0/foo/Bar.m()");
+		assertTrue(FastenURI.parse(s, offsets));
+		assertEquals("fasten", s.substring(offsets[2 * FastenURI.SCHEME], offsets[2 * FastenURI.SCHEME + 1]));
+		assertEquals("mvn!a$1.0", s.substring(offsets[2 * FastenURI.AUTHORITY], offsets[2 * FastenURI.AUTHORITY + 1]));
+		assertEquals("mvn", s.substring(offsets[2 * FastenURI.FORGE], offsets[2 * FastenURI.FORGE + 1]));
+		assertEquals("a", s.substring(offsets[2 * FastenURI.PRODUCT], offsets[2 * FastenURI.PRODUCT + 1]));
+		assertEquals("1.0", s.substring(offsets[2 * FastenURI.VERSION], offsets[2 * FastenURI.VERSION + 1]));
+		assertEquals("/foo/Bar.m()", s.substring(offsets[2 * FastenURI.PATH], offsets[2 * FastenURI.PATH + 1]));
+		assertEquals("foo", s.substring(offsets[2 * FastenURI.NAMESPACE], offsets[2 * FastenURI.NAMESPACE + 1]));
+		assertEquals("Bar.m()", s.substring(offsets[2 * FastenURI.ENTITY], offsets[2 * FastenURI.ENTITY + 1]));
+		assertEquals(s.toString(), s.substring(offsets[2 * FastenURI.WHOLE], offsets[2 * FastenURI.WHOLE + 1]));
+
+		assertTrue(FastenURI.parse("fasten:Bar", offsets));
+		assertEquals(-1, offsets[2 * FastenURI.SCHEME]);
+		assertEquals(-1, offsets[2 * FastenURI.NAMESPACE]);
+		assertEquals("Bar", "fasten:Bar".substring(offsets[2 * FastenURI.WHOLE], offsets[2 * FastenURI.WHOLE + 1]));
+
+		// Opaque URIs with escapes are decoded by URI before being parsed again
+		assertFalse(FastenURI.parse("fasten:B%61r", offsets));
+		assertEquals("Bar", FastenURI.create("fasten:B%61r").toString());
+
+		Assertions.assertThrows(URISyntaxException.class, () -> {
+			FastenURI.parse("fasten://a b/c/d", offsets);
+		});
+
+		Assertions.assertThrows(IllegalArgumentException.class, () -> {
+			FastenURI.parse("//a!b!c/d/e", offsets);
+		});
+	}
+
+	/** The parsing logic of {@link FastenURI} before the introduction of {@link FastenURI#parse(CharSequence, int[])}. */
+	private static String[] parseWithURI(final String s) throws URISyntaxException {
+		URI uri = new URI(s);
+		if (uri.getScheme() != null && ! "fasten".equalsIgnoreCase(uri.getScheme())) throw new IllegalArgumentException("Scheme, if specified, must be 'fasten'");
+		if (uri.isOpaque()) {
+			uri = URI.create(uri.getSchemeSpecificPart());
+			// Nested schemes used to be ignored, or to cause a NullPointerException
+			if (uri.getScheme() != null) return null;
+		}
+
+		String rawForge = null, rawProduct = null, rawVersion = null, rawNamespace = null, rawEntity = null;
+		final String forgeProductVersion = uri.getRawAuthority();
+		if (forgeProductVersion != null) {
+			final var exclPos = forgeProductVersion.indexOf('!');
+			String productVersion;
+			if (exclPos == -1) productVersion = forgeProductVersion;
+			else {
+				rawForge = forgeProductVersion.substring(0,  exclPos);
+				productVersion = forgeProductVersion.substring(exclPos + 1);
+				if (productVersion.indexOf('!') >= 0) throw new IllegalArgumentException("More than one forge");
+				if (rawForge.indexOf('$') >= 0) throw new IllegalArgumentException("Version / forge inverted or mixed");
+			}
+			final var dollarPos = productVersion.indexOf('$');
+			if (dollarPos == -1) rawProduct = productVersion;
+			else {
+				rawProduct = productVersion.substring(0, dollarPos);
+				rawVersion = productVersion.substring(dollarPos + 1);
+				if (rawVersion.indexOf('$') >= 0) throw new IllegalArgumentException("More than one version");
+			}
+			if (rawProduct.length() == 0) throw new IllegalArgumentException("The product cannot be empty");
+		}
+
+		final var path = uri.getRawPath();
+		if (path.length() != 0) {
+			if (path.charAt(0) == '/') {
+				final int slashPos = path.indexOf('/', 1);
+				if (slashPos == -1)  throw new IllegalArgumentException("Missing entity");
+				rawNamespace = path.substring(1, slashPos);
+				if (rawNamespace.length() == 0) throw new IllegalArgumentException("The namespace cannot be empty");
+				rawEntity = path.substring(slashPos + 1);
+			}
+			else {
+				if (path.indexOf('/') != -1) throw new IllegalArgumentException("The entity part cannot contain a slash (namespaces must be always prefixed with a slash)");
+				rawEntity = path;
+			}
+			if (rawEntity.length() == 0) throw new IllegalArgumentException("The entity part cannot be empty");
+			if (rawEntity.indexOf(':') >= 0) throw new IllegalArgumentException("The entity part cannot contain colons");
+		}
+
+		return new String[] { uri.toString(), uri.getScheme(), rawForge, rawProduct, rawVersion, rawNamespace, rawEntity, path.length() == 0 ? null : path, uri.getRawAuthority() };
+	}
+
+	@Test
+	void testSameAsURI() {
+		final String[] tokens = { "fasten:", "FASTEN:", "http:", "//", "/", "/", "!", "$", ":", "@", "?", "#", "%", "%2F", "%4", "a", "b", "a", "b", "c.d", "(", ")", ",", ";", " ", "∂", "\u0085", "[", "]", "|", "-" };
+		final Random random = new Random(0);
+		for (int i = 0; i < 200000; i++) {
+			final StringBuilder sb = new StringBuilder();
+			for (int j = random.nextInt(8); j-- != 0;) sb.append(tokens[random.nextInt(tokens.length)]);
+			final String s = sb.toString();
+
+			String[] expected;
+			Exception expectedException = null;
+			try {
+				expected = parseWithURI(s);
+			} catch (final URISyntaxException | IllegalArgumentException e) {
+				expected = null;
+				expectedException = e;
+			}
+			if (expectedException == null && expected == null) continue;
+
+			try {
+				final FastenURI fastenURI = new FastenURI(s);
+				assertNull(expectedException, s);
+				assertArrayEquals(expected, new String[] { fastenURI.toString(), fastenURI.getScheme(), fastenURI.getRawForge(), fastenURI.getRawProduct(), fastenURI.getRawVersion(),
+						fastenURI.getRawNamespace(), fastenURI.getRawEntity(), fastenURI.getRawPath(), fastenURI.getRawAuthority() }, s);
+				assertEquals(URI.create(expected[0]), fastenURI.toURI(), s);
+				assertEquals(fastenURI, FastenURI.create(URI.create(s)), s);
+			} catch (final URISyntaxException | IllegalArgumentException e) {
+				assertNotNull(expectedException, s + ": " + e);
+				assertEquals(expectedException.getClass(), e.getClass(), s);
+				assertEquals(expectedException.getMessage(), e.getMessage(), s);
+			}
+		}
+	}
+
 }
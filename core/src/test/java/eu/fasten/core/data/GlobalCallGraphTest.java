@@ -0,0 +1,100 @@
+package eu.fasten.core.data;
+
+import static eu.fasten.core.data.Revisions.revision;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.rocksdb.RocksDBException;
+
+import eu.fasten.core.data.KnowledgeBase.Node;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+
+class GlobalCallGraphTest {
+
+	/** Returns the reaches and coreaches of all internal nodes of a knowledge base, as sets. */
+	private static ObjectArrayList<ObjectOpenHashSet<Node>> visits(final KnowledgeBase kb, final ObjectArrayList<Node> nodes) {
+		final ObjectArrayList<ObjectOpenHashSet<Node>> result = new ObjectArrayList<>();
+		for(final Node node : nodes) {
+			result.add(new ObjectOpenHashSet<>(kb.reaches(node)));
+			result.add(new ObjectOpenHashSet<>(kb.coreaches(node)));
+		}
+		result.add(new ObjectOpenHashSet<>(kb.reaches(nodes)));
+		result.add(new ObjectOpenHashSet<>(kb.coreaches(nodes)));
+		return result;
+	}
+
+	private static ObjectArrayList<Node> internalNodes(final KnowledgeBase kb) {
+		final ObjectArrayList<Node> nodes = new ObjectArrayList<>();
+		for(final var entry : kb.callGraphs.long2ObjectEntrySet())
+			for(int lid = 0; lid < entry.getValue().nInternal; lid++) nodes.add(kb.new Node(entry.getValue().LID2GID[lid], entry.getLongKey()));
+		return nodes;
+	}
+
+	@Test
+	void testSnapshot() throws IOException, RocksDBException, ClassNotFoundException {
+		final Path kbDir = Files.createTempDirectory(GlobalCallGraphTest.class.getSimpleName());
+		final Path snapshotDir = Files.createTempDirectory(GlobalCallGraphTest.class.getSimpleName());
+		final String meta = Files.createTempFile(GlobalCallGraphTest.class.getSimpleName(), "meta").toString();
+		new File(meta).delete();
+		final String basename = snapshotDir.resolve("snapshot").toString();
+
+		final KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		kb.add(revision("a", "1.0", 10), 0);
+		kb.add(revision("a", "2.0", 12), 1);
+		kb.add(revision("b", "1.0", 8, "//a/p/A.f3()v", null, "//a/p/A.f11()v"), 2);
+		kb.add(revision("c", "1.0", 5, null, "//b/p/A.f0()v", null, null, "//a/p/A.f9()v"), 3);
+
+		ObjectArrayList<Node> nodes = internalNodes(kb);
+		ObjectArrayList<ObjectOpenHashSet<Node>> expected = visits(kb, nodes);
+
+		kb.storeSnapshot(basename, snapshotDir.toFile());
+		final GlobalCallGraph snapshot = GlobalCallGraph.load(basename);
+		assertEquals(4, snapshot.numRevisions());
+		assertEquals(nodes.size(), snapshot.numNodes());
+		for(int id = 0; id < snapshot.numNodes(); id++) assertEquals(id, snapshot.id(snapshot.node(id)));
+
+		kb.setSnapshot(snapshot);
+		assertEquals(expected, visits(kb, nodes));
+
+		// Revisions added after the snapshot are visited through the per-revision call graphs
+		kb.add(revision("d", "1.0", 6, "//c/p/A.f0()v", null, "//a/p/A.f0()v"), 4);
+		kb.add(revision("a", "3.0", 4, "//d/p/A.f5()v"), 5);
+		nodes = internalNodes(kb);
+		final ObjectArrayList<ObjectOpenHashSet<Node>> withSnapshot = visits(kb, nodes);
+		kb.setSnapshot(null);
+		expected = visits(kb, nodes);
+		assertEquals(expected, withSnapshot);
+		kb.setSnapshot(snapshot);
+		assertEquals(expected, visits(kb, nodes));
+
+		// So are bulk-loaded revisions
+		final ObjectArrayList<KnowledgeBase.PreparedCallGraph> prepared = new ObjectArrayList<>();
+		prepared.add(kb.prepare(revision("e", "1.0", 5, "//d/p/A.f0()v", "//a/p/A.f1()v")));
+		assertEquals(1, kb.bulkAdd(prepared.iterator(), 6, null));
+		nodes = internalNodes(kb);
+		final ObjectArrayList<ObjectOpenHashSet<Node>> withBulkSnapshot = visits(kb, nodes);
+		kb.setSnapshot(null);
+		expected = visits(kb, nodes);
+		assertEquals(expected, withBulkSnapshot);
+		kb.setSnapshot(snapshot);
+
+		// Replacing a revision in the snapshot detaches it
+		kb.add(revision("a", "2.0", 12), 1);
+		assertEquals(expected, visits(kb, nodes));
+		final Node node = kb.fastenURI2Node(FastenURI.create("fasten://f!b$1.0/p/A.f0()v"));
+		assertTrue(kb.reaches(node).contains(kb.fastenURI2Node(FastenURI.create("fasten://f!a$2.0/p/A.f11()v"))));
+
+		kb.close();
+		FileUtils.deleteDirectory(kbDir.toFile());
+		FileUtils.deleteDirectory(snapshotDir.toFile());
+		FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+	}
+}
@@ -0,0 +1,301 @@
+package eu.fasten.core.data;
+
+import static eu.fasten.core.data.Revisions.revision;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.rocksdb.RocksDBException;
+
+import eu.fasten.core.data.KnowledgeBase.Node;
+import eu.fasten.core.data.KnowledgeBase.Resolution;
+import eu.fasten.core.index.NodeOrdering;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+
+class KnowledgeBaseTest {
+
+	/** Returns a revision with methods f0, ..., f<var>n</var> - 1, each calling a few random methods, some of which in the given products. */
+	private static RevisionCallGraph randomRevision(final String product, final int n, final Random random, final String... externals) {
+		final ArrayList<FastenURI[]> graph = new ArrayList<>();
+		for(int i = 0; i < n; i++) {
+			for(int d = random.nextInt(4); d-- != 0;) graph.add(new FastenURI[] { FastenURI.create("/p/A.f" + i + "()v"), FastenURI.create("/p/A.f" + random.nextInt(n) + "()v") });
+			if (externals.length != 0 && random.nextInt(4) == 0) graph.add(new FastenURI[] { FastenURI.create("/p/A.f" + i + "()v"), FastenURI.create("//" + externals[random.nextInt(externals.length)] + "/p/A.f" + random.nextInt(n) + "()v") });
+		}
+		// Every method is a node
+		for(int i = 0; i < n; i++) graph.add(new FastenURI[] { FastenURI.create("/p/A.f" + i + "()v"), FastenURI.create("//-") });
+		return new RevisionCallGraph("f", product, "1.0", 0, Collections.emptyList(), graph);
+	}
+
+	@Test
+	void testNodeOrderingPreservesVisits() throws IOException, RocksDBException, ClassNotFoundException {
+		final int n = 30;
+		final RevisionCallGraph[] revisions = {
+				randomRevision("a", n, new Random(0)),
+				randomRevision("b", n, new Random(1), "a"),
+				randomRevision("c", n, new Random(2), "a", "b"),
+		};
+
+		ObjectArrayList<ObjectOpenHashSet<FastenURI>> expected = null;
+		for(final NodeOrdering nodeOrdering : NodeOrdering.values()) {
+			final Path kbDir = Files.createTempDirectory(KnowledgeBaseTest.class.getSimpleName());
+			final String meta = Files.createTempFile(KnowledgeBaseTest.class.getSimpleName(), "meta").toString();
+			new File(meta).delete();
+
+			final KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+			kb.setNodeOrdering(nodeOrdering);
+			for(int i = 0; i < revisions.length; i++) kb.add(revisions[i], i);
+
+			final ObjectArrayList<ObjectOpenHashSet<FastenURI>> visits = new ObjectArrayList<>();
+			for(final String product : new String[] { "a", "b", "c" }) {
+				for(int i = 0; i < n; i++) {
+					final FastenURI uri = FastenURI.create("fasten://f!" + product + "$1.0/p/A.f" + i + "()v");
+					visits.add(new ObjectOpenHashSet<>(kb.reaches(uri)));
+					visits.add(new ObjectOpenHashSet<>(kb.coreaches(uri)));
+				}
+			}
+			if (expected == null) expected = visits;
+			else assertEquals(expected, visits, nodeOrdering.toString());
+			kb.close();
+
+			FileUtils.deleteDirectory(kbDir.toFile());
+			FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+		}
+	}
+
+	@Test
+	void testAddedRevisionsSurviveCrash() throws IOException, RocksDBException, ClassNotFoundException {
+		final Path kbDir = Files.createTempDirectory(KnowledgeBaseTest.class.getSimpleName());
+		final String meta = Files.createTempFile(KnowledgeBaseTest.class.getSimpleName(), "meta").toString();
+		new File(meta).delete();
+
+		KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		kb.add(revision("a", "1.0", 10), 0);
+		kb.close();
+
+		// These revisions are never checkpointed
+		kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		kb.add(revision("b", "1.0", 10, "//a/p/A.f0()v"), 1);
+		kb.add(revision("c", "1.0", 5, "//b/p/A.f0()v"), 2);
+		final ObjectArrayList<FastenURI> expected = new ObjectArrayList<>(kb.coreaches(FastenURI.create("fasten://f!a$1.0/p/A.f9()v")));
+		assertEquals(10 + 10 + 5, expected.size());
+		final long uris = kb.genericURIs.size();
+		// Simulate a crash: close the database without checkpointing
+		kb.callGraphDB.close();
+
+		for(int pass = 0; pass < 2; pass++) {
+			kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+			assertEquals(3, kb.size());
+			assertEquals(uris, kb.genericURIs.size());
+			assertEquals(expected, new ObjectArrayList<>(kb.coreaches(FastenURI.create("fasten://f!a$1.0/p/A.f9()v"))));
+			final Node node = kb.fastenURI2Node(FastenURI.create("fasten://f!c$1.0/p/A.f4()v"));
+			assertEquals(FastenURI.create("fasten://f!c$1.0/p/A.f4()v"), node.toFastenURI());
+			assertEquals(1 + 10 + 10, kb.reaches(node).size());
+			kb.close();
+		}
+
+		FileUtils.deleteDirectory(kbDir.toFile());
+		FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+	}
+
+	@Test
+	void testFastenURI2NodeByVersion() throws IOException, RocksDBException, ClassNotFoundException {
+		final Path kbDir = Files.createTempDirectory(KnowledgeBaseTest.class.getSimpleName());
+		final String meta = Files.createTempFile(KnowledgeBaseTest.class.getSimpleName(), "meta").toString();
+		new File(meta).delete();
+
+		final KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		// Version i of a contains methods f0, ..., fi + 1; b calls a.f0 at every version
+		for(int i = 0; i < 50; i++) {
+			kb.add(revision("a", "1." + i, i + 2), 2 * i);
+			kb.add(revision("b", "1." + i, 3, "//a/p/A.f0()v"), 2 * i + 1);
+		}
+
+		for(int i = 0; i < 50; i++) {
+			assertEquals(2 * i, kb.revisionIndex("a", "1." + i));
+			final Node node = kb.fastenURI2Node(FastenURI.create("fasten://f!a$1." + i + "/p/A.f" + (i + 1) + "()v"));
+			assertEquals(2 * i, node.index);
+			assertEquals(FastenURI.create("fasten://f!a$1." + i + "/p/A.f" + (i + 1) + "()v"), node.toFastenURI());
+			// Not present in this version
+			assertNull(kb.fastenURI2Node(FastenURI.create("fasten://f!a$1." + i + "/p/A.f" + (i + 2) + "()v")));
+		}
+		// Unknown version
+		assertEquals(-1, kb.revisionIndex("a", "2.0"));
+		assertNull(kb.fastenURI2Node(FastenURI.create("fasten://f!a$2.0/p/A.f0()v")));
+		// External in b, hence not a node of b
+		assertNull(kb.fastenURI2Node(FastenURI.create("fasten://f!b$1.0/a/p/A.f0()v")));
+		kb.close();
+
+		FileUtils.deleteDirectory(kbDir.toFile());
+		FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+	}
+
+	@Test
+	void testUnusedGIDsSurviveCrash() throws IOException, RocksDBException, ClassNotFoundException {
+		final Path kbDir = Files.createTempDirectory(KnowledgeBaseTest.class.getSimpleName());
+		final String meta = Files.createTempFile(KnowledgeBaseTest.class.getSimpleName(), "meta").toString();
+		new File(meta).delete();
+
+		KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		// Assigns GIDs to the URIs of a, but a is never added
+		kb.prepare(revision("a", "1.0", 10));
+		kb.add(revision("b", "1.0", 10, "//a/p/A.f0()v"), 0);
+		final long uris = kb.genericURIs.size();
+		assertEquals(10 + 10, uris);
+		// Simulate a crash: close the database without checkpointing
+		kb.callGraphDB.close();
+
+		for(int pass = 0; pass < 2; pass++) {
+			kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+			final Node node = kb.fastenURI2Node(FastenURI.create("fasten://f!b$1.0/p/A.f0()v"));
+			if (pass == 0) {
+				// The GIDs of a.f1, ..., a.f9 were never persisted, and are replaced by placeholders
+				assertEquals(uris, kb.genericURIs.size());
+				assertEquals(0, kb.genericURIs.getLong("//a/p/A.f0()v"));
+				assertEquals(-1, kb.genericURIs.getLong("//a/p/A.f1()v"));
+				assertEquals(10, kb.reaches(node).size());
+				kb.add(revision("a", "1.0", 10), 1);
+			} else {
+				assertEquals(uris + 9, kb.genericURIs.size());
+				assertEquals(10 + 10, kb.reaches(node).size());
+				assertEquals(10 + 10, kb.coreaches(FastenURI.create("fasten://f!a$1.0/p/A.f9()v")).size());
+			}
+			kb.close();
+		}
+
+		FileUtils.deleteDirectory(kbDir.toFile());
+		FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+	}
+
+	@Test
+	void testDepsetResolution() throws IOException, RocksDBException, ClassNotFoundException {
+		final Path kbDir = Files.createTempDirectory(KnowledgeBaseTest.class.getSimpleName());
+		final String meta = Files.createTempFile(KnowledgeBaseTest.class.getSimpleName(), "meta").toString();
+		new File(meta).delete();
+
+		KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		kb.add(revision("a", "1.0", 10), 0);
+		kb.add(revision("a", "1.1", 10), 1);
+		kb.add(revision("a", "2.0", 10), 2);
+		// The newest version in the range is 1.1
+		kb.add(revision("b", "1.0", 0, "[[{\"forge\": \"f\", \"product\": \"a\", \"constraints\": [\"[1.0..1.9]\"]}]]", 5, "//a/p/A.f0()v"), 3);
+		// No dependencies
+		kb.add(revision("c", "1.0", 0, "[]", 5, "//a/p/A.f0()v"), 4);
+		// The first alternative cannot be satisfied
+		kb.add(revision("d", "1.0", 0, "[[{\"forge\": \"f\", \"product\": \"x\", \"constraints\": []}, {\"forge\": \"f\", \"product\": \"a\", \"constraints\": [\"[2.0..]\"]}]]", 5, "//a/p/A.f0()v"), 5);
+
+		for(int pass = 0; pass < 2; pass++) {
+			final Node b = kb.fastenURI2Node(FastenURI.create("fasten://f!b$1.0/p/A.f0()v"));
+			assertEquals(5 + 3 * 10, kb.reaches(b).size());
+			assertEquals(5 + 10, kb.reaches(b, Resolution.DEPSET).size());
+			for(final Node node : kb.reaches(b, Resolution.DEPSET)) assertTrue(node.index == 1 || node.index == 3);
+			assertEquals(5, kb.reaches(kb.fastenURI2Node(FastenURI.create("fasten://f!c$1.0/p/A.f0()v")), Resolution.DEPSET).size());
+			assertTrue(kb.reaches(kb.fastenURI2Node(FastenURI.create("fasten://f!d$1.0/p/A.f4()v")), Resolution.DEPSET).contains(kb.fastenURI2Node(FastenURI.create("fasten://f!a$2.0/p/A.f9()v"))));
+
+			final FastenURI a11 = FastenURI.create("fasten://f!a$1.1/p/A.f0()v");
+			assertEquals(1 + 5 + 5 + 5, kb.coreaches(a11).size());
+			assertEquals(1 + 5, kb.coreaches(a11, Resolution.DEPSET).size());
+			assertEquals(1 + 5, kb.coreaches(FastenURI.create("fasten://f!a$2.0/p/A.f0()v"), Resolution.DEPSET).size());
+			assertEquals(1, kb.coreaches(FastenURI.create("fasten://f!a$1.0/p/A.f0()v"), Resolution.DEPSET).size());
+			// The depset is stored with the call graph
+			kb.close();
+			kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		}
+
+		// A newer version in the range changes the resolution
+		kb.add(revision("a", "1.5", 10), 6);
+		assertEquals(1, kb.coreaches(FastenURI.create("fasten://f!a$1.1/p/A.f0()v"), Resolution.DEPSET).size());
+		assertEquals(1 + 5, kb.coreaches(FastenURI.create("fasten://f!a$1.5/p/A.f0()v"), Resolution.DEPSET).size());
+
+		// Resolution applies to the arcs of a snapshot, too
+		final Path snapshotDir = Files.createTempDirectory(KnowledgeBaseTest.class.getSimpleName());
+		final Node b = kb.fastenURI2Node(FastenURI.create("fasten://f!b$1.0/p/A.f0()v"));
+		final ObjectLinkedOpenHashSet<Node> reaches = kb.reaches(b, Resolution.DEPSET);
+		final ObjectLinkedOpenHashSet<Node> coreaches = kb.coreaches(kb.fastenURI2Node(FastenURI.create("fasten://f!a$1.5/p/A.f9()v")), Resolution.DEPSET);
+		kb.storeSnapshot(snapshotDir.resolve("snapshot").toString(), null);
+		kb.setSnapshot(GlobalCallGraph.load(snapshotDir.resolve("snapshot").toString()));
+		assertEquals(new ObjectOpenHashSet<>(reaches), new ObjectOpenHashSet<>(kb.reaches(b, Resolution.DEPSET)));
+		assertEquals(new ObjectOpenHashSet<>(coreaches), new ObjectOpenHashSet<>(kb.coreaches(kb.fastenURI2Node(FastenURI.create("fasten://f!a$1.5/p/A.f9()v")), Resolution.DEPSET)));
+		kb.close();
+
+		FileUtils.deleteDirectory(kbDir.toFile());
+		FileUtils.deleteDirectory(snapshotDir.toFile());
+		FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+	}
+
+	@Test
+	void testTimeTravel() throws IOException, RocksDBException, ClassNotFoundException {
+		final String onA = "[[{\"forge\": \"f\", \"product\": \"a\", \"constraints\": [\"[1.0..1.9]\"]}]]";
+		final String onAnyA = "[[{\"forge\": \"f\", \"product\": \"a\", \"constraints\": []}]]";
+		final RevisionCallGraph[] revisions = {
+				revision("a", "1.0", 100, "[]", 10),
+				revision("a", "1.1", 200, "[]", 10),
+				revision("a", "2.0", 300, "[]", 10),
+				revision("b", "1.0", 150, onA, 5, "//a/p/A.f0()v"),
+				revision("c", "1.0", 250, onAnyA, 5, "//a/p/A.f0()v"),
+				// Never considered, as it has no timestamp
+				revision("x", "1.0", -1, onAnyA, 5, "//a/p/A.f0()v"),
+		};
+
+		for(final boolean bulk : new boolean[] { false, true }) {
+			final Path kbDir = Files.createTempDirectory(KnowledgeBaseTest.class.getSimpleName());
+			final String meta = Files.createTempFile(KnowledgeBaseTest.class.getSimpleName(), "meta").toString();
+			new File(meta).delete();
+
+			KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+			if (bulk) {
+				final ObjectArrayList<KnowledgeBase.PreparedCallGraph> prepared = new ObjectArrayList<>();
+				for(final RevisionCallGraph g : revisions) prepared.add(kb.prepare(g));
+				assertEquals(revisions.length, kb.bulkAdd(prepared.iterator(), 0, null));
+			}
+			else for(int i = 0; i < revisions.length; i++) kb.add(revisions[i], i);
+
+			for(int pass = 0; pass < 2; pass++) {
+				final FastenURI b = FastenURI.create("fasten://f!b$1.0/p/A.f0()v"), c = FastenURI.create("fasten://f!c$1.0/p/A.f0()v");
+				// Not published yet
+				assertTrue(kb.reaches(b, 120).isEmpty());
+				assertEquals(5 + 10, kb.reaches(b, 160).size());
+				assertTrue(kb.reaches(b, 160).contains(FastenURI.create("fasten://f!a$1.0/p/A.f9()v")));
+				assertTrue(kb.reaches(b, 210).contains(FastenURI.create("fasten://f!a$1.1/p/A.f9()v")));
+				assertEquals(5 + 10, kb.reaches(b, 210).size());
+				// 2.0 is out of range
+				assertEquals(new ObjectOpenHashSet<>(kb.reaches(b, 210)), new ObjectOpenHashSet<>(kb.reaches(b, 1000)));
+				assertTrue(kb.reaches(c, 260).contains(FastenURI.create("fasten://f!a$1.1/p/A.f9()v")));
+				assertTrue(kb.reaches(c, 310).contains(FastenURI.create("fasten://f!a$2.0/p/A.f9()v")));
+				assertEquals(5 + 10, kb.reaches(c, 310).size());
+
+				final FastenURI a11 = FastenURI.create("fasten://f!a$1.1/p/A.f0()v");
+				assertTrue(kb.coreaches(a11, 150).isEmpty());
+				assertEquals(1 + 5, kb.coreaches(a11, 210).size());
+				assertEquals(1 + 5 + 5, kb.coreaches(a11, 260).size());
+				assertEquals(1 + 5, kb.coreaches(a11, 310).size());
+				assertEquals(1 + 5, kb.coreaches(FastenURI.create("fasten://f!a$1.0/p/A.f0()v"), 160).size());
+				assertEquals(1 + 5, kb.coreaches(kb.fastenURI2Node(FastenURI.create("fasten://f!a$2.0/p/A.f0()v")), 1000).size());
+				// The timestamps are stored with the call graphs
+				kb.close();
+				kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+			}
+			// Timelines are cached across queries, but additions are visible
+			final FastenURI b = FastenURI.create("fasten://f!b$1.0/p/A.f0()v");
+			assertTrue(kb.reaches(b, 230).contains(FastenURI.create("fasten://f!a$1.1/p/A.f9()v")));
+			kb.add(revision("a", "1.5", 220, "[]", 10), revisions.length);
+			assertTrue(kb.reaches(b, 230).contains(FastenURI.create("fasten://f!a$1.5/p/A.f9()v")));
+			assertTrue(kb.reaches(b, 210).contains(FastenURI.create("fasten://f!a$1.1/p/A.f9()v")));
+			kb.close();
+
+			FileUtils.deleteDirectory(kbDir.toFile());
+			FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+		}
+	}
+}
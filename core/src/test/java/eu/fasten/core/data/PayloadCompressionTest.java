@@ -0,0 +1,123 @@
+package eu.fasten.core.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import eu.fasten.core.data.PayloadCompression.Codec;
+
+class PayloadCompressionTest {
+
+	private static byte[] payload(final Random random) {
+		final StringBuilder s = new StringBuilder("{\"forge\": \"mvn\", \"product\": \"org.example.p" + random.nextInt(100) + "\", \"version\": \"1." + random.nextInt(10) + "\", \"graph\": [");
+		for (int i = random.nextInt(20); i-- != 0;)
+			s.append("[\"/org.example.p" + random.nextInt(100) + "/Type" + random.nextInt(50) + ".method" + random.nextInt(20) + "(%2Fjava.lang%2FString)%2Fjava.lang%2FVoidType\", \"///java.lang/Object.%3Cinit%3E()VoidType\"], ");
+		return s.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] dictionary() {
+		final Random random = new Random(0);
+		final List<byte[]> samples = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) samples.add(payload(random));
+		return PayloadCompression.trainDictionary(samples.iterator(), 1 << 20, 4096);
+	}
+
+	@Test
+	void testRoundTrip() throws IOException {
+		final byte[] payload = payload(new Random(0));
+		for (final Codec codec : Codec.values()) {
+			final PayloadCompression compression = new PayloadCompression(codec);
+			final byte[] frame = compression.compress(payload);
+			assertTrue(PayloadCompression.isCompressed(frame));
+			assertEquals(codec, PayloadCompression.codec(frame));
+			assertEquals(0, PayloadCompression.frameDictionaryId(frame));
+			assertArrayEquals(payload, compression.decompress(frame));
+			// Any layer can decompress frames not using dictionaries
+			assertArrayEquals(payload, new PayloadCompression(Codec.NONE).decompress(frame));
+			assertArrayEquals(new byte[0], compression.decompress(compression.compress(new byte[0])));
+		}
+		assertFalse(PayloadCompression.isCompressed(payload));
+		assertSame(payload, new PayloadCompression(Codec.ZSTD).decompressIfNeeded(payload));
+	}
+
+	@Test
+	void testDictionary() throws IOException {
+		final byte[] dictionary = dictionary();
+		final int id = PayloadCompression.dictionaryId(dictionary);
+		assertNotEquals(0, id);
+
+		final byte[] payload = payload(new Random(1));
+		final byte[] frame = new PayloadCompression(Codec.ZSTD, dictionary).compress(payload);
+		assertEquals(id, PayloadCompression.frameDictionaryId(frame));
+		assertTrue(frame.length < new PayloadCompression(Codec.ZSTD).compress(payload).length);
+
+		assertArrayEquals(payload, new PayloadCompression(Codec.LZ4, new byte[] { 1, 2, 3 }, dictionary).decompress(frame));
+		assertThrows(IOException.class, () -> new PayloadCompression(Codec.ZSTD).decompress(frame));
+		// Other codecs do not record the dictionary
+		assertEquals(0, PayloadCompression.frameDictionaryId(new PayloadCompression(Codec.LZ4, dictionary).compress(payload)));
+	}
+
+	@Test
+	void testCorrupted() {
+		final byte[] payload = payload(new Random(0));
+		for (final Codec codec : Codec.values()) {
+			final PayloadCompression compression = new PayloadCompression(codec);
+			final byte[] frame = compression.compress(payload);
+			assertThrows(IOException.class, () -> compression.decompress(Arrays.copyOf(frame, frame.length - 1)));
+			final byte[] unknownCodec = frame.clone();
+			unknownCodec[PayloadCompression.MAGIC.length] = (byte)Codec.values().length;
+			assertThrows(IOException.class, () -> compression.decompress(unknownCodec));
+		}
+	}
+
+	@Test
+	void testUntrustedLength() throws IOException {
+		final byte[] payload = payload(new Random(0));
+		for (final Codec codec : Codec.values()) {
+			final PayloadCompression compression = new PayloadCompression(codec);
+			final byte[] frame = compression.compress(payload);
+			// A crafted length is rejected before allocating the payload
+			final byte[] huge = frame.clone();
+			ByteBuffer.wrap(huge).putInt(PayloadCompression.MAGIC.length + 1 + Integer.BYTES, Integer.MAX_VALUE);
+			assertThrows(IOException.class, () -> compression.decompress(huge));
+			final byte[] longer = frame.clone();
+			ByteBuffer.wrap(longer).putInt(PayloadCompression.MAGIC.length + 1 + Integer.BYTES, payload.length + 1);
+			assertThrows(IOException.class, () -> compression.decompress(longer));
+
+			compression.setMaxLength(payload.length - 1);
+			assertThrows(IOException.class, () -> compression.decompress(frame));
+			compression.setMaxLength(payload.length);
+			assertArrayEquals(payload, compression.decompress(frame));
+		}
+	}
+
+	@Test
+	void testKafkaSerialization() {
+		final String payload = new String(payload(new Random(0)), StandardCharsets.UTF_8);
+		final PayloadCompression.Serializer serializer = new PayloadCompression.Serializer();
+		serializer.configure(Map.of(PayloadCompression.CODEC_CONFIG, "lz4"), false);
+		final PayloadCompression.Deserializer deserializer = new PayloadCompression.Deserializer();
+		deserializer.configure(Map.of(), false);
+
+		final byte[] value = serializer.serialize("t", payload);
+		assertTrue(PayloadCompression.isCompressed(value));
+		assertEquals(payload, deserializer.deserialize("t", value));
+		// Uncompressed records are passed through
+		assertEquals(payload, deserializer.deserialize("t", payload.getBytes(StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,102 @@
+package eu.fasten.core.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+class RevisionCallGraphCodecTest {
+
+	private static final String JSON = "{\"forge\": \"f\", \"product\": \"graph-2\", \"version\": \"1.0\", \"timestamp\": 42,"
+			+ "\"depset\": [[{ \"forge\": \"f\", \"product\": \"graph-0\", \"constraints\": [\"[1.0]\", \"[..2.0]\"] }], [{ \"forge\": \"f\", \"product\": \"graph-1\", \"constraints\": [] }]],"
+			+ "\"graph\": [[ \"/p2/A.f1()v\", \"//graph-0/p0/A.f3()v\" ], [ \"/p2/A.f3()v\", \"//-\" ], [ \"/p2/A.f10()v\", \"/p2/A.f1()v\" ], [ \"/p2/A.f10()v\", \"/p2/A.f2()v\" ], [ \"/p2/A.f2()v\", \"/p2/A.f10()v\" ]]}";
+
+	private static final String EXTENDED_JSON = "{\"forge\": \"mvn\", \"product\": \"g.a\", \"version\": \"1.0\", \"generator\": \"OPAL\", \"timestamp\": 7, \"depset\": [],"
+			+ "\"cha\": {"
+			+ "\"/name.space/A\": {\"methods\": {\"0\": \"/name.space/A.m()%2Fjava.lang%2FVoidType\", \"1\": \"/name.space/A.n(%2Fjava.lang%2FIntegerType)%2Fjava.lang%2FVoidType\"},"
+			+ "\"superClasses\": [\"/java.lang/Object\"], \"superInterfaces\": [], \"sourceFile\": \"A.java\"},"
+			+ "\"/name.space/B\": {\"methods\": {\"2\": \"/name.space/B.%3Cinit%3E()%2Fjava.lang%2FVoidType\"},"
+			+ "\"superClasses\": [\"/name.space/A\", \"/java.lang/Object\"], \"superInterfaces\": [\"/java.io/Serializable\"], \"sourceFile\": \"B.java\"}},"
+			+ "\"graph\": {\"internalCalls\": [[2, 0], [0, 1], [1, 0]],"
+			+ "\"externalCalls\": [[\"0\", \"///java.lang/Object.%3Cinit%3E()VoidType\", {\"invokespecial\": \"1\"}],"
+			+ "[\"2\", \"///java.lang/Object.%3Cinit%3E()VoidType\", {\"invokespecial\": \"2\", \"invokevirtual\": \"1\"}],"
+			+ "[\"1\", \"///java.io/PrintStream.println()VoidType\", {\"invokevirtual\": \"1\"}]]}}";
+
+	@Test
+	void testRoundTrip() throws IOException, URISyntaxException {
+		final RevisionCallGraph g = new RevisionCallGraph(new JSONObject(JSON), false);
+		final byte[] b = RevisionCallGraphCodec.encode(g);
+		assertTrue(RevisionCallGraphCodec.isEncoded(b));
+		assertFalse(RevisionCallGraphCodec.isEncoded(JSON.getBytes(StandardCharsets.UTF_8)));
+
+		final RevisionCallGraph h = RevisionCallGraphCodec.decode(b);
+		assertFalse(h instanceof ExtendedRevisionCallGraph);
+		assertEquals(g.uri, h.uri);
+		assertEquals(42, h.timestamp);
+		assertEquals(g.toJSON().toString(), h.toJSON().toString());
+		assertEquals(g.graph.size(), h.graph.size());
+		for (int i = 0; i < g.graph.size(); i++) assertTrue(Arrays.equals(g.graph.get(i), h.graph.get(i)));
+
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		RevisionCallGraphCodec.write(g, os);
+		assertTrue(Arrays.equals(b, os.toByteArray()));
+		final BufferedInputStream is = new BufferedInputStream(new ByteArrayInputStream(b));
+		assertTrue(RevisionCallGraphCodec.isEncoded(is));
+		assertEquals(g.toJSON().toString(), RevisionCallGraphCodec.read(is).toJSON().toString());
+	}
+
+	@Test
+	void testInvalidArcsAreDiscarded() throws IOException {
+		final RevisionCallGraph g = new RevisionCallGraph("f", "graph-2", "1.0", -1, new ArrayList<>(), new ArrayList<>());
+		g.graph.add(new FastenURI[] { FastenURI.create("/p2/A.f1()v"), FastenURI.create("/p2/A.f2()v") });
+		// External source
+		g.graph.add(new FastenURI[] { FastenURI.create("//graph-0/p0/A.f3()v"), FastenURI.create("/p2/A.f2()v") });
+		// Same product
+		g.graph.add(new FastenURI[] { FastenURI.create("/p2/A.f1()v"), FastenURI.create("//graph-2/p2/A.f2()v") });
+		final RevisionCallGraph h = RevisionCallGraphCodec.decode(RevisionCallGraphCodec.encode(g));
+		assertEquals(-1, h.timestamp);
+		assertEquals(1, h.graph.size());
+		assertTrue(Arrays.equals(g.graph.get(0), h.graph.get(0)));
+	}
+
+	@Test
+	void testExtendedRoundTrip() throws IOException {
+		final ExtendedRevisionCallGraph g = new ExtendedRevisionCallGraph(new JSONObject(EXTENDED_JSON));
+		final byte[] b = RevisionCallGraphCodec.encode(g);
+		assertTrue(b.length < EXTENDED_JSON.length() / 2);
+
+		final ExtendedRevisionCallGraph h = (ExtendedRevisionCallGraph)RevisionCallGraphCodec.decode(b);
+		assertEquals(g.uri, h.uri);
+		assertEquals(g.timestamp, h.timestamp);
+		assertEquals(g.getCgGenerator(), h.getCgGenerator());
+		assertEquals(g.getGraph().getInternalCalls(), h.getGraph().getInternalCalls());
+		assertEquals(g.getGraph().getExternalCalls(), h.getGraph().getExternalCalls());
+		assertEquals(g.getClassHierarchy().keySet(), h.getClassHierarchy().keySet());
+		for (final FastenURI type : g.getClassHierarchy().keySet())
+			assertTrue(g.getClassHierarchy().get(type).toJSON().similar(h.getClassHierarchy().get(type).toJSON()));
+	}
+
+	@Test
+	void testWrongHeader() {
+		final byte[] b = RevisionCallGraphCodec.encode(new RevisionCallGraph("f", "p", "1.0", 0, new ArrayList<>(), new ArrayList<>()));
+		final byte[] magic = b.clone();
+		magic[0] = '{';
+		assertThrows(IOException.class, () -> RevisionCallGraphCodec.decode(magic));
+		final byte[] version = b.clone();
+		version[RevisionCallGraphCodec.MAGIC.length] = RevisionCallGraphCodec.VERSION + 1;
+		assertThrows(IOException.class, () -> RevisionCallGraphCodec.decode(version));
+		assertThrows(IOException.class, () -> RevisionCallGraphCodec.decode(Arrays.copyOf(b, b.length - 1)));
+	}
+}
@@ -1,15 +1,20 @@
 package eu.fasten.core.data;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static net.javacrumbs.jsonunit.JsonAssert.*;
 
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -66,6 +71,33 @@ class RevisionCallGraphTest {
 		assertEquals(new JSONArray(spec.replaceAll(" ", "")).toString(), RevisionCallGraph.Constraint.toJSON(constraints).toString());
 	}
 	
+	@Test
+	void testVersionMatching() {
+		final String[] sorted = { "0.9", "1.0-alpha", "1.0-beta", "1.0", "1.0.1", "1.1-alpha", "1.1", "1.2", "1.10", "2", "10.0.0" };
+		for (int i = 0; i < sorted.length; i++)
+			for (int j = 0; j < sorted.length; j++)
+				assertEquals(Integer.signum(Integer.compare(i, j)), Integer.signum(Constraint.compareVersions(sorted[i], sorted[j])), sorted[i] + " " + sorted[j]);
+		assertEquals(0, Constraint.compareVersions("1.01", "1.1"));
+		assertEquals(0, Constraint.compareVersions("1.0-RC1", "1.0.rc1"));
+		assertTrue(Constraint.compareVersions("1.99999999999999999999", "1.100000000000000000000") < 0);
+
+		final Constraint c = new Constraint("[1.0..1.2]");
+		assertTrue(c.matches("1.0"));
+		assertTrue(c.matches("1.1-alpha"));
+		assertTrue(c.matches("1.2"));
+		assertFalse(c.matches("1.0-beta"));
+		assertFalse(c.matches("1.10"));
+		assertTrue(new Constraint("[..1.0]").matches("0.1"));
+		assertTrue(new Constraint("[1.0..]").matches("10.0"));
+		assertTrue(new Constraint("[1.0]").matches("1.0"));
+		assertFalse(new Constraint("[1.0]").matches("1.0.1"));
+
+		final Dependency d = new Dependency("maven", "foo.bar", ObjectLists.singleton(c));
+		assertTrue(d.matches("1.1"));
+		assertFalse(d.matches("2.0"));
+		assertTrue(new Dependency("maven", "foo.bar", new ArrayList<>()).matches("2.0"));
+	}
+	
 	@Test
 	void testDependency() {
 		RevisionCallGraph.Dependency d;
@@ -174,4 +206,44 @@ class RevisionCallGraphTest {
 		assertJsonEquals(new JSONObject(callGraph.replace(" ", "")), cg.toJSON());
 	}
 
+	private static void assertSameCallGraph(final RevisionCallGraph expected, final RevisionCallGraph actual) {
+		assertEquals(expected.forge, actual.forge);
+		assertEquals(expected.product, actual.product);
+		assertEquals(expected.version, actual.version);
+		assertEquals(expected.timestamp, actual.timestamp);
+		assertEquals(Dependency.toJSON(expected.depset).toString(), Dependency.toJSON(actual.depset).toString());
+		assertEquals(expected.graph.size(), actual.graph.size());
+		for(int i = 0; i < expected.graph.size(); i++) {
+			assertEquals(expected.graph.get(i)[0], actual.graph.get(i)[0]);
+			assertEquals(expected.graph.get(i)[1], actual.graph.get(i)[1]);
+		}
+	}
+
+	@Test
+	void testStreaming() throws JSONException, URISyntaxException {
+		final String header = "\"forge\": \"mvn\", \"product\": \"foo\", \"version\": \"2.0\", \"timestamp\": \"42\", \"extra\": { \"a\": [1, 2] }, " +
+				"\"depset\": [[{ \"forge\": \"mvn\", \"product\": \"a\", \"constraints\": [\"[1.0..2.0]\", \"[4.2..]\"]}]]";
+		// The third arc is discarded (its source is external), and the list has a trailing comma
+		final String graph = "\"graph\": [[\"/my.package/A.f(A)B\", \"/my.other.package/C.g()B\"], [\"/my.package/A.g()B\", \"//b/their.package/C.m()D\"], " +
+				"[\"//b/their.package/C.m()D\", \"/my.package/A.g()B\"], [\"/my.package/A.h()B\", \"//-\"],]";
+
+		for(final String callGraph : new String[] { "{" + header + ", " + graph + "}", "{" + graph + ", " + header + "}" }) {
+			final RevisionCallGraph expected = new RevisionCallGraph(new JSONObject(callGraph), false);
+			assertEquals(42, expected.timestamp);
+			assertEquals(3, expected.graph.size());
+			assertSameCallGraph(expected, new RevisionCallGraph(new JSONTokener(callGraph), false));
+
+			final List<FastenURI[]> arcs = new ArrayList<>();
+			final RevisionCallGraph streamed = new RevisionCallGraph(new JSONTokener(callGraph), false, (source, target) -> arcs.add(new FastenURI[] { source, target }));
+			assertNull(streamed.graph);
+			streamed.graph = new ArrayList<>(arcs);
+			assertSameCallGraph(expected, streamed);
+		}
+
+		final RevisionCallGraph empty = new RevisionCallGraph(new JSONTokener("{\"forge\": \"f\", \"product\": \"p\", \"version\": \"1\", \"depset\": [], \"graph\": []}"), false);
+		assertEquals(-1, empty.timestamp);
+		assertEquals(0, empty.graph.size());
+		assertThrows(JSONException.class, () -> new RevisionCallGraph(new JSONTokener("{\"forge\": \"f\", \"product\": \"p\", \"depset\": [], \"graph\": []}"), false));
+		assertThrows(JSONException.class, () -> new RevisionCallGraph(new JSONTokener("{\"forge\": \"f\", \"product\": \"p\", \"version\": \"1\", \"depset\": [], \"graph\": [[\"/a/A.f()v\", \"//-\"]"), false));
+	}
 }
@@ -0,0 +1,41 @@
+package eu.fasten.core.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.json.JSONArray;
+
+import eu.fasten.core.data.RevisionCallGraph.Dependency;
+
+/** Synthetic revision call graphs for knowledge-base tests. */
+final class Revisions {
+
+	private Revisions() {}
+
+	/** Returns a revision of forge <code>f</code> whose methods f0, ..., f<var>n</var> - 1 form a chain, with
+	 * f<var>n</var> - 1 - <var>i</var> calling externals[<var>i</var>] (if not {@code null}); in particular,
+	 * a single external is called by the last method of the chain.
+	 *
+	 * @param product the product.
+	 * @param version the version.
+	 * @param timestamp the timestamp.
+	 * @param depset the depset, in JSON format, or {@code null} for no dependencies.
+	 * @param n the number of methods.
+	 * @param externals the external methods called by the chain, starting from its end.
+	 * @return the revision.
+	 */
+	static RevisionCallGraph revision(final String product, final String version, final long timestamp, final String depset, final int n, final String... externals) {
+		final ArrayList<FastenURI[]> graph = new ArrayList<>();
+		for(int i = 0; i < n - 1; i++) graph.add(new FastenURI[] { FastenURI.create("/p/A.f" + i + "()v"), FastenURI.create("/p/A.f" + (i + 1) + "()v") });
+		for(int i = 0; i < externals.length; i++) if (externals[i] != null) graph.add(new FastenURI[] { FastenURI.create("/p/A.f" + (n - 1 - i) + "()v"), FastenURI.create(externals[i]) });
+		return new RevisionCallGraph("f", product, version, timestamp, depset == null ? Collections.emptyList() : Dependency.depset(new JSONArray(depset)), graph);
+	}
+
+	/** Returns a revision without timestamp and dependencies.
+	 *
+	 * @see #revision(String, String, long, String, int, String...)
+	 */
+	static RevisionCallGraph revision(final String product, final String version, final int n, final String... externals) {
+		return revision(product, version, 0, null, n, externals);
+	}
+}
@@ -0,0 +1,52 @@
+package eu.fasten.core.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+public class GID2LIDMapTest {
+
+	private static void assertInverse(final long[] LID2GID, final Random random) {
+		final GID2LIDMap map = new GID2LIDMap(LID2GID);
+		final Long2IntOpenHashMap expected = new Long2IntOpenHashMap();
+		expected.defaultReturnValue(-1);
+		for(int lid = 0; lid < LID2GID.length; lid++) expected.put(LID2GID[lid], lid);
+
+		assertEquals(LID2GID.length, map.size());
+		for(int lid = 0; lid < LID2GID.length; lid++) {
+			assertEquals(lid, map.get(LID2GID[lid]));
+			assertTrue(map.containsKey(LID2GID[lid]));
+		}
+		for(int i = 0; i < 1000; i++) {
+			final long gid = random.nextInt(4 * LID2GID.length + 1);
+			assertEquals(expected.get(gid), map.get(gid));
+			assertEquals(expected.containsKey(gid), map.containsKey(gid));
+		}
+		assertFalse(map.containsKey(-1));
+		assertEquals(-1, map.get(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testInverse() {
+		final Random random = new Random(0);
+		assertInverse(new long[0], random);
+		for(final int n : new int[] { 1, 2, 10, 1000, 100000 }) {
+			final LongOpenHashSet gids = new LongOpenHashSet();
+			while(gids.size() < n) gids.add(random.nextInt(2 * n));
+			final long[] LID2GID = gids.toLongArray();
+			LongArrays.shuffle(LID2GID, random);
+			assertInverse(LID2GID, random);
+			// Sorted arrays are searched directly
+			LongArrays.quickSort(LID2GID);
+			assertInverse(LID2GID, random);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package eu.fasten.core.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.Random;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.longs.LongBigList;
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.BVGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.LazyIntIterator;
+import it.unimi.dsi.webgraph.Transform;
+
+public class InMemoryBVGraphCompressorTest {
+
+	private static ImmutableGraph randomGraph(final Random random, final int n, final int m, final boolean local) {
+		final ArrayListMutableGraph graph = new ArrayListMutableGraph(n);
+		for(int i = 0; i < m; i++) {
+			final int x = random.nextInt(n);
+			// Local arcs produce intervals and references
+			final int y = local ? Math.min(n - 1, x + random.nextInt(8)) : random.nextInt(n);
+			try {
+				graph.addArc(x, y);
+			} catch(final IllegalArgumentException duplicate) {}
+		}
+		return graph.immutableView();
+	}
+
+	private static void assertSameAsStored(final ImmutableGraph graph) throws IOException, IllegalAccessException {
+		final File f = File.createTempFile(InMemoryBVGraphCompressorTest.class.getSimpleName(), ".tmpgraph");
+		BVGraph.store(graph, f.toString());
+		final BVGraph stored = BVGraph.load(f.toString());
+		final Properties storedProperties = new Properties();
+		try (FileInputStream propertyFile = new FileInputStream(f + BVGraph.PROPERTIES_EXTENSION)) {
+			storedProperties.load(propertyFile);
+		}
+
+		final Properties properties = new Properties();
+		final BVGraph compressed = InMemoryBVGraphCompressor.compress(graph, properties);
+		assertEquals(BVGraph.class, compressed.getClass());
+		assertArrayEquals((byte[])FieldUtils.readField(stored, "graphMemory", true), (byte[])FieldUtils.readField(compressed, "graphMemory", true));
+		assertEquals((LongBigList)FieldUtils.readField(stored, "offsets", true), (LongBigList)FieldUtils.readField(compressed, "offsets", true));
+		for(final String key : properties.stringPropertyNames()) assertEquals(key, storedProperties.getProperty(key), properties.getProperty(key));
+
+		assertEquals(graph.numNodes(), compressed.numNodes());
+		assertEquals(graph.numArcs(), compressed.numArcs());
+		for(int x = 0; x < graph.numNodes(); x++) {
+			final LazyIntIterator expected = graph.successors(x), actual = compressed.successors(x);
+			for(int s; (s = expected.nextInt()) != -1;) assertEquals(s, actual.nextInt());
+			assertEquals(-1, actual.nextInt());
+		}
+
+		new File(f + BVGraph.PROPERTIES_EXTENSION).delete();
+		new File(f + BVGraph.OFFSETS_EXTENSION).delete();
+		new File(f + BVGraph.GRAPH_EXTENSION).delete();
+		f.delete();
+	}
+
+	@Test
+	public void testSameAsStored() throws IOException, IllegalAccessException {
+		final Random random = new Random(0);
+		assertSameAsStored(new ArrayListMutableGraph(1).immutableView());
+		assertSameAsStored(new ArrayListMutableGraph(100).immutableView());
+		for(final int n : new int[] { 2, 10, 1000, 10000 }) {
+			for(final boolean local : new boolean[] { false, true }) {
+				final ImmutableGraph graph = randomGraph(random, n, 5 * n, local);
+				assertSameAsStored(graph);
+				assertSameAsStored(Transform.transpose(graph));
+			}
+		}
+	}
+}
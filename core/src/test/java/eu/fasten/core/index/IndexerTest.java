@@ -1,25 +1,53 @@
 package eu.fasten.core.index;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
 import org.rocksdb.RocksDBException;
 
+import eu.fasten.core.data.CallGraphTransport;
+import eu.fasten.core.data.CallGraphTransport.Mode;
+import eu.fasten.core.data.FastenURI;
 import eu.fasten.core.data.KnowledgeBase;
 import eu.fasten.core.data.KnowledgeBase.Node;
+import eu.fasten.core.data.PayloadCompression;
 import eu.fasten.core.data.RevisionCallGraph;
+import eu.fasten.core.data.RevisionCallGraphCodec;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.util.XoRoShiRo128PlusPlusRandomGenerator;
+import it.unimi.dsi.webgraph.ImmutableGraph;
 
 public class IndexerTest {
 
@@ -65,6 +93,7 @@ public class IndexerTest {
 
 		FileUtils.deleteDirectory(kbDir.toFile());
 		FileUtils.deleteQuietly(new File("kb.meta"));
+		FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
 	}
 
 	@Test
@@ -91,4 +120,337 @@ public class IndexerTest {
 
 		testKnowledgeBase(jsonSpecs.toArray(new String[0]));
 	}
+
+	@Test
+	public void testGraphLargerThanOneMegabyte() throws JSONException, IOException, RocksDBException, URISyntaxException, ClassNotFoundException {
+		final int n = 100000, m = 400000;
+		final XoRoShiRo128PlusPlusRandomGenerator random = new XoRoShiRo128PlusPlusRandomGenerator(0);
+		final ObjectOpenHashSet<String> arcs = new ObjectOpenHashSet<>();
+		final ArrayList<FastenURI[]> graph = new ArrayList<>();
+		while(arcs.size() < m) {
+			final int source = random.nextInt(n), target = random.nextInt(n);
+			if (arcs.add(source + " " + target)) graph.add(new FastenURI[] { FastenURI.create("/p/A.f" + source + "()v"), FastenURI.create("/p/A.f" + target + "()v") });
+		}
+
+		final Path kbDir = Files.createTempDirectory(Indexer.class.getSimpleName());
+		final String meta = Files.createTempFile(Indexer.class.getSimpleName(), "meta").toString();
+		new File(meta).delete();
+		KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		kb.add(new RevisionCallGraph("f", "large", "1.0", 0, Collections.emptyList(), graph), 0);
+
+		for(int pass = 0; pass < 2; pass++) {
+			final ImmutableGraph[] graphs = kb.callGraphs.get(0).graphs();
+			assertEquals(m, graphs[0].numArcs());
+			assertEquals(m, graphs[1].numArcs());
+			kb.close();
+			kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		}
+
+		kb.close();
+		FileUtils.deleteDirectory(kbDir.toFile());
+		FileUtils.deleteQuietly(new File(meta));
+		FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+	}
+
+	@Test
+	public void testGraphCache() throws JSONException, IOException, RocksDBException, URISyntaxException, ClassNotFoundException {
+		final Path kbDir = Files.createTempDirectory(Indexer.class.getSimpleName());
+		final String meta = Files.createTempFile(Indexer.class.getSimpleName(), "meta").toString();
+		new File(meta).delete();
+
+		// A one-byte cache cannot hold any graph
+		KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta, 1);
+		for (int index = 0; index < JSON_SPECS.length; index++)
+			kb.add(new RevisionCallGraph(new JSONObject(JSON_SPECS[index]), false), index);
+		final ObjectArrayList<ObjectLinkedOpenHashSet<Node>> expected = new ObjectArrayList<>();
+		for (int index = 0; index < JSON_SPECS.length; index++) {
+			final eu.fasten.core.data.KnowledgeBase.CallGraph callGraph = kb.callGraphs.get(index);
+			for(int i = 0; i < callGraph.nInternal; i++) expected.add(kb.reaches(kb.new Node(callGraph.LID2GID[i], index)));
+		}
+		assertTrue(kb.graphCacheStats().evictionCount() > 0);
+		assertEquals(0, kb.graphCacheStats().hitCount());
+		kb.close();
+
+		kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		int k = 0;
+		for (int index = 0; index < JSON_SPECS.length; index++) {
+			final eu.fasten.core.data.KnowledgeBase.CallGraph callGraph = kb.callGraphs.get(index);
+			for(int i = 0; i < callGraph.nInternal; i++) assertEquals(expected.get(k++).size(), kb.reaches(kb.new Node(callGraph.LID2GID[i], index)).size());
+		}
+		assertEquals(0, kb.graphCacheStats().evictionCount());
+		assertEquals(JSON_SPECS.length, kb.graphCacheStats().missCount());
+		assertTrue(kb.graphCacheStats().hitCount() > 0);
+		kb.close();
+
+		FileUtils.deleteDirectory(kbDir.toFile());
+		FileUtils.deleteQuietly(new File(meta));
+		FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+	}
+
+	@Test
+	public void testPipelinedIndexing() throws JSONException, IOException, RocksDBException, URISyntaxException, ClassNotFoundException, InterruptedException {
+		// Enough versions to fill the tails of posting lists within a batch
+		final ObjectArrayList<String> files = new ObjectArrayList<>(), jsonSpecs = new ObjectArrayList<>();
+		final Path jsonDir = Files.createTempDirectory(Indexer.class.getSimpleName());
+		for(int i = 1; i <= 70; i++)
+			for(final String s : JSON_SPECS) {
+				final String jsonSpec = s.replaceAll("1\\.0", i + ".0");
+				// Every other call graph is encoded
+				final File file = new File(jsonDir.toFile(), files.size() + (files.size() % 3 == 0 ? ".json" : files.size() % 3 == 1 ? ".fcg" : ".fcz"));
+				if (files.size() % 3 == 0) FileUtils.writeStringToFile(file, jsonSpec, "UTF-8");
+				else if (files.size() % 3 == 1) FileUtils.writeByteArrayToFile(file, RevisionCallGraphCodec.encode(new RevisionCallGraph(new JSONObject(jsonSpec), false)));
+				else FileUtils.writeByteArrayToFile(file, new PayloadCompression(PayloadCompression.Codec.LZ4).compress(jsonSpec.getBytes(StandardCharsets.UTF_8)));
+				files.add(file.toString());
+				jsonSpecs.add(jsonSpec);
+			}
+
+		final Path kbDir = Files.createTempDirectory(Indexer.class.getSimpleName());
+		final String meta = Files.createTempFile(Indexer.class.getSimpleName(), "meta").toString();
+		new File(meta).delete();
+		final KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		for (int index = 0; index < files.size(); index++)
+			kb.add(new RevisionCallGraph(new JSONObject(jsonSpecs.get(index)), false), index);
+
+		final Path pipelinedKbDir = Files.createTempDirectory(Indexer.class.getSimpleName());
+		final String pipelinedMeta = Files.createTempFile(Indexer.class.getSimpleName(), "meta").toString();
+		new File(pipelinedMeta).delete();
+		final KnowledgeBase pipelinedKb = KnowledgeBase.getInstance(pipelinedKbDir.toString(), pipelinedMeta, KnowledgeBase.DEFAULT_GRAPH_CACHE_SIZE, PayloadCompression.Codec.ZSTD);
+		new Indexer(pipelinedKb, 3, 16).index(Long.MAX_VALUE, files.toArray(new String[0]));
+
+		assertEquals(kb.size(), pipelinedKb.size());
+		for (int index = 0; index < files.size(); index++) {
+			final eu.fasten.core.data.KnowledgeBase.CallGraph callGraph = kb.callGraphs.get(index);
+			assertEquals(callGraph.nInternal, pipelinedKb.callGraphs.get(index).nInternal);
+			for(int i = 0; i < callGraph.nInternal; i++) {
+				final FastenURI uri = kb.new Node(callGraph.LID2GID[i], index).toFastenURI();
+				assertEquals(new ObjectOpenHashSet<>(kb.reaches(uri)), new ObjectOpenHashSet<>(pipelinedKb.reaches(uri)));
+				assertEquals(new ObjectOpenHashSet<>(kb.coreaches(uri)), new ObjectOpenHashSet<>(pipelinedKb.coreaches(uri)));
+			}
+		}
+		kb.close();
+		pipelinedKb.close();
+
+		FileUtils.deleteDirectory(jsonDir.toFile());
+		FileUtils.deleteDirectory(kbDir.toFile());
+		FileUtils.deleteDirectory(pipelinedKbDir.toFile());
+		FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+		FileUtils.deleteQuietly(new File(pipelinedMeta + KnowledgeBase.URIS_EXTENSION));
+	}
+
+	@Test
+	public void testBulkLoading() throws JSONException, IOException, RocksDBException, URISyntaxException, ClassNotFoundException, InterruptedException {
+		final ObjectArrayList<String> files = new ObjectArrayList<>();
+		final Path jsonDir = Files.createTempDirectory(Indexer.class.getSimpleName());
+		for(int i = 1; i <= 70; i++)
+			for(final String s : JSON_SPECS) {
+				final File file = new File(jsonDir.toFile(), files.size() + ".json");
+				FileUtils.writeStringToFile(file, s.replaceAll("1\\.0", i + ".0"), "UTF-8");
+				files.add(file.toString());
+			}
+
+		final Path kbDir = Files.createTempDirectory(Indexer.class.getSimpleName());
+		final String meta = Files.createTempFile(Indexer.class.getSimpleName(), "meta").toString();
+		new File(meta).delete();
+		final KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		for (int index = 0; index < files.size(); index++)
+			kb.add(new RevisionCallGraph(new JSONObject(FileUtils.readFileToString(new File(files.get(index)), "UTF-8")), false), index);
+
+		// Part of the revisions are added before the bulk load, so that stored posting lists have tails to be merged
+		final Path bulkKbDir = Files.createTempDirectory(Indexer.class.getSimpleName());
+		final String bulkMeta = Files.createTempFile(Indexer.class.getSimpleName(), "meta").toString();
+		new File(bulkMeta).delete();
+		KnowledgeBase bulkKb = KnowledgeBase.getInstance(bulkKbDir.toString(), bulkMeta);
+		final int first = 40;
+		new Indexer(bulkKb, 1, 8).index(Long.MAX_VALUE, files.subList(0, first).toArray(new String[0]));
+		assertEquals(files.size() - first, new BulkLoader(bulkKb, 3).load(files.subList(first, files.size()).toArray(new String[0]), jsonDir.toFile()));
+
+		for(int pass = 0; pass < 2; pass++) {
+			assertEquals(kb.size(), bulkKb.size());
+			for (int index = 0; index < files.size(); index++) {
+				final eu.fasten.core.data.KnowledgeBase.CallGraph callGraph = kb.callGraphs.get(index);
+				assertEquals(callGraph.nInternal, bulkKb.callGraphs.get(index).nInternal);
+				for(int i = 0; i < callGraph.nInternal; i++) {
+					final FastenURI uri = kb.new Node(callGraph.LID2GID[i], index).toFastenURI();
+					assertEquals(new ObjectOpenHashSet<>(kb.reaches(uri)), new ObjectOpenHashSet<>(bulkKb.reaches(uri)));
+					assertEquals(new ObjectOpenHashSet<>(kb.coreaches(uri)), new ObjectOpenHashSet<>(bulkKb.coreaches(uri)));
+				}
+			}
+			// The bulk-loaded data must survive reopening
+			bulkKb.close();
+			bulkKb = KnowledgeBase.getInstance(bulkKbDir.toString(), bulkMeta);
+		}
+		kb.close();
+		bulkKb.close();
+
+		FileUtils.deleteDirectory(jsonDir.toFile());
+		FileUtils.deleteDirectory(kbDir.toFile());
+		FileUtils.deleteDirectory(bulkKbDir.toFile());
+		FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+		FileUtils.deleteQuietly(new File(bulkMeta + KnowledgeBase.URIS_EXTENSION));
+	}
+
+	@Test
+	public void testConcurrentQueries() throws JSONException, IOException, RocksDBException, URISyntaxException, ClassNotFoundException, InterruptedException, ExecutionException {
+		final ObjectArrayList<String> jsonSpecs = new ObjectArrayList<>();
+		for(int i = 1; i < 5; i++)
+			for(final String s : JSON_SPECS) jsonSpecs.add(s.replaceAll("1\\.0", i + ".0"));
+
+		final Path kbDir = Files.createTempDirectory(Indexer.class.getSimpleName());
+		final String meta = Files.createTempFile(Indexer.class.getSimpleName(), "meta").toString();
+		new File(meta).delete();
+		final KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		// Half of the revisions are added before the queries start, the other half concurrently
+		final int half = jsonSpecs.size() / 2;
+		for (int index = 0; index < half; index++)
+			kb.add(new RevisionCallGraph(new JSONObject(jsonSpecs.get(index)), false), index);
+
+		final ObjectArrayList<Node> nodes = new ObjectArrayList<>();
+		final ObjectArrayList<ObjectLinkedOpenHashSet<Node>> reaches = new ObjectArrayList<>();
+		final ObjectArrayList<ObjectLinkedOpenHashSet<Node>> coreaches = new ObjectArrayList<>();
+		for (int index = 0; index < half; index++) {
+			final eu.fasten.core.data.KnowledgeBase.CallGraph callGraph = kb.callGraphs.get(index);
+			for(int i = 0; i < callGraph.nInternal; i++) nodes.add(kb.new Node(callGraph.LID2GID[i], index));
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		final ObjectArrayList<Future<?>> futures = new ObjectArrayList<>();
+		futures.add(executor.submit(() -> {
+			for (int index = half; index < jsonSpecs.size(); index++)
+				kb.add(new RevisionCallGraph(new JSONObject(jsonSpecs.get(index)), false), index);
+			return null;
+		}));
+		for(final Node node : nodes) futures.add(executor.submit(() -> kb.reaches(node)));
+		for(final Node node : nodes) futures.add(executor.submit(() -> kb.coreaches(node)));
+		for(final Future<?> future : futures) future.get();
+		executor.shutdown();
+
+		// Once all revisions are in, concurrent and sequential queries must agree
+		final ExecutorService queryExecutor = Executors.newFixedThreadPool(8);
+		final ObjectArrayList<Future<ObjectLinkedOpenHashSet<Node>>> reachesFutures = new ObjectArrayList<>(), coreachesFutures = new ObjectArrayList<>();
+		for(final Node node : nodes) reachesFutures.add(queryExecutor.submit(() -> kb.reaches(node)));
+		for(final Node node : nodes) coreachesFutures.add(queryExecutor.submit(() -> kb.coreaches(node)));
+		for(final Node node : nodes) {
+			reaches.add(kb.reaches(node));
+			coreaches.add(kb.coreaches(node));
+		}
+		for(int i = 0; i < nodes.size(); i++) {
+			assertEquals(reaches.get(i), reachesFutures.get(i).get());
+			assertEquals(coreaches.get(i), coreachesFutures.get(i).get());
+		}
+		queryExecutor.shutdown();
+
+		kb.close();
+		FileUtils.deleteDirectory(kbDir.toFile());
+		FileUtils.deleteQuietly(new File(meta));
+		FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+	}
+
+	@Test
+	public void testMultiSourceVisit() throws JSONException, IOException, RocksDBException, URISyntaxException, ClassNotFoundException {
+		final int n = 20000, m = 30000;
+		final XoRoShiRo128PlusPlusRandomGenerator random = new XoRoShiRo128PlusPlusRandomGenerator(0);
+		final ObjectOpenHashSet<String> arcs = new ObjectOpenHashSet<>();
+		final ArrayList<FastenURI[]> graph = new ArrayList<>();
+		while(arcs.size() < m) {
+			final int source = random.nextInt(n), target = random.nextInt(n);
+			if (arcs.add(source + " " + target)) graph.add(new FastenURI[] { FastenURI.create("/p/A.f" + source + "()v"), FastenURI.create("/p/A.f" + target + "()v") });
+		}
+
+		final Path kbDir = Files.createTempDirectory(Indexer.class.getSimpleName());
+		final String meta = Files.createTempFile(Indexer.class.getSimpleName(), "meta").toString();
+		new File(meta).delete();
+		final KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+		kb.add(new RevisionCallGraph("f", "multi", "1.0", 0, Collections.emptyList(), graph), 0);
+		for(final String s : JSON_SPECS) kb.add(new RevisionCallGraph(new JSONObject(s), false), kb.callGraphs.size());
+
+		final ObjectArrayList<Node> starts = new ObjectArrayList<>();
+		for (int index = 0; index < kb.callGraphs.size(); index++) {
+			final eu.fasten.core.data.KnowledgeBase.CallGraph callGraph = kb.callGraphs.get(index);
+			for(int i = 0; i < callGraph.nInternal; i += 1 + random.nextInt(1000)) starts.add(kb.new Node(callGraph.LID2GID[i], index));
+		}
+		// Duplicate sources must be harmless
+		starts.add(starts.get(0));
+
+		final ObjectArrayList<ObjectLinkedOpenHashSet<Node>> reachesFrom = new ObjectArrayList<>(), coreachesFrom = new ObjectArrayList<>();
+		final ObjectOpenHashSet<Node> reaches = new ObjectOpenHashSet<>(), coreaches = new ObjectOpenHashSet<>();
+		for(final Node start : starts) {
+			reachesFrom.add(kb.reaches(start));
+			coreachesFrom.add(kb.coreaches(start));
+			reaches.addAll(reachesFrom.top());
+			coreaches.addAll(coreachesFrom.top());
+		}
+		assertEquals(reaches, new ObjectOpenHashSet<>(kb.reaches(starts)));
+		assertEquals(coreaches, new ObjectOpenHashSet<>(kb.coreaches(starts)));
+
+		final Object2IntLinkedOpenHashMap<Node> reachesBySource = kb.reachesBySource(starts);
+		assertEquals(reaches, reachesBySource.keySet());
+		for(final Object2IntMap.Entry<Node> e : reachesBySource.object2IntEntrySet()) assertTrue(reachesFrom.get(e.getIntValue()).contains(e.getKey()));
+		final Object2IntLinkedOpenHashMap<Node> coreachesBySource = kb.coreachesBySource(starts);
+		assertEquals(coreaches, coreachesBySource.keySet());
+		for(final Object2IntMap.Entry<Node> e : coreachesBySource.object2IntEntrySet()) assertTrue(coreachesFrom.get(e.getIntValue()).contains(e.getKey()));
+
+		kb.close();
+		FileUtils.deleteDirectory(kbDir.toFile());
+		FileUtils.deleteQuietly(new File(meta));
+		FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+	}
+
+	/** Returns a consumer that will return the given records from the first partition of their topic. */
+	private static MockConsumer<String, String> consumer(final List<ProducerRecord<String, String>> records) {
+		final MockConsumer<String, String> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+		final TopicPartition partition = new TopicPartition(records.get(0).topic(), 0);
+		consumer.schedulePollTask(() -> {
+			consumer.rebalance(Collections.singletonList(partition));
+			consumer.updateBeginningOffsets(Collections.singletonMap(partition, Long.valueOf(0)));
+			for(int i = 0; i < records.size(); i++) {
+				final ProducerRecord<String, String> record = records.get(i);
+				consumer.addRecord(new ConsumerRecord<>(partition.topic(), 0, i, ConsumerRecord.NO_TIMESTAMP, TimestampType.NO_TIMESTAMP_TYPE, Long.valueOf(ConsumerRecord.NULL_CHECKSUM), ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE, record.key(), record.value(), record.headers()));
+			}
+		});
+		return consumer;
+	}
+
+	@Test
+	public void testCorruptedTransport() throws JSONException, IOException, RocksDBException, ClassNotFoundException, InterruptedException {
+		final File blobStore = Files.createTempDirectory(Indexer.class.getSimpleName()).toFile();
+		// The corrupted call graph is still a valid call graph of the same length, so only verification can detect it
+		final String jsonSpec = JSON_SPECS[0], corruptedSpec = jsonSpec.replace("1.0", "1.1");
+		for(final Mode mode : new Mode[] { Mode.CHUNKED, Mode.BLOB }) {
+			for(final boolean corrupted : new boolean[] { false, true }) {
+				final MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+				new CallGraphTransport(mode, 64, blobStore).send(producer, "callgraphs", "k", writer -> writer.write(jsonSpec), null);
+				final List<ProducerRecord<String, String>> records = new ArrayList<>(producer.history());
+				assertTrue(CallGraphTransport.isTransported(records.get(0).headers()));
+				if (corrupted) {
+					if (mode == Mode.CHUNKED) {
+						int chunk = 0;
+						while(!records.get(chunk).value().contains("1.0")) chunk++;
+						final ProducerRecord<String, String> record = records.get(chunk);
+						records.set(chunk, new ProducerRecord<>(record.topic(), record.partition(), record.key(), record.value().replace("1.0", "1.1"), record.headers()));
+					}
+					else for(final File blob : blobStore.listFiles()) FileUtils.writeStringToFile(blob, corruptedSpec, StandardCharsets.UTF_8);
+				}
+
+				final Path kbDir = Files.createTempDirectory(Indexer.class.getSimpleName());
+				final String meta = Files.createTempFile(Indexer.class.getSimpleName(), "meta").toString();
+				new File(meta).delete();
+				final KnowledgeBase kb = KnowledgeBase.getInstance(kbDir.toString(), meta);
+				final Future<Void> future = new Indexer(kb, 2, 4).index(1, consumer(records), "callgraphs", blobStore);
+				try {
+					future.get();
+					if (corrupted) fail("A corrupted " + mode + " payload has been indexed");
+				} catch (final ExecutionException e) {
+					if (!corrupted) throw new AssertionError(e.getCause());
+					assertTrue(e.getCause() instanceof IOException);
+				}
+				assertEquals(corrupted ? 0 : 1, kb.size());
+				kb.close();
+
+				FileUtils.deleteDirectory(kbDir.toFile());
+				FileUtils.deleteQuietly(new File(meta));
+				FileUtils.deleteQuietly(new File(meta + KnowledgeBase.URIS_EXTENSION));
+			}
+		}
+		FileUtils.deleteDirectory(blobStore);
+	}
 }
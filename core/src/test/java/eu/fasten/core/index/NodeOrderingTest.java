@@ -0,0 +1,83 @@
+package eu.fasten.core.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Test;
+
+import it.unimi.dsi.Util;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.webgraph.ArrayListMutableGraph;
+import it.unimi.dsi.webgraph.ImmutableGraph;
+import it.unimi.dsi.webgraph.LazyIntIterator;
+import it.unimi.dsi.webgraph.Transform;
+
+public class NodeOrderingTest {
+
+	/** Returns a random call graph: arcs go from internal nodes to internal or external nodes. */
+	private static ImmutableGraph randomCallGraph(final Random random, final int nInternal, final int nExternal, final int m) {
+		final ArrayListMutableGraph graph = new ArrayListMutableGraph(nInternal + nExternal);
+		for(int i = 0; i < m; i++) {
+			try {
+				graph.addArc(random.nextInt(nInternal), random.nextInt(nInternal + nExternal));
+			} catch(final IllegalArgumentException duplicate) {}
+		}
+		return graph.immutableView();
+	}
+
+	private static double bitsPerLink(final ImmutableGraph graph) throws IOException {
+		final Properties properties = new Properties();
+		InMemoryBVGraphCompressor.compress(graph, properties);
+		return Double.parseDouble(properties.getProperty("bitsperlink"));
+	}
+
+	@Test
+	public void testInternalNodesFirst() {
+		final Random random = new Random(0);
+		for(final int nInternal : new int[] { 1, 10, 1000 }) {
+			for(final int nExternal : new int[] { 0, 1, 100 }) {
+				final ImmutableGraph graph = randomCallGraph(random, nInternal, nExternal, 3 * nInternal);
+				for(final NodeOrdering ordering : NodeOrdering.values()) {
+					final int[] perm = ordering.permutation(graph, nInternal);
+					final boolean[] seen = new boolean[perm.length];
+					for(int x = 0; x < perm.length; x++) {
+						assertTrue(ordering.toString(), !seen[perm[x]]);
+						seen[perm[x]] = true;
+						assertEquals(ordering.toString(), x < nInternal, perm[x] < nInternal);
+					}
+
+					final ImmutableGraph mapped = Transform.map(graph, perm);
+					for(int x = 0; x < graph.numNodes(); x++) {
+						final LazyIntIterator successors = graph.successors(x);
+						final int[] expected = new int[graph.outdegree(x)];
+						for(int i = 0; i < expected.length; i++) expected[i] = perm[successors.nextInt()];
+						IntArrays.quickSort(expected);
+						final LazyIntIterator actual = mapped.successors(perm[x]);
+						for(final int s : expected) assertEquals(s, actual.nextInt());
+						assertEquals(-1, actual.nextInt());
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLocality() throws IOException {
+		// A graph with local arcs, whose nodes are shuffled
+		final int n = 10000;
+		final int[] shuffle = Util.identity(n);
+		IntArrays.shuffle(shuffle, new Random(0));
+		final ArrayListMutableGraph graph = new ArrayListMutableGraph(n);
+		for(int x = 0; x < n - 3; x++)
+			for(int d = 1; d <= 3; d++) graph.addArc(shuffle[x], shuffle[x + d]);
+		final ImmutableGraph shuffled = graph.immutableView();
+
+		final double identity = bitsPerLink(Transform.map(shuffled, NodeOrdering.IDENTITY.permutation(shuffled, n)));
+		assertEquals(bitsPerLink(shuffled), identity, 0);
+		assertTrue(bitsPerLink(Transform.map(shuffled, NodeOrdering.BFS.permutation(shuffled, n))) < identity / 2);
+	}
+}
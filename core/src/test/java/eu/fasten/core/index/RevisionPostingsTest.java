@@ -0,0 +1,87 @@
+package eu.fasten.core.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.DBOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongAVLTreeSet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.util.XoRoShiRo128PlusPlusRandomGenerator;
+
+public class RevisionPostingsTest {
+
+	private static LongArrayList toList(final RevisionPostings.PostingList list) {
+		final LongArrayList result = new LongArrayList();
+		for(final LongIterator i = list.iterator(); i.hasNext();) result.add(i.nextLong());
+		return result;
+	}
+
+	@Test
+	public void testAddMergeAndReload() throws IOException, RocksDBException {
+		RocksDB.loadLibrary();
+		final Path dir = Files.createTempDirectory(RevisionPostingsTest.class.getSimpleName());
+		final List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+		descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY));
+		descriptors.add(new ColumnFamilyDescriptor("postings".getBytes(StandardCharsets.UTF_8)));
+		final List<ColumnFamilyHandle> handles = new ArrayList<>();
+		try (DBOptions options = new DBOptions().setCreateIfMissing(true).setCreateMissingColumnFamilies(true);
+				RocksDB db = RocksDB.open(options, dir.toString(), descriptors, handles);
+				WriteOptions writeOptions = new WriteOptions()) {
+			final RevisionPostings postings = new RevisionPostings(db, handles.get(1));
+			final int gids = 10;
+			final LongAVLTreeSet[] expected = new LongAVLTreeSet[gids];
+			for(int i = 0; i < gids; i++) expected[i] = new LongAVLTreeSet();
+
+			final XoRoShiRo128PlusPlusRandomGenerator random = new XoRoShiRo128PlusPlusRandomGenerator(0);
+			for(int b = 0; b < 200; b++) {
+				try (WriteBatch batch = new WriteBatch()) {
+					for(int i = 0; i < 10; i++) {
+						final int gid = random.nextInt(gids);
+						// Mostly increasing indices, with some duplicates and some out of order
+						final long index = random.nextInt(10) == 0 ? random.nextInt(2000) : b * 10 + i;
+						postings.add(batch, gid, index);
+						expected[gid].add(index);
+					}
+					db.write(writeOptions, batch);
+				}
+			}
+
+			// A batch that is never written
+			try (WriteBatch batch = new WriteBatch()) {
+				postings.add(batch, 0, 1000000);
+			}
+			postings.invalidate();
+
+			final RevisionPostings reloaded = new RevisionPostings(db, handles.get(1));
+			for(int gid = 0; gid < gids; gid++) {
+				assertTrue(expected[gid].size() > RevisionPostings.MAX_TAIL_SIZE);
+				assertEquals(new LongArrayList(expected[gid]), toList(postings.get(gid)));
+				assertEquals(new LongArrayList(expected[gid]), toList(reloaded.get(gid)));
+				assertEquals(expected[gid].size(), reloaded.get(gid).size());
+				for(final long index : expected[gid]) assertTrue(reloaded.get(gid).contains(index));
+				assertTrue(!reloaded.get(gid).contains(1000000));
+			}
+			assertEquals(0, postings.get(gids).size());
+
+			for(final ColumnFamilyHandle handle : handles) handle.close();
+		}
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+}
@@ -0,0 +1,108 @@
+package eu.fasten.core.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import it.unimi.dsi.fastutil.io.BinIO;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+public class URIDictionaryTest {
+
+	@Test
+	public void testAddFreezeAndReload() throws IOException, ClassNotFoundException {
+		final File file = File.createTempFile(URIDictionaryTest.class.getSimpleName(), "uris");
+		final File serialized = File.createTempFile(URIDictionaryTest.class.getSimpleName(), "ser");
+		file.deleteOnExit();
+		serialized.deleteOnExit();
+
+		URIDictionary dictionary = new URIDictionary();
+		assertEquals(-1, dictionary.getLong("//p/A.f0()v"));
+		for(int i = 0; i < 1000; i++) assertEquals(i, dictionary.add("//p/A.f" + i + "()v"));
+		assertEquals(5, dictionary.add("//p/A.f5()v"));
+
+		dictionary.freeze(file);
+		assertEquals(1000, dictionary.frozenSize());
+		// Non-ASCII strings go in the tail
+		for(int i = 1000; i < 1500; i++) assertEquals(i, dictionary.add("//p/è.f" + i + "()v"));
+
+		for(int pass = 0; pass < 2; pass++) {
+			assertEquals(1500, dictionary.size());
+			for(int i = 0; i < 1000; i++) {
+				assertEquals(i, dictionary.getLong("//p/A.f" + i + "()v"));
+				assertEquals("//p/A.f" + i + "()v", dictionary.get(i));
+			}
+			for(int i = 1000; i < 1500; i++) {
+				assertEquals(i, dictionary.getLong("//p/è.f" + i + "()v"));
+				assertEquals("//p/è.f" + i + "()v", dictionary.get(i));
+			}
+			assertEquals(-1, dictionary.getLong("//p/A.f1500()v"));
+			assertEquals(-1, dictionary.getLong("//q/A.f0()v"));
+			assertNull(dictionary.get(1500));
+
+			dictionary.freeze(file);
+			assertEquals(1500, dictionary.frozenSize());
+			BinIO.storeObject(dictionary, serialized);
+			dictionary = (URIDictionary)BinIO.loadObject(serialized);
+			dictionary.map(file);
+		}
+	}
+
+	@Test
+	public void testConcurrentAdd() throws Exception {
+		final File file = File.createTempFile(URIDictionaryTest.class.getSimpleName(), "uris");
+		file.deleteOnExit();
+		final URIDictionary dictionary = new URIDictionary();
+		for(int i = 0; i < 1000; i++) dictionary.add("//p/A.f" + i + "()v");
+		dictionary.freeze(file);
+
+		// Threads add overlapping ranges of strings, half of which are in the frozen tier, and check them immediately
+		final int threads = 8, n = 20000;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final List<Future<long[]>> futures = new ArrayList<>();
+		for(int t = 0; t < threads; t++) {
+			final int start = t * n / 4;
+			futures.add(executor.submit(() -> {
+				final long[] ids = new long[n];
+				for(int i = 0; i < n; i++) {
+					final String s = "//p/A.f" + (start + i) + "()v";
+					ids[i] = dictionary.add(s);
+					assertEquals(s, dictionary.get(ids[i]));
+				}
+				return ids;
+			}));
+		}
+		final int distinct = (threads - 1) * n / 4 + n;
+		final long[][] ids = new long[threads][];
+		for(int t = 0; t < threads; t++) ids[t] = futures.get(t).get();
+		executor.shutdown();
+
+		assertEquals(distinct, dictionary.size());
+		final LongOpenHashSet all = new LongOpenHashSet();
+		for(int t = 0; t < threads; t++) {
+			for(int i = 0; i < n; i++) {
+				final int string = t * n / 4 + i;
+				if (string < 1000) assertEquals(string, ids[t][i]);
+				assertEquals(dictionary.getLong("//p/A.f" + string + "()v"), ids[t][i]);
+				all.add(ids[t][i]);
+			}
+		}
+		// Identifiers are consecutive
+		assertEquals(distinct, all.size());
+		for(long id = 0; id < distinct; id++) assertTrue(all.contains(id));
+
+		dictionary.freeze(file);
+		assertEquals(distinct, dictionary.frozenSize());
+		for(int i = 0; i < distinct; i++) assertEquals("//p/A.f" + i + "()v", dictionary.get(dictionary.getLong("//p/A.f" + i + "()v")));
+	}
+}
@@ -57,6 +57,17 @@ public class FastenServer implements Runnable {
             defaultValue = "0")
     private int skipOffsets;
 
+    @Option(names = {"-c", "--compression"},
+            paramLabel = "type",
+            description = "Kafka compression type of the producers (none, gzip, snappy, lz4 or zstd).",
+            defaultValue = FastenKafkaConnection.DEFAULT_COMPRESSION_TYPE)
+    private String compressionType;
+
+    @Option(names = {"-d", "--dictionary"},
+            paramLabel = "FILE",
+            description = "Zstandard dictionary used to compress each record of the producers, and to decompress records of the consumers.")
+    private String dictionary;
+
     private static Logger logger = LoggerFactory.getLogger(FastenServer.class);
 
     private List<FastenKafkaConsumer> consumers;
@@ -96,7 +107,7 @@ public class FastenServer implements Runnable {
 
         this.producers = kafkaProducers.stream().map(k -> {
             var properties = FastenKafkaConnection.producerProperties(kafkaServers,
-                    k.getClass().getCanonicalName());
+                    k.getClass().getCanonicalName(), compressionType, dictionary);
 
             return new FastenKafkaProducer(properties, k);
 
@@ -107,7 +118,7 @@ public class FastenServer implements Runnable {
         this.consumers = kafkaConsumers.stream().map(k -> {
             var properties = FastenKafkaConnection.kafkaProperties(
                     kafkaServers,
-                    k.getClass().getCanonicalName());
+                    k.getClass().getCanonicalName(), dictionary);
 
             return new FastenKafkaConsumer(properties, k, skipOffsets);
         }).collect(Collectors.toList());
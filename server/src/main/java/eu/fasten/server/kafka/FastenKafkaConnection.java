@@ -18,6 +18,7 @@
 
 package eu.fasten.server.kafka;
 
+import eu.fasten.core.data.PayloadCompression;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -35,7 +36,19 @@ public abstract class FastenKafkaConnection extends Thread {
         this.connProperties = p;
     }
 
+    /** Default Kafka compression type of producers. */
+    public static final String DEFAULT_COMPRESSION_TYPE = "lz4";
+
     public static Properties kafkaProperties(List<String> serverAddresses, String groupId) {
+        return kafkaProperties(serverAddresses, groupId, null);
+    }
+
+    /**
+     * Returns the properties of a consumer able to read records compressed by {@link PayloadCompression}.
+     *
+     * @param dictionaries comma-separated list of the Zstandard dictionaries used by producers, or null.
+     */
+    public static Properties kafkaProperties(List<String> serverAddresses, String groupId, String dictionaries) {
         String deserializer = StringDeserializer.class.getName();
         Properties properties = new Properties();
 
@@ -43,7 +56,9 @@ public abstract class FastenKafkaConnection extends Thread {
         properties.setProperty(ConsumerConfig.GROUP_ID_CONFIG, groupId);
         properties.setProperty(ConsumerConfig.CLIENT_ID_CONFIG, groupId + "_client");
         properties.setProperty(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, deserializer);
-        properties.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, deserializer);
+        // Compressed records are decompressed, and uncompressed ones are passed through
+        properties.setProperty(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, PayloadCompression.Deserializer.class.getName());
+        if (dictionaries != null) properties.setProperty(PayloadCompression.DICTIONARIES_CONFIG, dictionaries);
         properties.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         properties.setProperty(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         properties.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, "5");
@@ -57,6 +72,17 @@ public abstract class FastenKafkaConnection extends Thread {
     }
 
     public static Properties producerProperties(List<String> serverAddresses, String clientId){
+        return producerProperties(serverAddresses, clientId, DEFAULT_COMPRESSION_TYPE, null);
+    }
+
+    /**
+     * Returns the properties of a producer.
+     *
+     * @param compressionType Kafka compression type (none, gzip, snappy, lz4 or zstd).
+     * @param dictionary a Zstandard dictionary trained on the records; if not null, each record is compressed individually
+     *                   by {@link PayloadCompression} using the dictionary, and compressionType is ignored.
+     */
+    public static Properties producerProperties(List<String> serverAddresses, String clientId, String compressionType, String dictionary) {
 
         String serializer = StringSerializer.class.getName();
         Properties properties = new Properties();
@@ -68,7 +94,15 @@ public abstract class FastenKafkaConnection extends Thread {
         properties.setProperty(ProducerConfig.MAX_REQUEST_SIZE_CONFIG, "100000000");
         // The total bytes of memory the producer can use to buffer records waiting to be sent to the server
         properties.setProperty(ProducerConfig.BUFFER_MEMORY_CONFIG, "100000000");
-        properties.setProperty(ProducerConfig.COMPRESSION_TYPE_CONFIG, "gzip");
+        if (dictionary == null) {
+            properties.setProperty(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        } else {
+            properties.setProperty(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, PayloadCompression.Serializer.class.getName());
+            properties.setProperty(PayloadCompression.CODEC_CONFIG, PayloadCompression.Codec.ZSTD.name());
+            properties.setProperty(PayloadCompression.DICTIONARIES_CONFIG, dictionary);
+            // Records are already compressed
+            properties.setProperty(ProducerConfig.COMPRESSION_TYPE_CONFIG, "none");
+        }
 
         return properties;
     }